@@ -24,13 +24,12 @@
 
 package rapaio.core;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
 
 /**
  * Random number producer used by rapaio facilities.
@@ -39,12 +38,20 @@ import java.util.Random;
  * <p>
  * In order to have a reproducible analysis you can use
  * same seed in code ({@link #setSeed(long)}).
+ * <p>
+ * Parallel tasks use random streams. A stream is a generator owned by the current thread
+ * while a task runs, with a seed derived from a base seed drawn before the tasks start and
+ * the index of the task ({@link #streamSeed(long, int)}). While a stream is active
+ * all static methods draw from it instead of the shared generator, thus tasks do not contend on
+ * the shared generator and the results do not depend on thread scheduling or on the number of threads.
  *
  * @author Aurelian Tutuianu
  */
 public final class RandomSource implements Serializable {
 
     private static final long serialVersionUID = -1201316989986445607L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final ThreadLocal<Random> stream = new ThreadLocal<>();
     private static Random rand = new Random();
 
     public static void setSeed(long seed) {
@@ -59,29 +66,137 @@ public final class RandomSource implements Serializable {
         rand = new SecureRandom(seed);
     }
 
+    private static Random current() {
+        Random random = stream.get();
+        return random == null ? rand : random;
+    }
+
     /**
      * Returns the next pseudorandom, uniformly distributed
      * {@code double} value between {@code 0.0} and
      * {@code 1.0} from this random number generator's sequence.
      */
     public static double nextDouble() {
-        return rand.nextDouble();
+        return current().nextDouble();
     }
 
     public static int nextInt(int n) {
-        return rand.nextInt(n);
+        return current().nextInt(n);
     }
 
     public static long nextLong() {
-        return rand.nextLong();
+        return current().nextLong();
     }
 
     public static String nextString(int len) {
-        return new BigInteger(len, rand).toString();
+        return new BigInteger(len, current()).toString();
     }
 
+    /**
+     * @return generator of the current stream if there is one, the shared generator otherwise
+     */
     public static Random getRandom() {
-        return rand;
+        return current();
+    }
+
+    /**
+     * Derives the seed of a task stream. Seeds are spread with the SplitMix64
+     * finalizer, such that streams of consecutive tasks are not correlated.
+     *
+     * @param base  base seed, usually drawn with {@link #nextLong()} before starting tasks
+     * @param index index of the task
+     * @return seed of the task stream
+     */
+    public static long streamSeed(long base, int index) {
+        long z = base + GOLDEN_GAMMA * (index + 1L);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Runs a task on the current thread with a random stream built from the given seed.
+     * The previous stream of the thread, if any, is restored after the task ends.
+     *
+     * @param seed stream seed
+     * @param task task to run
+     */
+    public static void runWithStream(long seed, Runnable task) {
+        callWithStream(seed, () -> {
+            task.run();
+            return null;
+        });
     }
-}
 
+    /**
+     * Calls a task on the current thread with a random stream built from the given seed.
+     * The previous stream of the thread, if any, is restored after the task ends.
+     *
+     * @param seed stream seed
+     * @param task task to call
+     * @param <T>  type of the result
+     * @return result of the task
+     */
+    public static <T> T callWithStream(long seed, Supplier<T> task) {
+        Random previous = stream.get();
+        stream.set(new StreamRandom(seed));
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                stream.remove();
+            } else {
+                stream.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Unsynchronized {@link Random} backed by a {@link SplittableRandom}, used by a single thread.
+     */
+    private static final class StreamRandom extends Random {
+
+        private static final long serialVersionUID = 5323584283484946366L;
+        private SplittableRandom random;
+
+        StreamRandom(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            // called also by super constructor
+            random = new SplittableRandom(seed);
+        }
+
+        @Override
+        protected int next(int bits) {
+            return random.nextInt() >>> (32 - bits);
+        }
+
+        @Override
+        public int nextInt() {
+            return random.nextInt();
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return random.nextInt(bound);
+        }
+
+        @Override
+        public long nextLong() {
+            return random.nextLong();
+        }
+
+        @Override
+        public double nextDouble() {
+            return random.nextDouble();
+        }
+
+        @Override
+        public boolean nextBoolean() {
+            return random.nextBoolean();
+        }
+    }
+}
@@ -372,6 +372,6 @@ public final class SamplingTools {
     }
 
     public static Frame randomBootstrap(Frame frame, double percent) {
-        return MappedFrame.byRow(frame, Mapping.copy(SamplingTools.sampleWR(frame.getRowCount(), (int) (percent * frame.getRowCount()))));
+        return MappedFrame.byRow(frame, Mapping.wrap(SamplingTools.sampleWR(frame.getRowCount(), (int) (percent * frame.getRowCount()))));
     }
 }
@@ -30,7 +30,6 @@ import rapaio.printer.Printable;
 
 import java.util.stream.IntStream;
 
-import static java.util.stream.Collectors.toList;
 import static rapaio.core.CoreTools.mean;
 import static rapaio.sys.WS.formatFlex;
 
@@ -59,7 +58,7 @@ public class Covariance implements Printable {
 
     private double compute(final Var x, final Var y) {
 
-        Mapping map = Mapping.wrap(IntStream.range(0, Math.min(x.getRowCount(), y.getRowCount())).filter(row -> !x.isMissing(row) && !y.isMissing(row)).boxed().collect(toList()));
+        Mapping map = Mapping.wrap(IntStream.range(0, Math.min(x.getRowCount(), y.getRowCount())).filter(row -> !x.isMissing(row) && !y.isMissing(row)).toArray());
         completeCount = map.size();
         missingCount = Math.max(x.getRowCount(), y.getRowCount()) - completeCount;
 
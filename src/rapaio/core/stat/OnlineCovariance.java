@@ -0,0 +1,272 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.core.stat;
+
+import rapaio.data.Frame;
+import rapaio.math.linear.RM;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.printer.Printable;
+import rapaio.printer.format.TextTable;
+import rapaio.sys.WS;
+import rapaio.util.FJPool;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Online accumulator for means and covariance matrix of multiple variables.
+ * <p>
+ * Observations are added one by one, using the multivariate extension of Welford's
+ * method, and accumulators built over different chunks of data can be merged
+ * with the pairwise formulas of Chan et al. Observations with missing values
+ * in any of the variables are skipped.
+ *
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class OnlineCovariance implements Printable, Serializable {
+
+    /**
+     * Builds an empty accumulator for a given number of variables.
+     */
+    public static OnlineCovariance empty(int dimension) {
+        String[] names = new String[dimension];
+        for (int i = 0; i < dimension; i++) {
+            names[i] = "v" + i;
+        }
+        return new OnlineCovariance(names);
+    }
+
+    /**
+     * Builds an empty accumulator with given variable names.
+     */
+    public static OnlineCovariance empty(String... names) {
+        return new OnlineCovariance(Arrays.copyOf(names, names.length));
+    }
+
+    /**
+     * Builds an accumulator from all rows of a frame, using all variables of the frame.
+     */
+    public static OnlineCovariance from(Frame df) {
+        return from(df, 1);
+    }
+
+    /**
+     * Builds an accumulator from all rows of a frame, in parallel.
+     * An accumulator is built for each chunk of rows and all of them are merged.
+     *
+     * @param df       given frame
+     * @param poolSize number of threads used
+     */
+    public static OnlineCovariance from(Frame df, int poolSize) {
+        return FJPool.reduceRange(poolSize, 0, df.getRowCount(),
+                (start, end) -> empty(df.getVarNames()).update(df, start, end),
+                OnlineCovariance::combine);
+    }
+
+    private static final long serialVersionUID = 2790387424337834215L;
+
+    private final String[] names;
+    private double n;
+    private final double[] mean;
+    // co-moments, sums of products of deviations from mean, only upper triangle is used
+    private final double[][] cm;
+
+    private OnlineCovariance(String[] names) {
+        this.names = names;
+        this.mean = new double[names.length];
+        this.cm = new double[names.length][names.length];
+    }
+
+    public int dimension() {
+        return names.length;
+    }
+
+    public String[] names() {
+        return names;
+    }
+
+    /**
+     * @return number of observations used
+     */
+    public double n() {
+        return n;
+    }
+
+    /**
+     * Adds an observation. Observations with missing values are skipped.
+     *
+     * @param x values of the observation, one for each variable
+     */
+    public void update(double... x) {
+        if (x.length != names.length) {
+            throw new IllegalArgumentException("Observation does not have the same dimension as accumulator.");
+        }
+        for (double value : x) {
+            if (Double.isNaN(value)) {
+                return;
+            }
+        }
+        n++;
+        double[] delta = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            delta[i] = x[i] - mean[i];
+            mean[i] += delta[i] / n;
+        }
+        for (int i = 0; i < x.length; i++) {
+            for (int j = i; j < x.length; j++) {
+                cm[i][j] += delta[i] * (x[j] - mean[j]);
+            }
+        }
+    }
+
+    /**
+     * Adds rows from a range of a frame, using variables by position.
+     *
+     * @param df    frame with the same number of variables
+     * @param start first row, inclusive
+     * @param end   last row, exclusive
+     * @return this accumulator
+     */
+    public OnlineCovariance update(Frame df, int start, int end) {
+        if (df.getVarCount() != names.length) {
+            throw new IllegalArgumentException("Frame does not have the same number of variables as accumulator.");
+        }
+        double[] x = new double[names.length];
+        for (int row = start; row < end; row++) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] = df.getValue(row, i);
+            }
+            update(x);
+        }
+        return this;
+    }
+
+    /**
+     * Merges another accumulator into this one. The other accumulator is not changed.
+     *
+     * @param a accumulator to be merged
+     */
+    public void update(OnlineCovariance a) {
+        if (a.names.length != names.length) {
+            throw new IllegalArgumentException("Cannot merge accumulators with different dimensions.");
+        }
+        if (a.n == 0) {
+            return;
+        }
+        double na = n;
+        double nb = a.n;
+        double total = na + nb;
+        double[] delta = new double[names.length];
+        for (int i = 0; i < delta.length; i++) {
+            delta[i] = a.mean[i] - mean[i];
+            mean[i] += delta[i] * nb / total;
+        }
+        for (int i = 0; i < delta.length; i++) {
+            for (int j = i; j < delta.length; j++) {
+                cm[i][j] += a.cm[i][j] + delta[i] * delta[j] * na * nb / total;
+            }
+        }
+        n = total;
+    }
+
+    /**
+     * Builds a new accumulator with observations of this and another accumulator.
+     * None of the two accumulators is changed.
+     *
+     * @param a accumulator to combine with
+     * @return new combined accumulator
+     */
+    public OnlineCovariance combine(OnlineCovariance a) {
+        OnlineCovariance combined = copy();
+        combined.update(a);
+        return combined;
+    }
+
+    public OnlineCovariance copy() {
+        OnlineCovariance copy = new OnlineCovariance(names);
+        copy.n = n;
+        System.arraycopy(mean, 0, copy.mean, 0, mean.length);
+        for (int i = 0; i < cm.length; i++) {
+            System.arraycopy(cm[i], 0, copy.cm[i], 0, cm[i].length);
+        }
+        return copy;
+    }
+
+    public double mean(int i) {
+        return mean[i];
+    }
+
+    /**
+     * @return sample covariance of two variables
+     */
+    public double covariance(int i, int j) {
+        return (i <= j ? cm[i][j] : cm[j][i]) / (n - 1.0);
+    }
+
+    /**
+     * @return sample variance of a variable
+     */
+    public double variance(int i) {
+        return covariance(i, i);
+    }
+
+    /**
+     * @return pearson correlation of two variables
+     */
+    public double correlation(int i, int j) {
+        return (i <= j ? cm[i][j] : cm[j][i]) / Math.sqrt(cm[i][i] * cm[j][j]);
+    }
+
+    /**
+     * @return sample covariance matrix
+     */
+    public RM covarianceMatrix() {
+        return SolidRM.fill(names.length, names.length, this::covariance);
+    }
+
+    /**
+     * @return pearson correlation matrix
+     */
+    public RM correlationMatrix() {
+        return SolidRM.fill(names.length, names.length, this::correlation);
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n > online covariance (observations: ").append(WS.formatFlex(n)).append(")\n");
+        TextTable tt = TextTable.newEmpty(names.length + 1, names.length + 1);
+        tt.withHeaderRows(1);
+        for (int i = 0; i < names.length; i++) {
+            tt.set(0, i + 1, names[i], 1);
+            tt.set(i + 1, 0, names[i], 1);
+            for (int j = 0; j < names.length; j++) {
+                tt.set(i + 1, j + 1, WS.formatFlex(covariance(i, j)), 1);
+            }
+        }
+        sb.append(tt.getSummary());
+        return sb.toString();
+    }
+}
@@ -24,6 +24,11 @@
 
 package rapaio.core.stat;
 
+import rapaio.data.Var;
+import rapaio.util.FJPool;
+
+import java.io.Serializable;
+
 /**
  * Class which implements core online statistics. This class does not hold
  * values used for calculations, just the statistics itself and some additional
@@ -41,15 +46,51 @@ package rapaio.core.stat;
  * <ui>max - maximum value</ui>
  * <ui>mean - mean of the values</ui>
  * </ul>
+ * <p>
+ * Instances can be merged, see {@link #update(OnlineStat)} and {@link #combine(OnlineStat)}.
  *
  * @author Aurelian Tutuianu
  */
-public class OnlineStat {
+public class OnlineStat implements Serializable {
+
+    private static final long serialVersionUID = -1316545362218893735L;
 
     public static OnlineStat empty() {
         return new OnlineStat();
     }
 
+    /**
+     * Builds online statistics from the non missing values of a variable.
+     */
+    public static OnlineStat from(Var var) {
+        OnlineStat stat = new OnlineStat();
+        for (int i = 0; i < var.getRowCount(); i++) {
+            if (!var.isMissing(i)) {
+                stat.update(var.getValue(i));
+            }
+        }
+        return stat;
+    }
+
+    /**
+     * Builds online statistics from the non missing values of a variable, in parallel.
+     * Statistics are computed for chunks of rows and combined.
+     *
+     * @param var      given variable
+     * @param poolSize number of threads used
+     */
+    public static OnlineStat from(Var var, int poolSize) {
+        return FJPool.reduceRange(poolSize, 0, var.getRowCount(), (start, end) -> {
+            OnlineStat stat = new OnlineStat();
+            for (int i = start; i < end; i++) {
+                if (!var.isMissing(i)) {
+                    stat.update(var.getValue(i));
+                }
+            }
+            return stat;
+        }, OnlineStat::combine);
+    }
+
     double n; // number of elements
     double m1;
     double m2;
@@ -88,6 +129,10 @@ public class OnlineStat {
         double delta_n2 = delta_n * delta_n;
         double term1 = delta * delta_n * n1;
         m1 += delta_n;
+        if (n == 1) {
+            min = x;
+            max = x;
+        }
         m4 += term1 * delta_n2 * (n * n - 3 * n + 3) + 6 * delta_n2 * m2 - 4 * delta_n * m3;
         m3 += term1 * delta_n * (n - 2) - 3 * delta_n * m2;
         m2 += term1;
@@ -130,9 +175,38 @@ public class OnlineStat {
         return n * m4 / (m2 * m2) - 3.0;
     }
 
+    /**
+     * Merges statistics of another instance into this instance, as if all values
+     * seen by the other instance were added to this one. The other instance is not changed.
+     * <p>
+     * The moments are merged with the pairwise formulas of Chan et al. for mean and variance,
+     * extended by Pébay for higher order moments, thus instances built in parallel over
+     * chunks of data can be combined.
+     *
+     * @param a instance to be merged
+     */
     public void update(OnlineStat a) {
         if (a.n == 0)
             return;
+        if (n == 0) {
+            copyFrom(a);
+            return;
+        }
+        copyFrom(combine(a));
+    }
+
+    /**
+     * Builds a new instance which contains the statistics of this instance merged
+     * with statistics of another instance. None of the two instances is changed.
+     *
+     * @param a instance to be combined with
+     * @return new instance with combined statistics
+     */
+    public OnlineStat combine(OnlineStat a) {
+        if (a.n == 0)
+            return copy();
+        if (n == 0)
+            return a.copy();
 
         OnlineStat combined = new OnlineStat();
         combined.n += a.n + this.n;
@@ -152,13 +226,25 @@ public class OnlineStat {
                 4.0 * delta * (a.n * this.m3 - this.n * a.m3) / combined.n;
         combined.min = Math.min(this.min, a.min);
         combined.max = Math.max(this.max, a.max);
+        return combined;
+    }
+
+    /**
+     * @return a copy of this instance
+     */
+    public OnlineStat copy() {
+        OnlineStat copy = new OnlineStat();
+        copy.copyFrom(this);
+        return copy;
+    }
 
-        n = combined.n;
-        m1 = combined.m1;
-        m2 = combined.m2;
-        m3 = combined.m3;
-        m4 = combined.m4;
-        min = combined.min;
-        max = combined.max;
+    private void copyFrom(OnlineStat a) {
+        n = a.n;
+        m1 = a.m1;
+        m2 = a.m2;
+        m3 = a.m3;
+        m4 = a.m4;
+        min = a.min;
+        max = a.max;
     }
 }
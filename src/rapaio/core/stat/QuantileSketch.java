@@ -0,0 +1,336 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.core.stat;
+
+import rapaio.core.RandomSource;
+import rapaio.data.Var;
+import rapaio.printer.Printable;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static rapaio.sys.WS.formatFlex;
+
+/**
+ * Streaming approximate quantiles with bounded memory, implemented as a KLL sketch.
+ * <p>
+ * Values are added one by one, like for {@link OnlineStat}, and sketches built
+ * on different chunks of data can be merged. The sketch keeps a hierarchy of compactors,
+ * where compactor at level h holds values with weight 2^h. When a compactor is full,
+ * its values are sorted and every second value is promoted to the next level.
+ * <p>
+ * The parameter k controls the accuracy, the rank error is roughly proportional with 1/k
+ * with high probability, and memory is proportional with k. Default value k=200 gives
+ * rank errors around 1%. Minimum and maximum values are exact.
+ * <p>
+ * For further reference see: Karnin, Lang, Liberty, Optimal Quantile Approximation in Streams, 2016.
+ *
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class QuantileSketch implements Printable, Serializable {
+
+    public static final int DEFAULT_K = 200;
+
+    public static QuantileSketch empty() {
+        return new QuantileSketch(DEFAULT_K);
+    }
+
+    public static QuantileSketch empty(int k) {
+        return new QuantileSketch(k);
+    }
+
+    /**
+     * Builds a sketch from the non missing values of a variable.
+     */
+    public static QuantileSketch from(Var var) {
+        return from(var, DEFAULT_K);
+    }
+
+    public static QuantileSketch from(Var var, int k) {
+        QuantileSketch sketch = new QuantileSketch(k);
+        for (int i = 0; i < var.getRowCount(); i++) {
+            if (!var.isMissing(i)) {
+                sketch.update(var.getValue(i));
+            }
+        }
+        return sketch;
+    }
+
+    private static final long serialVersionUID = 8237423424190281617L;
+    private static final double CAPACITY_FACTOR = 2.0 / 3.0;
+
+    private final int k;
+    private double[][] levels = new double[0][];
+    private int[] sizes = new int[0];
+    private int size;
+    private int maxSize;
+    private long n;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    private QuantileSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("Sketch size parameter k must be at least 8.");
+        }
+        this.k = k;
+        grow();
+    }
+
+    public int k() {
+        return k;
+    }
+
+    /**
+     * @return number of values added to the sketch
+     */
+    public long n() {
+        return n;
+    }
+
+    /**
+     * @return number of values retained by the sketch
+     */
+    public int retained() {
+        return size;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    /**
+     * Adds a value to the sketch, missing values are ignored.
+     *
+     * @param x value to be added
+     */
+    public void update(double x) {
+        if (Double.isNaN(x)) {
+            return;
+        }
+        if (n == 0 || x < min) {
+            min = x;
+        }
+        if (n == 0 || x > max) {
+            max = x;
+        }
+        n++;
+        append(0, x);
+        size++;
+        if (size >= maxSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Merges another sketch into this sketch. The other sketch is not changed.
+     * A sketch can be merged with itself, which doubles the weight of its values.
+     *
+     * @param other sketch to be merged
+     */
+    public void update(QuantileSketch other) {
+        if (other.n == 0) {
+            return;
+        }
+        // copy the values first, since the other sketch can be this one
+        double[][] values = new double[other.levels.length][];
+        for (int h = 0; h < values.length; h++) {
+            values[h] = Arrays.copyOf(other.levels[h], other.sizes[h]);
+        }
+        while (levels.length < values.length) {
+            grow();
+        }
+        for (int h = 0; h < values.length; h++) {
+            for (double value : values[h]) {
+                append(h, value);
+            }
+            size += values[h].length;
+        }
+        min = (n == 0) ? other.min : Math.min(min, other.min);
+        max = (n == 0) ? other.max : Math.max(max, other.max);
+        n += other.n;
+        while (size >= maxSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Estimates the quantile of a given probability, as the smallest retained value
+     * with estimated normalized rank not less than the given probability.
+     *
+     * @param p probability in [0, 1] range
+     * @return estimated quantile, NaN if no values were added
+     */
+    public double quantile(double p) {
+        return quantiles(p)[0];
+    }
+
+    public double[] quantiles(double... p) {
+        double[] values = new double[p.length];
+        if (n == 0) {
+            Arrays.fill(values, Double.NaN);
+            return values;
+        }
+        double[][] weighted = sortedWeighted();
+        double[] sorted = weighted[0];
+        double[] cumulative = weighted[1];
+        for (int i = 0; i < p.length; i++) {
+            if (!(p[i] >= 0 && p[i] <= 1)) {
+                throw new IllegalArgumentException("Probability must be in [0, 1] range.");
+            }
+            if (p[i] == 0) {
+                values[i] = min;
+                continue;
+            }
+            if (p[i] == 1) {
+                values[i] = max;
+                continue;
+            }
+            double target = p[i] * n;
+            int pos = Arrays.binarySearch(cumulative, target);
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+            values[i] = sorted[Math.min(pos, sorted.length - 1)];
+        }
+        return values;
+    }
+
+    /**
+     * Estimates the normalized rank of a value, the fraction of added values
+     * which are less than or equal with the given value.
+     *
+     * @param x given value
+     * @return estimated rank in [0, 1] range
+     */
+    public double rank(double x) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double weight = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if (levels[h][i] <= x) {
+                    weight += 1L << h;
+                }
+            }
+        }
+        return weight / n;
+    }
+
+    private double[][] sortedWeighted() {
+        double[] values = new double[size];
+        long[] weights = new long[size];
+        int len = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[len] = levels[h][i];
+                weights[len] = 1L << h;
+                len++;
+            }
+        }
+        Integer[] order = new Integer[len];
+        for (int i = 0; i < len; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sorted = new double[len];
+        double[] cumulative = new double[len];
+        double total = 0;
+        for (int i = 0; i < len; i++) {
+            sorted[i] = values[order[i]];
+            total += weights[order[i]];
+            cumulative[i] = total;
+        }
+        return new double[][]{sorted, cumulative};
+    }
+
+    private int capacity(int h) {
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_FACTOR, levels.length - 1 - h)));
+    }
+
+    private void grow() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        levels[levels.length - 1] = new double[8];
+        maxSize = 0;
+        for (int h = 0; h < levels.length; h++) {
+            maxSize += capacity(h);
+        }
+    }
+
+    private void append(int h, double x) {
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        }
+        levels[h][sizes[h]++] = x;
+    }
+
+    /**
+     * Compacts the first full compactor, promoting half of its values to the next level.
+     */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < capacity(h)) {
+                continue;
+            }
+            if (h + 1 == levels.length) {
+                grow();
+            }
+            double[] level = levels[h];
+            int len = sizes[h];
+            Arrays.sort(level, 0, len);
+            int offset = RandomSource.nextInt(2);
+            // an odd value is kept at this level
+            int start = len % 2;
+            for (int i = start + offset; i < len; i += 2) {
+                append(h + 1, level[i]);
+            }
+            sizes[h] = start;
+            size -= (len - start) / 2;
+            if (size < maxSize) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("\n > quantile sketch - approximate quantiles (k=%d)\n", k));
+        sb.append(String.format("values: %d, retained: %d, levels: %d\n", n, size, levels.length));
+        if (n > 0) {
+            double[] p = new double[]{0, 0.25, 0.5, 0.75, 1};
+            double[] q = quantiles(p);
+            for (int i = 0; i < p.length; i++) {
+                sb.append(String.format("quantile[%s] = %s\n", formatFlex(p[i]), formatFlex(q[i])));
+            }
+        }
+        return sb.toString();
+    }
+}
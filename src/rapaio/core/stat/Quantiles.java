@@ -25,9 +25,10 @@
 package rapaio.core.stat;
 
 import rapaio.data.Var;
-import rapaio.data.filter.var.VFSort;
 import rapaio.printer.Printable;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.stream.IntStream;
 
 import static rapaio.sys.WS.formatFlex;
@@ -42,6 +43,10 @@ import static rapaio.sys.WS.formatFlex;
  * <p>
  * Default type is R-7, but is can be changed.
  * <p>
+ * Quantiles are exact, the needed order statistics are found by selection in linear
+ * expected time, without sorting all values. For approximate quantiles with bounded memory
+ * see {@link QuantileSketch}.
+ * <p>
  * <p>
  * For further reference see:
  * http://en.wikipedia.org/wiki/Quantile
@@ -73,48 +78,131 @@ public class Quantiles implements Printable {
     }
 
     private double[] compute(final Var var) {
-        Var complete = var.stream().complete().toMappedVar();
-        missingCount = var.getRowCount() - complete.getRowCount();
-        completeCount = complete.getRowCount();
-        if (complete.getRowCount() == 0) {
+        double[] x = new double[var.getRowCount()];
+        int n = 0;
+        for (int i = 0; i < var.getRowCount(); i++) {
+            if (!var.isMissing(i)) {
+                x[n++] = var.getValue(i);
+            }
+        }
+        missingCount = var.getRowCount() - n;
+        completeCount = n;
+        if (n == 0) {
             return IntStream.range(0, percentiles.length).mapToDouble(i -> Double.NaN).toArray();
         }
-        if (complete.getRowCount() == 1) {
+        if (n == 1) {
             double[] values = new double[percentiles.length];
             for (int i = 0; i < values.length; i++) {
-                values[i] = complete.getValue(0);
+                values[i] = x[0];
             }
             return values;
         }
-        Var x = new VFSort().fitApply(complete);
-        double[] values = new double[percentiles.length];
+
+        // order statistic needed for each percentile, the value is interpolated
+        // between low and low + 1 order statistics when interpolate is true
+        int[] low = new int[percentiles.length];
+        double[] fraction = new double[percentiles.length];
+        boolean[] interpolate = new boolean[percentiles.length];
         for (int i = 0; i < percentiles.length; i++) {
             double p = percentiles[i];
             if (type.equals(Type.R8)) {
-                int N = x.getRowCount();
-                double h = (N + 1. / 3.) * p + 1. / 3.;
+                double h = (n + 1. / 3.) * p + 1. / 3.;
                 int hfloor = (int) StrictMath.floor(h);
 
-                if (p < (2. / 3.) / (N + 1. / 3.)) {
-                    values[i] = x.getValue(0);
+                if (p < (2. / 3.) / (n + 1. / 3.)) {
+                    low[i] = 0;
                     continue;
                 }
-                if (p >= (N - 1. / 3.) / (N + 1. / 3.)) {
-                    values[i] = x.getValue(x.getRowCount() - 1);
+                if (p >= (n - 1. / 3.) / (n + 1. / 3.)) {
+                    low[i] = n - 1;
                     continue;
                 }
-                values[i] = x.getValue(hfloor - 1) + (h - hfloor) * (x.getValue(hfloor) - x.getValue(hfloor - 1));
+                low[i] = hfloor - 1;
+                fraction[i] = h - hfloor;
+                interpolate[i] = true;
             }
             if (type.equals(Type.R7)) {
-                int N = x.getRowCount();
-                double h = (N - 1.0) * p + 1;
-                int hfloor = (int) Math.min(StrictMath.floor(h), x.getRowCount() - 1);
-                values[i] = x.getValue(hfloor - 1) + (h - hfloor) * (x.getValue(hfloor) - x.getValue(hfloor - 1));
+                double h = (n - 1.0) * p + 1;
+                int hfloor = (int) Math.min(StrictMath.floor(h), n - 1);
+                low[i] = hfloor - 1;
+                fraction[i] = h - hfloor;
+                interpolate[i] = true;
+            }
+        }
+
+        // select order statistics in increasing order, each selection
+        // partitions the values, thus the next one works only on the right side
+        Integer[] order = new Integer[percentiles.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> low[i]));
+        double[] values = new double[percentiles.length];
+        int from = 0;
+        for (int i : order) {
+            double lowValue = select(x, from, n, low[i]);
+            from = low[i];
+            if (interpolate[i]) {
+                double highValue = select(x, low[i] + 1, n, low[i] + 1);
+                values[i] = lowValue + fraction[i] * (highValue - lowValue);
+            } else {
+                values[i] = lowValue;
             }
         }
         return values;
     }
 
+    /**
+     * Selects the k-th smallest value from the range [from, to) of an array,
+     * in linear expected time. Values from the range are partitioned, after selection
+     * values smaller than position k are not greater than the selected value and values
+     * after position k are not smaller than the selected value.
+     * When partitioning degenerates the range is sorted instead.
+     */
+    static double select(double[] x, int from, int to, int k) {
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from)) + 4;
+        int left = from;
+        int right = to - 1;
+        while (right > left) {
+            if (budget-- == 0) {
+                Arrays.sort(x, left, right + 1);
+                break;
+            }
+            // median of three pivot
+            int mid = (left + right) >>> 1;
+            if (x[mid] < x[left]) swap(x, mid, left);
+            if (x[right] < x[left]) swap(x, right, left);
+            if (x[right] < x[mid]) swap(x, right, mid);
+            double pivot = x[mid];
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (x[i] < pivot) i++;
+                while (x[j] > pivot) j--;
+                if (i <= j) {
+                    swap(x, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return x[k];
+    }
+
+    private static void swap(double[] x, int i, int j) {
+        double tmp = x[i];
+        x[i] = x[j];
+        x[j] = tmp;
+    }
+
     public double[] getValues() {
         return quantiles;
     }
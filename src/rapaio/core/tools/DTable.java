@@ -24,12 +24,12 @@
 
 package rapaio.core.tools;
 
-import rapaio.data.NumericVar;
 import rapaio.data.Var;
 import rapaio.data.VarType;
 import rapaio.printer.Printable;
 import rapaio.printer.format.TextTable;
 import rapaio.sys.WS;
+import rapaio.util.FJPool;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -79,7 +79,19 @@ public final class DTable implements Printable, Serializable {
      * @param useFirst true if using the first row and col, false otherwise
      */
     public static DTable fromCounts(Var rowVar, Var colVar, boolean useFirst) {
-        return new DTable(rowVar, colVar, NumericVar.fill(rowVar.getRowCount(), 1), useFirst);
+        return new DTable(rowVar, colVar, null, useFirst);
+    }
+
+    /**
+     * Builds a density table from two nominal vectors built from counts, in parallel.
+     *
+     * @param rowVar   var on vertical axis
+     * @param colVar   var on horizontal axis
+     * @param useFirst true if using the first row and col, false otherwise
+     * @param poolSize number of threads used
+     */
+    public static DTable fromCounts(Var rowVar, Var colVar, boolean useFirst, int poolSize) {
+        return fromWeights(rowVar, colVar, null, useFirst, poolSize);
     }
 
     /**
@@ -95,6 +107,25 @@ public final class DTable implements Printable, Serializable {
         return new DTable(rowVar, colVar, weights, useFirst);
     }
 
+    /**
+     * Builds a density table from two nominal vectors, in parallel.
+     * Rows are split into chunks, a partial table is built for each chunk
+     * and partial tables are merged.
+     *
+     * @param rowVar   row var
+     * @param colVar   col var
+     * @param weights  weights used instead of counts, if not null
+     * @param useFirst true if using the first row and col, false otherwise
+     * @param poolSize number of threads used
+     */
+    public static DTable fromWeights(Var rowVar, Var colVar, Var weights, boolean useFirst, int poolSize) {
+        checkVars(rowVar, colVar);
+        return FJPool.reduceRange(poolSize, 0, rowVar.getRowCount(),
+                (start, end) -> DTable.empty(rowVar.getLevels(), colVar.getLevels(), useFirst)
+                        .addRows(rowVar, colVar, weights, start, end),
+                DTable::merge);
+    }
+
     /**
      * Builds a density table with a binary split, from two nominal vectors.
      * The first row contains instances which have test label equal with given testLabel,
@@ -119,19 +150,17 @@ public final class DTable implements Printable, Serializable {
 
     private DTable(Var rowVar, Var colVar, Var weights, boolean useFirst) {
         this(rowVar.getLevels(), colVar.getLevels(), useFirst);
+        checkVars(rowVar, colVar);
+        addRows(rowVar, colVar, weights, 0, rowVar.getRowCount());
+    }
 
+    private static void checkVars(Var rowVar, Var colVar) {
         if (!(rowVar.getType().isNominal() || rowVar.getType().equals(VarType.BINARY)))
             throw new IllegalArgumentException("row var must be nominal");
         if (!(colVar.getType().isNominal() || colVar.getType().equals(VarType.BINARY)))
             throw new IllegalArgumentException("col var is not nominal");
         if (rowVar.getRowCount() != colVar.getRowCount())
             throw new IllegalArgumentException("row and col vars must have same row count");
-
-        int rowOffset = rowVar.getType().equals(VarType.BINARY) ? 1 : 0;
-        int colOffset = colVar.getType().equals(VarType.BINARY) ? 1 : 0;
-        for (int i = 0; i < rowVar.getRowCount(); i++) {
-            update(rowVar.getIndex(i) + rowOffset, colVar.getIndex(i) + colOffset, weights != null ? weights.getValue(i) : 1);
-        }
     }
 
     private DTable(Var rowVar, Var colVar, Var weights, String rowLevel, boolean useFirst) {
@@ -192,6 +221,69 @@ public final class DTable implements Printable, Serializable {
         values[row][col] += weight;
     }
 
+    /**
+     * Adds frequencies of a range of rows from two nominal vectors.
+     *
+     * @param rowVar  row var
+     * @param colVar  col var
+     * @param weights weights used instead of counts, if not null
+     * @param start   first row, inclusive
+     * @param end     last row, exclusive
+     * @return this table
+     */
+    public DTable addRows(Var rowVar, Var colVar, Var weights, int start, int end) {
+        return updateRows(rowVar, colVar, weights, start, end, 1);
+    }
+
+    /**
+     * Removes frequencies of a range of rows from two nominal vectors,
+     * which were previously added to this table.
+     *
+     * @param rowVar  row var
+     * @param colVar  col var
+     * @param weights weights used instead of counts, if not null
+     * @param start   first row, inclusive
+     * @param end     last row, exclusive
+     * @return this table
+     */
+    public DTable removeRows(Var rowVar, Var colVar, Var weights, int start, int end) {
+        return updateRows(rowVar, colVar, weights, start, end, -1);
+    }
+
+    private DTable updateRows(Var rowVar, Var colVar, Var weights, int start, int end, double sign) {
+        int rowOffset = rowVar.getType().equals(VarType.BINARY) ? 1 : 0;
+        int colOffset = colVar.getType().equals(VarType.BINARY) ? 1 : 0;
+        for (int i = start; i < end; i++) {
+            update(rowVar.getIndex(i) + rowOffset, colVar.getIndex(i) + colOffset, sign * (weights != null ? weights.getValue(i) : 1));
+        }
+        return this;
+    }
+
+    /**
+     * Adds frequencies from another table with the same shape to this table.
+     *
+     * @param other table to be merged
+     * @return this table
+     */
+    public DTable merge(DTable other) {
+        if (rowLevels.length != other.rowLevels.length || colLevels.length != other.colLevels.length)
+            throw new IllegalArgumentException("Cannot merge tables with different shapes");
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 0; j < values[i].length; j++) {
+                values[i][j] += other.values[i][j];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return a copy of this table
+     */
+    public DTable copy() {
+        DTable copy = DTable.empty(rowLevels, colLevels, start == 0).withTotalSummary(totalSummary);
+        return copy.merge(this);
+    }
+
     public void moveOnCol(int row1, int row2, int col, double weight) {
         update(row1, col, -weight);
         update(row2, col, weight);
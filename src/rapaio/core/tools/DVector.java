@@ -25,12 +25,12 @@
 package rapaio.core.tools;
 
 import rapaio.core.RandomSource;
-import rapaio.data.NumericVar;
 import rapaio.data.Var;
 import rapaio.data.VarType;
 import rapaio.printer.Printable;
 import rapaio.printer.format.TextTable;
 import rapaio.sys.WS;
+import rapaio.util.FJPool;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -86,8 +86,7 @@ public class DVector implements Printable, Serializable {
      * @return new distribution vector filled with counts
      */
     public static DVector fromCount(boolean useFirst, Var var) {
-        Var weights = NumericVar.fill(var.getRowCount(), 1);
-        return new DVector(useFirst, var.getLevels(), var, weights);
+        return new DVector(useFirst, var.getLevels(), var, null);
     }
 
     /**
@@ -116,6 +115,22 @@ public class DVector implements Printable, Serializable {
         return new DVector(useFirst, labels, var, weights);
     }
 
+    /**
+     * Builds a distribution vector as a table with one cell for each
+     * value in the nominal variable, in parallel. Rows are split into chunks,
+     * a partial vector is built for each chunk and partial vectors are merged.
+     *
+     * @param var      given nominal variable
+     * @param weights  given numeric weights, if null counts are used
+     * @param poolSize number of threads used
+     * @return new distribution variable
+     */
+    public static DVector fromWeights(boolean useFirst, Var var, Var weights, int poolSize) {
+        return FJPool.reduceRange(poolSize, 0, var.getRowCount(),
+                (start, end) -> new DVector(useFirst, var.getLevels()).addRows(var, weights, start, end),
+                DVector::merge);
+    }
+
     private static final long serialVersionUID = -546802690694348698L;
     private final String[] levels;
     private final Map<String, Integer> reverse = new HashMap<>();
@@ -137,9 +152,7 @@ public class DVector implements Printable, Serializable {
 
     private DVector(boolean useFirst, String[] labels, Var var, Var weights) {
         this(useFirst, labels);
-        int off = var.getType().equals(VarType.BINARY) ? 1 : 0;
-        var.stream().forEach(s -> values[s.getIndex() + off] += weights.getValue(s.getRow()));
-        total = Arrays.stream(values).sum();
+        addRows(var, weights, 0, var.getRowCount());
     }
 
     public boolean first() {
@@ -211,6 +224,54 @@ public class DVector implements Printable, Serializable {
         total += dv.total;
     }
 
+    /**
+     * Adds weights of a range of rows from a nominal variable.
+     *
+     * @param var     given nominal variable
+     * @param weights given numeric weights, if null counts are used
+     * @param start   first row, inclusive
+     * @param end     last row, exclusive
+     * @return this distribution vector
+     */
+    public DVector addRows(Var var, Var weights, int start, int end) {
+        return updateRows(var, weights, start, end, 1);
+    }
+
+    /**
+     * Removes weights of a range of rows from a nominal variable,
+     * which were previously added to this distribution vector.
+     *
+     * @param var     given nominal variable
+     * @param weights given numeric weights, if null counts are used
+     * @param start   first row, inclusive
+     * @param end     last row, exclusive
+     * @return this distribution vector
+     */
+    public DVector removeRows(Var var, Var weights, int start, int end) {
+        return updateRows(var, weights, start, end, -1);
+    }
+
+    private DVector updateRows(Var var, Var weights, int start, int end, double sign) {
+        int off = var.getType().equals(VarType.BINARY) ? 1 : 0;
+        for (int i = start; i < end; i++) {
+            double w = sign * (weights != null ? weights.getValue(i) : 1);
+            values[var.getIndex(i) + off] += w;
+            total += w;
+        }
+        return this;
+    }
+
+    /**
+     * Adds values from another distribution vector with the same size.
+     *
+     * @param dv distribution vector to be merged
+     * @return this distribution vector
+     */
+    public DVector merge(DVector dv) {
+        increment(dv);
+        return this;
+    }
+
     /**
      * Setter for the value from a given position
      *
@@ -0,0 +1,611 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data;
+
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read only variable which is a view over a buffer of primitive values. Buffers are usually
+ * mapped regions of a file, in which case the values are not loaded in heap memory, and they
+ * are read from the operating system cache on demand.
+ * <p>
+ * Missing values are encoded as in the solid variables of the same type. Any set or add operation
+ * throws an exception, a solid copy has to be used for modifying the content.
+ * When serialized, buffer variables are written as solid copies.
+ *
+ * @author <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>
+ */
+public abstract class BufferVar extends AbstractVar {
+
+    private static final long serialVersionUID = -4375216302219446117L;
+
+    /**
+     * Builds a numeric view over a buffer of double values.
+     *
+     * @param values buffer with values, the row count is given by remaining values
+     * @return new instance of numeric buffer variable
+     */
+    public static BufferVar numeric(DoubleBuffer values) {
+        return new Numeric(values);
+    }
+
+    /**
+     * Builds an index view over a buffer of integer values.
+     *
+     * @param values buffer with values, the row count is given by remaining values
+     * @return new instance of index buffer variable
+     */
+    public static BufferVar index(IntBuffer values) {
+        return new Index(values);
+    }
+
+    /**
+     * Builds a binary view over a buffer of byte values, where 1 is true, 0 is false and -1 is missing.
+     *
+     * @param values buffer with values, the row count is given by remaining values
+     * @return new instance of binary buffer variable
+     */
+    public static BufferVar binary(ByteBuffer values) {
+        return new Binary(values);
+    }
+
+    /**
+     * Builds a stamp view over a buffer of long values.
+     *
+     * @param values buffer with values, the row count is given by remaining values
+     * @return new instance of stamp buffer variable
+     */
+    public static BufferVar stamp(LongBuffer values) {
+        return new Stamp(values);
+    }
+
+    /**
+     * Builds a nominal view over a buffer of level indexes, index 0 being the missing value.
+     *
+     * @param indexes buffer with level indexes, the row count is given by remaining values
+     * @param levels  term levels, with or without the missing value label in front
+     * @return new instance of nominal buffer variable
+     */
+    public static BufferVar nominal(IntBuffer indexes, String... levels) {
+        return new Factor(VarType.NOMINAL, indexes, levels);
+    }
+
+    /**
+     * Builds an ordinal view over a buffer of level indexes, index 0 being the missing value.
+     *
+     * @param indexes buffer with level indexes, the row count is given by remaining values
+     * @param levels  term levels, with or without the missing value label in front
+     * @return new instance of ordinal buffer variable
+     */
+    public static BufferVar ordinal(IntBuffer indexes, String... levels) {
+        return new Factor(VarType.ORDINAL, indexes, levels);
+    }
+
+    /**
+     * Builds a text view over utf-8 encoded values. The value from row i is stored in bytes
+     * between offsets i and i+1, missing values having a non zero flag.
+     *
+     * @param offsets buffer with start offsets of the values, followed by the end offset of the last value
+     * @param missing buffer with missing flags
+     * @param bytes   buffer with encoded values
+     * @return new instance of text buffer variable
+     */
+    public static BufferVar text(IntBuffer offsets, ByteBuffer missing, ByteBuffer bytes) {
+        return new Text(offsets, missing, bytes);
+    }
+
+    private final int rows;
+
+    private BufferVar(int rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public BufferVar withName(String name) {
+        return (BufferVar) super.withName(name);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows;
+    }
+
+    @Override
+    public String[] getLevels() {
+        throw new IllegalArgumentException("Operation not available for " + getType().getCode() + " variables");
+    }
+
+    @Override
+    public boolean getBinary(int row) {
+        throw new IllegalArgumentException("Operation not available for " + getType().getCode() + " variables");
+    }
+
+    @Override
+    public long getStamp(int row) {
+        throw new IllegalArgumentException("Operation not available for " + getType().getCode() + " variables");
+    }
+
+    private static IllegalArgumentException readOnly() {
+        return new IllegalArgumentException("Buffer variables are read only, use a solid copy for changes.");
+    }
+
+    @Override
+    public void addRows(int rowCount) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setValue(int row, double value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addValue(double value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setIndex(int row, int value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addIndex(int value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setLabel(int row, String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addLabel(String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setLevels(String... dict) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setBinary(int row, boolean value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addBinary(boolean value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setStamp(int row, long value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addStamp(long value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setMissing(int row) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addMissing() {
+        throw readOnly();
+    }
+
+    @Override
+    public void remove(int row) {
+        throw readOnly();
+    }
+
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+
+    protected Object writeReplace() throws ObjectStreamException {
+        return solidCopy();
+    }
+
+    private static final class Numeric extends BufferVar {
+
+        private static final long serialVersionUID = 3036505329357380297L;
+        private final DoubleBuffer values;
+
+        private Numeric(DoubleBuffer values) {
+            super(values.remaining());
+            this.values = values.slice();
+        }
+
+        @Override
+        public VarType getType() {
+            return VarType.NUMERIC;
+        }
+
+        @Override
+        public double getValue(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public int getIndex(int row) {
+            return (int) Math.rint(values.get(row));
+        }
+
+        @Override
+        public String getLabel(int row) {
+            return isMissing(row) ? "?" : String.valueOf(values.get(row));
+        }
+
+        @Override
+        public boolean getBinary(int row) {
+            return values.get(row) == 1.0;
+        }
+
+        @Override
+        public long getStamp(int row) {
+            return (long) Math.rint(values.get(row));
+        }
+
+        @Override
+        public boolean isMissing(int row) {
+            return Double.isNaN(values.get(row));
+        }
+
+        @Override
+        public Var solidCopy() {
+            double[] copy = new double[getRowCount()];
+            values.duplicate().get(copy);
+            return NumericVar.wrap(copy).withName(getName());
+        }
+
+        @Override
+        public Var newInstance(int rows) {
+            return NumericVar.empty(rows);
+        }
+    }
+
+    private static final class Index extends BufferVar {
+
+        private static final long serialVersionUID = 8187447587384286442L;
+        private static final int MISSING_VALUE = Integer.MIN_VALUE;
+        private final IntBuffer values;
+
+        private Index(IntBuffer values) {
+            super(values.remaining());
+            this.values = values.slice();
+        }
+
+        @Override
+        public VarType getType() {
+            return VarType.INDEX;
+        }
+
+        @Override
+        public double getValue(int row) {
+            return isMissing(row) ? Double.NaN : values.get(row);
+        }
+
+        @Override
+        public int getIndex(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public String getLabel(int row) {
+            return isMissing(row) ? "?" : String.valueOf(values.get(row));
+        }
+
+        @Override
+        public boolean getBinary(int row) {
+            return values.get(row) == 1;
+        }
+
+        @Override
+        public long getStamp(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public boolean isMissing(int row) {
+            return values.get(row) == MISSING_VALUE;
+        }
+
+        @Override
+        public Var solidCopy() {
+            int[] copy = new int[getRowCount()];
+            values.duplicate().get(copy);
+            return IndexVar.wrap(copy).withName(getName());
+        }
+
+        @Override
+        public Var newInstance(int rows) {
+            return IndexVar.empty(rows);
+        }
+    }
+
+    private static final class Binary extends BufferVar {
+
+        private static final long serialVersionUID = -6529361624520016587L;
+        private final ByteBuffer values;
+
+        private Binary(ByteBuffer values) {
+            super(values.remaining());
+            this.values = values.slice();
+        }
+
+        @Override
+        public VarType getType() {
+            return VarType.BINARY;
+        }
+
+        @Override
+        public double getValue(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public int getIndex(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public String getLabel(int row) {
+            return isMissing(row) ? "?" : (getBinary(row) ? "true" : "false");
+        }
+
+        @Override
+        public String[] getLevels() {
+            return new String[]{"?", "true", "false"};
+        }
+
+        @Override
+        public boolean getBinary(int row) {
+            return values.get(row) == 1;
+        }
+
+        @Override
+        public long getStamp(int row) {
+            return getBinary(row) ? 1L : 0L;
+        }
+
+        @Override
+        public boolean isMissing(int row) {
+            return values.get(row) == -1;
+        }
+
+        @Override
+        public Var newInstance(int rows) {
+            return BinaryVar.empty(rows);
+        }
+    }
+
+    private static final class Stamp extends BufferVar {
+
+        private static final long serialVersionUID = -2185468893417466153L;
+        private final LongBuffer values;
+
+        private Stamp(LongBuffer values) {
+            super(values.remaining());
+            this.values = values.slice();
+        }
+
+        @Override
+        public VarType getType() {
+            return VarType.STAMP;
+        }
+
+        @Override
+        public double getValue(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public int getIndex(int row) {
+            return (int) values.get(row);
+        }
+
+        @Override
+        public String getLabel(int row) {
+            return String.valueOf(values.get(row));
+        }
+
+        @Override
+        public boolean getBinary(int row) {
+            if (values.get(row) == 1) return true;
+            if (values.get(row) == 0) return false;
+            throw new IllegalArgumentException("Stamp value could not be represented as binary value");
+        }
+
+        @Override
+        public long getStamp(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public boolean isMissing(int row) {
+            return values.get(row) == StampVar.MISSING_VALUE;
+        }
+
+        @Override
+        public Var solidCopy() {
+            long[] copy = new long[getRowCount()];
+            values.duplicate().get(copy);
+            return StampVar.wrap(copy).withName(getName());
+        }
+
+        @Override
+        public Var newInstance(int rows) {
+            return StampVar.empty(rows);
+        }
+    }
+
+    private static final class Factor extends BufferVar {
+
+        private static final long serialVersionUID = 4630493402858452591L;
+        private final VarType type;
+        private final IntBuffer indexes;
+        private final String[] levels;
+
+        private Factor(VarType type, IntBuffer indexes, String[] levels) {
+            super(indexes.remaining());
+            this.type = type;
+            this.indexes = indexes.slice();
+            if (levels.length > 0 && "?".equals(levels[0])) {
+                this.levels = Arrays.copyOf(levels, levels.length);
+            } else {
+                this.levels = new String[levels.length + 1];
+                this.levels[0] = "?";
+                System.arraycopy(levels, 0, this.levels, 1, levels.length);
+            }
+        }
+
+        @Override
+        public VarType getType() {
+            return type;
+        }
+
+        @Override
+        public double getValue(int row) {
+            return indexes.get(row);
+        }
+
+        @Override
+        public int getIndex(int row) {
+            return indexes.get(row);
+        }
+
+        @Override
+        public String getLabel(int row) {
+            return levels[indexes.get(row)];
+        }
+
+        @Override
+        public String[] getLevels() {
+            return Arrays.copyOf(levels, levels.length);
+        }
+
+        @Override
+        public boolean isMissing(int row) {
+            return indexes.get(row) == 0;
+        }
+
+        @Override
+        public Var solidCopy() {
+            Var copy = newInstance(getRowCount()).withName(getName());
+            for (int i = 0; i < getRowCount(); i++) {
+                copy.setIndex(i, indexes.get(i));
+            }
+            return copy;
+        }
+
+        @Override
+        public Var newInstance(int rows) {
+            List<String> dict = Arrays.asList(levels);
+            return (type == VarType.NOMINAL) ? NominalVar.empty(rows, dict) : OrdinalVar.empty(rows, dict);
+        }
+    }
+
+    private static final class Text extends BufferVar {
+
+        private static final long serialVersionUID = -2874434839311707311L;
+        private final IntBuffer offsets;
+        private final ByteBuffer missing;
+        private final ByteBuffer bytes;
+
+        private Text(IntBuffer offsets, ByteBuffer missing, ByteBuffer bytes) {
+            super(missing.remaining());
+            this.offsets = offsets.slice();
+            this.missing = missing.slice();
+            this.bytes = bytes.slice();
+        }
+
+        @Override
+        public VarType getType() {
+            return VarType.TEXT;
+        }
+
+        @Override
+        public double getValue(int row) {
+            throw new IllegalArgumentException("Operation not available for text variables");
+        }
+
+        @Override
+        public int getIndex(int row) {
+            throw new IllegalArgumentException("Operation not available for text variables");
+        }
+
+        @Override
+        public String getLabel(int row) {
+            if (isMissing(row)) {
+                return null;
+            }
+            int start = offsets.get(row);
+            byte[] buff = new byte[offsets.get(row + 1) - start];
+            ByteBuffer view = bytes.duplicate();
+            view.position(start);
+            view.get(buff);
+            return new String(buff, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String[] getLevels() {
+            return new String[0];
+        }
+
+        @Override
+        public boolean isMissing(int row) {
+            return missing.get(row) != 0;
+        }
+
+        @Override
+        public Var solidCopy() {
+            List<String> values = new ArrayList<>(getRowCount());
+            for (int i = 0; i < getRowCount(); i++) {
+                values.add(getLabel(i));
+            }
+            return TextVar.wrap(values).withName(getName());
+        }
+
+        @Override
+        public Var newInstance(int rows) {
+            return TextVar.empty(rows);
+        }
+    }
+}
@@ -25,6 +25,7 @@
 package rapaio.data;
 
 import rapaio.data.filter.FFilter;
+import rapaio.data.group.GroupBy;
 import rapaio.data.stream.FSpot;
 import rapaio.data.stream.FSpots;
 import rapaio.printer.Printable;
@@ -232,9 +233,19 @@ public interface Frame extends Serializable, Printable {
      * Builds a new frame only with rows not specified in mapping.
      */
     default Frame removeRows(Mapping mapping) {
-        Set<Integer> remove = mapping.rowStream().boxed().collect(Collectors.toSet());
-        List<Integer> map = IntStream.range(0, getRowCount()).filter(row -> !remove.contains(row)).boxed().collect(toList());
-        return mapRows(Mapping.wrap(map));
+        boolean[] remove = new boolean[getRowCount()];
+        mapping.rowStream().filter(row -> row >= 0 && row < remove.length).forEach(row -> remove[row] = true);
+        return mapRows(Mapping.wrap(IntStream.range(0, getRowCount()).filter(row -> !remove[row]).toArray()));
+    }
+
+    /**
+     * Groups rows by equal values of the given key variables.
+     *
+     * @param keyNames names of the key variables
+     * @return group by which computes aggregates for each group
+     */
+    default GroupBy groupBy(String... keyNames) {
+        return GroupBy.from(this, keyNames);
     }
 
     /**
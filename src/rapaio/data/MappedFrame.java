@@ -24,7 +24,6 @@
 
 package rapaio.data;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -74,9 +73,9 @@ public class MappedFrame extends AbstractFrame {
         if (df instanceof MappedFrame) {
             MappedFrame mappedFrame = (MappedFrame) df;
             this.source = mappedFrame.sourceFrame();
-            List<Integer> rows = new ArrayList<>();
+            int[] rows = new int[mapping.size()];
             for (int i = 0; i < mapping.size(); i++) {
-                rows.add(mappedFrame.mapping().get(mapping.get(i)));
+                rows[i] = mappedFrame.mapping().get(mapping.get(i));
             }
             this.mapping = Mapping.wrap(rows);
         } else {
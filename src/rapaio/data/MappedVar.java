@@ -24,7 +24,6 @@
 
 package rapaio.data;
 
-import java.util.stream.Collectors;
 
 /**
  * A variable which wraps rows from another variable. The row selection
@@ -70,7 +69,7 @@ public class MappedVar extends AbstractVar {
         withName(var.getName());
         if (var instanceof MappedVar) {
 
-            this.mapping = Mapping.wrap(mapping.rowStream().map(row -> ((MappedVar) var).getMapping().get(row)).boxed().collect(Collectors.toList()));
+            this.mapping = Mapping.wrap(mapping.rowStream().map(row -> ((MappedVar) var).getMapping().get(row)).toArray());
             this.source = ((MappedVar) var).source();
         } else {
             this.mapping = mapping;
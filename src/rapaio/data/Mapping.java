@@ -25,11 +25,9 @@
 package rapaio.data;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
@@ -52,18 +50,30 @@ public interface Mapping extends Serializable {
      * @return an empty mapping
      */
     static Mapping empty() {
-        return new ListMapping();
+        return new ArrayMapping();
     }
 
     /**
-     * Builds a mapping having the mapped values specified as parameter,
-     * the list of values being used as reference inside mapping.
+     * Builds a mapping having the mapped values specified as parameter.
+     * The values are stored in a primitive array, thus later changes
+     * to the list are not visible in mapping.
      *
      * @param mapping list of mapped values
-     * @return new mapping which wraps the given list of indexed values
+     * @return new mapping which contains the given list of indexed values
      */
     static Mapping wrap(List<Integer> mapping) {
-        return new ListMapping(mapping, false);
+        return new ArrayMapping(mapping);
+    }
+
+    /**
+     * Builds a mapping having the mapped values specified as parameter,
+     * the array of values being used as reference inside mapping.
+     *
+     * @param mapping array of mapped values
+     * @return new mapping which wraps the given array of indexed values
+     */
+    static Mapping wrap(int... mapping) {
+        return new ArrayMapping(mapping, false);
     }
 
     /**
@@ -74,7 +84,7 @@ public interface Mapping extends Serializable {
      * @return new mapping which is build on a copy of the list of values
      */
     static Mapping copy(List<Integer> mapping) {
-        return new ListMapping(mapping, false);
+        return new ArrayMapping(mapping);
     }
 
     /**
@@ -85,7 +95,7 @@ public interface Mapping extends Serializable {
      * @return new mapping which is build on a copy of the array of values
      */
     static Mapping copy(int... mapping) {
-        return new ListMapping(mapping);
+        return new ArrayMapping(mapping, true);
     }
 
     static Mapping range(int end) {
@@ -123,6 +133,13 @@ public interface Mapping extends Serializable {
      */
     void addAll(Collection<Integer> rows);
 
+    /**
+     * Adds at the end of mapping the given indexes contained in array
+     *
+     * @param rows array of row numbers to be added to the mapping
+     */
+    void addAll(int[] rows);
+
     /**
      * Removes the element from the given position.
      *
@@ -131,12 +148,19 @@ public interface Mapping extends Serializable {
     void remove(int pos);
 
     /**
-     * Removes all elements from the mapping
+     * Removes all elements from the given positions
      *
      * @param positions collection with positions which will be removed
      */
     void removeAll(Collection<Integer> positions);
 
+    /**
+     * Removes all elements from the given positions, in a single pass
+     *
+     * @param positions array with positions which will be removed
+     */
+    void removeAll(int[] positions);
+
     /**
      * Removes all elements from mapping
      */
@@ -158,61 +182,119 @@ public interface Mapping extends Serializable {
     }
 }
 
-final class ListMapping implements Mapping {
+final class ArrayMapping implements Mapping {
 
     private static final long serialVersionUID = 5485844129188037454L;
-    private final List<Integer> mapping;
+    private static final int DEFAULT_CAPACITY = 8;
 
-    ListMapping() {
-        this.mapping = new ArrayList<>();
+    private int[] data;
+    private int size;
+
+    ArrayMapping() {
+        this.data = new int[DEFAULT_CAPACITY];
+        this.size = 0;
     }
 
-    ListMapping(int[] rows) {
-        mapping = new ArrayList<>();
+    ArrayMapping(int[] rows, boolean copy) {
+        this.data = copy ? Arrays.copyOf(rows, rows.length) : rows;
+        this.size = rows.length;
+    }
+
+    ArrayMapping(List<Integer> rows) {
+        this.data = new int[rows.size()];
+        this.size = 0;
         for (int row : rows) {
-            mapping.add(row);
+            data[size++] = row;
         }
     }
 
-    ListMapping(List<Integer> mapping, boolean copy) {
-        this.mapping = copy ? new ArrayList<>(mapping) : mapping;
+    ArrayMapping(int start, int end) {
+        this.data = new int[end - start];
+        this.size = end - start;
+        for (int i = 0; i < size; i++) {
+            data[i] = start + i;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= data.length)
+            return;
+        int newCapacity = Math.max(capacity, data.length + (data.length >> 1) + 1);
+        data = Arrays.copyOf(data, newCapacity);
     }
 
     public int size() {
-        return mapping.size();
+        return size;
     }
 
     public int get(int pos) {
-        if (mapping.size() > pos)
-            return mapping.get(pos);
+        if (pos >= 0 && pos < size)
+            return data[pos];
         throw new IllegalArgumentException("Value at pos " + pos + " does not exists");
     }
 
-    public void add(int pos) {
-        mapping.add(pos);
+    public void add(int row) {
+        ensureCapacity(size + 1);
+        data[size++] = row;
+    }
+
+    public void addAll(Collection<Integer> rows) {
+        ensureCapacity(size + rows.size());
+        for (int row : rows) {
+            data[size++] = row;
+        }
     }
 
-    public void addAll(Collection<Integer> pos) {
-        mapping.addAll(pos);
+    @Override
+    public void addAll(int[] rows) {
+        ensureCapacity(size + rows.length);
+        System.arraycopy(rows, 0, data, size, rows.length);
+        size += rows.length;
     }
 
     @Override
     public void remove(int pos) {
-        mapping.remove(pos);
+        if (pos < 0 || pos >= size)
+            throw new IllegalArgumentException("Value at pos " + pos + " does not exists");
+        System.arraycopy(data, pos + 1, data, pos, size - pos - 1);
+        size--;
     }
 
     @Override
     public void removeAll(Collection<Integer> positions) {
-        positions.forEach(mapping::remove);
+        removeAll(positions.stream().mapToInt(i -> i).toArray());
+    }
+
+    @Override
+    public void removeAll(int[] positions) {
+        if (positions.length == 0)
+            return;
+        boolean[] removed = new boolean[size];
+        for (int pos : positions) {
+            if (pos >= 0 && pos < size)
+                removed[pos] = true;
+        }
+        int len = 0;
+        for (int i = 0; i < size; i++) {
+            if (!removed[i]) {
+                data[len++] = data[i];
+            }
+        }
+        size = len;
     }
 
     @Override
     public void clear() {
-        mapping.clear();
+        size = 0;
     }
 
     public IntStream rowStream() {
-        return mapping.stream().mapToInt(i -> i);
+        return Arrays.stream(data, 0, size);
+    }
+
+    @Override
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
     }
 }
 
@@ -222,77 +304,88 @@ final class IntervalMapping implements Mapping {
 
     private final int start;
     private final int end;
-    private boolean onList = false;
-    private ListMapping listMapping;
+    private boolean onArray = false;
+    private ArrayMapping arrayMapping;
 
     IntervalMapping(int start, int end) {
         this.start = start;
         this.end = end;
     }
 
+    private void materialize() {
+        if (!onArray) {
+            onArray = true;
+            arrayMapping = new ArrayMapping(start, end);
+        }
+    }
+
     @Override
     public int size() {
-        if (onList)
-            return listMapping.size();
+        if (onArray)
+            return arrayMapping.size();
         return end - start;
     }
 
     @Override
     public int get(int pos) {
-        if (onList)
-            return listMapping.get(pos);
+        if (onArray)
+            return arrayMapping.get(pos);
         return pos + start;
     }
 
     @Override
     public void add(int row) {
-        if (!onList) {
-            onList = true;
-            listMapping = new ListMapping(IntStream.range(start, end).toArray());
-        }
-        listMapping.add(row);
+        materialize();
+        arrayMapping.add(row);
     }
 
     @Override
     public void addAll(Collection<Integer> rows) {
-        if (!onList) {
-            onList = true;
-            listMapping = new ListMapping(IntStream.range(start, end).toArray());
-        }
-        listMapping.addAll(rows);
+        materialize();
+        arrayMapping.addAll(rows);
+    }
+
+    @Override
+    public void addAll(int[] rows) {
+        materialize();
+        arrayMapping.addAll(rows);
     }
 
     @Override
     public void remove(int pos) {
-        if (!onList) {
-            onList = true;
-            listMapping = new ListMapping(IntStream.range(start, end).toArray());
-        }
-        listMapping.remove(pos);
+        materialize();
+        arrayMapping.remove(pos);
     }
 
     @Override
     public void removeAll(Collection<Integer> positions) {
-        if (!onList) {
-            onList = true;
-            listMapping = new ListMapping(IntStream.range(start, end).toArray());
-        }
-        listMapping.removeAll(positions);
+        materialize();
+        arrayMapping.removeAll(positions);
+    }
+
+    @Override
+    public void removeAll(int[] positions) {
+        materialize();
+        arrayMapping.removeAll(positions);
     }
 
     @Override
     public void clear() {
-        if (!onList) {
-            onList = true;
-            listMapping = new ListMapping(IntStream.range(start, end).toArray());
-        }
-        listMapping.clear();
+        materialize();
+        arrayMapping.clear();
     }
 
     @Override
     public IntStream rowStream() {
-        if (onList)
-            return listMapping.rowStream();
+        if (onArray)
+            return arrayMapping.rowStream();
         return IntStream.range(start, end);
     }
+
+    @Override
+    public int[] toArray() {
+        if (onArray)
+            return arrayMapping.toArray();
+        return IntStream.range(start, end).toArray();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data;
+
+/**
+ * Visits the stored entries of sparse numeric variables, given directly or
+ * seen through the row mapping of a {@link MappedVar}. The reverse of the last
+ * visited mapping is kept, thus the variables of a mapped frame, which share
+ * the same mapping, are visited in time proportional with their entries.
+ */
+public final class SparseEntries {
+
+    /**
+     * Receives a stored entry of a sparse variable.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * @param row   row of the entry, in the visited variable
+         * @param value value of the entry, Double.NaN for missing values
+         */
+        void accept(int row, double value);
+    }
+
+    /**
+     * @param var given variable
+     * @return true if the values of the variable are stored in a sparse numeric variable
+     */
+    public static boolean isSparse(Var var) {
+        return var instanceof SparseNumericVar
+                || (var instanceof MappedVar && ((MappedVar) var).source() instanceof SparseNumericVar);
+    }
+
+    private Mapping mapping;
+    private int[] start;
+    private int[] rows;
+
+    /**
+     * Visits the stored entries of a sparse variable. Rows not visited have value 0.
+     * If the variable is not sparse nothing is visited.
+     *
+     * @param var      visited variable
+     * @param consumer receives the entries
+     * @return true if the variable is sparse, false otherwise
+     */
+    public boolean forEach(Var var, EntryConsumer consumer) {
+        if (var instanceof SparseNumericVar) {
+            SparseNumericVar sparse = (SparseNumericVar) var;
+            for (int k = 0; k < sparse.getEntryCount(); k++) {
+                consumer.accept(sparse.getEntryRow(k), sparse.getEntryValue(k));
+            }
+            return true;
+        }
+        if (!isSparse(var)) {
+            return false;
+        }
+        MappedVar mapped = (MappedVar) var;
+        SparseNumericVar sparse = (SparseNumericVar) mapped.source();
+        reverse(mapped.getMapping(), sparse.getRowCount());
+        for (int k = 0; k < sparse.getEntryCount(); k++) {
+            int row = sparse.getEntryRow(k);
+            double value = sparse.getEntryValue(k);
+            for (int p = start[row]; p < start[row + 1]; p++) {
+                consumer.accept(rows[p], value);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds, for each source row, the list of mapped rows pointing to it.
+     */
+    private void reverse(Mapping m, int sourceRows) {
+        if (m == mapping && start.length == sourceRows + 1) {
+            return;
+        }
+        int[] s = new int[sourceRows + 1];
+        for (int i = 0; i < m.size(); i++) {
+            s[m.get(i) + 1]++;
+        }
+        for (int i = 0; i < sourceRows; i++) {
+            s[i + 1] += s[i];
+        }
+        int[] r = new int[m.size()];
+        int[] next = new int[sourceRows];
+        for (int i = 0; i < m.size(); i++) {
+            int row = m.get(i);
+            r[s[row] + next[row]++] = i;
+        }
+        mapping = m;
+        start = s;
+        rows = r;
+    }
+}
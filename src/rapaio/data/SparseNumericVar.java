@@ -0,0 +1,395 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/**
+ * Numeric variable which stores only the values which are different than zero.
+ * The stored values, called entries, are kept in two parallel arrays sorted by row,
+ * one with row numbers and one with values. Missing values are stored as
+ * entries with Double.NaN value.
+ * <p>
+ * The variable behaves like a {@link NumericVar}, reading a value takes a binary search
+ * and changing a value can shift entries, except for appending, which is done in constant
+ * amortized time. Consumers which can take advantage of sparsity, iterate over entries
+ * using {@link #getEntryCount()}, {@link #getEntryRow(int)} and {@link #getEntryValue(int)},
+ * all the other rows having value zero.
+ *
+ * @author <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>
+ */
+public final class SparseNumericVar extends AbstractVar {
+
+    /**
+     * @return new empty sparse numeric variable of size 0
+     */
+    public static SparseNumericVar empty() {
+        return new SparseNumericVar(0);
+    }
+
+    /**
+     * Builds a sparse numeric variable with all values set missing, as {@link NumericVar#empty(int)}.
+     *
+     * @param rows size of the variable
+     * @return new instance of sparse numeric var
+     */
+    public static SparseNumericVar empty(int rows) {
+        SparseNumericVar sparse = new SparseNumericVar(rows);
+        sparse.ensureCapacity(rows);
+        for (int i = 0; i < rows; i++) {
+            sparse.append(i, Double.NaN);
+        }
+        return sparse;
+    }
+
+    /**
+     * Builds a sparse numeric variable filled with zeros, which has no entries.
+     *
+     * @param rows size of the variable
+     * @return new instance of sparse numeric var
+     */
+    public static SparseNumericVar fill(int rows) {
+        return new SparseNumericVar(rows);
+    }
+
+    /**
+     * Builds a sparse numeric variable with values copied from another variable.
+     *
+     * @param source source variable
+     * @return new instance of sparse numeric var
+     */
+    public static SparseNumericVar copy(Var source) {
+        SparseNumericVar sparse = new SparseNumericVar(0).withName(source.getName());
+        if (source instanceof SparseNumericVar) {
+            SparseNumericVar src = (SparseNumericVar) source;
+            sparse.rows = src.rows;
+            sparse.size = src.size;
+            sparse.indexes = Arrays.copyOf(src.indexes, src.size);
+            sparse.values = Arrays.copyOf(src.values, src.size);
+            return sparse;
+        }
+        for (int i = 0; i < source.getRowCount(); i++) {
+            sparse.addValue(source.isMissing(i) ? Double.NaN : source.getValue(i));
+        }
+        return sparse;
+    }
+
+    /**
+     * Builds a sparse numeric variable with values copied from an array.
+     *
+     * @param values given values
+     * @return new instance of sparse numeric var
+     */
+    public static SparseNumericVar copy(double... values) {
+        SparseNumericVar sparse = new SparseNumericVar(0);
+        for (double value : values) {
+            sparse.addValue(value);
+        }
+        return sparse;
+    }
+
+    private static final long serialVersionUID = -3384402391428532546L;
+
+    private int rows;
+    private int size;
+    private int[] indexes;
+    private double[] values;
+
+    private SparseNumericVar(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Illegal row count: " + rows);
+        }
+        this.rows = rows;
+        this.indexes = new int[0];
+        this.values = new double[0];
+    }
+
+    @Override
+    public SparseNumericVar withName(String name) {
+        return (SparseNumericVar) super.withName(name);
+    }
+
+    @Override
+    public VarType getType() {
+        return VarType.NUMERIC;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * @return number of stored entries, which are the values different than zero
+     */
+    public int getEntryCount() {
+        return size;
+    }
+
+    /**
+     * @param pos position of the entry, from 0 to entry count
+     * @return row of the entry, entries being sorted by row
+     */
+    public int getEntryRow(int pos) {
+        return indexes[pos];
+    }
+
+    /**
+     * @param pos position of the entry, from 0 to entry count
+     * @return value of the entry, Double.NaN for missing values
+     */
+    public double getEntryValue(int pos) {
+        return values[pos];
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > indexes.length) {
+            int newCapacity = Math.max(Math.max(10, minCapacity), indexes.length + (indexes.length >> 1));
+            indexes = Arrays.copyOf(indexes, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+
+    private int find(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of bounds for size " + rows);
+        }
+        return Arrays.binarySearch(indexes, 0, size, row);
+    }
+
+    private void append(int row, double value) {
+        ensureCapacity(size + 1);
+        indexes[size] = row;
+        values[size] = value;
+        size++;
+    }
+
+    @Override
+    public void addRows(int rowCount) {
+        ensureCapacity(size + rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            append(rows + i, Double.NaN);
+        }
+        rows += rowCount;
+    }
+
+    @Override
+    public double getValue(int row) {
+        int pos = find(row);
+        return pos >= 0 ? values[pos] : 0.0;
+    }
+
+    @Override
+    public void setValue(int row, double value) {
+        int pos = find(row);
+        if (pos >= 0) {
+            if (value == 0.0) {
+                System.arraycopy(indexes, pos + 1, indexes, pos, size - pos - 1);
+                System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+                size--;
+            } else {
+                values[pos] = value;
+            }
+            return;
+        }
+        if (value == 0.0) {
+            return;
+        }
+        pos = -pos - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(indexes, pos, indexes, pos + 1, size - pos);
+        System.arraycopy(values, pos, values, pos + 1, size - pos);
+        indexes[pos] = row;
+        values[pos] = value;
+        size++;
+    }
+
+    @Override
+    public void addValue(double value) {
+        if (value != 0.0) {
+            append(rows, value);
+        }
+        rows++;
+    }
+
+    @Override
+    public int getIndex(int row) {
+        return (int) Math.rint(getValue(row));
+    }
+
+    @Override
+    public void setIndex(int row, int value) {
+        setValue(row, value);
+    }
+
+    @Override
+    public void addIndex(int value) {
+        addValue(value);
+    }
+
+    @Override
+    public String getLabel(int row) {
+        if (isMissing(row))
+            return "?";
+        return String.valueOf(getValue(row));
+    }
+
+    @Override
+    public void setLabel(int row, String value) {
+        setValue(row, parseLabel(value));
+    }
+
+    @Override
+    public void addLabel(String value) {
+        addValue(parseLabel(value));
+    }
+
+    private static double parseLabel(String value) {
+        if ("?".equals(value)) {
+            return Double.NaN;
+        }
+        if ("Inf".equals(value)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if ("-Inf".equals(value)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Double.parseDouble(value);
+    }
+
+    @Override
+    public String[] getLevels() {
+        throw new RuntimeException("Operation not available for numeric vectors.");
+    }
+
+    @Override
+    public void setLevels(String... dict) {
+        throw new RuntimeException("Operation not available for numeric vectors.");
+    }
+
+    @Override
+    public boolean getBinary(int row) {
+        return getValue(row) == 1.0;
+    }
+
+    @Override
+    public void setBinary(int row, boolean value) {
+        setValue(row, value ? 1 : 0);
+    }
+
+    @Override
+    public void addBinary(boolean value) {
+        addValue(value ? 1 : 0);
+    }
+
+    @Override
+    public long getStamp(int row) {
+        return (long) Math.rint(getValue(row));
+    }
+
+    @Override
+    public void setStamp(int row, long value) {
+        setValue(row, value);
+    }
+
+    @Override
+    public void addStamp(long value) {
+        addValue(value);
+    }
+
+    @Override
+    public boolean isMissing(int row) {
+        return Double.isNaN(getValue(row));
+    }
+
+    @Override
+    public void setMissing(int row) {
+        setValue(row, Double.NaN);
+    }
+
+    @Override
+    public void addMissing() {
+        addValue(Double.NaN);
+    }
+
+    @Override
+    public void remove(int row) {
+        int pos = find(row);
+        int next = pos >= 0 ? pos + 1 : -pos - 1;
+        for (int i = next; i < size; i++) {
+            indexes[i]--;
+        }
+        if (pos >= 0) {
+            System.arraycopy(indexes, pos + 1, indexes, pos, size - pos - 1);
+            System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+            size--;
+        }
+        rows--;
+    }
+
+    @Override
+    public void clear() {
+        rows = 0;
+        size = 0;
+    }
+
+    @Override
+    public Var newInstance(int rows) {
+        return SparseNumericVar.empty(rows);
+    }
+
+    @Override
+    public SparseNumericVar solidCopy() {
+        return SparseNumericVar.copy(this);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseNumeric[name:" + getName() + ", rowCount:" + getRowCount() + ", entries:" + size + "]";
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.writeInt(rows);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(indexes[i]);
+            out.writeDouble(values[i]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        rows = in.readInt();
+        size = in.readInt();
+        indexes = new int[size];
+        values = new double[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = in.readInt();
+            values[i] = in.readDouble();
+        }
+    }
+}
@@ -39,6 +39,9 @@ import java.util.stream.Collectors;
  * <p>
  * The given columns will be placed grouped, in the place of
  * the given nominal column.
+ * <p>
+ * For nominal variables with many levels the encoding can be built with
+ * {@link SparseNumericVar} variables, which store only the values of one.
  *
  * @author <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>
  */
@@ -47,6 +50,7 @@ public class FFOneHotEncoding extends AbstractFF {
     private static final long serialVersionUID = 4893532203594639069L;
 
     private Map<String, String[]> levels;
+    private boolean sparse = false;
 
     public FFOneHotEncoding(String... varNames) {
         super(VRange.of(varNames));
@@ -56,9 +60,20 @@ public class FFOneHotEncoding extends AbstractFF {
         super(vRange);
     }
 
+    /**
+     * Specifies if the encoding variables are sparse numeric variables.
+     *
+     * @param sparse true for sparse numeric variables, false for dense numeric variables
+     * @return filter instance
+     */
+    public FFOneHotEncoding withSparse(boolean sparse) {
+        this.sparse = sparse;
+        return this;
+    }
+
     @Override
     public FFOneHotEncoding newInstance() {
-        return new FFOneHotEncoding(vRange);
+        return new FFOneHotEncoding(vRange).withSparse(sparse);
     }
 
     @Override
@@ -96,7 +111,8 @@ public class FFOneHotEncoding extends AbstractFF {
                 Map<String, Var> index = new HashMap<>();
                 // create a new numeric var for each level, filled with 0
                 for (int i = 1; i < dict.length; i++) {
-                    Var v = NumericVar.fill(df.getRowCount()).withName(varName + "." + dict[i]);
+                    Var v = sparse ? SparseNumericVar.fill(df.getRowCount()) : NumericVar.fill(df.getRowCount());
+                    v.withName(varName + "." + dict[i]);
                     oneHotVars.add(v);
                     index.put(dict[i], v);
                 }
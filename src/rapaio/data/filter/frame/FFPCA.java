@@ -37,6 +37,8 @@ public class FFPCA extends AbstractFF {
     private static final long serialVersionUID = 2797285371357486124L;
 
     BiFunction<RV, RM, Integer> kFun;
+    private PCA.Method method = PCA.Method.EIGEN;
+    private int components = 0;
     private PCA pca;
 
     public FFPCA(BiFunction<RV, RM, Integer> kFun, VRange vRange) {
@@ -44,22 +46,47 @@ public class FFPCA extends AbstractFF {
         this.kFun = kFun;
     }
 
+    /**
+     * Sets the algorithm and the number of components computed by the underlying PCA,
+     * see {@link PCA#withMethod(PCA.Method)} and {@link PCA#withComponents(int)}.
+     */
+    public FFPCA withMethod(PCA.Method method, int components) {
+        this.method = method;
+        this.components = components;
+        return this;
+    }
+
     @Override
     public FFPCA newInstance() {
-        return new FFPCA(kFun, vRange);
+        return new FFPCA(kFun, vRange).withMethod(method, components);
     }
 
     @Override
     public void train(Frame df) {
         parse(df);
-        pca = new PCA();
+        pca = new PCA().withMethod(method).withComponents(components);
         pca.train(df.mapVars(varNames));
     }
 
+    /**
+     * Updates the underlying PCA with a chunk of rows, see {@link PCA#partialTrain(Frame)}.
+     * Variables are selected on the first chunk. The configured method is used for the
+     * decompositions of each update.
+     *
+     * @param df chunk of rows
+     */
+    public void partialTrain(Frame df) {
+        if (pca == null) {
+            parse(df);
+            pca = new PCA().withMethod(method).withComponents(components);
+        }
+        pca.partialTrain(df.mapVars(varNames));
+    }
+
     @Override
     public Frame apply(Frame df) {
         Frame rest = df.removeVars(varNames);
-        int k = kFun.apply(pca.getEigenValues(), pca.getEigenVectors());
+        int k = Math.min(kFun.apply(pca.getEigenValues(), pca.getEigenVectors()), pca.getEigenVectors().getColCount());
         Frame trans =  pca.fit(df.mapVars(varNames), k);
         return rest.bindVars(trans);
     }
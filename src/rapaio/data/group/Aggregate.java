@@ -0,0 +1,241 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data.group;
+
+import rapaio.core.stat.Quantiles;
+import rapaio.data.IndexVar;
+import rapaio.data.Mapping;
+import rapaio.data.NumericVar;
+import rapaio.data.Var;
+import rapaio.data.VarType;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Aggregate computed for each group of a {@link GroupBy}.
+ * <p>
+ * Count, sum, mean, variance, minimum and maximum are computed in a single pass from
+ * per group moments, which are shared by all aggregates of the same variable.
+ * Quantiles and number of unique values are computed from the rows of each group.
+ * Missing values of the aggregated variable are ignored.
+ *
+ * @author <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>
+ */
+public abstract class Aggregate {
+
+    /**
+     * @return number of rows in each group
+     */
+    public static Aggregate count() {
+        return new Aggregate("count") {
+            @Override
+            Var compute(GroupBy groupBy) {
+                return IndexVar.wrap(groupBy.groupCounts());
+            }
+        };
+    }
+
+    /**
+     * @return number of non missing values of a variable in each group
+     */
+    public static Aggregate count(String varName) {
+        return new Aggregate(varName + "_count") {
+            @Override
+            Var compute(GroupBy groupBy) {
+                double[] count = groupBy.moments(varName).count;
+                int[] values = new int[count.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (int) count[i];
+                }
+                return IndexVar.wrap(values);
+            }
+        };
+    }
+
+    /**
+     * @return sum of values of a variable in each group, with compensated summation
+     */
+    public static Aggregate sum(String varName) {
+        return new Aggregate(varName + "_sum") {
+            @Override
+            Var compute(GroupBy groupBy) {
+                return NumericVar.copy(groupBy.moments(varName).sum);
+            }
+        };
+    }
+
+    /**
+     * @return mean of values of a variable in each group, as {@link rapaio.core.stat.Mean}
+     */
+    public static Aggregate mean(String varName) {
+        return new Aggregate(varName + "_mean") {
+            @Override
+            Var compute(GroupBy groupBy) {
+                GroupBy.Moments moments = groupBy.moments(varName);
+                double[] values = new double[moments.count.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = moments.count[i] == 0 ? Double.NaN : moments.mean[i];
+                }
+                return NumericVar.wrap(values);
+            }
+        };
+    }
+
+    /**
+     * @return sample variance of values of a variable in each group, as {@link rapaio.core.stat.Variance}
+     */
+    public static Aggregate variance(String varName) {
+        return new Aggregate(varName + "_var") {
+            @Override
+            Var compute(GroupBy groupBy) {
+                GroupBy.Moments moments = groupBy.moments(varName);
+                double[] values = new double[moments.count.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = moments.count[i] < 2 ? Double.NaN : moments.m2[i] / (moments.count[i] - 1);
+                }
+                return NumericVar.wrap(values);
+            }
+        };
+    }
+
+    /**
+     * @return minimum value of a variable in each group
+     */
+    public static Aggregate min(String varName) {
+        return new Aggregate(varName + "_min") {
+            @Override
+            Var compute(GroupBy groupBy) {
+                return NumericVar.copy(groupBy.moments(varName).min);
+            }
+        };
+    }
+
+    /**
+     * @return maximum value of a variable in each group
+     */
+    public static Aggregate max(String varName) {
+        return new Aggregate(varName + "_max") {
+            @Override
+            Var compute(GroupBy groupBy) {
+                return NumericVar.copy(groupBy.moments(varName).max);
+            }
+        };
+    }
+
+    /**
+     * @param p percentile in [0, 1]
+     * @return quantile of values of a variable in each group, as {@link Quantiles}
+     */
+    public static Aggregate quantile(String varName, double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Percentile must be in [0, 1] range.");
+        }
+        return new Aggregate(varName + "_q" + p) {
+            @Override
+            Var compute(GroupBy groupBy) {
+                Var var = groupBy.getFrame().getVar(varName);
+                return NumericVar.wrap(groupBy.computeByGroup((rows, start, end) ->
+                        Quantiles.from(var.mapRows(Mapping.wrap(Arrays.copyOfRange(rows, start, end))), p)
+                                .getValues()[0]));
+            }
+        };
+    }
+
+    /**
+     * @return number of distinct non missing values of a variable in each group
+     */
+    public static Aggregate nunique(String varName) {
+        return new Aggregate(varName + "_nunique") {
+            @Override
+            Var compute(GroupBy groupBy) {
+                Var var = groupBy.getFrame().getVar(varName);
+                double[] counts = groupBy.computeByGroup((rows, start, end) ->
+                        (var.getType() == VarType.TEXT) ? uniqueLabels(var, rows, start, end) : uniqueCodes(var, rows, start, end));
+                int[] values = new int[counts.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (int) counts[i];
+                }
+                return IndexVar.wrap(values);
+            }
+        };
+    }
+
+    private static int uniqueLabels(Var var, int[] rows, int start, int end) {
+        Set<String> labels = new HashSet<>();
+        for (int i = start; i < end; i++) {
+            if (!var.isMissing(rows[i])) {
+                labels.add(var.getLabel(rows[i]));
+            }
+        }
+        return labels.size();
+    }
+
+    private static int uniqueCodes(Var var, int[] rows, int start, int end) {
+        long[] codes = new long[end - start];
+        int len = 0;
+        for (int i = start; i < end; i++) {
+            int row = rows[i];
+            if (var.isMissing(row)) {
+                continue;
+            }
+            switch (var.getType()) {
+                case NUMERIC:
+                    double value = var.getValue(row);
+                    codes[len++] = Double.doubleToLongBits(value == 0.0 ? 0.0 : value);
+                    break;
+                case STAMP:
+                    codes[len++] = var.getStamp(row);
+                    break;
+                default:
+                    codes[len++] = var.getIndex(row);
+            }
+        }
+        Arrays.sort(codes, 0, len);
+        int count = 0;
+        for (int i = 0; i < len; i++) {
+            if (i == 0 || codes[i] != codes[i - 1]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private final String name;
+
+    Aggregate(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name of the variable which holds the aggregate
+     */
+    public String getName() {
+        return name;
+    }
+
+    abstract Var compute(GroupBy groupBy);
+}
@@ -0,0 +1,540 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data.group;
+
+import rapaio.data.Frame;
+import rapaio.data.MappedFrame;
+import rapaio.data.Mapping;
+import rapaio.data.VRange;
+import rapaio.data.Var;
+import rapaio.data.VarType;
+import rapaio.printer.Printable;
+import rapaio.util.FJPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Groups the rows of a frame by equal values of key variables and computes aggregates
+ * for each group.
+ * <p>
+ * Key values are encoded as primitive long codes: level indexes for nominal and ordinal
+ * variables, bits of values for numeric variables, integer values for index, binary and stamp
+ * variables, and dictionary codes for text variables. A single nominal, ordinal or binary key
+ * is grouped with a direct table over level indexes, other keys with an open addressing hash table.
+ * Missing key values form their own groups. Groups are numbered in the order of their first row.
+ * <p>
+ * With a pool size greater than one, rows are split into chunks. Each chunk is grouped
+ * and aggregated into partial results in parallel, and partial results are merged in chunk order.
+ *
+ * @author <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>
+ */
+public final class GroupBy implements Printable {
+
+    /**
+     * Builds a group by on the given key variables of a frame.
+     *
+     * @param df       source frame
+     * @param keyNames names of the key variables
+     * @return new group by instance
+     */
+    public static GroupBy from(Frame df, String... keyNames) {
+        return new GroupBy(df, keyNames);
+    }
+
+    private static final int MIN_CHUNK_ROWS = 1_000;
+
+    private final Frame df;
+    private final String[] keyNames;
+    private int poolSize = 0;
+
+    // computed on first use
+    private int[] rowGroups;
+    private int[] firstRows;
+    private int[] groupOffsets;
+    private int[] groupedRows;
+    private final Map<String, Moments> moments = new HashMap<>();
+
+    private GroupBy(Frame df, String[] keyNames) {
+        if (keyNames.length == 0) {
+            throw new IllegalArgumentException("At least one key variable is needed for group by.");
+        }
+        for (String keyName : keyNames) {
+            df.getVar(keyName);
+        }
+        this.df = df;
+        this.keyNames = keyNames;
+    }
+
+    /**
+     * Sets the number of threads used for grouping and aggregation.
+     *
+     * @param poolSize number of threads, 0 or 1 for sequential computation
+     * @return group by instance
+     */
+    public GroupBy withPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    public Frame getFrame() {
+        return df;
+    }
+
+    public String[] getKeyNames() {
+        return Arrays.copyOf(keyNames, keyNames.length);
+    }
+
+    /**
+     * @return number of groups
+     */
+    public int getGroupCount() {
+        group();
+        return firstRows.length;
+    }
+
+    /**
+     * @param row row of the frame
+     * @return group of the row
+     */
+    public int getGroup(int row) {
+        group();
+        return rowGroups[row];
+    }
+
+    /**
+     * @param group group number
+     * @return rows of the group, in frame order
+     */
+    public Mapping getGroupRows(int group) {
+        sortRows();
+        return Mapping.wrap(Arrays.copyOfRange(groupedRows, groupOffsets[group], groupOffsets[group + 1]));
+    }
+
+    /**
+     * @return frame with the key values of each group, as a view of the first row of each group
+     */
+    public Frame getKeyFrame() {
+        group();
+        return MappedFrame.byRow(df, Mapping.wrap(firstRows), VRange.of(keyNames));
+    }
+
+    /**
+     * Computes aggregates for each group.
+     *
+     * @param aggregates aggregates to compute
+     * @return frame with key variables followed by a variable for each aggregate, with a row for each group
+     */
+    public Frame aggregate(Aggregate... aggregates) {
+        List<Var> vars = new ArrayList<>();
+        for (Aggregate aggregate : aggregates) {
+            vars.add(aggregate.compute(this).withName(aggregate.getName()));
+        }
+        Frame keys = getKeyFrame();
+        return vars.isEmpty() ? keys : keys.bindVars(vars.toArray(new Var[vars.size()]));
+    }
+
+    // grouping
+
+    private void group() {
+        if (rowGroups != null) {
+            return;
+        }
+        int rows = df.getRowCount();
+        KeyCodes codes = new KeyCodes(df, keyNames);
+        int[] bounds = chunks(rows);
+        int chunks = bounds.length - 1;
+        int[] groups = new int[rows];
+        KeyTable[] tables = new KeyTable[chunks];
+        run(chunks, chunk -> {
+            KeyTable table = new KeyTable(codes);
+            for (int row = bounds[chunk]; row < bounds[chunk + 1]; row++) {
+                groups[row] = table.groupOf(row);
+            }
+            tables[chunk] = table;
+        });
+        if (chunks == 1) {
+            firstRows = Arrays.copyOf(tables[0].firstRows, tables[0].size);
+            rowGroups = groups;
+            return;
+        }
+
+        // merge chunk groups in chunk order, which keeps the order of first appearance
+        KeyTable global = new KeyTable(codes);
+        int[][] maps = new int[chunks][];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            KeyTable table = tables[chunk];
+            maps[chunk] = new int[table.size];
+            for (int local = 0; local < table.size; local++) {
+                maps[chunk][local] = global.groupOf(table.firstRows[local]);
+            }
+        }
+        run(chunks, chunk -> {
+            for (int row = bounds[chunk]; row < bounds[chunk + 1]; row++) {
+                groups[row] = maps[chunk][groups[row]];
+            }
+        });
+        firstRows = Arrays.copyOf(global.firstRows, global.size);
+        rowGroups = groups;
+    }
+
+    /**
+     * Sorts rows by group with a counting sort, keeping frame order inside groups.
+     */
+    private void sortRows() {
+        if (groupedRows != null) {
+            return;
+        }
+        group();
+        int groups = firstRows.length;
+        int[] offsets = new int[groups + 1];
+        for (int group : rowGroups) {
+            offsets[group + 1]++;
+        }
+        for (int i = 0; i < groups; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] positions = Arrays.copyOf(offsets, groups);
+        int[] sorted = new int[rowGroups.length];
+        for (int row = 0; row < rowGroups.length; row++) {
+            sorted[positions[rowGroups[row]]++] = row;
+        }
+        groupOffsets = offsets;
+        groupedRows = sorted;
+    }
+
+    private int[] chunks(int rows) {
+        int chunks = (poolSize <= 1) ? 1 : Math.max(1, Math.min(poolSize * 4, rows / MIN_CHUNK_ROWS));
+        int[] bounds = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            bounds[i] = (int) ((long) rows * i / chunks);
+        }
+        return bounds;
+    }
+
+    private void run(int tasks, IntConsumer task) {
+        if (poolSize <= 1 || tasks == 1) {
+            for (int i = 0; i < tasks; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        FJPool.forEach(poolSize, tasks, task);
+    }
+
+    // aggregation support
+
+    /**
+     * Computes the moments of a variable for each group, from partial results of chunks.
+     */
+    Moments moments(String varName) {
+        group();
+        Moments result = moments.get(varName);
+        if (result != null) {
+            return result;
+        }
+        Var var = df.getVar(varName);
+        int groups = firstRows.length;
+        int[] bounds = chunks(df.getRowCount());
+        Moments[] partials = new Moments[bounds.length - 1];
+        run(partials.length, chunk -> {
+            Moments partial = new Moments(groups);
+            for (int row = bounds[chunk]; row < bounds[chunk + 1]; row++) {
+                if (!var.isMissing(row)) {
+                    partial.update(rowGroups[row], var.getValue(row));
+                }
+            }
+            partials[chunk] = partial;
+        });
+        result = partials[0];
+        for (int i = 1; i < partials.length; i++) {
+            result.merge(partials[i]);
+        }
+        moments.put(varName, result);
+        return result;
+    }
+
+    int[] groupCounts() {
+        sortRows();
+        int[] counts = new int[firstRows.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = groupOffsets[i + 1] - groupOffsets[i];
+        }
+        return counts;
+    }
+
+    /**
+     * Computes a value for each group from the rows of the group, in parallel over groups.
+     */
+    double[] computeByGroup(GroupFunction function) {
+        sortRows();
+        double[] values = new double[firstRows.length];
+        int groups = values.length;
+        int chunks = (poolSize <= 1) ? 1 : Math.max(1, Math.min(poolSize * 4, groups));
+        run(chunks, chunk -> {
+            int start = (int) ((long) groups * chunk / chunks);
+            int end = (int) ((long) groups * (chunk + 1) / chunks);
+            for (int group = start; group < end; group++) {
+                values[group] = function.apply(groupedRows, groupOffsets[group], groupOffsets[group + 1]);
+            }
+        });
+        return values;
+    }
+
+    @FunctionalInterface
+    interface GroupFunction {
+        double apply(int[] rows, int start, int end);
+    }
+
+    @Override
+    public String getSummary() {
+        group();
+        return "GroupBy{keys:" + Arrays.toString(keyNames) + ", groups:" + firstRows.length + "}";
+    }
+
+    /**
+     * Count, sum, mean, sum of squared deviations, minimum and maximum for each group.
+     * Partial moments are merged with the pairwise formulas of Chan et al.
+     * Sums are kept with Kahan compensated summation.
+     */
+    static final class Moments {
+        final double[] count;
+        final double[] sum;
+        final double[] mean;
+        final double[] m2;
+        final double[] min;
+        final double[] max;
+        // running compensation of the lost low order bits of sums
+        private final double[] compensation;
+
+        Moments(int groups) {
+            count = new double[groups];
+            sum = new double[groups];
+            compensation = new double[groups];
+            mean = new double[groups];
+            m2 = new double[groups];
+            min = new double[groups];
+            max = new double[groups];
+            Arrays.fill(min, Double.NaN);
+            Arrays.fill(max, Double.NaN);
+        }
+
+        void update(int group, double x) {
+            double n = ++count[group];
+            add(group, x);
+            double delta = x - mean[group];
+            mean[group] += delta / n;
+            m2[group] += delta * (x - mean[group]);
+            min[group] = (n == 1) ? x : Math.min(min[group], x);
+            max[group] = (n == 1) ? x : Math.max(max[group], x);
+        }
+
+        void merge(Moments other) {
+            for (int g = 0; g < count.length; g++) {
+                double nb = other.count[g];
+                if (nb == 0) {
+                    continue;
+                }
+                add(g, other.sum[g]);
+                add(g, -other.compensation[g]);
+                double na = count[g];
+                if (na == 0) {
+                    count[g] = nb;
+                    mean[g] = other.mean[g];
+                    m2[g] = other.m2[g];
+                    min[g] = other.min[g];
+                    max[g] = other.max[g];
+                    continue;
+                }
+                double n = na + nb;
+                double delta = other.mean[g] - mean[g];
+                mean[g] += delta * nb / n;
+                m2[g] += other.m2[g] + delta * delta * na * nb / n;
+                count[g] = n;
+                min[g] = Math.min(min[g], other.min[g]);
+                max[g] = Math.max(max[g], other.max[g]);
+            }
+        }
+
+        private void add(int group, double x) {
+            double y = x - compensation[group];
+            double t = sum[group] + y;
+            compensation[group] = (t - sum[group]) - y;
+            sum[group] = t;
+        }
+    }
+
+    /**
+     * Long codes of key values for each row.
+     */
+    private static final class KeyCodes {
+        private final Var[] vars;
+        private final List<Map<String, Integer>> textCodes;
+        private final int directLevels;
+
+        KeyCodes(Frame df, String[] keyNames) {
+            vars = new Var[keyNames.length];
+            textCodes = new ArrayList<>(keyNames.length);
+            for (int k = 0; k < keyNames.length; k++) {
+                vars[k] = df.getVar(keyNames[k]);
+                Map<String, Integer> codes = null;
+                if (vars[k].getType() == VarType.TEXT) {
+                    codes = new HashMap<>();
+                    for (int row = 0; row < vars[k].getRowCount(); row++) {
+                        if (!vars[k].isMissing(row)) {
+                            codes.putIfAbsent(vars[k].getLabel(row), codes.size());
+                        }
+                    }
+                }
+                textCodes.add(codes);
+            }
+            VarType type = vars[0].getType();
+            if (vars.length == 1 && (type == VarType.NOMINAL || type == VarType.ORDINAL)) {
+                directLevels = vars[0].getLevels().length;
+            } else if (vars.length == 1 && type == VarType.BINARY) {
+                directLevels = 3;
+            } else {
+                directLevels = -1;
+            }
+        }
+
+        /**
+         * @return index in a direct table for single factor keys
+         */
+        int direct(int row) {
+            // missing binary values have index -1
+            return vars[0].getType() == VarType.BINARY ? vars[0].getIndex(row) + 1 : vars[0].getIndex(row);
+        }
+
+        long code(int k, int row) {
+            Var var = vars[k];
+            switch (var.getType()) {
+                case NUMERIC:
+                    double value = var.getValue(row);
+                    // -0.0 equals 0.0 and all NaN values are the same
+                    return Double.doubleToLongBits(value == 0.0 ? 0.0 : value);
+                case STAMP:
+                    return var.getStamp(row);
+                case TEXT:
+                    return var.isMissing(row) ? -1 : textCodes.get(k).get(var.getLabel(row));
+                case BINARY:
+                    return var.isMissing(row) ? -1 : var.getIndex(row);
+                default:
+                    return var.getIndex(row);
+            }
+        }
+
+        boolean equal(int row1, int row2) {
+            for (int k = 0; k < vars.length; k++) {
+                if (code(k, row1) != code(k, row2)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int hash(int row) {
+            long h = 0;
+            for (int k = 0; k < vars.length; k++) {
+                h = (h + code(k, row)) * 0x9e3779b97f4a7c15L;
+                h ^= h >>> 32;
+            }
+            return (int) (h ^ (h >>> 29));
+        }
+    }
+
+    /**
+     * Assigns group numbers to rows, in order of first appearance.
+     */
+    private static final class KeyTable {
+        private final KeyCodes codes;
+        private final int[] direct;
+        private int[] slots;
+        private int mask;
+        private int[] firstRows;
+        private int size;
+
+        KeyTable(KeyCodes codes) {
+            this.codes = codes;
+            if (codes.directLevels > 0) {
+                direct = new int[codes.directLevels];
+                Arrays.fill(direct, -1);
+                firstRows = new int[codes.directLevels];
+            } else {
+                direct = null;
+                int capacity = 16;
+                slots = new int[capacity];
+                Arrays.fill(slots, -1);
+                mask = capacity - 1;
+                firstRows = new int[capacity / 2];
+            }
+        }
+
+        int groupOf(int row) {
+            if (direct != null) {
+                int index = codes.direct(row);
+                if (direct[index] < 0) {
+                    direct[index] = size;
+                    firstRows[size++] = row;
+                }
+                return direct[index];
+            }
+            int slot = codes.hash(row) & mask;
+            while (slots[slot] >= 0) {
+                int group = slots[slot];
+                if (codes.equal(firstRows[group], row)) {
+                    return group;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = size;
+            firstRows[size] = row;
+            size++;
+            if (size * 2 >= slots.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        private void grow() {
+            int capacity = slots.length * 2;
+            slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            mask = capacity - 1;
+            firstRows = Arrays.copyOf(firstRows, capacity / 2);
+            for (int group = 0; group < size; group++) {
+                int slot = codes.hash(firstRows[group]) & mask;
+                while (slots[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = group;
+            }
+        }
+    }
+}
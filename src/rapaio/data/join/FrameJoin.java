@@ -0,0 +1,578 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data.join;
+
+import rapaio.data.BoundFrame;
+import rapaio.data.Frame;
+import rapaio.data.MappedFrame;
+import rapaio.data.Mapping;
+import rapaio.data.SolidFrame;
+import rapaio.data.Var;
+import rapaio.data.VarType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Joins two frames on equal values of one or more key variables.
+ * <p>
+ * Key values are encoded as primitive long codes, read directly from variables without
+ * boxing. Nominal levels and text values are translated into codes of the other frame,
+ * such that frames with different dictionaries can be joined. Rows with missing key values
+ * never match, but are kept by outer joins.
+ * <p>
+ * Two join methods are available. The hash method builds an open addressing table of key groups
+ * for one frame and probes it with the rows of the other. The sort merge method requires both
+ * frames sorted ascending on keys, as sorted by {@link Var#refComparator()}, and joins them
+ * in a single pass without building any table. Both methods produce the same result.
+ * <p>
+ * The result is built from {@link MappedFrame} views of the two frames, without copying data.
+ * Left and inner joins keep the key variables of the left frame, right joins keep the key variables
+ * of the right frame. Rows which have no match in the other frame are mapped on a row with
+ * missing values appended to the other frame. Since outer joins have rows from both frames,
+ * their key variables are the only ones copied. The rows of the result follow the order of the
+ * left frame (right frame for right joins), with matches in the order of the other frame.
+ * For outer joins the right rows without match are added at the end.
+ * <p>
+ * Variable names which are not keys must be different between frames.
+ *
+ * @author <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>
+ */
+public final class FrameJoin {
+
+    public enum Type {
+        INNER,
+        LEFT,
+        RIGHT,
+        OUTER
+    }
+
+    public enum Method {
+        HASH,
+        SORT_MERGE
+    }
+
+    /**
+     * Builds a join between two frames.
+     *
+     * @param left     left frame
+     * @param right    right frame
+     * @param keyNames names of the key variables, present in both frames
+     * @return new join instance, inner by hash by default
+     */
+    public static FrameJoin of(Frame left, Frame right, String... keyNames) {
+        return new FrameJoin(left, right, keyNames);
+    }
+
+    public static Frame innerJoin(Frame left, Frame right, String... keyNames) {
+        return of(left, right, keyNames).withType(Type.INNER).join();
+    }
+
+    public static Frame leftJoin(Frame left, Frame right, String... keyNames) {
+        return of(left, right, keyNames).withType(Type.LEFT).join();
+    }
+
+    public static Frame rightJoin(Frame left, Frame right, String... keyNames) {
+        return of(left, right, keyNames).withType(Type.RIGHT).join();
+    }
+
+    public static Frame outerJoin(Frame left, Frame right, String... keyNames) {
+        return of(left, right, keyNames).withType(Type.OUTER).join();
+    }
+
+    // codes of keys which can not match, not produced by any value
+    private static final long NO_KEY = Long.MIN_VALUE;
+
+    private final Frame left;
+    private final Frame right;
+    private final String[] keyNames;
+    private Type type = Type.INNER;
+    private Method method = Method.HASH;
+
+    private FrameJoin(Frame left, Frame right, String[] keyNames) {
+        if (keyNames.length == 0) {
+            throw new IllegalArgumentException("At least one key variable is needed for join.");
+        }
+        for (String keyName : keyNames) {
+            VarType leftType = left.getVar(keyName).getType();
+            VarType rightType = right.getVar(keyName).getType();
+            if (leftType != rightType) {
+                throw new IllegalArgumentException(String.format(
+                        "Key variable %s has different types: %s and %s.", keyName, leftType.name(), rightType.name()));
+            }
+        }
+        Set<String> keySet = new HashSet<>(Arrays.asList(keyNames));
+        Set<String> leftNames = new HashSet<>(Arrays.asList(left.getVarNames()));
+        for (String name : right.getVarNames()) {
+            if (!keySet.contains(name) && leftNames.contains(name)) {
+                throw new IllegalArgumentException("Variable " + name + " is present in both frames and is not a key.");
+            }
+        }
+        this.left = left;
+        this.right = right;
+        this.keyNames = keyNames;
+    }
+
+    public FrameJoin withType(Type type) {
+        this.type = type;
+        return this;
+    }
+
+    public FrameJoin withMethod(Method method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * @return frame with the joined rows
+     */
+    public Frame join() {
+        boolean swap = type == Type.RIGHT;
+        Frame probe = swap ? right : left;
+        Frame build = swap ? left : right;
+        boolean keepProbe = type != Type.INNER;
+        boolean keepBuild = type == Type.OUTER;
+
+        Pairs pairs = (method == Method.HASH)
+                ? hashJoin(probe, build, keepProbe, keepBuild)
+                : mergeJoin(probe, build, keepProbe, keepBuild);
+
+        Frame probeView = view(probe, pairs.probeRows, pairs.size);
+        Frame buildView = view(build, pairs.buildRows, pairs.size);
+        Frame keys;
+        if (type == Type.OUTER) {
+            keys = coalesceKeys(probeView, buildView, pairs);
+        } else {
+            keys = probeView.mapVars(keyNames);
+        }
+        Frame probeRest = probeView.removeVars(keyNames);
+        Frame buildRest = buildView.removeVars(keyNames);
+        return swap ? BoundFrame.byVars(buildRest, keys, probeRest) : BoundFrame.byVars(keys, probeRest, buildRest);
+    }
+
+    /**
+     * Maps the rows of a frame, rows with value -1 being mapped to an additional row with missing values.
+     */
+    private static Frame view(Frame df, int[] rows, int size) {
+        boolean missing = false;
+        int[] mapping = Arrays.copyOf(rows, size);
+        for (int i = 0; i < size; i++) {
+            if (mapping[i] < 0) {
+                mapping[i] = df.getRowCount();
+                missing = true;
+            }
+        }
+        if (missing) {
+            Var[] vars = new Var[df.getVarCount()];
+            for (int i = 0; i < vars.length; i++) {
+                vars[i] = df.getVar(i).newInstance(1).withName(df.getVar(i).getName());
+                vars[i].setMissing(0);
+            }
+            df = BoundFrame.byRows(df, SolidFrame.byVars(vars));
+        }
+        return MappedFrame.byRow(df, Mapping.wrap(mapping));
+    }
+
+    private Frame coalesceKeys(Frame probeView, Frame buildView, Pairs pairs) {
+        List<Var> vars = new ArrayList<>();
+        for (String keyName : keyNames) {
+            Var probeKey = probeView.getVar(keyName);
+            Var buildKey = buildView.getVar(keyName);
+            Var key = probeKey.newInstance(pairs.size).withName(keyName);
+            for (int i = 0; i < pairs.size; i++) {
+                Var src = pairs.probeRows[i] < 0 ? buildKey : probeKey;
+                if (src.isMissing(i)) {
+                    key.setMissing(i);
+                    continue;
+                }
+                switch (key.getType()) {
+                    case NUMERIC:
+                        key.setValue(i, src.getValue(i));
+                        break;
+                    case STAMP:
+                        key.setStamp(i, src.getStamp(i));
+                        break;
+                    case NOMINAL:
+                    case ORDINAL:
+                    case TEXT:
+                        key.setLabel(i, src.getLabel(i));
+                        break;
+                    default:
+                        key.setIndex(i, src.getIndex(i));
+                }
+            }
+            vars.add(key);
+        }
+        return SolidFrame.byVars(pairs.size, vars);
+    }
+
+    private Pairs hashJoin(Frame probe, Frame build, boolean keepProbe, boolean keepBuild) {
+        KeyCodes buildCodes = new KeyCodes(build, keyNames, null);
+        KeyCodes probeCodes = new KeyCodes(probe, keyNames, buildCodes);
+        int keys = keyNames.length;
+        int buildRows = build.getRowCount();
+
+        // open addressing table of key groups, each group being a list of rows linked in order
+        int capacity = Integer.highestOneBit(Math.max(2, buildRows) * 2 - 1) << 1;
+        int mask = capacity - 1;
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        int[] groupFirst = new int[Math.max(1, buildRows)];
+        int[] groupLast = new int[Math.max(1, buildRows)];
+        int[] next = new int[buildRows];
+        int groups = 0;
+        long[] key = new long[keys];
+        long[] other = new long[keys];
+
+        for (int row = 0; row < buildRows; row++) {
+            next[row] = -1;
+            if (!buildCodes.codes(row, key)) {
+                continue;
+            }
+            int slot = hash(key) & mask;
+            while (true) {
+                int group = slots[slot];
+                if (group < 0) {
+                    slots[slot] = groups;
+                    groupFirst[groups] = row;
+                    groupLast[groups] = row;
+                    groups++;
+                    break;
+                }
+                buildCodes.codes(groupFirst[group], other);
+                if (Arrays.equals(key, other)) {
+                    next[groupLast[group]] = row;
+                    groupLast[group] = row;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        Pairs pairs = new Pairs(probe.getRowCount());
+        boolean[] matched = keepBuild ? new boolean[buildRows] : null;
+        for (int row = 0; row < probe.getRowCount(); row++) {
+            int first = -1;
+            if (probeCodes.codes(row, key)) {
+                int slot = hash(key) & mask;
+                while (slots[slot] >= 0) {
+                    int group = slots[slot];
+                    buildCodes.codes(groupFirst[group], other);
+                    if (Arrays.equals(key, other)) {
+                        first = groupFirst[group];
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            }
+            if (first < 0) {
+                if (keepProbe) {
+                    pairs.add(row, -1);
+                }
+                continue;
+            }
+            for (int buildRow = first; buildRow >= 0; buildRow = next[buildRow]) {
+                pairs.add(row, buildRow);
+                if (matched != null) {
+                    matched[buildRow] = true;
+                }
+            }
+        }
+        if (matched != null) {
+            for (int row = 0; row < buildRows; row++) {
+                if (!matched[row]) {
+                    pairs.add(-1, row);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static int hash(long[] key) {
+        long h = 0;
+        for (long code : key) {
+            h = (h + code) * 0x9e3779b97f4a7c15L;
+            h ^= h >>> 32;
+        }
+        return (int) (h ^ (h >>> 29));
+    }
+
+    private Pairs mergeJoin(Frame probe, Frame build, boolean keepProbe, boolean keepBuild) {
+        KeyComparator probeCmp = new KeyComparator(probe, probe, keyNames);
+        KeyComparator cmp = new KeyComparator(probe, build, keyNames);
+        checkSorted(probe, probeCmp);
+        checkSorted(build, new KeyComparator(build, build, keyNames));
+
+        Pairs pairs = new Pairs(probe.getRowCount());
+        boolean[] matched = keepBuild ? new boolean[build.getRowCount()] : null;
+        int buildRow = 0;
+        int groupStart = 0;
+        int groupEnd = 0;
+        for (int row = 0; row < probe.getRowCount(); row++) {
+            // probe rows with missing keys can not match, build rows with missing keys
+            // are never equal to probe keys, thus they are passed over by the merge
+            if (probeCmp.hasMissing(row)) {
+                if (keepProbe) {
+                    pairs.add(row, -1);
+                }
+                continue;
+            }
+            // advance the build group if the probe key moved past it
+            if (groupEnd > groupStart && cmp.compare(row, groupStart) != 0) {
+                buildRow = groupEnd;
+                groupStart = groupEnd;
+            }
+            if (groupEnd == groupStart) {
+                while (buildRow < build.getRowCount() && cmp.compare(row, buildRow) > 0) {
+                    buildRow++;
+                }
+                groupStart = buildRow;
+                groupEnd = buildRow;
+                while (groupEnd < build.getRowCount() && cmp.compare(row, groupEnd) == 0) {
+                    groupEnd++;
+                }
+            }
+            if (groupEnd == groupStart) {
+                if (keepProbe) {
+                    pairs.add(row, -1);
+                }
+                continue;
+            }
+            for (int i = groupStart; i < groupEnd; i++) {
+                pairs.add(row, i);
+                if (matched != null) {
+                    matched[i] = true;
+                }
+            }
+        }
+        if (matched != null) {
+            for (int row = 0; row < build.getRowCount(); row++) {
+                if (!matched[row]) {
+                    pairs.add(-1, row);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static void checkSorted(Frame df, KeyComparator cmp) {
+        for (int row = 1; row < df.getRowCount(); row++) {
+            if (cmp.compare(row - 1, row) > 0) {
+                throw new IllegalArgumentException("Frame is not sorted on join keys at row " + row + ".");
+            }
+        }
+    }
+
+    /**
+     * Row pairs of the join result, -1 standing for a missing row.
+     */
+    private static final class Pairs {
+        private int[] probeRows;
+        private int[] buildRows;
+        private int size;
+
+        Pairs(int capacity) {
+            probeRows = new int[Math.max(10, capacity)];
+            buildRows = new int[probeRows.length];
+        }
+
+        void add(int probeRow, int buildRow) {
+            if (size == probeRows.length) {
+                int newCapacity = size + (size >> 1);
+                probeRows = Arrays.copyOf(probeRows, newCapacity);
+                buildRows = Arrays.copyOf(buildRows, newCapacity);
+            }
+            probeRows[size] = probeRow;
+            buildRows[size] = buildRow;
+            size++;
+        }
+    }
+
+    /**
+     * Encodes key values as long codes. Codes of nominal and text keys of a probe frame are
+     * translated into the codes of the build frame.
+     */
+    private static final class KeyCodes {
+        private final Var[] vars;
+        private final int[][] levelCodes;
+        private final List<Map<String, Integer>> textCodes;
+
+        KeyCodes(Frame df, String[] keyNames, KeyCodes build) {
+            vars = new Var[keyNames.length];
+            levelCodes = new int[keyNames.length][];
+            textCodes = new ArrayList<>(keyNames.length);
+            for (int k = 0; k < keyNames.length; k++) {
+                vars[k] = df.getVar(keyNames[k]);
+                Map<String, Integer> codes = null;
+                switch (vars[k].getType()) {
+                    case NOMINAL:
+                    case ORDINAL:
+                        String[] levels = vars[k].getLevels();
+                        levelCodes[k] = new int[levels.length];
+                        if (build == null) {
+                            for (int i = 0; i < levels.length; i++) {
+                                levelCodes[k][i] = i;
+                            }
+                        } else {
+                            Map<String, Integer> buildLevels = new HashMap<>();
+                            String[] other = build.vars[k].getLevels();
+                            for (int i = 1; i < other.length; i++) {
+                                buildLevels.put(other[i], i);
+                            }
+                            for (int i = 1; i < levels.length; i++) {
+                                levelCodes[k][i] = buildLevels.getOrDefault(levels[i], -1);
+                            }
+                        }
+                        break;
+                    case TEXT:
+                        if (build == null) {
+                            codes = new HashMap<>();
+                            for (int row = 0; row < vars[k].getRowCount(); row++) {
+                                if (!vars[k].isMissing(row)) {
+                                    codes.putIfAbsent(vars[k].getLabel(row), codes.size());
+                                }
+                            }
+                        } else {
+                            codes = build.textCodes.get(k);
+                        }
+                        break;
+                    default:
+                }
+                textCodes.add(codes);
+            }
+        }
+
+        /**
+         * Fills the codes of a row.
+         *
+         * @return false if the row has keys which can not match
+         */
+        boolean codes(int row, long[] codes) {
+            for (int k = 0; k < vars.length; k++) {
+                long code = code(k, row);
+                if (code == NO_KEY) {
+                    return false;
+                }
+                codes[k] = code;
+            }
+            return true;
+        }
+
+        private long code(int k, int row) {
+            Var var = vars[k];
+            if (var.isMissing(row)) {
+                return NO_KEY;
+            }
+            switch (var.getType()) {
+                case NUMERIC:
+                    double value = var.getValue(row);
+                    // -0.0 equals 0.0
+                    return Double.doubleToLongBits(value == 0.0 ? 0.0 : value);
+                case STAMP:
+                    return var.getStamp(row);
+                case NOMINAL:
+                case ORDINAL:
+                    int level = levelCodes[k][var.getIndex(row)];
+                    return level < 0 ? NO_KEY : level;
+                case TEXT:
+                    Integer text = textCodes.get(k).get(var.getLabel(row));
+                    return text == null ? NO_KEY : text;
+                default:
+                    return var.getIndex(row);
+            }
+        }
+    }
+
+    /**
+     * Compares rows of two frames on key values, in the order given by {@link Var#refComparator()}:
+     * missing values are first, nominal and text values are compared as strings and ordinal
+     * values by level index.
+     */
+    private static final class KeyComparator {
+        private final Var[] xs;
+        private final Var[] ys;
+
+        KeyComparator(Frame x, Frame y, String[] keyNames) {
+            xs = new Var[keyNames.length];
+            ys = new Var[keyNames.length];
+            for (int k = 0; k < keyNames.length; k++) {
+                xs[k] = x.getVar(keyNames[k]);
+                ys[k] = y.getVar(keyNames[k]);
+                if (xs[k].getType() == VarType.ORDINAL && !Arrays.equals(xs[k].getLevels(), ys[k].getLevels())) {
+                    throw new IllegalArgumentException("Ordinal key " + keyNames[k] + " must have the same levels for sort merge join.");
+                }
+            }
+        }
+
+        boolean hasMissing(int row) {
+            for (Var var : xs) {
+                if (var.isMissing(row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int compare(int row1, int row2) {
+            for (int k = 0; k < xs.length; k++) {
+                Var x = xs[k];
+                Var y = ys[k];
+                boolean m1 = x.isMissing(row1);
+                boolean m2 = y.isMissing(row2);
+                if (m1 || m2) {
+                    if (m1 != m2) {
+                        return m1 ? -1 : 1;
+                    }
+                    continue;
+                }
+                int comp;
+                switch (x.getType()) {
+                    case NUMERIC:
+                        // adding zero turns -0.0 into 0.0
+                        comp = Double.compare(x.getValue(row1) + 0.0, y.getValue(row2) + 0.0);
+                        break;
+                    case STAMP:
+                        comp = Long.compare(x.getStamp(row1), y.getStamp(row2));
+                        break;
+                    case NOMINAL:
+                    case TEXT:
+                        comp = x.getLabel(row1).compareTo(y.getLabel(row2));
+                        break;
+                    default:
+                        comp = Integer.compare(x.getIndex(row1), y.getIndex(row2));
+                }
+                if (comp != 0) {
+                    return comp;
+                }
+            }
+            return 0;
+        }
+    }
+}
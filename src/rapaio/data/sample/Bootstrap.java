@@ -48,7 +48,7 @@ final class Bootstrap implements RowSampler {
 
     @Override
     public Sample nextSample(Frame df, Var weights) {
-        Mapping map = Mapping.copy(SamplingTools.sampleWR(df.getRowCount(), (int) (percent * df.getRowCount())));
+        Mapping map = Mapping.wrap(SamplingTools.sampleWR(df.getRowCount(), (int) (percent * df.getRowCount())));
         return new Sample(df.mapRows(map), weights.mapRows(map), map);
     }
 
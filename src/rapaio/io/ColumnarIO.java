@@ -0,0 +1,268 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.io;
+
+import rapaio.data.BufferVar;
+import rapaio.data.Frame;
+import rapaio.data.SolidFrame;
+import rapaio.data.Var;
+import rapaio.data.VarType;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores frames in a columnar binary format and restores them as memory mapped views.
+ * <p>
+ * The file starts with a header which contains the row count and, for each variable,
+ * the name, type, levels and the position of the data block. Each variable is stored
+ * in a contiguous block of primitive values, using the same missing value encoding as
+ * the solid variables. Text variables are stored as utf-8 bytes with offsets.
+ * <p>
+ * Restored frames contain {@link BufferVar} variables which read values directly from
+ * the mapped file, thus restoring is fast and does not depend on the size of the data,
+ * and frames larger than the available heap can be scanned. The restored variables are
+ * read only, a solid copy has to be made for changes. Each data block is limited to
+ * 2GB, which is the maximum size of a mapped region.
+ *
+ * @author <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>
+ */
+public class ColumnarIO {
+
+    private static final int MAGIC = 0x52504346;
+    private static final int VERSION = 1;
+    private static final int ALIGN = 8;
+
+    public static void storeToFile(Frame df, String file) throws IOException {
+        storeToFile(df, new File(file));
+    }
+
+    public static void storeToFile(Frame df, File file) throws IOException {
+        int rows = df.getRowCount();
+        Var[] vars = new Var[df.getVarCount()];
+        long[] lengths = new long[vars.length];
+        List<byte[][]> texts = new ArrayList<>();
+        for (int i = 0; i < vars.length; i++) {
+            vars[i] = df.getVar(i);
+            byte[][] text = null;
+            if (vars[i].getType() == VarType.TEXT) {
+                text = new byte[rows][];
+                for (int j = 0; j < rows; j++) {
+                    String label = vars[i].getLabel(j);
+                    text[j] = (label == null) ? new byte[0] : label.getBytes(StandardCharsets.UTF_8);
+                }
+            }
+            texts.add(text);
+            lengths[i] = blockLength(vars[i].getType(), rows, text);
+            if (lengths[i] > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Data of variable " + vars[i].getName() + " exceeds the maximum block size.");
+            }
+        }
+
+        // header has fixed size for any offsets, so it is built once to find its size
+        long[] offsets = new long[vars.length];
+        long position = align(header(df, vars, offsets, lengths).length);
+        for (int i = 0; i < vars.length; i++) {
+            offsets[i] = position;
+            position = align(position + lengths[i]);
+        }
+        byte[] header = header(df, vars, offsets, lengths);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer hb = ByteBuffer.wrap(header);
+            while (hb.hasRemaining()) {
+                channel.write(hb);
+            }
+            for (int i = 0; i < vars.length; i++) {
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_WRITE, offsets[i], lengths[i]);
+                block.order(ByteOrder.nativeOrder());
+                writeBlock(block, vars[i], rows, texts.get(i));
+                block.force();
+            }
+        }
+    }
+
+    public static Frame restoreFromFile(String file) throws IOException {
+        return restoreFromFile(new File(file));
+    }
+
+    public static Frame restoreFromFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("File " + file.getName() + " is not a columnar frame file.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Columnar format version " + version + " is not supported.");
+            }
+            ByteOrder order = in.readBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            int rows = in.readInt();
+            int count = in.readInt();
+            List<Var> vars = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                VarType type = VarType.valueOf(in.readUTF());
+                String[] levels = new String[in.readInt()];
+                for (int j = 0; j < levels.length; j++) {
+                    levels[j] = in.readUTF();
+                }
+                long offset = in.readLong();
+                long length = in.readLong();
+                ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(order);
+                vars.add(view(block, type, rows, levels).withName(name));
+            }
+            return SolidFrame.byVars(rows, vars);
+        }
+    }
+
+    private static byte[] header(Frame df, Var[] vars, long[] offsets, long[] lengths) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+        out.writeInt(df.getRowCount());
+        out.writeInt(vars.length);
+        for (int i = 0; i < vars.length; i++) {
+            VarType type = vars[i].getType();
+            out.writeUTF(vars[i].getName());
+            out.writeUTF(type.name());
+            String[] levels = (type == VarType.NOMINAL || type == VarType.ORDINAL) ? vars[i].getLevels() : new String[0];
+            out.writeInt(levels.length);
+            for (String level : levels) {
+                out.writeUTF(level);
+            }
+            out.writeLong(offsets[i]);
+            out.writeLong(lengths[i]);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static long align(long position) {
+        return (position + ALIGN - 1) / ALIGN * ALIGN;
+    }
+
+    private static long blockLength(VarType type, int rows, byte[][] text) {
+        switch (type) {
+            case NUMERIC:
+            case STAMP:
+                return 8L * rows;
+            case INDEX:
+            case NOMINAL:
+            case ORDINAL:
+                return 4L * rows;
+            case BINARY:
+                return rows;
+            default:
+                long length = 4L * (rows + 1) + rows;
+                for (byte[] value : text) {
+                    length += value.length;
+                }
+                return length;
+        }
+    }
+
+    private static void writeBlock(ByteBuffer block, Var var, int rows, byte[][] text) {
+        switch (var.getType()) {
+            case NUMERIC:
+                for (int i = 0; i < rows; i++) {
+                    block.putDouble(var.getValue(i));
+                }
+                break;
+            case STAMP:
+                for (int i = 0; i < rows; i++) {
+                    block.putLong(var.getStamp(i));
+                }
+                break;
+            case INDEX:
+            case NOMINAL:
+            case ORDINAL:
+                for (int i = 0; i < rows; i++) {
+                    block.putInt(var.getIndex(i));
+                }
+                break;
+            case BINARY:
+                for (int i = 0; i < rows; i++) {
+                    block.put((byte) (var.isMissing(i) ? -1 : var.getIndex(i)));
+                }
+                break;
+            default:
+                int offset = 0;
+                for (int i = 0; i < rows; i++) {
+                    block.putInt(offset);
+                    offset += text[i].length;
+                }
+                block.putInt(offset);
+                for (int i = 0; i < rows; i++) {
+                    block.put((byte) (var.isMissing(i) ? 1 : 0));
+                }
+                for (byte[] value : text) {
+                    block.put(value);
+                }
+        }
+    }
+
+    private static Var view(ByteBuffer block, VarType type, int rows, String[] levels) {
+        switch (type) {
+            case NUMERIC:
+                return BufferVar.numeric(block.asDoubleBuffer());
+            case STAMP:
+                return BufferVar.stamp(block.asLongBuffer());
+            case INDEX:
+                return BufferVar.index(block.asIntBuffer());
+            case NOMINAL:
+                return BufferVar.nominal(block.asIntBuffer(), levels);
+            case ORDINAL:
+                return BufferVar.ordinal(block.asIntBuffer(), levels);
+            case BINARY:
+                return BufferVar.binary(block);
+            default:
+                int flags = 4 * (rows + 1);
+                block.limit(flags);
+                ByteBuffer offsets = block.slice().order(block.order());
+                block.limit(flags + rows).position(flags);
+                ByteBuffer missing = block.slice();
+                block.limit(block.capacity()).position(flags + rows);
+                ByteBuffer bytes = block.slice();
+                return BufferVar.text(offsets.asIntBuffer(), missing, bytes);
+        }
+    }
+}
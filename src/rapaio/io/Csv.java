@@ -43,18 +43,19 @@ import static java.util.stream.Collectors.toSet;
 public class Csv {
 
     private boolean trimSpaces = true;
-    private boolean header = true;
+    boolean header = true;
     private boolean quotes = false;
     private char separatorChar = ',';
     private char escapeChar = '\"';
-    private HashMap<String, VarType> typeFieldHints = new HashMap<>();
-    private HashSet<String> naValues = new HashSet<>();
-    private VarType[] defaultTypes = new VarType[]{VarType.BINARY, VarType.NUMERIC, VarType.NOMINAL};
-    private int startRow = 0;
-    private int endRow = Integer.MAX_VALUE;
-    private Predicate<Integer> skipRows = row -> false;
+    HashMap<String, VarType> typeFieldHints = new HashMap<>();
+    HashSet<String> naValues = new HashSet<>();
+    VarType[] defaultTypes = new VarType[]{VarType.BINARY, VarType.NUMERIC, VarType.NOMINAL};
+    int startRow = 0;
+    int endRow = Integer.MAX_VALUE;
+    Predicate<Integer> skipRows = row -> false;
     private Predicate<Integer> skipCols = row -> false;
-    private Frame template;
+    Frame template;
+    private int poolSize = 0;
 
     public Csv() {
         naValues.add("?");
@@ -160,8 +161,29 @@ public class Csv {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to read files. When greater than one, files
+     * are split into byte ranges on line boundaries which are parsed in parallel,
+     * directly into primitive column buffers. Types are inferred up front from a sample
+     * of rows and checked on all values without parsing exceptions, columns are parsed
+     * a second time only when some values do not fit the sampled type.
+     * <p>
+     * Parallel reading is used only for files, with lines terminated by new line or carriage return followed by new line.
+     * Input streams are always read sequentially.
+     *
+     * @param poolSize number of threads, 0 or 1 for sequential reading
+     * @return csv instance
+     */
+    public Csv withPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+        return this;
+    }
+
     public Frame read(File file) {
         try {
+            if (poolSize > 1) {
+                return new CsvParallelReader(this, file, poolSize).read();
+            }
             return read(new FileInputStream(file));
         } catch (IOException e) {
             throw new RuntimeException("error at reading file: " + file.getAbsolutePath(), e);
@@ -177,6 +199,9 @@ public class Csv {
     }
 
     public Frame read(String fileName) {
+        if (poolSize > 1) {
+            return read(new File(fileName));
+        }
         try {
             return read(new FileInputStream(fileName));
         } catch (IOException e) {
@@ -292,6 +317,15 @@ public class Csv {
 
     List<String> parseLine(String line) {
         List<String> data = new ArrayList<>();
+        parseLine(line, data);
+        return data;
+    }
+
+    /**
+     * Parses a line into the given list of values, which is cleared before.
+     */
+    void parseLine(String line, List<String> data) {
+        data.clear();
         int start = 0;
         int colNum = 0;
         int end;
@@ -333,7 +367,6 @@ public class Csv {
             start = end + 1;
             colNum += 1;
         }
-        return data;
     }
 
     /**
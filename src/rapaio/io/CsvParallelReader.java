@@ -0,0 +1,814 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.io;
+
+import rapaio.data.BinaryVar;
+import rapaio.data.Frame;
+import rapaio.data.IndexVar;
+import rapaio.data.NominalVar;
+import rapaio.data.NumericVar;
+import rapaio.data.OrdinalVar;
+import rapaio.data.SolidFrame;
+import rapaio.data.StampVar;
+import rapaio.data.TextVar;
+import rapaio.data.Var;
+import rapaio.data.VarType;
+import rapaio.util.FJPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Reads a csv file in parallel, using the settings of a {@link Csv} instance.
+ * <p>
+ * The file is split into chunks of bytes with boundaries on line ends. Lines are
+ * counted first for each chunk, which allows rows to be selected by their position
+ * in file without reading chunks in order. Each chunk is then parsed by a worker
+ * into primitive column buffers, typed as inferred from a sample of rows. While
+ * parsing, each value is checked against all candidate types, so that the types
+ * which fit all values are known at the end. If some sampled type does not fit,
+ * chunks are parsed again with the corrected types. Finally, the chunk buffers are
+ * concatenated into variables.
+ * <p>
+ * A type is chosen as the first default type which accepts all values of a column,
+ * which is the same type the sequential reader arrives at through its upgrades.
+ */
+final class CsvParallelReader {
+
+    private static final int SAMPLE_ROWS = 1_000;
+    private static final int CHUNK_BYTES = 16 * 1024 * 1024;
+
+    private final Csv csv;
+    private final File file;
+    private final int poolSize;
+    private final Charset charset = Charset.defaultCharset();
+
+    private List<String> names;
+    private long[] bounds;
+    private long[] firstLine;
+    private int[] firstKept;
+    private int[] firstRow;
+    private int[] rowCounts;
+
+    CsvParallelReader(Csv csv, File file, int poolSize) {
+        this.csv = csv;
+        this.file = file;
+        this.poolSize = poolSize;
+    }
+
+    Frame read() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            names = new ArrayList<>();
+            if (csv.header) {
+                if (size == 0) {
+                    return null;
+                }
+                start = lineEnd(channel, 0, size);
+                names = csv.parseLine(trimLine(new String(readBytes(channel, 0, start), charset)));
+            }
+            split(channel, start, size);
+
+            // count lines of each chunk and select rows
+            int chunks = bounds.length - 1;
+            long[] lineCounts = new long[chunks];
+            run(poolSize, chunks, chunk -> lineCounts[chunk] = countLines(readBytes(channel, bounds[chunk], bounds[chunk + 1])));
+            firstLine = new long[chunks];
+            for (int i = 1; i < chunks; i++) {
+                firstLine[i] = firstLine[i - 1] + lineCounts[i - 1];
+            }
+            int[] keptCounts = new int[chunks];
+            run(poolSize, chunks, chunk -> {
+                int kept = 0;
+                for (long line = firstLine[chunk]; line < firstLine[chunk] + lineCounts[chunk]; line++) {
+                    if (!csv.skipRows.test((int) line)) {
+                        kept++;
+                    }
+                }
+                keptCounts[chunk] = kept;
+            });
+            firstKept = new int[chunks];
+            int totalKept = 0;
+            for (int i = 0; i < chunks; i++) {
+                firstKept[i] = totalKept;
+                totalKept += keptCounts[i];
+            }
+            if (totalKept == 0) {
+                return SolidFrame.byVars(0, new ArrayList<>());
+            }
+            firstRow = new int[chunks];
+            rowCounts = new int[chunks];
+            int rows = 0;
+            for (int i = 0; i < chunks; i++) {
+                int from = Math.max(firstKept[i], csv.startRow);
+                int to = Math.min(firstKept[i] + keptCounts[i], csv.endRow);
+                firstRow[i] = rows;
+                rowCounts[i] = Math.max(0, to - from);
+                rows += rowCounts[i];
+            }
+
+            // parse with sampled types and check the types on all values
+            Column[] types = sampleTypes(channel);
+            Chunk[] parsed = new Chunk[chunks];
+            Column[] current = types;
+            run(poolSize, chunks, chunk -> parsed[chunk] = parse(channel, chunk, current));
+            int cols = names.size();
+            for (Chunk chunk : parsed) {
+                cols = Math.max(cols, chunk.maxFields);
+            }
+            Column[] fitted = fitTypes(parsed, types, cols);
+            if (!Arrays.equals(fitted, Arrays.copyOf(types, cols))) {
+                run(poolSize, chunks, chunk -> parsed[chunk] = parse(channel, chunk, fitted));
+            }
+
+            // concatenate chunk buffers into variables
+            Var[] vars = new Var[cols];
+            int total = rows;
+            run(poolSize, cols, col -> vars[col] = buildVar(parsed, fitted[col], col, total)
+                    .withName(name(col)));
+            return SolidFrame.byVars(rows, vars);
+        }
+    }
+
+    /**
+     * Runs a task for each index on a managed pool, propagating failures.
+     */
+    private static void run(int poolSize, int count, IntConsumer task) throws IOException {
+        try {
+            FJPool.forEach(poolSize, count, task);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static byte[] readBytes(FileChannel channel, long from, long to) {
+        byte[] bytes = new byte[(int) (to - from)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, from + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return position after the end of the line which contains the given position
+     */
+    private static long lineEnd(FileChannel channel, long pos, long size) {
+        byte[] buffer = new byte[8192];
+        while (pos < size) {
+            int len = (int) Math.min(buffer.length, size - pos);
+            ByteBuffer bb = ByteBuffer.wrap(buffer, 0, len);
+            try {
+                channel.read(bb, pos);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (int i = 0; i < len; i++) {
+                if (buffer[i] == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += len;
+        }
+        return size;
+    }
+
+    /**
+     * Splits the data into chunks with boundaries at line starts.
+     */
+    private void split(FileChannel channel, long start, long size) {
+        int chunks = (int) Math.max(4L * poolSize, (size - start) / CHUNK_BYTES + 1);
+        List<Long> list = new ArrayList<>();
+        list.add(start);
+        for (int i = 1; i < chunks; i++) {
+            long pos = start + (size - start) * i / chunks;
+            long bound = (pos <= list.get(list.size() - 1)) ? pos : lineEnd(channel, pos - 1, size);
+            if (bound > list.get(list.size() - 1) && bound < size) {
+                list.add(bound);
+            }
+        }
+        list.add(size);
+        bounds = list.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static int countLines(byte[] bytes) {
+        int count = 0;
+        for (byte b : bytes) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        if (bytes.length > 0 && bytes[bytes.length - 1] != '\n') {
+            count++;
+        }
+        return count;
+    }
+
+    private static String trimLine(String line) {
+        int len = line.length();
+        if (len > 0 && line.charAt(len - 1) == '\n') {
+            len--;
+        }
+        if (len > 0 && line.charAt(len - 1) == '\r') {
+            len--;
+        }
+        return line.substring(0, len);
+    }
+
+    /**
+     * Column type, as a fixed type, a template variable or a default type.
+     */
+    private static final class Column {
+        private final VarType type;
+        private final Var template;
+        private final int defaultIndex;
+
+        Column(VarType type, Var template, int defaultIndex) {
+            this.type = type;
+            this.template = template;
+            this.defaultIndex = defaultIndex;
+        }
+
+        boolean isDefault() {
+            return defaultIndex >= 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Column)) {
+                return false;
+            }
+            Column c = (Column) o;
+            return type == c.type && template == c.template && defaultIndex == c.defaultIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return type.hashCode() * 31 + defaultIndex;
+        }
+    }
+
+    private String name(int col) {
+        return col < names.size() ? names.get(col) : "V" + (col + 1);
+    }
+
+    private Column fixedColumn(int col) {
+        String name = name(col);
+        if (csv.template != null && Arrays.asList(csv.template.getVarNames()).contains(name)) {
+            Var template = csv.template.getVar(name);
+            return new Column(template.getType(), template, -1);
+        }
+        if (csv.typeFieldHints.containsKey(name)) {
+            return new Column(csv.typeFieldHints.get(name), null, -1);
+        }
+        return null;
+    }
+
+    private Column defaultColumn(int index) {
+        return new Column(csv.defaultTypes[index], null, index);
+    }
+
+    /**
+     * Builds initial column types from the first selected rows.
+     */
+    private Column[] sampleTypes(FileChannel channel) {
+        int chunk = 0;
+        while (chunk < rowCounts.length - 1 && rowCounts[chunk] == 0) {
+            chunk++;
+        }
+        int[] masks = new int[0];
+        int sampled = 0;
+        List<String> values = new ArrayList<>();
+        for (; chunk < rowCounts.length && sampled < SAMPLE_ROWS; chunk++) {
+            if (rowCounts[chunk] == 0) {
+                continue;
+            }
+            byte[] bytes = readBytes(channel, bounds[chunk], bounds[chunk + 1]);
+            int line = 0;
+            int start = 0;
+            for (int kept = 0; start < bytes.length && sampled < SAMPLE_ROWS; line++) {
+                int end = start;
+                while (end < bytes.length && bytes[end] != '\n') {
+                    end++;
+                }
+                if (!csv.skipRows.test((int) (firstLine[chunk] + line))) {
+                    int index = firstKept[chunk] + kept;
+                    if (index >= csv.startRow && index < csv.endRow) {
+                        csv.parseLine(decode(bytes, start, end), values);
+                        if (values.size() > masks.length) {
+                            int old = masks.length;
+                            masks = Arrays.copyOf(masks, values.size());
+                            Arrays.fill(masks, old, masks.length, -1);
+                        }
+                        for (int i = 0; i < masks.length; i++) {
+                            masks[i] &= defaultMask(i < values.size() ? values.get(i) : "?");
+                        }
+                        sampled++;
+                    }
+                    kept++;
+                }
+                start = end + 1;
+            }
+        }
+        Column[] types = new Column[Math.max(masks.length, names.size())];
+        for (int i = 0; i < types.length; i++) {
+            Column fixed = fixedColumn(i);
+            if (fixed != null) {
+                types[i] = fixed;
+            } else {
+                int mask = i < masks.length ? masks[i] : -1;
+                types[i] = defaultColumn(mask == 0 ? csv.defaultTypes.length - 1 : Integer.numberOfTrailingZeros(mask));
+            }
+        }
+        return types;
+    }
+
+    private String decode(byte[] bytes, int start, int end) {
+        int len = end - start;
+        if (len > 0 && bytes[end - 1] == '\r') {
+            len--;
+        }
+        return new String(bytes, start, len, charset);
+    }
+
+    private String value(String raw) {
+        return csv.naValues.contains(raw) ? "?" : raw;
+    }
+
+    /**
+     * @return bit mask of the default types which accept the value
+     */
+    private int defaultMask(String raw) {
+        String value = value(raw);
+        int mask = 0;
+        for (int i = 0; i < csv.defaultTypes.length; i++) {
+            if (accepts(csv.defaultTypes[i], value)) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Parsed values of one column from a chunk.
+     */
+    private static final class Buffer {
+        private final Column column;
+        private double[] doubles;
+        private int[] ints;
+        private long[] longs;
+        private String[] strings;
+        private LinkedHashMap<String, Integer> dict;
+        // bit mask of default types which accept all values, for fixed types bit 0 tells if the type fits
+        private int mask = -1;
+        private String failed;
+
+        Buffer(Column column, int rows) {
+            this.column = column;
+            switch (column.type) {
+                case NUMERIC:
+                    doubles = new double[rows];
+                    Arrays.fill(doubles, Double.NaN);
+                    break;
+                case BINARY:
+                    ints = new int[rows];
+                    Arrays.fill(ints, -1);
+                    break;
+                case INDEX:
+                    ints = new int[rows];
+                    Arrays.fill(ints, Integer.MIN_VALUE);
+                    break;
+                case STAMP:
+                    longs = new long[rows];
+                    break;
+                case NOMINAL:
+                case ORDINAL:
+                    ints = new int[rows];
+                    dict = new LinkedHashMap<>();
+                    break;
+                default:
+                    strings = new String[rows];
+                    Arrays.fill(strings, "?");
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private final Buffer[] buffers;
+        private final int minFields;
+        private final int maxFields;
+
+        Chunk(Buffer[] buffers, int minFields, int maxFields) {
+            this.buffers = buffers;
+            this.minFields = minFields;
+            this.maxFields = maxFields;
+        }
+    }
+
+    private Chunk parse(FileChannel channel, int chunk, Column[] types) {
+        int rows = rowCounts[chunk];
+        List<Buffer> buffers = new ArrayList<>();
+        int minFields = Integer.MAX_VALUE;
+        int maxFields = 0;
+        if (rows > 0) {
+            byte[] bytes = readBytes(channel, bounds[chunk], bounds[chunk + 1]);
+            List<String> values = new ArrayList<>();
+            int start = 0;
+            int kept = 0;
+            int row = 0;
+            for (int line = 0; start < bytes.length && row < rows; line++) {
+                int end = start;
+                while (end < bytes.length && bytes[end] != '\n') {
+                    end++;
+                }
+                if (!csv.skipRows.test((int) (firstLine[chunk] + line))) {
+                    int index = firstKept[chunk] + kept;
+                    if (index >= csv.startRow && index < csv.endRow) {
+                        csv.parseLine(decode(bytes, start, end), values);
+                        minFields = Math.min(minFields, values.size());
+                        maxFields = Math.max(maxFields, values.size());
+                        for (int i = 0; i < values.size(); i++) {
+                            if (i == buffers.size()) {
+                                Column column = i < types.length ? types[i] : fixedColumn(i);
+                                buffers.add(new Buffer(column == null ? defaultColumn(0) : column, rows));
+                            }
+                            put(buffers.get(i), row, value(values.get(i)));
+                        }
+                        row++;
+                    }
+                    kept++;
+                }
+                start = end + 1;
+            }
+        }
+        return new Chunk(buffers.toArray(new Buffer[buffers.size()]), minFields, maxFields);
+    }
+
+    private void put(Buffer buffer, int row, String value) {
+        Column column = buffer.column;
+        if (column.isDefault()) {
+            buffer.mask &= defaultMask(value);
+        } else if (!accepts(column.type, value)) {
+            buffer.mask = 0;
+            if (buffer.failed == null) {
+                buffer.failed = value;
+            }
+        }
+        if (!accepts(column.type, value)) {
+            return;
+        }
+        switch (column.type) {
+            case NUMERIC:
+                buffer.doubles[row] = parseDouble(value);
+                break;
+            case BINARY:
+                buffer.ints[row] = "?".equals(value) ? -1 : ("1".equals(value) || "true".equalsIgnoreCase(value)) ? 1 : 0;
+                break;
+            case INDEX:
+                buffer.ints[row] = "?".equals(value) ? Integer.MIN_VALUE : Integer.parseInt(value);
+                break;
+            case STAMP:
+                buffer.longs[row] = Long.parseLong(value);
+                break;
+            case NOMINAL:
+            case ORDINAL:
+                if (!"?".equals(value)) {
+                    Integer code = buffer.dict.get(value);
+                    if (code == null) {
+                        code = buffer.dict.size() + 1;
+                        buffer.dict.put(value, code);
+                    }
+                    buffer.ints[row] = code;
+                }
+                break;
+            default:
+                buffer.strings[row] = value;
+        }
+    }
+
+    /**
+     * Computes the types which fit all values of each column.
+     */
+    private Column[] fitTypes(Chunk[] parsed, Column[] sampled, int cols) {
+        Column[] fitted = new Column[cols];
+        for (int col = 0; col < cols; col++) {
+            Column column = col < sampled.length ? sampled[col] : fixedColumn(col);
+            if (column == null) {
+                column = defaultColumn(0);
+            }
+            int mask = -1;
+            String failed = null;
+            for (int i = 0; i < parsed.length; i++) {
+                if (rowCounts[i] == 0) {
+                    continue;
+                }
+                Chunk chunk = parsed[i];
+                if (col < chunk.buffers.length) {
+                    mask &= chunk.buffers[col].mask;
+                    if (failed == null) {
+                        failed = chunk.buffers[col].failed;
+                    }
+                }
+                if (col >= chunk.buffers.length || chunk.minFields <= col) {
+                    // some rows of the chunk have no value for this column
+                    if (column.isDefault()) {
+                        mask &= defaultMask("?");
+                    } else if (!accepts(column.type, "?")) {
+                        mask = 0;
+                        failed = "?";
+                    }
+                }
+            }
+            if (column.isDefault()) {
+                if (mask == 0) {
+                    throw new IllegalArgumentException(String.format("Could not parse values of column %s in any of the default types",
+                            name(col)));
+                }
+                fitted[col] = defaultColumn(Integer.numberOfTrailingZeros(mask));
+            } else {
+                if (mask == 0) {
+                    throw new IllegalArgumentException(
+                            String.format("Could not parse value %s in type %s for variable with name: %s",
+                                    failed, column.type, name(col)));
+                }
+                fitted[col] = column;
+            }
+        }
+        return fitted;
+    }
+
+    private Var buildVar(Chunk[] parsed, Column column, int col, int rows) {
+        switch (column.type) {
+            case NUMERIC: {
+                double[] values = new double[rows];
+                Arrays.fill(values, Double.NaN);
+                for (int i = 0; i < parsed.length; i++) {
+                    if (col < parsed[i].buffers.length) {
+                        System.arraycopy(parsed[i].buffers[col].doubles, 0, values, firstRow[i], rowCounts[i]);
+                    }
+                }
+                return NumericVar.wrap(values);
+            }
+            case INDEX: {
+                int[] values = new int[rows];
+                Arrays.fill(values, Integer.MIN_VALUE);
+                for (int i = 0; i < parsed.length; i++) {
+                    if (col < parsed[i].buffers.length) {
+                        System.arraycopy(parsed[i].buffers[col].ints, 0, values, firstRow[i], rowCounts[i]);
+                    }
+                }
+                return IndexVar.wrap(values);
+            }
+            case STAMP: {
+                long[] values = new long[rows];
+                for (int i = 0; i < parsed.length; i++) {
+                    if (col < parsed[i].buffers.length) {
+                        System.arraycopy(parsed[i].buffers[col].longs, 0, values, firstRow[i], rowCounts[i]);
+                    }
+                }
+                return StampVar.wrap(values);
+            }
+            case BINARY: {
+                BinaryVar var = BinaryVar.empty(rows);
+                for (int row = 0; row < rows; row++) {
+                    var.setMissing(row);
+                }
+                for (int i = 0; i < parsed.length; i++) {
+                    if (col < parsed[i].buffers.length) {
+                        int[] codes = parsed[i].buffers[col].ints;
+                        for (int j = 0; j < rowCounts[i]; j++) {
+                            var.setIndex(firstRow[i] + j, codes[j]);
+                        }
+                    }
+                }
+                return var;
+            }
+            case NOMINAL:
+            case ORDINAL: {
+                // merge dictionaries in chunk order, which keeps the order of first appearance
+                Map<String, Integer> dict = new LinkedHashMap<>();
+                if (column.template != null) {
+                    for (String level : column.template.getLevels()) {
+                        if (!"?".equals(level)) {
+                            dict.putIfAbsent(level, dict.size() + 1);
+                        }
+                    }
+                }
+                int[][] codes = new int[parsed.length][];
+                for (int i = 0; i < parsed.length; i++) {
+                    if (col >= parsed[i].buffers.length) {
+                        continue;
+                    }
+                    Buffer buffer = parsed[i].buffers[col];
+                    int[] map = new int[buffer.dict.size() + 1];
+                    for (Map.Entry<String, Integer> e : buffer.dict.entrySet()) {
+                        Integer code = dict.get(e.getKey());
+                        if (code == null) {
+                            code = dict.size() + 1;
+                            dict.put(e.getKey(), code);
+                        }
+                        map[e.getValue()] = code;
+                    }
+                    codes[i] = map;
+                }
+                List<String> levels = new ArrayList<>(dict.keySet());
+                Var var = (column.type == VarType.NOMINAL) ? NominalVar.empty(rows, levels) : OrdinalVar.empty(rows, levels);
+                for (int i = 0; i < parsed.length; i++) {
+                    if (codes[i] == null) {
+                        continue;
+                    }
+                    int[] local = parsed[i].buffers[col].ints;
+                    for (int j = 0; j < rowCounts[i]; j++) {
+                        var.setIndex(firstRow[i] + j, codes[i][local[j]]);
+                    }
+                }
+                return var;
+            }
+            default: {
+                String[] values = new String[rows];
+                Arrays.fill(values, "?");
+                for (int i = 0; i < parsed.length; i++) {
+                    if (col < parsed[i].buffers.length) {
+                        System.arraycopy(parsed[i].buffers[col].strings, 0, values, firstRow[i], rowCounts[i]);
+                    }
+                }
+                return TextVar.wrap(new ArrayList<>(Arrays.asList(values)));
+            }
+        }
+    }
+
+    /**
+     * Checks if a value can be added to a variable of the given type, without parsing it.
+     */
+    static boolean accepts(VarType type, String value) {
+        switch (type) {
+            case BINARY:
+                return "?".equals(value) || "1".equals(value) || "0".equals(value)
+                        || "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value);
+            case INDEX:
+                return "?".equals(value) || isInteger(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            case NUMERIC:
+                return "?".equals(value) || "Inf".equals(value) || "-Inf".equals(value) || isDouble(value);
+            case STAMP:
+                return isInteger(value, Long.MIN_VALUE, Long.MAX_VALUE);
+            default:
+                return true;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        if ("?".equals(value)) {
+            return Double.NaN;
+        }
+        if ("Inf".equals(value)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if ("-Inf".equals(value)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Double.parseDouble(value);
+    }
+
+    /**
+     * Checks the syntax of an integer as accepted by {@link Long#parseLong(String)}, between given limits.
+     */
+    static boolean isInteger(String s, long min, long max) {
+        int len = s.length();
+        if (len == 0) {
+            return false;
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = s.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (len == 1) {
+                return false;
+            }
+            i++;
+        }
+        // accumulate negatively, as the negative range is larger
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < len; i++) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if (digit < 0 || result < multmin) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        return true;
+    }
+
+    /**
+     * Checks the syntax of a floating point number as accepted by {@link Double#parseDouble(String)}.
+     */
+    static boolean isDouble(String s) {
+        int i = 0;
+        int len = s.length();
+        while (i < len && s.charAt(i) <= ' ') {
+            i++;
+        }
+        while (len > i && s.charAt(len - 1) <= ' ') {
+            len--;
+        }
+        if (i == len) {
+            return false;
+        }
+        if (s.charAt(i) == '+' || s.charAt(i) == '-') {
+            i++;
+        }
+        if (s.startsWith("NaN", i) && i + 3 == len) {
+            return true;
+        }
+        if (s.startsWith("Infinity", i) && i + 8 == len) {
+            return true;
+        }
+        boolean hex = i + 1 < len && s.charAt(i) == '0' && (s.charAt(i + 1) == 'x' || s.charAt(i + 1) == 'X');
+        if (hex) {
+            i += 2;
+        }
+        int radix = hex ? 16 : 10;
+        int digits = 0;
+        while (i < len && Character.digit(s.charAt(i), radix) >= 0 && s.charAt(i) < 128) {
+            i++;
+            digits++;
+        }
+        if (i < len && s.charAt(i) == '.') {
+            i++;
+            while (i < len && Character.digit(s.charAt(i), radix) >= 0 && s.charAt(i) < 128) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        char exp = hex ? 'p' : 'e';
+        if (i < len && Character.toLowerCase(s.charAt(i)) == exp) {
+            i++;
+            if (i < len && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            int expDigits = 0;
+            while (i < len && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                i++;
+                expDigits++;
+            }
+            if (expDigits == 0) {
+                return false;
+            }
+        } else if (hex) {
+            return false;
+        }
+        if (i < len && "fFdD".indexOf(s.charAt(i)) >= 0) {
+            i++;
+        }
+        return i == len;
+    }
+}
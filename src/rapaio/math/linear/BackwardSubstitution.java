@@ -1,20 +1,60 @@
 package rapaio.math.linear;
 
-public class BackwardSubstitution extends SubstitutionStrategy{
+import rapaio.math.linear.dense.MatrixMultiplication;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.util.FJPool;
 
-	@Override
-	public RM getSubstitution(int n, int nx, RM X, double[][] L) {
-		
-        // Solve L'*X = Y;
-		for (int k = n - 1; k >= 0; k--) {
-            for (int j = 0; j < nx; j++) {
-                for (int i = k + 1; i < n; i++) {
-                    X.set(k, j, X.get(k, j) - X.get(i, j) * L[i][k]);
-                }
-                X.set(k, j, X.get(k, j) / L[k][k]);
+/**
+ * Solves L'*X = B, where L is lower triangular. An upper triangular system U*X = B
+ * can be solved by passing the transpose of U.
+ */
+public class BackwardSubstitution extends SubstitutionStrategy {
+
+    public BackwardSubstitution() {
+        this(false);
+    }
+
+    /**
+     * @param unitDiagonal if true the diagonal of L is assumed to contain only ones and is not read
+     */
+    public BackwardSubstitution(boolean unitDiagonal) {
+        super(unitDiagonal);
+    }
+
+    @Override
+    public RM getSubstitution(int n, int nx, RM X, RM L) {
+        SolidRM x = solid(X);
+        if (n == 0) {
+            return writeBack(X, x, n, nx);
+        }
+        SolidRM xs = x.rangeRows(0, n).rangeCols(0, nx);
+        for (int start = ((n - 1) / BLOCK) * BLOCK; start >= 0; start -= BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            if (end < n) {
+                MatrixMultiplication.gemm(-1.0, L.rangeRows(end, n).rangeCols(start, end).t(),
+                        xs.rangeRows(end, n), xs.rangeRows(start, end), FJPool.maxThreads());
             }
+            int from = start;
+            byColumns(nx, (long) (end - start) * (end - start) * nx, (colStart, colEnd) -> {
+                for (int k = end - 1; k >= from; k--) {
+                    for (int i = k + 1; i < end; i++) {
+                        double l = L.get(i, k);
+                        if (l == 0) {
+                            continue;
+                        }
+                        for (int j = colStart; j < colEnd; j++) {
+                            xs.set(k, j, xs.get(k, j) - xs.get(i, j) * l);
+                        }
+                    }
+                    if (!unitDiagonal) {
+                        double d = L.get(k, k);
+                        for (int j = colStart; j < colEnd; j++) {
+                            xs.set(k, j, xs.get(k, j) / d);
+                        }
+                    }
+                }
+            });
         }
-		return X;
-	}
-
+        return writeBack(X, x, n, nx);
+    }
 }
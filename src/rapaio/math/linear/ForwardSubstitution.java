@@ -1,20 +1,56 @@
 package rapaio.math.linear;
 
-public class ForwardSubstitution extends SubstitutionStrategy{
+import rapaio.math.linear.dense.MatrixMultiplication;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.util.FJPool;
 
-	@Override
-	public RM getSubstitution(int n, int nx, RM X, double[][] L) {
+/**
+ * Solves L*X = B, where L is lower triangular.
+ */
+public class ForwardSubstitution extends SubstitutionStrategy {
 
-        // Solve L*Y = B;
-		for (int k = 0; k < n; k++) {
-            for (int j = 0; j < nx; j++) {
-                for (int i = 0; i < k; i++) {
-                    X.set(k, j, X.get(k, j) - X.get(i, j) * L[k][i]);
-                }
-                X.set(k, j, X.get(k, j) / L[k][k]);
+    public ForwardSubstitution() {
+        this(false);
+    }
+
+    /**
+     * @param unitDiagonal if true the diagonal of L is assumed to contain only ones and is not read
+     */
+    public ForwardSubstitution(boolean unitDiagonal) {
+        super(unitDiagonal);
+    }
+
+    @Override
+    public RM getSubstitution(int n, int nx, RM X, RM L) {
+        SolidRM x = solid(X);
+        SolidRM xs = x.rangeRows(0, n).rangeCols(0, nx);
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            if (start > 0) {
+                MatrixMultiplication.gemm(-1.0, L.rangeRows(start, end).rangeCols(0, start),
+                        xs.rangeRows(0, start), xs.rangeRows(start, end), FJPool.maxThreads());
             }
+            int from = start;
+            byColumns(nx, (long) (end - start) * (end - start) * nx, (colStart, colEnd) -> {
+                for (int k = from; k < end; k++) {
+                    for (int i = from; i < k; i++) {
+                        double l = L.get(k, i);
+                        if (l == 0) {
+                            continue;
+                        }
+                        for (int j = colStart; j < colEnd; j++) {
+                            xs.set(k, j, xs.get(k, j) - xs.get(i, j) * l);
+                        }
+                    }
+                    if (!unitDiagonal) {
+                        double d = L.get(k, k);
+                        for (int j = colStart; j < colEnd; j++) {
+                            xs.set(k, j, xs.get(k, j) / d);
+                        }
+                    }
+                }
+            });
         }
-		return X;
-	}
-	
+        return writeBack(X, x, n, nx);
+    }
 }
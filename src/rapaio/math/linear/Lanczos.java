@@ -0,0 +1,295 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.math.linear;
+
+import rapaio.core.distributions.Normal;
+import rapaio.math.linear.dense.EigenDecomposition;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.math.linear.dense.SolidRV;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lanczos eigen solver for the largest eigen values of a symmetric operator.
+ * <p>
+ * The operator is used only through products with vectors, one product for each
+ * iteration. The Krylov basis is kept fully orthogonal, and iterations stop when the
+ * residuals of the top k Ritz pairs are below tolerance. When an invariant subspace
+ * is found, the basis is extended with a random orthogonal vector.
+ */
+public final class Lanczos {
+
+    private Lanczos() {
+    }
+
+    /**
+     * Computes the largest eigen values and their eigen vectors
+     *
+     * @param op      symmetric operator
+     * @param k       number of eigen pairs
+     * @param maxRuns maximum number of iterations, the basis does not grow larger than the operator size
+     * @param tol     relative tolerance of the residuals
+     * @return eigen values in descending order and eigen vectors on columns
+     */
+    public static EigenPair topK(SymmetricOperator op, int k, int maxRuns, double tol) {
+        int n = op.size();
+        if (k < 1 || k > n) {
+            throw new IllegalArgumentException("Number of eigen pairs must be between 1 and the operator size.");
+        }
+        int steps = Math.min(n, Math.max(k, maxRuns));
+
+        Normal normal = new Normal();
+        List<double[]> basis = new ArrayList<>();
+        double[] alpha = new double[steps];
+        double[] beta = new double[steps];
+        double[] q = randomOrthogonal(basis, n, normal);
+
+        int len = 0;
+        for (int j = 0; j < steps; j++) {
+            basis.add(q);
+            double[] w = toArray(op.apply(SolidRM.wrap(n, 1, q)));
+            alpha[j] = dot(q, w);
+            // full re-orthogonalization, repeated once for numerical stability
+            for (int pass = 0; pass < 2; pass++) {
+                for (double[] b : basis) {
+                    axpy(-dot(b, w), b, w);
+                }
+            }
+            beta[j] = Math.sqrt(dot(w, w));
+            len = j + 1;
+
+            if (len >= k && (len == steps || converged(alpha, beta, len, k, tol))) {
+                break;
+            }
+            double scale = Math.max(Math.abs(alpha[j]), Math.abs(j > 0 ? beta[j - 1] : 0));
+            if (beta[j] <= 1e-12 * Math.max(scale, Double.MIN_NORMAL)) {
+                // invariant subspace, continue with a new direction
+                beta[j] = 0;
+                q = randomOrthogonal(basis, n, normal);
+            } else {
+                q = w;
+                for (int i = 0; i < n; i++) {
+                    q[i] /= beta[j];
+                }
+            }
+        }
+
+        // eigen vectors of the tridiagonal matrix, computed once
+        double[] d = Arrays.copyOf(alpha, len);
+        double[][] z = new double[len][len];
+        for (int i = 0; i < len; i++) {
+            z[i][i] = 1;
+        }
+        tridiagonalEigen(d, Arrays.copyOf(beta, len), z);
+        int[] order = descending(d);
+
+        // Ritz vectors
+        RM vectors = SolidRM.empty(n, k);
+        RV values = SolidRV.empty(k);
+        for (int c = 0; c < k; c++) {
+            values.set(c, d[order[c]]);
+            for (int i = 0; i < len; i++) {
+                double y = z[i][order[c]];
+                double[] b = basis.get(i);
+                for (int row = 0; row < n; row++) {
+                    vectors.increment(row, c, y * b[row]);
+                }
+            }
+        }
+        return EigenPair.from(values, vectors);
+    }
+
+    /**
+     * Checks the residuals of the top k Ritz pairs. The residual of a Ritz pair is the last
+     * beta times the last component of the eigen vector of the tridiagonal matrix, thus only
+     * the last row of the eigen vectors is computed.
+     */
+    private static boolean converged(double[] alpha, double[] beta, int len, int k, double tol) {
+        double[] d = Arrays.copyOf(alpha, len);
+        double[][] last = new double[1][len];
+        last[0][len - 1] = 1;
+        tridiagonalEigen(d, Arrays.copyOf(beta, len), last);
+        int[] order = descending(d);
+        double scale = Math.max(Math.abs(d[order[0]]), Double.MIN_NORMAL);
+        for (int c = 0; c < k; c++) {
+            if (Math.abs(beta[len - 1] * last[0][order[c]]) > tol * scale) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Implicit QL iterations for a symmetric tridiagonal matrix, derived from the Algol
+     * procedure tql2 as in {@link EigenDecomposition}. The rotations are applied only to
+     * the given rows of the eigen vector matrix, each sweep costing time proportional with
+     * the matrix size times the number of rows.
+     *
+     * @param d diagonal, replaced with the eigen values
+     * @param e off diagonal, element i coupling i and i+1, destroyed
+     * @param z rows of the eigen vector matrix, initially rows of the identity
+     */
+    private static void tridiagonalEigen(double[] d, double[] e, double[][] z) {
+        int n = d.length;
+        e[n - 1] = 0;
+        double f = 0;
+        double tst1 = 0;
+        double eps = Math.pow(2.0, -52.0);
+        for (int l = 0; l < n; l++) {
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while (m < n - 1 && Math.abs(e[m]) > eps * tst1) {
+                m++;
+            }
+            if (m > l) {
+                do {
+                    double g = d[l];
+                    double p = (d[l + 1] - g) / (2.0 * e[l]);
+                    double r = Math.hypot(p, 1.0);
+                    if (p < 0) {
+                        r = -r;
+                    }
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    double dl1 = d[l + 1];
+                    double h = g - d[l];
+                    for (int i = l + 2; i < n; i++) {
+                        d[i] -= h;
+                    }
+                    f += h;
+
+                    p = d[m];
+                    double c = 1.0;
+                    double c2 = c;
+                    double c3 = c;
+                    double el1 = e[l + 1];
+                    double s = 0.0;
+                    double s2 = 0.0;
+                    for (int i = m - 1; i >= l; i--) {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = Math.hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+                        for (double[] row : z) {
+                            h = row[i + 1];
+                            row[i + 1] = s * row[i] + c * h;
+                            row[i] = c * row[i] - s * h;
+                        }
+                    }
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                } while (Math.abs(e[l]) > eps * tst1);
+            }
+            d[l] += f;
+            e[l] = 0;
+        }
+    }
+
+    private static int[] descending(double[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[b], values[a]));
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Eigen decomposition of a small symmetric matrix, with eigen values sorted descending.
+     */
+    static EigenPair symmetricEigen(RM s) {
+        int n = s.getRowCount();
+        EigenDecomposition evd = EigenDecomposition.from(s);
+        double[] ev = evd.getRealEigenvalues();
+        RM v = evd.getV();
+        int[] order = descending(ev);
+        RV values = SolidRV.empty(n);
+        RM vectors = SolidRM.empty(n, n);
+        for (int c = 0; c < n; c++) {
+            values.set(c, ev[order[c]]);
+            for (int i = 0; i < n; i++) {
+                vectors.set(i, c, v.get(i, order[c]));
+            }
+        }
+        return EigenPair.from(values, vectors);
+    }
+
+    private static double[] randomOrthogonal(List<double[]> basis, int n, Normal normal) {
+        while (true) {
+            double[] q = new double[n];
+            for (int i = 0; i < n; i++) {
+                q[i] = normal.sampleNext();
+            }
+            for (int pass = 0; pass < 2; pass++) {
+                for (double[] b : basis) {
+                    axpy(-dot(b, q), b, q);
+                }
+            }
+            double norm = Math.sqrt(dot(q, q));
+            if (norm > 1e-8) {
+                for (int i = 0; i < n; i++) {
+                    q[i] /= norm;
+                }
+                return q;
+            }
+        }
+    }
+
+    private static double[] toArray(RM v) {
+        double[] w = new double[v.getRowCount()];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = v.get(i, 0);
+        }
+        return w;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double s = 0;
+        for (int i = 0; i < a.length; i++) {
+            s += a[i] * b[i];
+        }
+        return s;
+    }
+
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            y[i] += a * x[i];
+        }
+    }
+}
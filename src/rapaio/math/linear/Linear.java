@@ -51,18 +51,12 @@ public final class Linear {
 
         int n = ref.getRowCount();
         int nx = X.getColCount();
-        double[][] L = new double[n][n];
-        for (int i = 0; i < n; i++) {
-        	for (int j = 0; j < n; j++) {
-        		L[i][j] = ref.get(i, j);
-        	}
-        }
-        
+
         SubstitutionStrategy sStrategy = new ForwardSubstitution();
-        X = sStrategy.getSubstitution(n, nx, X, L);
+        X = sStrategy.getSubstitution(n, nx, X, ref);
         
         sStrategy = new BackwardSubstitution();
-        X = sStrategy.getSubstitution(n, nx, X, L);
+        X = sStrategy.getSubstitution(n, nx, X, ref);
         
         return X;
     }
@@ -139,12 +139,25 @@ public interface RM extends Serializable, Printable {
     }
 
     /**
-     * @return new transposed matrix
+     * @return transposed matrix, dense matrices return a view which shares storage
      */
     RM t();
 
+    /**
+     * Matrix multiplication. Small products are computed directly, larger ones
+     * with the blocked parallel algorithm, see {@link MatrixMultiplication#blocked(RM, RM)}.
+     *
+     * @param B right matrix
+     * @return new matrix with the product
+     */
     default RM dot(RM B) {
-        return MatrixMultiplication.ikjParallel(this, B);
+        if (getColCount() != B.getRowCount())
+            throw new IllegalArgumentException(String.format(
+                    "Matrices are not conform for multiplication: [%d x %d] x [%d x %d]", getRowCount(), getColCount(), B.getRowCount(), B.getColCount()));
+        if ((long) getRowCount() * getColCount() * B.getColCount() < MatrixMultiplication.BLOCKED_THRESHOLD) {
+            return MatrixMultiplication.ikjAlgorithm(this, B);
+        }
+        return MatrixMultiplication.blocked(this, B);
     }
 
     default RM dot(double x) {
@@ -234,22 +247,12 @@ public interface RM extends Serializable, Printable {
     }
 
     default RM scatter() {
-        RM scatter = SolidRM.empty(getColCount(), getColCount());
         double[] mean = new double[getColCount()];
         for (int i = 0; i < getColCount(); i++) {
             mean[i] = mapCol(i).mean().getValue();
         }
-        for (int k = 0; k < getRowCount(); k++) {
-            double[] row = new double[getColCount()];
-            for (int i = 0; i < getColCount(); i++)
-                row[i] = get(k, i) - mean[i];
-            for (int i = 0; i < row.length; i++) {
-                for (int j = 0; j < row.length; j++) {
-                    scatter.increment(i, j, row[i] * row[j]);
-                }
-            }
-        }
-        return scatter;
+        RM centered = SolidRM.fill(getRowCount(), getColCount(), (r, c) -> get(r, c) - mean[c]);
+        return centered.t().dot(centered);
     }
 
     ///////////////////////
@@ -283,7 +286,7 @@ public interface RM extends Serializable, Printable {
 
     DoubleStream valueStream();
 
-    RM solidCopy();
+    SolidRM solidCopy();
 
     default String getSummary() {
 
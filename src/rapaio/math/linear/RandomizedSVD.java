@@ -0,0 +1,142 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.math.linear;
+
+import rapaio.core.distributions.Normal;
+import rapaio.math.linear.dense.MatrixMultiplication;
+import rapaio.math.linear.dense.QRDecomposition;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.math.linear.dense.SolidRV;
+import rapaio.util.FJPool;
+
+/**
+ * Randomized truncated singular value decomposition, following the range finder
+ * of Halko, Martinsson and Tropp.
+ * <p>
+ * An orthonormal basis for the dominant right singular subspace is found by applying
+ * the scatter operator {@code A'*A} to a random block of {@code k + oversampling} vectors,
+ * followed by a few power iterations. The small projected problem is solved exactly.
+ * The scatter matrix is never built, each product streams over the rows of A, so
+ * the cost is {@code O(rows * cols * (k + oversampling))} for each pass over data.
+ */
+public class RandomizedSVD {
+
+    private final RM a;
+    private final RV mean;
+    private final RV s;
+    private final RM v;
+
+    /**
+     * Computes the top k singular values and right singular vectors,
+     * with an oversampling of 10 vectors and 2 power iterations.
+     *
+     * @param a matrix to decompose
+     * @param k number of singular values
+     * @return decomposition
+     */
+    public static RandomizedSVD from(RM a, int k) {
+        return from(a, null, k, 10, 2);
+    }
+
+    /**
+     * Computes the top k singular values and right singular vectors of a centered matrix.
+     *
+     * @param a               matrix to decompose
+     * @param mean            values subtracted from each row of a, if null the matrix is not centered
+     * @param k               number of singular values
+     * @param oversampling    number of additional random vectors used to find the range
+     * @param powerIterations number of power iterations used to improve the basis
+     * @return decomposition
+     */
+    public static RandomizedSVD from(RM a, RV mean, int k, int oversampling, int powerIterations) {
+        return new RandomizedSVD(a, mean, k, oversampling, powerIterations);
+    }
+
+    private RandomizedSVD(RM a, RV mean, int k, int oversampling, int powerIterations) {
+        int n = a.getColCount();
+        if (k < 1 || k > n) {
+            throw new IllegalArgumentException("Number of singular values must be between 1 and the number of columns.");
+        }
+        if (oversampling < 0 || powerIterations < 0) {
+            throw new IllegalArgumentException("Oversampling and power iterations cannot be negative.");
+        }
+        this.a = a;
+        this.mean = mean;
+        SymmetricOperator op = SymmetricOperator.scatter(a, mean);
+        int l = Math.min(n, k + oversampling);
+
+        Normal normal = new Normal();
+        RM q = SolidRM.fill(n, l, (r, c) -> normal.sampleNext());
+        for (int i = 0; i <= powerIterations; i++) {
+            q = QRDecomposition.from(op.apply(q)).getQ();
+        }
+
+        // project on the basis and solve the small symmetric problem
+        RM b = q.t().dot(op.apply(q));
+        RM sym = SolidRM.fill(l, l, (r, c) -> (b.get(r, c) + b.get(c, r)) / 2);
+        EigenPair ep = Lanczos.symmetricEigen(sym);
+
+        s = SolidRV.empty(k);
+        for (int i = 0; i < k; i++) {
+            s.set(i, Math.sqrt(Math.max(0, ep.getRV().get(i))));
+        }
+        v = q.dot(ep.getRM().rangeCols(0, k));
+    }
+
+    /**
+     * @return singular values in descending order
+     */
+    public RV getS() {
+        return s;
+    }
+
+    /**
+     * @return right singular vectors, one on each column
+     */
+    public RM getV() {
+        return v;
+    }
+
+    /**
+     * Computes the left singular vectors as {@code A * V * S^-1}, which takes
+     * an additional pass over the matrix. Columns of zero singular values are zero.
+     *
+     * @return left singular vectors, one on each column
+     */
+    public RM getU() {
+        int m = a.getRowCount();
+        int n = a.getColCount();
+        SolidRM centered = SolidRM.fill(m, n, (r, c) -> (mean == null) ? a.get(r, c) : a.get(r, c) - mean.get(c));
+        SolidRM u = SolidRM.empty(m, v.getColCount());
+        MatrixMultiplication.gemm(1.0, centered, v, u, FJPool.maxThreads());
+        for (int j = 0; j < u.getColCount(); j++) {
+            double sv = s.get(j);
+            for (int i = 0; i < m; i++) {
+                u.set(i, j, sv == 0 ? 0 : u.get(i, j) / sv);
+            }
+        }
+        return u;
+    }
+}
@@ -1,5 +1,73 @@
 package rapaio.math.linear;
 
+import rapaio.math.linear.dense.MatrixMultiplication;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.util.FJPool;
+
+/**
+ * Solves triangular systems of equations in place. Rows are solved in blocks, the
+ * contribution of already solved blocks being removed with a blocked matrix multiplication,
+ * while columns of the right hand side are processed in parallel.
+ */
 public abstract class SubstitutionStrategy {
-	public abstract RM getSubstitution(int n, int nx, RM X, double[][] L);
+
+    /**
+     * Number of rows solved by substitution at once
+     */
+    protected static final int BLOCK = 64;
+
+    protected final boolean unitDiagonal;
+
+    protected SubstitutionStrategy(boolean unitDiagonal) {
+        this.unitDiagonal = unitDiagonal;
+    }
+
+    /**
+     * Solves a triangular system. Only the cells below the main diagonal of L are used,
+     * plus the diagonal itself if the diagonal is not assumed to be unit.
+     *
+     * @param n  number of equations
+     * @param nx number of columns of the right hand side
+     * @param X  right hand side, overwritten with the solution
+     * @param L  lower triangular matrix
+     * @return solution
+     */
+    public abstract RM getSubstitution(int n, int nx, RM X, RM L);
+
+    public RM getSubstitution(int n, int nx, RM X, double[][] L) {
+        return getSubstitution(n, nx, X, SolidRM.copy(L));
+    }
+
+    protected static SolidRM solid(RM X) {
+        return (X instanceof SolidRM) ? (SolidRM) X : X.solidCopy();
+    }
+
+    protected static RM writeBack(RM X, SolidRM x, int n, int nx) {
+        if (X == x) {
+            return X;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < nx; j++) {
+                X.set(i, j, x.get(i, j));
+            }
+        }
+        return X;
+    }
+
+    protected interface ColumnRange {
+        void apply(int start, int end);
+    }
+
+    /**
+     * Applies a computation to ranges of columns, in parallel if the amount of work is large enough.
+     */
+    protected static void byColumns(int nx, long work, ColumnRange range) {
+        int threads = FJPool.maxThreads();
+        if (threads < 2 || nx < 2 || work < MatrixMultiplication.BLOCKED_THRESHOLD) {
+            range.apply(0, nx);
+            return;
+        }
+        int chunks = Math.min(nx, 4 * threads);
+        FJPool.forEach(threads, chunks, c -> range.apply((int) ((long) nx * c / chunks), (int) ((long) nx * (c + 1) / chunks)));
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.math.linear;
+
+import rapaio.math.linear.dense.MatrixMultiplication;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.util.FJPool;
+
+/**
+ * Symmetric linear operator which is known only through its products with
+ * blocks of vectors. It allows eigen solvers to work with matrices which are
+ * too large to be built, like the scatter matrix of a large data set.
+ */
+public interface SymmetricOperator {
+
+    /**
+     * @return number of rows, which is also the number of columns, of the operator
+     */
+    int size();
+
+    /**
+     * Computes the product of the operator with a block of column vectors.
+     *
+     * @param v matrix with {@link #size()} rows
+     * @return new matrix with the product
+     */
+    RM apply(RM v);
+
+    /**
+     * Builds an operator from an explicit symmetric matrix
+     *
+     * @param s symmetric matrix
+     * @return operator backed by the matrix
+     */
+    static SymmetricOperator of(RM s) {
+        if (s.getRowCount() != s.getColCount()) {
+            throw new IllegalArgumentException("Symmetric operator requires a square matrix.");
+        }
+        return new SymmetricOperator() {
+            @Override
+            public int size() {
+                return s.getRowCount();
+            }
+
+            @Override
+            public RM apply(RM v) {
+                return s.dot(v);
+            }
+        };
+    }
+
+    /**
+     * Builds the scatter operator {@code (x - mean)' * (x - mean)} of the rows of a matrix.
+     * The scatter matrix is never built, products are computed by streaming blocks of rows
+     * in parallel, which takes {@code O(rows * cols * v.cols)} time and {@code O(cols * v.cols)} memory.
+     *
+     * @param x    matrix with one observation on each row
+     * @param mean values subtracted from each row, if null the rows are not centered
+     * @return scatter operator
+     */
+    static SymmetricOperator scatter(RM x, RV mean) {
+        if (mean != null && mean.count() != x.getColCount()) {
+            throw new IllegalArgumentException("Mean vector length does not match the number of columns.");
+        }
+        return new SymmetricOperator() {
+
+            private static final int ROWS = 256;
+
+            @Override
+            public int size() {
+                return x.getColCount();
+            }
+
+            @Override
+            public RM apply(RM v) {
+                int n = x.getColCount();
+                int l = v.getColCount();
+                if (v.getRowCount() != n) {
+                    throw new IllegalArgumentException("Vectors length does not match the operator size.");
+                }
+                return FJPool.<RM>reduceRange(FJPool.maxThreads(), 0, x.getRowCount(), (start, end) -> {
+                    SolidRM acc = SolidRM.empty(n, l);
+                    for (int s = start; s < end; s += ROWS) {
+                        int e = Math.min(end, s + ROWS);
+                        SolidRM block = SolidRM.empty(e - s, n);
+                        for (int i = s; i < e; i++) {
+                            for (int j = 0; j < n; j++) {
+                                block.set(i - s, j, (mean == null) ? x.get(i, j) : x.get(i, j) - mean.get(j));
+                            }
+                        }
+                        SolidRM p = SolidRM.empty(e - s, l);
+                        MatrixMultiplication.gemm(1.0, block, v, p, 1);
+                        MatrixMultiplication.gemm(1.0, block.t(), p, acc, 1);
+                    }
+                    return acc;
+                }, RM::plus);
+            }
+        };
+    }
+}
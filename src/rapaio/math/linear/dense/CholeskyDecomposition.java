@@ -29,6 +29,7 @@ import rapaio.math.linear.BackwardSubstitution;
 import rapaio.math.linear.ForwardSubstitution;
 import rapaio.math.linear.RM;
 import rapaio.math.linear.SubstitutionStrategy;
+import rapaio.util.FJPool;
 
 import java.io.Serializable;
 
@@ -51,9 +52,15 @@ public class CholeskyDecomposition implements Serializable {
     private static final long serialVersionUID = -3047433451986241586L;
 
     /**
-     * Array for internal storage of decomposition.
+     * Number of columns factorized at once, the trailing matrix being updated with
+     * a blocked matrix multiplication.
      */
-    private final double[][] L;
+    private static final int BLOCK = 64;
+
+    /**
+     * Internal storage of decomposition.
+     */
+    private final SolidRM L;
 
     /**
      * Row and column dimension (square matrix).
@@ -67,6 +74,11 @@ public class CholeskyDecomposition implements Serializable {
 
     /**
      * Cholesky algorithm for symmetric and positive definite matrix.
+     * <p>
+     * The factorization is right-looking and blocked. For each block of columns the
+     * diagonal block is factorized, the panel below it is solved against the diagonal
+     * factor and the trailing lower triangle is updated in parallel with the product
+     * of the panel and its transpose.
      *
      * @param A Square, symmetric matrix.
      */
@@ -75,31 +87,62 @@ public class CholeskyDecomposition implements Serializable {
 
         // Initialize.
         n = A.getRowCount();
-        L = new double[n][n];
         isspd = (A.getColCount() == n);
-
-        // Main loop.
-        for (int j = 0; j < n; j++) {
-            double[] Lrowj = L[j];
-            double d = 0.0;
+        for (int j = 0; isspd && j < n; j++) {
             for (int k = 0; k < j; k++) {
-                double[] Lrowk = L[k];
-                double s = 0.0;
-                for (int i = 0; i < k; i++) {
-                    s += Lrowk[i] * Lrowj[i];
-                }
-                Lrowj[k] = s = (A.get(j, k) - s) / L[k][k];
-                d = d + s * s;
                 if (A.get(k, j) != A.get(j, k)) {
                     isspd = false;
+                    break;
                 }
             }
-            d = A.get(j, j) - d;
-            if (d <= 0.0)
-                isspd = false;
-            L[j][j] = Math.sqrt(Math.max(d, 0.0));
-            for (int k = j + 1; k < n; k++) {
-                L[j][k] = 0.0;
+        }
+        L = SolidRM.empty(n, n);
+        double[] l = L.array();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i && j < A.getColCount(); j++) {
+                l[i * n + j] = A.get(i, j);
+            }
+        }
+
+        // Main loop over blocks of columns.
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+
+            // factorize diagonal block
+            for (int j = start; j < end; j++) {
+                double d = 0.0;
+                for (int k = start; k < j; k++) {
+                    double s = 0.0;
+                    for (int i = start; i < k; i++) {
+                        s += l[k * n + i] * l[j * n + i];
+                    }
+                    s = (l[j * n + k] - s) / l[k * n + k];
+                    l[j * n + k] = s;
+                    d = d + s * s;
+                }
+                d = l[j * n + j] - d;
+                if (d <= 0.0)
+                    isspd = false;
+                l[j * n + j] = Math.sqrt(Math.max(d, 0.0));
+            }
+            if (end == n) {
+                break;
+            }
+
+            // solve panel, L21 * L11' = A21, by forward substitution on transposed panel
+            SolidRM panel = L.rangeRows(end, n).rangeCols(start, end);
+            new ForwardSubstitution().getSubstitution(end - start, n - end, panel.t(),
+                    L.rangeRows(start, end).rangeCols(start, end));
+
+            // update trailing lower triangle, A22 = A22 - L21 * L21'
+            MatrixMultiplication.gemmLower(-1.0, panel, panel.t(),
+                    L.rangeRows(end, n).rangeCols(end, n), FJPool.maxThreads());
+        }
+
+        // clean upper triangle
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                l[i * n + j] = 0.0;
             }
         }
     }
@@ -166,7 +209,7 @@ public class CholeskyDecomposition implements Serializable {
      * @return L triangular factor
      */
     public RM getL() {
-        return SolidRM.wrap(L);
+        return L.solidCopy();
     }
 
     /**
@@ -56,7 +56,9 @@ public class EigenDecomposition implements Serializable {
     private double[] eigenValues1, eigenValues2;
 
     // Array for internal storage of eigenvectors.
-    private RM eigenVectors;
+    private SolidRM eigenVectors;
+    // Row major storage of eigenvectors, used directly by the algorithms
+    private double[] v;
 
     //Array for internal storage of nonsymmetric Hessenberg form.
     private double[][] nonSymHessenbergForm;
@@ -72,20 +74,18 @@ public class EigenDecomposition implements Serializable {
      */
     private EigenDecomposition(RM a) {
         dimension = a.getColCount();
-        eigenVectors = SolidRM.empty(dimension, dimension);
         eigenValues1 = new double[dimension];
         eigenValues2 = new double[dimension];
 
         if (isSymmetric(a)) {
-            for (int row = 0; row < dimension; row++) {
-                for (int col = 0; col < dimension; col++) {
-                    eigenVectors.set(row, col, a.get(row, col));
-                }
-            }
+            eigenVectors = a.solidCopy();
+            v = eigenVectors.array();
             tridiagonalize();
             diagonalize();
 
         } else {
+            eigenVectors = SolidRM.empty(dimension, dimension);
+            v = eigenVectors.array();
             nonSymHessenbergForm = new double[dimension][dimension];
             ort = new double[dimension];
 
@@ -123,7 +123,7 @@ public class EigenDecomposition implements Serializable {
         //  Fortran subroutine in EISPACK.
 
         for (int col = 0; col < dimension; col++) {
-            eigenValues1[col] = eigenVectors.get(dimension - 1, col);
+            eigenValues1[col] = v[(dimension - 1) * dimension + col];
         }
 
         // Householder reduction to tridiagonal form.
@@ -140,9 +140,9 @@ public class EigenDecomposition implements Serializable {
             if (scale == 0.0) {
                 eigenValues2[i] = eigenValues1[i - 1];
                 for (int j = 0; j < i; j++) {
-                    eigenValues1[j] = eigenVectors.get(i - 1, j);
-                    eigenVectors.set(i, j, 0.0);
-                    eigenVectors.set(j, i, 0.0);
+                    eigenValues1[j] = v[(i - 1) * dimension + j];
+                    v[i * dimension + j] = 0.0;
+                    v[j * dimension + i] = 0.0;
                 }
             } else {
 
@@ -168,11 +168,11 @@ public class EigenDecomposition implements Serializable {
 
                 for (int j = 0; j < i; j++) {
                     f = eigenValues1[j];
-                    eigenVectors.set(j, i, f);
-                    g = eigenValues2[j] + eigenVectors.get(j, j) * f;
+                    v[j * dimension + i] = f;
+                    g = eigenValues2[j] + v[j * dimension + j] * f;
                     for (int k = j + 1; k <= i - 1; k++) {
-                        g += eigenVectors.get(k, j) * eigenValues1[k];
-                        eigenValues2[k] += eigenVectors.get(k, j) * f;
+                        g += v[k * dimension + j] * eigenValues1[k];
+                        eigenValues2[k] += v[k * dimension + j] * f;
                     }
                     eigenValues2[j] = g;
                 }
@@ -189,10 +189,10 @@ public class EigenDecomposition implements Serializable {
                     f = eigenValues1[j];
                     g = eigenValues2[j];
                     for (int k = j; k <= i - 1; k++) {
-                        eigenVectors.increment(k, j, -(f * eigenValues2[k] + g * eigenValues1[k]));
+                        v[k * dimension + j] -= f * eigenValues2[k] + g * eigenValues1[k];
                     }
-                    eigenValues1[j] = eigenVectors.get(i - 1, j);
-                    eigenVectors.set(i, j, 0.0);
+                    eigenValues1[j] = v[(i - 1) * dimension + j];
+                    v[i * dimension + j] = 0.0;
                 }
             }
             eigenValues1[i] = h;
@@ -201,32 +201,32 @@ public class EigenDecomposition implements Serializable {
         // Accumulate transformations.
 
         for (int i = 0; i < dimension - 1; i++) {
-            eigenVectors.set(dimension - 1, i, eigenVectors.get(i, i));
-            eigenVectors.set(i, i, 1.0);
+            v[(dimension - 1) * dimension + i] = v[i * dimension + i];
+            v[i * dimension + i] = 1.0;
             double h = eigenValues1[i + 1];
             if (h != 0.0) {
                 for (int k = 0; k <= i; k++) {
-                    eigenValues1[k] = eigenVectors.get(k, i + 1) / h;
+                    eigenValues1[k] = v[k * dimension + i + 1] / h;
                 }
                 for (int j = 0; j <= i; j++) {
                     double g = 0.0;
                     for (int k = 0; k <= i; k++) {
-                        g += eigenVectors.get(k, i + 1) * eigenVectors.get(k, j);
+                        g += v[k * dimension + i + 1] * v[k * dimension + j];
                     }
                     for (int k = 0; k <= i; k++) {
-                        eigenVectors.increment(k, j, -g * eigenValues1[k]);
+                        v[k * dimension + j] -= g * eigenValues1[k];
                     }
                 }
             }
             for (int k = 0; k <= i; k++) {
-                eigenVectors.set(k, i + 1, 0.0);
+                v[k * dimension + i + 1] = 0.0;
             }
         }
         for (int j = 0; j < dimension; j++) {
-            eigenValues1[j] = eigenVectors.get(dimension - 1, j);
-            eigenVectors.set(dimension - 1, j, 0.0);
+            eigenValues1[j] = v[(dimension - 1) * dimension + j];
+            v[(dimension - 1) * dimension + j] = 0.0;
         }
-        eigenVectors.set(dimension - 1, dimension - 1, 1.0);
+        v[(dimension - 1) * dimension + dimension - 1] = 1.0;
         eigenValues2[0] = 0.0;
     }
 
@@ -310,9 +310,9 @@ public class EigenDecomposition implements Serializable {
                         // Accumulate transformation.
 
                         for (int k = 0; k < dimension; k++) {
-                            h = eigenVectors.get(k, i + 1);
-                            eigenVectors.set(k, i + 1, s * eigenVectors.get(k, i) + c * h);
-                            eigenVectors.set(k, i, c * eigenVectors.get(k, i) - s * h);
+                            h = v[k * dimension + i + 1];
+                            v[k * dimension + i + 1] = s * v[k * dimension + i] + c * h;
+                            v[k * dimension + i] = c * v[k * dimension + i] - s * h;
                         }
                     }
                     p = -s * s2 * c3 * el1 * eigenValues2[l] / dl1;
@@ -342,9 +342,9 @@ public class EigenDecomposition implements Serializable {
                 eigenValues1[k] = eigenValues1[i];
                 eigenValues1[i] = p;
                 for (int j = 0; j < dimension; j++) {
-                    p = eigenVectors.get(j, i);
-                    eigenVectors.set(j, i, eigenVectors.get(j, k));
-                    eigenVectors.set(j, k, p);
+                    p = v[j * dimension + i];
+                    v[j * dimension + i] = v[j * dimension + k];
+                    v[j * dimension + k] = p;
                 }
             }
         }
@@ -419,7 +419,7 @@ public class EigenDecomposition implements Serializable {
 
         for (int i = 0; i < dimension; i++) {
             for (int j = 0; j < dimension; j++) {
-                eigenVectors.set(i, j, (i == j ? 1.0 : 0.0));
+                v[i * dimension + j] = (i == j ? 1.0 : 0.0);
             }
         }
 
@@ -431,12 +431,12 @@ public class EigenDecomposition implements Serializable {
                 for (int j = m; j <= high; j++) {
                     double g = 0.0;
                     for (int i = m; i <= high; i++) {
-                        g += ort[i] * eigenVectors.get(i, j);
+                        g += ort[i] * v[i * dimension + j];
                     }
                     // Double division avoids possible underflow
                     g = (g / ort[m]) / nonSymHessenbergForm[m][m - 1];
                     for (int i = m; i <= high; i++) {
-                        eigenVectors.increment(i, j, g * ort[i]);
+                        v[i * dimension + j] += g * ort[i];
                     }
                 }
             }
@@ -578,9 +578,9 @@ public class EigenDecomposition implements Serializable {
                     // Accumulate transformations
 
                     for (int i = low; i <= high; i++) {
-                        z = eigenVectors.get(i, n - 1);
-                        eigenVectors.set(i, n - 1, q * z + p * eigenVectors.get(i, n));
-                        eigenVectors.set(i, n, q * eigenVectors.get(i, n) - p * z);
+                        z = v[i * dimension + n - 1];
+                        v[i * dimension + n - 1] = q * z + p * v[i * dimension + n];
+                        v[i * dimension + n] = q * v[i * dimension + n] - p * z;
                     }
 
                     // Complex pair
@@ -737,13 +737,13 @@ public class EigenDecomposition implements Serializable {
                         // Accumulate transformations
 
                         for (int i = low; i <= high; i++) {
-                            p = x * eigenVectors.get(i, k) + y * eigenVectors.get(i, k + 1);
+                            p = x * v[i * dimension + k] + y * v[i * dimension + k + 1];
                             if (notlast) {
-                                p = p + z * eigenVectors.get(i, k + 2);
-                                eigenVectors.set(i, k + 2, eigenVectors.get(i, k + 2) - p * r);
+                                p = p + z * v[i * dimension + k + 2];
+                                v[i * dimension + k + 2] -= p * r;
                             }
-                            eigenVectors.set(i, k, eigenVectors.get(i, k) - p);
-                            eigenVectors.set(i, k + 1, eigenVectors.get(i, k + 1) - p * q);
+                            v[i * dimension + k] -= p;
+                            v[i * dimension + k + 1] -= p * q;
                         }
                     }  // (s != 0)
                 }  // k loop
@@ -890,7 +890,7 @@ public class EigenDecomposition implements Serializable {
         for (int i = 0; i < nn; i++) {
             if (i < low | i > high) {
                 for (int j = i; j < nn; j++) {
-                    eigenVectors.set(i, j, nonSymHessenbergForm[i][j]);
+                    v[i * dimension + j] = nonSymHessenbergForm[i][j];
                 }
             }
         }
@@ -901,9 +901,9 @@ public class EigenDecomposition implements Serializable {
             for (int i = low; i <= high; i++) {
                 z = 0.0;
                 for (int k = low; k <= Math.min(j, high); k++) {
-                    z = z + eigenVectors.get(i, k) * nonSymHessenbergForm[k][j];
+                    z = z + v[i * dimension + k] * nonSymHessenbergForm[k][j];
                 }
-                eigenVectors.set(i, j, z);
+                v[i * dimension + j] = z;
             }
         }
     }
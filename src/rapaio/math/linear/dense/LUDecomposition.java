@@ -24,8 +24,11 @@
 
 package rapaio.math.linear.dense;
 
+import rapaio.math.linear.BackwardSubstitution;
+import rapaio.math.linear.ForwardSubstitution;
 import rapaio.math.linear.RM;
 import rapaio.printer.Printable;
+import rapaio.util.FJPool;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -49,7 +52,7 @@ public class LUDecomposition implements Serializable, Printable {
     private static final long serialVersionUID = -4226024886673558685L;
 
     // internal storage of decomposition
-    private RM LU;
+    private SolidRM LU;
     private int rowCount;
     private int colCount;
     // pivot sign
@@ -65,7 +68,7 @@ public class LUDecomposition implements Serializable, Printable {
     public static LUDecomposition from(RM A) {
         if(A.getRowCount()<A.getColCount())
             throw new IllegalArgumentException("for LU decomposition, rows must be greater or equal with cols.");
-        return new LUDecomposition(A, Method.GAUSSIAN_ELIMINATION);
+        return new LUDecomposition(A, Method.BLOCKED);
     }
 
     public static LUDecomposition from(RM A, Method method) {
@@ -98,7 +101,7 @@ public class LUDecomposition implements Serializable, Printable {
     public RM getL() {
         RM X = SolidRM.empty(rowCount, colCount);
         for (int i = 0; i < rowCount; i++) {
-            for (int j = 0; j <= i; j++) {
+            for (int j = 0; j <= i && j < colCount; j++) {
                 if (i > j) {
                     X.set(i, j, LU.get(i, j));
                 } else if (i == j) {
@@ -168,30 +171,14 @@ public class LUDecomposition implements Serializable, Printable {
 
         // Copy right hand side with pivoting
         int nx = B.getColCount();
-        RM X = B.mapRows(piv).solidCopy();
+        SolidRM X = B.mapRows(piv).solidCopy();
+        SolidRM square = LU.rangeRows(0, colCount);
 
         // Solve L*Y = B(piv,:)
+        new ForwardSubstitution(true).getSubstitution(colCount, nx, X, square);
 
-        for (int k = 0; k < colCount; k++) {
-            for (int i = k + 1; i < colCount; i++) {
-                for (int j = 0; j < nx; j++) {
-                    X.set(i, j, X.get(i, j) - X.get(k, j) * LU.get(i, k));
-                }
-            }
-        }
-        
         // Solve U*X = Y;
-
-        for (int k = colCount - 1; k >= 0; k--) {
-            for (int j = 0; j < nx; j++) {
-                X.set(k, j, X.get(k, j) / LU.get(k, k));
-            }
-            for (int i = 0; i < k; i++) {
-                for (int j = 0; j < nx; j++) {
-                    X.set(i, j, X.get(i, j) - X.get(k, j) * LU.get(i, k));
-                }
-            }
-        }
+        new BackwardSubstitution().getSubstitution(colCount, nx, X, square.t());
         return X;
     }
 
@@ -225,6 +212,8 @@ public class LUDecomposition implements Serializable, Printable {
                         lu.piv[i] = i;
                     }
                     lu.pivSign = 1;
+                    double[] w = lu.LU.array();
+                    int n = lu.colCount;
                     double[] LUcolj = new double[lu.rowCount];
 
                     // Outer loop.
@@ -232,7 +221,7 @@ public class LUDecomposition implements Serializable, Printable {
 
                         // Make a copy of the j-th column to localize references.
                         for (int i = 0; i < lu.rowCount; i++) {
-                            LUcolj[i] = lu.LU.get(i, j);
+                            LUcolj[i] = w[i * n + j];
                         }
 
                         // Apply previous transformations.
@@ -244,10 +233,10 @@ public class LUDecomposition implements Serializable, Printable {
                             int kmax = Math.min(i, j);
                             double s = 0.0;
                             for (int k = 0; k < kmax; k++) {
-                                s += lu.LU.get(i, k) * LUcolj[k];
+                                s += w[i * n + k] * LUcolj[k];
                             }
                             LUcolj[i] -= s;
-                            lu.LU.set(i, j, LUcolj[i]);
+                            w[i * n + j] = LUcolj[i];
                         }
 
                         // Find pivot and exchange if necessary.
@@ -260,9 +249,9 @@ public class LUDecomposition implements Serializable, Printable {
                         }
                         if (p != j) {
                             for (int k = 0; k < lu.LU.getColCount(); k++) {
-                                double t = lu.LU.get(p, k);
-                                lu.LU.set(p, k, lu.LU.get(j, k));
-                                lu.LU.set(j, k, t);
+                                double t = w[p * n + k];
+                                w[p * n + k] = w[j * n + k];
+                                w[j * n + k] = t;
                             }
                             int k = lu.piv[p];
                             lu.piv[p] = lu.piv[j];
@@ -271,9 +260,9 @@ public class LUDecomposition implements Serializable, Printable {
                         }
 
                         // Compute multipliers.
-                        if (j < lu.LU.getRowCount() & lu.LU.get(j, j) != 0.0) {
+                        if (j < lu.LU.getRowCount() & w[j * n + j] != 0.0) {
                             for (int i = j + 1; i < lu.LU.getRowCount(); i++) {
-                                lu.LU.set(i, j, lu.LU.get(i, j) / lu.LU.get(j, j));
+                                w[i * n + j] /= w[j * n + j];
                             }
                         }
                     }
@@ -299,21 +288,23 @@ public class LUDecomposition implements Serializable, Printable {
                         lu.piv[i] = i;
                     }
                     lu.pivSign = 1;
+                    double[] w = lu.LU.array();
+                    int n = lu.colCount;
                     // Main loop.
                     for (int k = 0; k < lu.colCount; k++) {
                         // Find pivot.
                         int p = k;
                         for (int i = k + 1; i < lu.rowCount; i++) {
-                            if (Math.abs(lu.LU.get(i, k)) > Math.abs(lu.LU.get(p, k))) {
+                            if (Math.abs(w[i * n + k]) > Math.abs(w[p * n + k])) {
                                 p = i;
                             }
                         }
                         // Exchange if necessary.
                         if (p != k) {
                             for (int j = 0; j < lu.colCount; j++) {
-                                double t = lu.LU.get(p, j);
-                                lu.LU.set(p, j, lu.LU.get(k, j));
-                                lu.LU.set(k, j, t);
+                                double t = w[p * n + j];
+                                w[p * n + j] = w[k * n + j];
+                                w[k * n + j] = t;
                             }
                             int t = lu.piv[p];
                             lu.piv[p] = lu.piv[k];
@@ -321,19 +312,101 @@ public class LUDecomposition implements Serializable, Printable {
                             lu.pivSign = -lu.pivSign;
                         }
                         // Compute multipliers and eliminate k-th column.
-                        if (lu.LU.get(k, k) != 0.0) {
+                        if (w[k * n + k] != 0.0) {
                             for (int i = k + 1; i < lu.rowCount; i++) {
-                                lu.LU.set(i, k, lu.LU.get(i, k) / lu.LU.get(k, k));
+                                w[i * n + k] /= w[k * n + k];
                                 for (int j = k + 1; j < lu.colCount; j++) {
-                                    lu.LU.set(i, j, lu.LU.get(i, j) - lu.LU.get(i, k) * lu.LU.get(k, j));
+                                    w[i * n + j] -= w[i * n + k] * w[k * n + j];
                                 }
                             }
                         }
                     }
                 };
             }
+        },
+
+        /**
+         * Blocked right-looking LU Decomposition with partial pivoting. Blocks of columns
+         * are factorized by Gaussian elimination, the rows of U to the right of the block
+         * are obtained by forward substitution and the trailing matrix is updated in
+         * parallel by a blocked matrix multiplication.
+         */
+        BLOCKED {
+            @Override
+            BiConsumer<LUDecomposition, RM> method() {
+                return (lu, A) -> {
+
+                    // Initialize.
+                    lu.LU = A.solidCopy();
+                    lu.rowCount = A.getRowCount();
+                    lu.colCount = A.getColCount();
+                    lu.piv = new int[lu.rowCount];
+                    for (int i = 0; i < lu.rowCount; i++) {
+                        lu.piv[i] = i;
+                    }
+                    lu.pivSign = 1;
+                    SolidRM W = lu.LU;
+                    double[] w = W.array();
+                    int m = lu.rowCount;
+                    int n = lu.colCount;
+
+                    // Main loop over blocks of columns.
+                    for (int start = 0; start < n; start += BLOCK) {
+                        int end = Math.min(n, start + BLOCK);
+
+                        // Factorize panel of columns.
+                        for (int k = start; k < end; k++) {
+                            // Find pivot.
+                            int p = k;
+                            for (int i = k + 1; i < m; i++) {
+                                if (Math.abs(w[i * n + k]) > Math.abs(w[p * n + k])) {
+                                    p = i;
+                                }
+                            }
+                            // Exchange entire rows if necessary.
+                            if (p != k) {
+                                for (int j = 0; j < n; j++) {
+                                    double t = w[p * n + j];
+                                    w[p * n + j] = w[k * n + j];
+                                    w[k * n + j] = t;
+                                }
+                                int t = lu.piv[p];
+                                lu.piv[p] = lu.piv[k];
+                                lu.piv[k] = t;
+                                lu.pivSign = -lu.pivSign;
+                            }
+                            // Compute multipliers and eliminate k-th column inside the panel.
+                            if (w[k * n + k] != 0.0) {
+                                for (int i = k + 1; i < m; i++) {
+                                    w[i * n + k] /= w[k * n + k];
+                                    for (int j = k + 1; j < end; j++) {
+                                        w[i * n + j] -= w[i * n + k] * w[k * n + j];
+                                    }
+                                }
+                            }
+                        }
+                        if (end == n) {
+                            break;
+                        }
+
+                        // Rows of U right to the panel, U12 = L11^-1 * A12.
+                        SolidRM U12 = W.rangeRows(start, end).rangeCols(end, n);
+                        new ForwardSubstitution(true).getSubstitution(end - start, n - end, U12,
+                                W.rangeRows(start, end).rangeCols(start, end));
+
+                        // Update trailing matrix, A22 = A22 - L21 * U12.
+                        MatrixMultiplication.gemm(-1.0, W.rangeRows(end, m).rangeCols(start, end), U12,
+                                W.rangeRows(end, m).rangeCols(end, n), FJPool.maxThreads());
+                    }
+                };
+            }
         };
 
+        /**
+         * Number of columns factorized at once by the blocked method
+         */
+        private static final int BLOCK = 64;
+
         abstract BiConsumer<LUDecomposition, RM> method();
     }
 }
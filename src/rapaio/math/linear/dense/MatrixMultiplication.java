@@ -25,6 +25,7 @@
 package rapaio.math.linear.dense;
 
 import rapaio.math.linear.RM;
+import rapaio.util.FJPool;
 
 import java.util.stream.IntStream;
 
@@ -34,6 +35,290 @@ import java.util.stream.IntStream;
  * @author Martin Thoma
  */
 public class MatrixMultiplication {
+
+    /**
+     * Number of multiply-add operations above which {@link RM#dot(RM)}
+     * uses the {@link #blocked(RM, RM)} algorithm.
+     */
+    public static final long BLOCKED_THRESHOLD = 32L * 32L * 32L;
+
+    // register block, number of rows of A and columns of B in a micro kernel
+    private static final int MR = 4;
+    private static final int NR = 4;
+    // cache blocks, rows of A, shared dimension and columns of B of a tile
+    private static final int MC = 64;
+    private static final int KC = 256;
+    private static final int NC = 128;
+
+    /**
+     * Multiplies two matrices using a packed, cache and register blocked algorithm.
+     * Tiles of the result are computed in parallel on the shared worker pool.
+     *
+     * @param A left matrix
+     * @param B right matrix
+     * @return product matrix
+     */
+    public static RM blocked(RM A, RM B) {
+        return blocked(A, B, FJPool.maxThreads());
+    }
+
+    /**
+     * Multiplies two matrices using a packed, cache and register blocked algorithm.
+     * <p>
+     * Both operands are copied first into contiguous row-major panels: A into
+     * panels of {@code MR} rows and B into panels of {@code NR} columns, each of them
+     * ordered by the shared dimension. The result is split into disjoint tiles of
+     * {@code MC x NC} cells, which are computed independently, walking the shared
+     * dimension in blocks of {@code KC} so that the panels in use stay in cache.
+     *
+     * @param A       left matrix
+     * @param B       right matrix
+     * @param threads number of threads used to compute tiles, if less than 2 runs single threaded
+     * @return product matrix
+     */
+    public static RM blocked(RM A, RM B, int threads) {
+        if (B.getRowCount() != A.getColCount()) {
+            throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+        }
+        SolidRM C = SolidRM.empty(A.getRowCount(), B.getColCount());
+        multiply(1.0, A, B, C, threads, false);
+        return C;
+    }
+
+    /**
+     * Adds to a matrix the scaled product of two matrices, {@code C = C + alpha * A * B},
+     * using the blocked algorithm. The result matrix is updated in place and can be
+     * a view, like a transposed matrix or a range of rows or columns.
+     *
+     * @param alpha   scale factor of the product
+     * @param A       left matrix
+     * @param B       right matrix
+     * @param C       result matrix updated in place
+     * @param threads number of threads used to compute tiles, if less than 2 runs single threaded
+     */
+    public static void gemm(double alpha, RM A, RM B, SolidRM C, int threads) {
+        if (B.getRowCount() != A.getColCount()) {
+            throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+        }
+        if (C.getRowCount() != A.getRowCount() || C.getColCount() != B.getColCount()) {
+            throw new IllegalArgumentException("Result matrix dimensions must agree.");
+        }
+        multiply(alpha, A, B, C, threads, false);
+    }
+
+    /**
+     * Same as {@link #gemm(double, RM, RM, SolidRM, int)}, but only cells on and below the
+     * main diagonal of the result are required. Cells above the diagonal can be
+     * partially updated.
+     */
+    static void gemmLower(double alpha, RM A, RM B, SolidRM C, int threads) {
+        multiply(alpha, A, B, C, threads, true);
+    }
+
+    private static void multiply(double alpha, RM A, RM B, SolidRM C, int threads, boolean lower) {
+        int m = A.getRowCount();
+        int k = A.getColCount();
+        int n = B.getColCount();
+        if (m == 0 || n == 0 || k == 0 || alpha == 0) {
+            return;
+        }
+        double[] ap = packRows(A, m, k);
+        double[] bp = packCols(B, k, n);
+        Target c = new Target(C, alpha, lower);
+
+        int rowTiles = (m + MC - 1) / MC;
+        int colTiles = (n + NC - 1) / NC;
+        int tiles = rowTiles * colTiles;
+        if (threads < 2 || tiles < 2) {
+            for (int t = 0; t < tiles; t++) {
+                tile(ap, bp, c, m, k, n, t / colTiles, t % colTiles);
+            }
+        } else {
+            FJPool.forEach(threads, tiles, t -> tile(ap, bp, c, m, k, n, t / colTiles, t % colTiles));
+        }
+    }
+
+    /**
+     * Packs rows of a matrix in panels of {@code MR} rows, zero padded.
+     * Value (i, p) is stored at {@code ((i / MR) * k + p) * MR + i % MR}.
+     */
+    private static double[] packRows(RM A, int m, int k) {
+        int panels = (m + MR - 1) / MR;
+        double[] ap = new double[panels * MR * k];
+        if (A instanceof SolidRM) {
+            SolidRM S = (SolidRM) A;
+            double[] values = S.array();
+            int step = S.index(0, 1) - S.index(0, 0);
+            for (int i = 0; i < m; i++) {
+                int offset = (i / MR) * k * MR + i % MR;
+                int pos = S.index(i, 0);
+                for (int p = 0; p < k; p++) {
+                    ap[offset + p * MR] = values[pos];
+                    pos += step;
+                }
+            }
+            return ap;
+        }
+        for (int i = 0; i < m; i++) {
+            int offset = (i / MR) * k * MR + i % MR;
+            for (int p = 0; p < k; p++) {
+                ap[offset + p * MR] = A.get(i, p);
+            }
+        }
+        return ap;
+    }
+
+    /**
+     * Packs columns of a matrix in panels of {@code NR} columns, zero padded.
+     * Value (p, j) is stored at {@code ((j / NR) * k + p) * NR + j % NR}.
+     */
+    private static double[] packCols(RM B, int k, int n) {
+        int panels = (n + NR - 1) / NR;
+        double[] bp = new double[panels * NR * k];
+        if (B instanceof SolidRM) {
+            SolidRM S = (SolidRM) B;
+            double[] values = S.array();
+            int step = S.index(0, 1) - S.index(0, 0);
+            for (int p = 0; p < k; p++) {
+                int pos = S.index(p, 0);
+                for (int j = 0; j < n; j++) {
+                    bp[((j / NR) * k + p) * NR + j % NR] = values[pos];
+                    pos += step;
+                }
+            }
+            return bp;
+        }
+        for (int p = 0; p < k; p++) {
+            for (int j = 0; j < n; j++) {
+                bp[((j / NR) * k + p) * NR + j % NR] = B.get(p, j);
+            }
+        }
+        return bp;
+    }
+
+    /**
+     * Storage of the result matrix as seen by the micro kernel.
+     */
+    private static final class Target {
+        private final double[] values;
+        private final int offset;
+        private final int rowStride;
+        private final int colStride;
+        private final double alpha;
+        private final boolean lower;
+
+        Target(SolidRM C, double alpha, boolean lower) {
+            this.values = C.array();
+            this.offset = C.index(0, 0);
+            this.rowStride = C.index(1, 0) - offset;
+            this.colStride = C.index(0, 1) - offset;
+            this.alpha = alpha;
+            this.lower = lower;
+        }
+    }
+
+    private static void tile(double[] ap, double[] bp, Target c, int m, int k, int n, int rowTile, int colTile) {
+        int rowStart = rowTile * MC;
+        int rowEnd = Math.min(m, rowStart + MC);
+        int colStart = colTile * NC;
+        int colEnd = Math.min(n, colStart + NC);
+        if (c.lower && colStart >= rowEnd) {
+            return;
+        }
+        for (int p0 = 0; p0 < k; p0 += KC) {
+            int len = Math.min(k, p0 + KC) - p0;
+            for (int j = colStart; j < colEnd; j += NR) {
+                int bOffset = ((j / NR) * k + p0) * NR;
+                int cols = Math.min(NR, colEnd - j);
+                for (int i = rowStart; i < rowEnd; i += MR) {
+                    if (c.lower && j >= i + MR) {
+                        continue;
+                    }
+                    int aOffset = ((i / MR) * k + p0) * MR;
+                    kernel(ap, aOffset, bp, bOffset, len, c, i, j, Math.min(MR, rowEnd - i), cols);
+                }
+            }
+        }
+    }
+
+    /**
+     * Micro kernel which accumulates the product of an {@code MR x len} panel of A
+     * and a {@code len x NR} panel of B into registers and adds it to the result.
+     */
+    private static void kernel(double[] ap, int aOffset, double[] bp, int bOffset, int len,
+                               Target target, int row, int col, int rows, int cols) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+        for (int p = 0; p < len; p++) {
+            int a = aOffset + p * MR;
+            int b = bOffset + p * NR;
+            double a0 = ap[a];
+            double a1 = ap[a + 1];
+            double a2 = ap[a + 2];
+            double a3 = ap[a + 3];
+            double b0 = bp[b];
+            double b1 = bp[b + 1];
+            double b2 = bp[b + 2];
+            double b3 = bp[b + 3];
+            c00 += a0 * b0;
+            c01 += a0 * b1;
+            c02 += a0 * b2;
+            c03 += a0 * b3;
+            c10 += a1 * b0;
+            c11 += a1 * b1;
+            c12 += a1 * b2;
+            c13 += a1 * b3;
+            c20 += a2 * b0;
+            c21 += a2 * b1;
+            c22 += a2 * b2;
+            c23 += a2 * b3;
+            c30 += a3 * b0;
+            c31 += a3 * b1;
+            c32 += a3 * b2;
+            c33 += a3 * b3;
+        }
+        double[] c = target.values;
+        int rs = target.rowStride;
+        int cs = target.colStride;
+        if (rows == MR && cols == NR && cs == 1 && target.alpha == 1.0) {
+            int r = target.offset + row * rs + col;
+            c[r] += c00;
+            c[r + 1] += c01;
+            c[r + 2] += c02;
+            c[r + 3] += c03;
+            r += rs;
+            c[r] += c10;
+            c[r + 1] += c11;
+            c[r + 2] += c12;
+            c[r + 3] += c13;
+            r += rs;
+            c[r] += c20;
+            c[r + 1] += c21;
+            c[r + 2] += c22;
+            c[r + 3] += c23;
+            r += rs;
+            c[r] += c30;
+            c[r + 1] += c31;
+            c[r + 2] += c32;
+            c[r + 3] += c33;
+            return;
+        }
+        double[] acc = {
+                c00, c01, c02, c03,
+                c10, c11, c12, c13,
+                c20, c21, c22, c23,
+                c30, c31, c32, c33};
+        double alpha = target.alpha;
+        for (int i = 0; i < rows; i++) {
+            int r = target.offset + (row + i) * rs + col * cs;
+            for (int j = 0; j < cols; j++) {
+                c[r + j * cs] += alpha * acc[i * NR + j];
+            }
+        }
+    }
+
     public static RM jama(RM A, RM B) {
         if (B.getRowCount() != A.getColCount()) {
             throw new IllegalArgumentException("Matrix inner dimensions must agree.");
@@ -86,10 +371,10 @@ public class MatrixMultiplication {
         RM C = SolidRM.empty(A.getRowCount(), B.getColCount());
         for (int i = 0; i < A.getRowCount(); i++) {
             for (int k = 0; k < A.getColCount(); k++) {
-                if (A.get(i, k) == 0)
-                    continue;
+                // zeros are not skipped, such that 0 * NaN gives NaN as in other algorithms
+                double a = A.get(i, k);
                 for (int j = 0; j < B.getColCount(); j++) {
-                    C.increment(i, j, A.get(i, k) * B.get(k, j));
+                    C.increment(i, j, a * B.get(k, j));
                 }
             }
         }
@@ -100,10 +385,10 @@ public class MatrixMultiplication {
         RM C = SolidRM.empty(A.getRowCount(), B.getColCount());
         IntStream.range(0, A.getRowCount()).parallel().forEach(i -> {
             for (int k = 0; k < A.getColCount(); k++) {
-                if (A.get(i, k) == 0)
-                    continue;
+                // zeros are not skipped, such that 0 * NaN gives NaN as in other algorithms
+                double a = A.get(i, k);
                 for (int j = 0; j < B.getColCount(); j++) {
-                    C.increment(i, j, A.get(i, k) * B.get(k, j));
+                    C.increment(i, j, a * B.get(k, j));
                 }
             }
         });
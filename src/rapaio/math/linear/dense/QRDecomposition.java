@@ -26,6 +26,7 @@ package rapaio.math.linear.dense;
 
 import rapaio.math.linear.RM;
 import rapaio.math.linear.RV;
+import rapaio.util.FJPool;
 
 import java.io.Serializable;
 
@@ -47,46 +48,118 @@ public class QRDecomposition implements Serializable {
 
     private static final long serialVersionUID = -8322866575684242727L;
 
-    private RM QR;
+    private SolidRM QR;
     private RV Rdiag;
 
+    /**
+     * Number of columns factorized at once, the trailing matrix being updated with
+     * blocked matrix multiplications.
+     */
+    private static final int BLOCK = 64;
+
+    /**
+     * Householder QR decomposition, right-looking and blocked. Each block of columns is
+     * factorized with Householder reflections, which are accumulated in the compact
+     * form {@code H1*H2*...*Hb = I - V*T*V'} and applied to the trailing columns
+     * with parallel matrix multiplications.
+     *
+     * @param A input matrix
+     */
     private QRDecomposition(RM A) {
         // Initialize.
         QR = A.solidCopy();
         Rdiag = SolidRV.empty(QR.getColCount());
+        int m = QR.getRowCount();
+        int n = QR.getColCount();
+        double[] qr = QR.array();
 
-        // Main loop.
-        for (int k = 0; k < QR.getColCount(); k++) {
-            // Compute 2-norm of k-th column without under/overflow.
-            double nrm = 0;
-            for (int i = k; i < QR.getRowCount(); i++) {
-                nrm = StrictMath.hypot(nrm, QR.get(i, k));
-            }
+        // Main loop over blocks of columns.
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            double[] tau = new double[end - start];
 
-            if (nrm != 0.0) {
-                // Form k-th Householder var.
-                if (QR.get(k, k) < 0) {
-                    nrm = -nrm;
-                }
-                for (int i = k; i < QR.getRowCount(); i++) {
-                    QR.set(i, k, QR.get(i, k) / nrm);
+            for (int k = start; k < end; k++) {
+                // Compute 2-norm of k-th column without under/overflow.
+                double nrm = 0;
+                for (int i = k; i < m; i++) {
+                    nrm = StrictMath.hypot(nrm, qr[i * n + k]);
                 }
-                QR.set(k, k, QR.get(k, k) + 1.0);
 
-                // Apply transformation to remaining columns.
-                for (int j = k + 1; j < QR.getColCount(); j++) {
-                    double s = 0.0;
-                    for (int i = k; i < QR.getRowCount(); i++) {
-                        s += QR.get(i, k) * QR.get(i, j);
+                if (nrm != 0.0) {
+                    // Form k-th Householder var.
+                    if (qr[k * n + k] < 0) {
+                        nrm = -nrm;
                     }
-                    s = -s / QR.get(k, k);
-                    for (int i = k; i < QR.getRowCount(); i++) {
-                        QR.set(i, j, QR.get(i, j) + s * QR.get(i, k));
+                    for (int i = k; i < m; i++) {
+                        qr[i * n + k] /= nrm;
                     }
+                    qr[k * n + k] += 1.0;
+                    tau[k - start] = 1.0 / qr[k * n + k];
+
+                    // Apply transformation to remaining columns of the block.
+                    for (int j = k + 1; j < end; j++) {
+                        double s = 0.0;
+                        for (int i = k; i < m; i++) {
+                            s += qr[i * n + k] * qr[i * n + j];
+                        }
+                        s = -s / qr[k * n + k];
+                        for (int i = k; i < m; i++) {
+                            qr[i * n + j] += s * qr[i * n + k];
+                        }
+                    }
+                }
+                Rdiag.increment(k, -nrm);
+            }
+            if (end < n) {
+                updateTrailing(start, end, tau);
+            }
+        }
+    }
+
+    /**
+     * Applies the reflections of a block of columns to the trailing columns,
+     * {@code C = C - V*T'*(V'*C)}.
+     */
+    private void updateTrailing(int start, int end, double[] tau) {
+        int m = QR.getRowCount();
+        int n = QR.getColCount();
+        int b = end - start;
+
+        // Householder vectors, unit lower trapezoidal
+        SolidRM V = SolidRM.empty(m - start, b);
+        for (int k = 0; k < b; k++) {
+            for (int i = k; i < m - start; i++) {
+                V.set(i, k, QR.get(start + i, start + k));
+            }
+        }
+
+        // upper triangular factor T
+        SolidRM T = SolidRM.empty(b, b);
+        double[] w = new double[b];
+        for (int c = 0; c < b; c++) {
+            for (int r = 0; r < c; r++) {
+                double s = 0.0;
+                for (int i = c; i < m - start; i++) {
+                    s += V.get(i, r) * V.get(i, c);
+                }
+                w[r] = s;
+            }
+            for (int r = 0; r < c; r++) {
+                double s = 0.0;
+                for (int p = r; p < c; p++) {
+                    s += T.get(r, p) * w[p];
                 }
+                T.set(r, c, -tau[c] * s);
             }
-            Rdiag.increment(k, -nrm);
+            T.set(c, c, tau[c]);
         }
+
+        SolidRM C = QR.rangeRows(start, m).rangeCols(end, n);
+        SolidRM W = SolidRM.empty(b, n - end);
+        MatrixMultiplication.gemm(1.0, V.t(), C, W, FJPool.maxThreads());
+        SolidRM TW = SolidRM.empty(b, n - end);
+        MatrixMultiplication.gemm(1.0, T.t(), W, TW, FJPool.maxThreads());
+        MatrixMultiplication.gemm(-1.0, V, TW, C, FJPool.maxThreads());
     }
 
     /**
@@ -189,33 +262,38 @@ public class QRDecomposition implements Serializable {
         }
 
         // Copy right hand side
-        RM X = B.solidCopy();
+        SolidRM X = B.solidCopy();
+        double[] x = X.array();
+        double[] qr = QR.array();
+        int m = QR.getRowCount();
+        int n = QR.getColCount();
+        int nx = B.getColCount();
 
         // Compute Y = transpose(Q)*B
-        for (int k = 0; k < QR.getColCount(); k++) {
-            for (int j = 0; j < B.getColCount(); j++) {
+        for (int k = 0; k < n; k++) {
+            for (int j = 0; j < nx; j++) {
                 double s = 0.0;
-                for (int i = k; i < QR.getRowCount(); i++) {
-                    s += QR.get(i, k) * X.get(i, j);
+                for (int i = k; i < m; i++) {
+                    s += qr[i * n + k] * x[i * nx + j];
                 }
-                s = -s / QR.get(k, k);
-                for (int i = k; i < QR.getRowCount(); i++) {
-                    X.set(i, j, X.get(i, j) + s * QR.get(i, k));
+                s = -s / qr[k * n + k];
+                for (int i = k; i < m; i++) {
+                    x[i * nx + j] += s * qr[i * n + k];
                 }
             }
         }
 
         // Solve R*X = Y;
-        for (int k = QR.getColCount() - 1; k >= 0; k--) {
-            for (int j = 0; j < B.getColCount(); j++) {
-                X.set(k, j, X.get(k, j) / Rdiag.get(k));
+        for (int k = n - 1; k >= 0; k--) {
+            for (int j = 0; j < nx; j++) {
+                x[k * nx + j] /= Rdiag.get(k);
             }
             for (int i = 0; i < k; i++) {
-                for (int j = 0; j < B.getColCount(); j++) {
-                    X.set(i, j, X.get(i, j) - X.get(k, j) * QR.get(i, k));
+                for (int j = 0; j < nx; j++) {
+                    x[i * nx + j] -= x[k * nx + j] * qr[i * n + k];
                 }
             }
         }
-        return X.rangeRows(0, QR.getColCount()).rangeCols(0, B.getColCount());
+        return X.rangeRows(0, n);
     }
 }
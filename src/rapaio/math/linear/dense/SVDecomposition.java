@@ -62,8 +62,8 @@ public class SVDecomposition implements java.io.Serializable {
     private SVDecomposition(RM Arg) {
 
         // Derived from LINPACK code.
-        // Initialize.
-        RM A = Arg.solidCopy();
+        // Initialize, working on the row major storage of a copy
+        double[] a = Arg.solidCopy().array();
         rowCount = Arg.getRowCount();
         colCount = Arg.getColCount();
 
@@ -84,8 +84,8 @@ public class SVDecomposition implements java.io.Serializable {
         nrt = Math.max(0, Math.min(colCount - 2, rowCount));
 
         // Reduce A to bidiagonal form, storing the diagonal elements
-        reduceBidigonalForm(A, e, work);
-        setupFinalBidiagonal(e, A);
+        reduceBidigonalForm(a, e, work);
+        setupFinalBidiagonal(e, a);
 
         if (wantu)
             generateU(e);
@@ -97,18 +97,18 @@ public class SVDecomposition implements java.io.Serializable {
 
     }
 
-    private void setupFinalBidiagonal(double[] e, RM A) {
+    private void setupFinalBidiagonal(double[] e, double[] a) {
         // Set up the final bidiagonal matrix or order p.
         p = Math.min(colCount, rowCount + 1);
         pp = p - 1;
         if (nct < colCount) {
-            s[nct] = A.get(nct, nct);
+            s[nct] = a[nct * colCount + nct];
         }
         if (rowCount < p) {
             s[p - 1] = 0.0;
         }
         if (nrt + 1 < p) {
-            e[nrt] = A.get(nrt, p - 1);
+            e[nrt] = a[nrt * colCount + p - 1];
         }
         e[p - 1] = 0.0;
     }
@@ -171,7 +171,7 @@ public class SVDecomposition implements java.io.Serializable {
         }
     }
 
-    private void reduceBidigonalForm(RM A, double[] e, double[] work) {
+    private void reduceBidigonalForm(double[] a, double[] e, double[] work) {
         // Reduce A to bidiagonal form, storing the diagonal elements
         // in s and the super-diagonal elements in e.
         for (int k = 0; k < Math.max(nct, nrt); k++) {
@@ -182,16 +182,16 @@ public class SVDecomposition implements java.io.Serializable {
                 // Compute 2-norm of k-th column without under/overflow.
                 s[k] = 0;
                 for (int i = k; i < rowCount; i++) {
-                    s[k] = hypot(s[k], A.get(i, k));
+                    s[k] = hypot(s[k], a[i * colCount + k]);
                 }
                 if (s[k] != 0.0) {
-                    if (A.get(k, k) < 0.0) {
+                    if (a[k * colCount + k] < 0.0) {
                         s[k] = -s[k];
                     }
                     for (int i = k; i < rowCount; i++) {
-                        A.set(i, k, A.get(i, k) / s[k]);
+                        a[i * colCount + k] /= s[k];
                     }
-                    A.increment(k, k, 1.0);
+                    a[k * colCount + k] += 1.0;
                 }
                 s[k] = -s[k];
             }
@@ -201,24 +201,24 @@ public class SVDecomposition implements java.io.Serializable {
                     // Apply the transformation.
                     double t = 0;
                     for (int i = k; i < rowCount; i++) {
-                        t += A.get(i, k) * A.get(i, j);
+                        t += a[i * colCount + k] * a[i * colCount + j];
                     }
-                    t = -t / A.get(k, k);
+                    t = -t / a[k * colCount + k];
                     for (int i = k; i < rowCount; i++) {
-                        A.increment(i, j, t * A.get(i, k));
+                        a[i * colCount + j] += t * a[i * colCount + k];
                     }
                 }
 
                 // Place the k-th row of A into e for the
                 // subsequent calculation of the row transformation.
-                e[j] = A.get(k, j);
+                e[j] = a[k * colCount + j];
             }
             if (wantu & (k < nct)) {
 
                 // Place the transformation in U for subsequent back
                 // multiplication.
                 for (int i = k; i < rowCount; i++) {
-                    U[i][k] = A.get(i, k);
+                    U[i][k] = a[i * colCount + k];
                 }
             }
             if (k < nrt) {
@@ -248,13 +248,13 @@ public class SVDecomposition implements java.io.Serializable {
                     }
                     for (int j = k + 1; j < colCount; j++) {
                         for (int i = k + 1; i < rowCount; i++) {
-                            work[i] += e[j] * A.get(i, j);
+                            work[i] += e[j] * a[i * colCount + j];
                         }
                     }
                     for (int j = k + 1; j < colCount; j++) {
                         double t = -e[j] / e[k + 1];
                         for (int i = k + 1; i < rowCount; i++) {
-                            A.increment(i, j, t * work[i]);
+                            a[i * colCount + j] += t * work[i];
                         }
                     }
                 }
@@ -27,6 +27,7 @@ package rapaio.math.linear.dense;
 import rapaio.core.distributions.Normal;
 import rapaio.data.BoundFrame;
 import rapaio.data.Frame;
+import rapaio.data.SparseEntries;
 import rapaio.data.Var;
 import rapaio.math.linear.RM;
 import rapaio.math.linear.RV;
@@ -34,9 +35,14 @@ import rapaio.math.linear.RV;
 import java.util.Arrays;
 import java.util.function.BiFunction;
 import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
 
 /**
- * Dense 2 dimensional matrix with values in double floating point precision
+ * Dense 2 dimensional matrix with values in double floating point precision.
+ * <p>
+ * Values are stored in a single array, the cell (row, col) being found at
+ * position {@code offset + row * rowStride + col * colStride}. Transposed matrices
+ * and contiguous ranges of rows or columns are views which share the storage.
  */
 public class SolidRM implements RM {
 
@@ -44,7 +50,10 @@ public class SolidRM implements RM {
 
     private final int rowCount;
     private final int colCount;
-    private final double[][] values;
+    private final double[] values;
+    private final int offset;
+    private final int rowStride;
+    private final int colStride;
 
     /**
      * Builds a zero filled matrix with n rows and m columns
@@ -101,11 +110,8 @@ public class SolidRM implements RM {
     public static SolidRM fill(int rowCount, int colCount, double fill) {
         SolidRM ret = new SolidRM(rowCount, colCount);
         if (fill != 0.0) {
-            for (int i = 0; i < rowCount; i++) {
-                Arrays.fill(ret.values[i], fill);
-            }
+            Arrays.fill(ret.values, fill);
         }
-
         return ret;
     }
 
@@ -119,9 +125,10 @@ public class SolidRM implements RM {
      */
     public static SolidRM fill(int rowCount, int colCount, BiFunction<Integer, Integer, Double> fun) {
         SolidRM ret = new SolidRM(rowCount, colCount);
-        for (int i = 0; i < ret.getRowCount(); i++) {
-            for (int j = 0; j < ret.getColCount(); j++) {
-                ret.set(i, j, fun.apply(i, j));
+        int pos = 0;
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < colCount; j++) {
+                ret.values[pos++] = fun.apply(i, j);
             }
         }
         return ret;
@@ -140,16 +147,35 @@ public class SolidRM implements RM {
      */
     public static SolidRM copy(int rowCount, int colCount, double... source) {
         SolidRM m = empty(rowCount, colCount);
-        for (int i = 0; i < rowCount; i++) {
-            System.arraycopy(source, i * colCount, m.values[i], 0, colCount);
-        }
+        System.arraycopy(source, 0, m.values, 0, m.values.length);
         return m;
     }
 
+    /**
+     * Builds a new matrix which uses the given array as storage, without copying it.
+     * The array contains the values by row, as in {@link #copy(int, int, double...)}.
+     *
+     * @param rowCount number of rows
+     * @param colCount number of columns
+     * @param source   value array
+     * @return new matrix which shares the source array
+     */
+    public static SolidRM wrap(int rowCount, int colCount, double... source) {
+        if (source.length < size(rowCount, colCount)) {
+            throw new IllegalArgumentException("Source array is too small for the given dimensions.");
+        }
+        return new SolidRM(rowCount, colCount, source, 0, colCount, 1);
+    }
+
+    /**
+     * Builds a new matrix with values from an array of rows. Since the storage
+     * is a single array, the values are copied.
+     *
+     * @param source array of rows
+     * @return new matrix with a copy of the source values
+     */
     public static SolidRM wrap(double[][] source) {
-        int colCount = source[0].length;
-        int rowCount = source.length;
-        return new SolidRM(rowCount, colCount, source);
+        return copy(source);
     }
 
     public static SolidRM copy(double[][] source) {
@@ -157,52 +183,78 @@ public class SolidRM implements RM {
         int rowCount = source.length;
         SolidRM m = empty(rowCount, colCount);
         for (int i = 0; i < rowCount; i++) {
-            System.arraycopy(source[i], 0, m.values[i], 0, colCount);
+            System.arraycopy(source[i], 0, m.values, i * colCount, colCount);
         }
         return m;
     }
 
     public static RM copy(double[][] source, int rowStart, int rowEnd, int colStart, int colEnd) {
-        RM mm = new SolidRM(rowEnd - rowStart, colEnd - colStart);
+        int colCount = colEnd - colStart;
+        SolidRM mm = new SolidRM(rowEnd - rowStart, colCount);
         for (int i = rowStart; i < rowEnd; i++) {
-            for (int j = colStart; j < colEnd; j++) {
-                mm.set(i - rowStart, j - colStart, source[i][j]);
-            }
+            System.arraycopy(source[i], colStart, mm.values, (i - rowStart) * colCount, colCount);
         }
         return mm;
     }
 
+    /**
+     * Builds a matrix with values copied from a frame. For sparse numeric
+     * variables, also when seen through a mapped frame, only the stored entries
+     * are visited, all other values being zero. The matrix itself is dense.
+     *
+     * @param df source frame
+     * @return new instance of the matrix object
+     */
     public static SolidRM copy(Frame df) {
         SolidRM m = empty(df.getRowCount(), df.getVarCount());
+        int rows = m.rowCount;
+        int cols = m.colCount;
+        SparseEntries entries = new SparseEntries();
         for (int j = 0; j < df.getVarCount(); j++) {
+            int col = j;
+            Var var = df.getVar(j);
+            boolean sparse = entries.forEach(var, (row, value) -> {
+                if (row < rows) {
+                    m.values[row * cols + col] = value;
+                }
+            });
+            if (sparse) {
+                continue;
+            }
             for (int i = 0; i < df.getRowCount(); i++) {
-                m.set(i, j, df.getValue(i, j));
+                m.values[i * cols + j] = var.getValue(i);
             }
         }
         return m;
     }
 
     public static SolidRM copy(Var... vars) {
-        Frame df = BoundFrame.byVars(vars);
-        SolidRM m = empty(df.getRowCount(), df.getVarCount());
-        for (int j = 0; j < df.getVarCount(); j++) {
-            for (int i = 0; i < df.getRowCount(); i++) {
-                m.set(i, j, df.getValue(i, j));
-            }
-        }
-        return m;
+        return copy(BoundFrame.byVars(vars));
     }
 
     private SolidRM(int rowCount, int colCount) {
-        this.rowCount = rowCount;
-        this.colCount = colCount;
-        this.values = new double[rowCount][colCount];
+        this(rowCount, colCount, new double[size(rowCount, colCount)], 0, colCount, 1);
     }
 
-    private SolidRM(int rowCount, int colCount, double[][] values) {
+    private static int size(int rowCount, int colCount) {
+        if (rowCount < 0 || colCount < 0) {
+            throw new IllegalArgumentException("Matrix dimensions cannot be negative.");
+        }
+        try {
+            return Math.multiplyExact(rowCount, colCount);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Matrix with " + rowCount + " rows and " + colCount
+                    + " columns exceeds the maximum array size.", e);
+        }
+    }
+
+    private SolidRM(int rowCount, int colCount, double[] values, int offset, int rowStride, int colStride) {
         this.rowCount = rowCount;
         this.colCount = colCount;
         this.values = values;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
     }
 
     @Override
@@ -217,28 +269,59 @@ public class SolidRM implements RM {
 
     @Override
     public double get(int row, int col) {
-        return values[row][col];
+        return values[checkedIndex(row, col)];
     }
 
     @Override
     public void set(int row, int col, double value) {
-        values[row][col] = value;
+        values[checkedIndex(row, col)] = value;
     }
 
     @Override
     public void increment(int row, int col, double value) {
-        values[row][col] += value;
+        values[checkedIndex(row, col)] += value;
+    }
+
+    /**
+     * Position in storage of a cell, the storage being shared with other views,
+     * thus cells outside of this matrix are not allowed.
+     */
+    private int checkedIndex(int row, int col) {
+        if (row < 0 || row >= rowCount || col < 0 || col >= colCount) {
+            throw new IndexOutOfBoundsException("Cell (" + row + ", " + col + ") is outside of matrix with "
+                    + rowCount + " rows and " + colCount + " columns.");
+        }
+        return offset + row * rowStride + col * colStride;
     }
 
+    /**
+     * @return transposed view which shares storage with this matrix
+     */
     @Override
-    public RM t() {
-        SolidRM t = new SolidRM(colCount, rowCount);
-        for (int i = 0; i < rowCount; i++) {
-            for (int j = 0; j < colCount; j++) {
-                t.set(j, i, get(i, j));
-            }
+    public SolidRM t() {
+        return new SolidRM(colCount, rowCount, values, offset, colStride, rowStride);
+    }
+
+    /**
+     * @return view of the rows in range which shares storage with this matrix
+     */
+    @Override
+    public SolidRM rangeRows(int start, int end) {
+        if (start < 0 || end > rowCount || start > end) {
+            throw new IllegalArgumentException("Row range is not valid.");
+        }
+        return new SolidRM(end - start, colCount, values, offset + start * rowStride, rowStride, colStride);
+    }
+
+    /**
+     * @return view of the columns in range which shares storage with this matrix
+     */
+    @Override
+    public SolidRM rangeCols(int start, int end) {
+        if (start < 0 || end > colCount || start > end) {
+            throw new IllegalArgumentException("Column range is not valid.");
         }
-        return t;
+        return new SolidRM(rowCount, end - start, values, offset + start * colStride, rowStride, colStride);
     }
 
     @Override
@@ -252,6 +335,9 @@ public class SolidRM implements RM {
 
     @Override
     public RV mapRow(int i) {
+        if (colStride == 1) {
+            return SolidRV.wrap(Arrays.copyOfRange(values, offset + i * rowStride, offset + i * rowStride + colCount));
+        }
         SolidRV v = SolidRV.empty(colCount);
         for (int j = 0; j < colCount; j++) {
             v.set(j, get(i, j));
@@ -261,15 +347,51 @@ public class SolidRM implements RM {
 
     @Override
     public DoubleStream valueStream() {
-        return Arrays.stream(values).flatMapToDouble(Arrays::stream);
+        if (isDense()) {
+            return Arrays.stream(values, offset, offset + rowCount * colCount);
+        }
+        return IntStream.range(0, rowCount).boxed()
+                .flatMapToDouble(r -> IntStream.range(0, colCount).mapToDouble(c -> get(r, c)));
     }
 
     @Override
     public SolidRM solidCopy() {
         SolidRM copy = new SolidRM(rowCount, colCount);
-        for (int i = 0; i < rowCount; i++) {
-            System.arraycopy(values[i], 0, copy.values[i], 0, values[i].length);
+        if (isDense()) {
+            System.arraycopy(values, offset, copy.values, 0, rowCount * colCount);
+        } else if (colStride == 1) {
+            for (int i = 0; i < rowCount; i++) {
+                System.arraycopy(values, offset + i * rowStride, copy.values, i * colCount, colCount);
+            }
+        } else {
+            int pos = 0;
+            for (int i = 0; i < rowCount; i++) {
+                for (int j = 0; j < colCount; j++) {
+                    copy.values[pos++] = get(i, j);
+                }
+            }
         }
         return copy;
     }
+
+    /**
+     * @return true if the values are stored by rows without gaps
+     */
+    boolean isDense() {
+        return colStride == 1 && (rowStride == colCount || rowCount < 2);
+    }
+
+    /**
+     * @return storage array, which can be shared with other matrices
+     */
+    double[] array() {
+        return values;
+    }
+
+    /**
+     * @return position in storage array of the cell with the given row and column
+     */
+    int index(int row, int col) {
+        return offset + row * rowStride + col * colStride;
+    }
 }
@@ -29,9 +29,13 @@ import rapaio.data.SolidFrame;
 import rapaio.data.Var;
 import rapaio.data.VarType;
 import rapaio.math.linear.EigenPair;
+import rapaio.math.linear.Lanczos;
 import rapaio.math.linear.Linear;
 import rapaio.math.linear.RM;
 import rapaio.math.linear.RV;
+import rapaio.math.linear.RandomizedSVD;
+import rapaio.math.linear.SymmetricOperator;
+import rapaio.math.linear.dense.SVDecomposition;
 import rapaio.math.linear.dense.SolidRM;
 import rapaio.math.linear.dense.SolidRV;
 import rapaio.printer.Printable;
@@ -51,6 +55,50 @@ public class PCA extends DimensionReduction implements Printable {
 
     private double tol = 1e-10;
     private int maxRuns = 2_000;
+    private Method method = Method.EIGEN;
+    private int components = 0;
+
+    // state of incremental training
+    private long seenRows = 0;
+    private RV seenMean;
+    private RV seenM2;
+    private RV singularValues;
+
+    /**
+     * Algorithm used to compute principal components
+     */
+    public enum Method {
+        /**
+         * Full eigen decomposition of the scatter matrix
+         */
+        EIGEN,
+        /**
+         * Randomized truncated SVD of the centered data, the scatter matrix is not built
+         */
+        RANDOMIZED_SVD,
+        /**
+         * Lanczos iterations for the top eigen values, the scatter matrix is not built
+         */
+        LANCZOS
+    }
+
+    /**
+     * Sets the algorithm used to compute principal components.
+     * Default value is {@link Method#EIGEN}.
+     */
+    public PCA withMethod(Method method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * Sets the number of principal components computed by truncated methods,
+     * a value less than 1 means all components. Default value is 0.
+     */
+    public PCA withComponents(int components) {
+        this.components = components;
+        return this;
+    }
 
     public PCA withMaxRuns(int maxRuns) {
         this.maxRuns = maxRuns;
@@ -69,6 +117,7 @@ public class PCA extends DimensionReduction implements Printable {
 
     public void train(Frame df) {
         validate(df);
+        seenRows = 0;
 
         logger.fine("start pca train");
         RM x = SolidRM.copy(df);
@@ -89,11 +138,32 @@ public class PCA extends DimensionReduction implements Printable {
             }
         }
 
-        logger.fine("build scatter");
-        RM s = x.scatter();
+        EigenPair ep;
+        if (method == Method.EIGEN) {
+            logger.fine("build scatter");
+            RM s = x.scatter();
 
-        logger.fine("compute eigenvalues");
-        EigenPair ep = Linear.eigenDecomp(s, maxRuns, tol);
+            logger.fine("compute eigenvalues");
+            ep = Linear.eigenDecomp(s, maxRuns, tol);
+        } else {
+            int k = (components < 1) ? x.getColCount() : Math.min(components, x.getColCount());
+            RV center = SolidRV.empty(x.getColCount());
+            for (int j = 0; j < x.getColCount(); j++) {
+                center.set(j, x.mapCol(j).mean().getValue());
+            }
+            if (method == Method.LANCZOS) {
+                logger.fine("compute eigenvalues with lanczos iterations");
+                ep = Lanczos.topK(SymmetricOperator.scatter(x, center), k, maxRuns, tol);
+            } else {
+                logger.fine("compute randomized svd");
+                RandomizedSVD svd = RandomizedSVD.from(x, center, k, 10, 2);
+                RV values = SolidRV.empty(k);
+                for (int i = 0; i < k; i++) {
+                    values.set(i, svd.getS().get(i) * svd.getS().get(i));
+                }
+                ep = EigenPair.from(values, svd.getV());
+            }
+        }
         eigenValues = ep.getRV();
         eigenVectors = ep.getRM();
 
@@ -110,6 +180,165 @@ public class PCA extends DimensionReduction implements Printable {
         eigenVectors = eigenVectors.mapCols(indexes).solidCopy();
     }
 
+    /**
+     * Updates principal components with a new chunk of rows, without keeping previous rows.
+     * <p>
+     * The previous components, scaled by their singular values, are stacked together with
+     * the centered rows of the chunk and a row which corrects the change of mean, and the
+     * top components are obtained from the SVD of this small matrix (Ross et al., Brand).
+     * Memory is bounded by {@code (components + chunk rows) * features}. The number of kept
+     * components is given by {@link #withComponents(int)}, all when not specified. The SVD
+     * is computed with the algorithm given by {@link #withMethod(Method)}.
+     * <p>
+     * When scaling is enabled, the mean and standard deviation used for scaling are
+     * estimated from all rows seen so far. When they change, the previous components are
+     * rescaled before the update, thus a small or constant first chunk does not fix the scaling.
+     * <p>
+     * Incremental training starts from an untrained model, it cannot continue a model
+     * built with {@link #train(Frame)}.
+     *
+     * @param chunk chunk of rows with the same variables on each call
+     */
+    public void partialTrain(Frame chunk) {
+        if (seenRows == 0) {
+            if (eigenValues != null) {
+                throw new IllegalArgumentException("Partial training cannot continue a model built with train.");
+            }
+            validate(chunk);
+        } else {
+            String[] names = chunk.varStream().map(Var::getName).toArray(String[]::new);
+            if (!Arrays.equals(names, inputNames)) {
+                throw new IllegalArgumentException("Chunk variables must be the same as in previous chunks.");
+            }
+        }
+        int b = chunk.getRowCount();
+        if (b == 0) {
+            return;
+        }
+        RM x = SolidRM.copy(chunk);
+        int n = x.getColCount();
+
+        RV chunkMean = SolidRV.empty(n);
+        RV chunkM2 = SolidRV.empty(n);
+        for (int j = 0; j < n; j++) {
+            double mu = x.mapCol(j).mean().getValue();
+            double m2 = 0;
+            for (int i = 0; i < b; i++) {
+                m2 += (x.get(i, j) - mu) * (x.get(i, j) - mu);
+            }
+            chunkMean.set(j, mu);
+            chunkM2.set(j, m2);
+        }
+
+        // scale factors before and after this chunk, 1 for variables which are not scaled
+        double[] oldScale = new double[n];
+        double[] newScale = new double[n];
+        Arrays.fill(oldScale, 1);
+        Arrays.fill(newScale, 1);
+        RV newSd = null;
+        if (scaling) {
+            newSd = SolidRV.empty(n);
+            long total = seenRows + b;
+            for (int j = 0; j < n; j++) {
+                double m2 = chunkM2.get(j);
+                if (seenRows > 0) {
+                    double delta = chunkMean.get(j) - seenMean.get(j);
+                    m2 += seenM2.get(j) + delta * delta * seenRows * b / total;
+                    oldScale[j] = scale(sd.get(j));
+                }
+                newSd.set(j, total > 1 ? Math.sqrt(m2 / (total - 1)) : 0);
+                newScale[j] = scale(newSd.get(j));
+            }
+        }
+
+        // stack previous components, centered chunk and mean correction
+        int prev = (seenRows == 0) ? 0 : singularValues.count();
+        int rows = prev + b + (seenRows == 0 ? 0 : 1);
+        RM m = SolidRM.empty(rows, n);
+        for (int c = 0; c < prev; c++) {
+            for (int j = 0; j < n; j++) {
+                m.set(c, j, singularValues.get(c) * eigenVectors.get(j, c) * oldScale[j] / newScale[j]);
+            }
+        }
+        for (int i = 0; i < b; i++) {
+            for (int j = 0; j < n; j++) {
+                m.set(prev + i, j, (x.get(i, j) - chunkMean.get(j)) / newScale[j]);
+            }
+        }
+        if (seenRows > 0) {
+            double f = Math.sqrt((double) seenRows * b / (seenRows + b));
+            for (int j = 0; j < n; j++) {
+                m.set(rows - 1, j, f * (seenMean.get(j) - chunkMean.get(j)) / newScale[j]);
+            }
+        }
+
+        int k = Math.min(Math.min(rows, n), (components < 1) ? n : components);
+        EigenPair top = rightSingular(m, k);
+        singularValues = top.getRV();
+        eigenValues = SolidRV.empty(k);
+        for (int i = 0; i < k; i++) {
+            eigenValues.set(i, singularValues.get(i) * singularValues.get(i));
+        }
+        eigenVectors = top.getRM();
+
+        if (seenRows == 0) {
+            seenMean = chunkMean;
+            seenM2 = chunkM2;
+        } else {
+            for (int j = 0; j < n; j++) {
+                double delta = chunkMean.get(j) - seenMean.get(j);
+                seenM2.set(j, seenM2.get(j) + chunkM2.get(j) + delta * delta * seenRows * b / (seenRows + b));
+                seenMean.set(j, (seenRows * seenMean.get(j) + b * chunkMean.get(j)) / (seenRows + b));
+            }
+        }
+        seenRows += b;
+        if (scaling) {
+            mean = seenMean.solidCopy();
+            sd = newSd;
+        }
+    }
+
+    private static double scale(double sd) {
+        return (sd > 0) ? sd : 1;
+    }
+
+    /**
+     * Computes the top k singular values and right singular vectors of a matrix,
+     * with the configured method.
+     *
+     * @return pair with singular values and right singular vectors on columns
+     */
+    private EigenPair rightSingular(RM m, int k) {
+        if (method == Method.LANCZOS) {
+            EigenPair ep = Lanczos.topK(SymmetricOperator.scatter(m, null), k, maxRuns, tol);
+            RV values = SolidRV.empty(k);
+            for (int i = 0; i < k; i++) {
+                values.set(i, Math.sqrt(Math.max(0, ep.getRV().get(i))));
+            }
+            return EigenPair.from(values, ep.getRM());
+        }
+        if (method == Method.RANDOMIZED_SVD) {
+            RandomizedSVD svd = RandomizedSVD.from(m, null, k, 10, 2);
+            return EigenPair.from(svd.getS(), svd.getV());
+        }
+        double[] sv;
+        RM v;
+        if (m.getRowCount() >= m.getColCount()) {
+            SVDecomposition svd = SVDecomposition.from(m);
+            sv = svd.getSingularValues();
+            v = svd.getV();
+        } else {
+            SVDecomposition svd = SVDecomposition.from(m.t());
+            sv = svd.getSingularValues();
+            v = svd.getU();
+        }
+        RV values = SolidRV.empty(k);
+        for (int i = 0; i < k; i++) {
+            values.set(i, sv[i]);
+        }
+        return EigenPair.from(values, v.rangeCols(0, k).solidCopy());
+    }
+
     public Frame fit(Frame df, int k) {
         // TODO check if we have all the initial columns
 
@@ -124,6 +353,9 @@ public class PCA extends DimensionReduction implements Printable {
             }
         }
 
+        if (k > eigenVectors.getColCount()) {
+            throw new IllegalArgumentException("Number of components must be at most " + eigenVectors.getColCount() + ".");
+        }
         int[] dim = new int[k];
         String[] names = new String[k];
         for (int i = 0; i < dim.length; i++) {
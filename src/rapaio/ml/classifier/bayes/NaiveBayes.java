@@ -26,6 +26,7 @@ package rapaio.ml.classifier.bayes;
 
 import rapaio.core.tools.DVector;
 import rapaio.data.Frame;
+import rapaio.data.NumericVar;
 import rapaio.data.Var;
 import rapaio.data.VarType;
 import rapaio.data.filter.FFilter;
@@ -37,17 +38,22 @@ import rapaio.sys.WS;
 import rapaio.util.Tag;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
 
 /**
  * Naive Bayes Classifier.
  * <p>
+ * Priors and estimators are built from sufficient statistics, which allows
+ * incremental training with {@link #update(Frame, Var)}. Scoring uses log probability
+ * tables indexed by level indexes for nominal and binary inputs.
  *
  * @author <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>
  */
@@ -57,26 +63,30 @@ public class NaiveBayes extends AbstractClassifier {
     private static final Logger logger = Logger.getLogger(NaiveBayes.class.getName());
 
     // algorithm parameters
-    public static Tag<PriorSupplier> PRIORS_MLE = Tag.valueOf("PRIORS_MLE", (df, weights, nb) -> {
-        Map<String, Double> priors = new HashMap<>();
-        DVector dv = DVector.fromWeights(false, df.getVar(nb.firstTargetName()), weights, nb.firstTargetLevels());
-        dv.normalize();
-        for (int i = 1; i < nb.firstTargetLevels().length; i++) {
-            priors.put(nb.firstTargetLevels()[i], dv.get(i));
+    public static Tag<PriorSupplier> PRIORS_MLE = Tag.valueOf("PRIORS_MLE", (targetWeights, nb) -> {
+        double[] priors = new double[targetWeights.length];
+        double total = 0;
+        for (int i = 1; i < targetWeights.length; i++) {
+            total += targetWeights[i];
+        }
+        for (int i = 1; i < targetWeights.length; i++) {
+            priors[i] = total > 0 ? targetWeights[i] / total : 0;
         }
         return priors;
     });
-    public static Tag<PriorSupplier> PRIORS_UNIFORM = Tag.valueOf("PRIORS_UNIFORM", (df, weights, nb) -> {
-        Map<String, Double> priors = new HashMap<>();
+    public static Tag<PriorSupplier> PRIORS_UNIFORM = Tag.valueOf("PRIORS_UNIFORM", (targetWeights, nb) -> {
+        double[] priors = new double[targetWeights.length];
         double p = 1.0 / nb.firstTargetLevels().length;
-        for (int i = 1; i < nb.firstTargetLevels().length; i++) {
-            priors.put(nb.firstTargetLevels()[i], p);
+        for (int i = 1; i < targetWeights.length; i++) {
+            priors[i] = p;
         }
         return priors;
     });
     private double laplaceSmoother = 1;
     private Tag<PriorSupplier> priorSupplier = PRIORS_MLE;
-    private Map<String, Double> priors;
+    // sufficient statistics for priors, weights of target levels
+    private double[] targetWeights;
+    private double[] priors;
     //private NaiveBayesData data = new NaiveBayesData(new MultinomialPmf(), new GaussianPdf(), new MultinomialPmf());
     private NumericData numData = new NumericData(new GaussianPdf());
     private NominalData nomData = new NominalData(new MultinomialPmf());
@@ -136,6 +146,13 @@ public class NaiveBayes extends AbstractClassifier {
         return laplaceSmoother;
     }
 
+    /**
+     * Sets the way priors are computed from the weights of target levels, used at
+     * training and after each incremental update. Default value is {@link #PRIORS_MLE}.
+     *
+     * @param priorSupplier prior supplier
+     * @return this model
+     */
     public NaiveBayes withPriorSupplier(Tag<PriorSupplier> priorSupplier) {
         this.priorSupplier = priorSupplier;
         return this;
@@ -146,7 +163,8 @@ public class NaiveBayes extends AbstractClassifier {
 
         // build priors
 
-        priors = PRIORS_MLE.get().learnPriors(df, weights, this);
+        targetWeights = targetWeights(df, weights);
+        priors = priorSupplier.get().learnPriors(targetWeights, this);
 
         // build conditional probabilities
 
@@ -182,21 +200,164 @@ public class NaiveBayes extends AbstractClassifier {
         return true;
     }
 
+    /**
+     * Updates a trained model with a new chunk of instances, with unit weights.
+     *
+     * @param df chunk of instances, with the same input and target variables used at training
+     * @return this model
+     */
+    public NaiveBayes update(Frame df) {
+        return update(df, NumericVar.fill(df.getRowCount(), 1));
+    }
+
+    /**
+     * Updates a trained model with a new chunk of weighted instances.
+     * Priors and estimators are updated from their sufficient statistics,
+     * thus training on a frame followed by updates with further chunks gives
+     * the same model as training on all instances, if the estimators support
+     * incremental learning.
+     *
+     * @param df      chunk of instances, with the same input and target variables used at training
+     * @param weights weights of instances
+     * @return this model
+     * @throws IllegalArgumentException if an estimator does not support incremental learning
+     *                                  or the chunk has unknown target levels, in which case
+     *                                  the model is left unchanged
+     */
+    public NaiveBayes update(Frame df, Var weights) {
+        if (!hasLearned()) {
+            throw new IllegalArgumentException("Model must be trained before incremental updates.");
+        }
+        Frame workDf = prepareFit(df);
+        if (workDf.getVar(firstTargetName()).stream().anyMatch(s -> s.isMissing())) {
+            throw new IllegalArgumentException("Target variable contains missing values.");
+        }
+        // validate everything before changing the model, such that a failed update leaves it unchanged
+        for (String testCol : inputNames()) {
+            boolean incremental = !binData.binMap.containsKey(testCol) || binData.binMap.get(testCol).isIncremental();
+            incremental &= !numData.numMap.containsKey(testCol) || numData.numMap.get(testCol).isIncremental();
+            incremental &= !nomData.nomMap.containsKey(testCol) || nomData.nomMap.get(testCol).isIncremental();
+            if (!incremental) {
+                throw new IllegalArgumentException("Estimator for variable " + testCol + " does not support incremental learning.");
+            }
+        }
+        double[] chunkWeights = targetWeights(workDf, weights);
+        Arrays.stream(inputNames()).parallel().forEach(testCol -> {
+            if (binData.binMap.containsKey(testCol)) {
+                binData.binMap.get(testCol).update(this, workDf, weights, firstTargetName(), testCol);
+            } else if (numData.numMap.containsKey(testCol)) {
+                numData.numMap.get(testCol).update(workDf, firstTargetName(), testCol);
+            } else if (nomData.nomMap.containsKey(testCol)) {
+                nomData.nomMap.get(testCol).update(this, workDf, weights, firstTargetName(), testCol);
+            }
+        });
+        for (int i = 0; i < targetWeights.length; i++) {
+            targetWeights[i] += chunkWeights[i];
+        }
+        priors = priorSupplier.get().learnPriors(targetWeights, this);
+        return this;
+    }
+
+    /**
+     * Computes the weights of target levels from the given instances.
+     */
+    private double[] targetWeights(Frame df, Var weights) {
+        Var target = df.getVar(firstTargetName());
+        int[] map = levelMap(FactorLevels.of(target), firstTargetLevels());
+        double[] w = new double[firstTargetLevels().length];
+        for (int i = 0; i < df.getRowCount(); i++) {
+            w[map[FactorLevels.index(target, i)]] += weights.getValue(i);
+        }
+        return w;
+    }
+
+    /**
+     * Maps level indexes of a variable into indexes of the learned levels.
+     * Unknown levels are mapped to -1.
+     */
+    private static int[] levelMap(String[] levels, String[] learnedLevels) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < learnedLevels.length; i++) {
+            index.put(learnedLevels[i], i);
+        }
+        int[] map = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            map[i] = index.getOrDefault(levels[i], -1);
+            if (i > 0 && map[i] < 0) {
+                throw new IllegalArgumentException("Target level " + levels[i] + " was not seen at learning.");
+            }
+        }
+        return map;
+    }
+
     @Override
     protected CFit coreFit(Frame df, final boolean withClasses, final boolean withDensities) {
 
         logger.fine("start fitting values...");
 
+        String[] targetLevels = firstTargetLevels();
+        double[] logPriors = new double[targetLevels.length];
+        for (int j = 1; j < targetLevels.length; j++) {
+            logPriors[j] = Math.log(priors[j]);
+        }
+
+        // log probability tables indexed by level index of test variables and target level
+
+        List<Var> factorVars = new ArrayList<>();
+        List<double[][]> factorTables = new ArrayList<>();
+        nomData.nomMap.forEach((testCol, estimator) -> {
+            Var var = df.getVar(testCol);
+            factorVars.add(var);
+            factorTables.add(logTable(FactorLevels.of(var), targetLevels, estimator::cpValue));
+        });
+        binData.binMap.forEach((testCol, estimator) -> {
+            Var var = df.getVar(testCol);
+            factorVars.add(var);
+            factorTables.add(logTable(FactorLevels.of(var), targetLevels, estimator::cpValue));
+        });
+        List<Var> numVars = new ArrayList<>();
+        List<NumericEstimator> numEstimators = new ArrayList<>();
+        numData.numMap.forEach((testCol, estimator) -> {
+            numVars.add(df.getVar(testCol));
+            numEstimators.add(estimator);
+        });
+
         CFit pred = CFit.build(this, df, withClasses, withDensities);
         IntStream.range(0, df.getRowCount()).parallel().forEach(
                 i -> {
-                    DVector dv = DVector.empty(false, firstTargetLevels());
-                    for (int j = 1; j < firstTargetLevels().length; j++) {
-                        double sumLog = Math.log(priors.get(firstTargetLevel(j)));
-                        sumLog += buildSumLog(df, i, j, numData);
-                        sumLog += buildSumLog(df, i, j, nomData);
-                        sumLog += buildSumLog(df, i, j, binData);
-                        dv.increment(j, Math.exp(sumLog));
+                    double[] sumLog = Arrays.copyOf(logPriors, logPriors.length);
+                    for (int k = 0; k < factorVars.size(); k++) {
+                        Var var = factorVars.get(k);
+                        if (var.isMissing(i)) {
+                            continue;
+                        }
+                        double[] logCp = factorTables.get(k)[FactorLevels.index(var, i)];
+                        for (int j = 1; j < sumLog.length; j++) {
+                            sumLog[j] += logCp[j];
+                        }
+                    }
+                    for (int k = 0; k < numVars.size(); k++) {
+                        Var var = numVars.get(k);
+                        if (var.isMissing(i)) {
+                            continue;
+                        }
+                        double x = var.getValue(i);
+                        NumericEstimator estimator = numEstimators.get(k);
+                        for (int j = 1; j < sumLog.length; j++) {
+                            sumLog[j] += Math.log(estimator.cpValue(x, j, targetLevels[j]));
+                        }
+                    }
+
+                    // scale by maximum log likelihood to avoid underflow
+                    double max = Double.NEGATIVE_INFINITY;
+                    for (int j = 1; j < sumLog.length; j++) {
+                        max = Math.max(max, sumLog[j]);
+                    }
+                    DVector dv = DVector.empty(false, targetLevels);
+                    if (max > Double.NEGATIVE_INFINITY) {
+                        for (int j = 1; j < sumLog.length; j++) {
+                            dv.increment(j, Math.exp(sumLog[j] - max));
+                        }
                     }
                     dv.normalize();
 
@@ -204,7 +365,7 @@ public class NaiveBayes extends AbstractClassifier {
                         pred.firstClasses().setIndex(i, dv.findBestIndex());
                     }
                     if (withDensities) {
-                        for (int j = 1; j < firstTargetLevels().length; j++) {
+                        for (int j = 1; j < targetLevels.length; j++) {
                             pred.firstDensity().setValue(i, j, dv.get(j));
                         }
                     }
@@ -213,15 +374,15 @@ public class NaiveBayes extends AbstractClassifier {
         return pred;
     }
 
-	private double buildSumLog(Frame df, int i, int j, NaiveBayesData data) {
-		double sumLog = 0.0;
-		for (String testCol : data.keySet()) {
-		    if (df.isMissing(i, testCol))
-		        continue;
-		    sumLog += Math.log(data.calcSumLog(testCol, df, i, firstTargetLevel(j)));
-		}
-		return sumLog;
-	}
+    private static double[][] logTable(String[] testLevels, String[] targetLevels, BiFunction<String, String, Double> cp) {
+        double[][] table = new double[testLevels.length][targetLevels.length];
+        for (int i = 0; i < testLevels.length; i++) {
+            for (int j = 1; j < targetLevels.length; j++) {
+                table[i][j] = Math.log(cp.apply(testLevels[i], targetLevels[j]));
+            }
+        }
+        return table;
+    }
 
     @Override
     public String getSummary() {
@@ -246,7 +407,7 @@ public class NaiveBayes extends AbstractClassifier {
 
         sb.append("prior probabilities:\n");
         String targetName = firstTargetName();
-        Arrays.stream(firstTargetLevels()).skip(1).forEach(label -> sb.append("> P(").append(targetName).append("='").append(label).append("')=").append(WS.formatFlex(priors.get(label))).append("\n"));
+        IntStream.range(1, firstTargetLevels().length).forEach(index -> sb.append("> P(").append(targetName).append("='").append(firstTargetLevel(index)).append("')=").append(WS.formatFlex(priors[index])).append("\n"));
 
         if (!numData.numMap.isEmpty()) {
             sb.append("numerical estimators:\n");
@@ -270,6 +431,6 @@ public class NaiveBayes extends AbstractClassifier {
     }
 
     interface PriorSupplier extends Serializable {
-        Map<String, Double> learnPriors(Frame df, Var weights, NaiveBayes nb);
+        double[] learnPriors(double[] targetWeights, NaiveBayes nb);
     }
 }
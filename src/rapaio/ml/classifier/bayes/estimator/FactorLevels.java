@@ -0,0 +1,60 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.classifier.bayes.estimator;
+
+import rapaio.data.Var;
+
+/**
+ * Level dictionary shared by naive bayes estimators for nominal and binary variables.
+ * Binary variables are seen as having levels "?", "false" and "true", thus both types
+ * can be handled with level indexes, where index 0 is the missing level.
+ */
+public final class FactorLevels {
+
+    private FactorLevels() {
+    }
+
+    /**
+     * Levels of a nominal or binary variable, in the order given by {@link #index(Var, int)}.
+     *
+     * @param var nominal or binary variable
+     * @return levels of the variable, the first one being the missing level
+     */
+    public static String[] of(Var var) {
+        return var.getType().isBinary() ? new String[]{"?", "false", "true"} : var.getLevels();
+    }
+
+    /**
+     * Index of the level of a nominal or binary variable from a given row,
+     * which is 0 for missing values.
+     *
+     * @param var nominal or binary variable
+     * @param row row number
+     * @return level index
+     */
+    public static int index(Var var, int row) {
+        return var.getType().isBinary() ? var.getIndex(row) + 1 : var.getIndex(row);
+    }
+}
@@ -24,25 +24,32 @@
 
 package rapaio.ml.classifier.bayes.estimator;
 
-import rapaio.core.distributions.Distribution;
 import rapaio.core.distributions.Normal;
 import rapaio.core.stat.OnlineStat;
 import rapaio.data.Frame;
+import rapaio.data.Var;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Numeric probability estimator, using pdf of gaussian distribution.
  * <p>
+ * The estimator keeps running moments for each target level,
+ * which allows incremental learning.
+ * <p>
  * Created by <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a> on 5/18/15.
  */
 public class GaussianPdf implements NumericEstimator {
 
     private static final long serialVersionUID = -5974296887792054267L;
 
-    private final Map<String, Normal> normals = new HashMap<>();
+    private String[] targetLevels;
+    private final Map<String, Integer> targetIndexes = new HashMap<>();
+    private OnlineStat[] stats;
+    private Normal[] normals;
 
     @Override
     public String name() {
@@ -51,28 +58,56 @@ public class GaussianPdf implements NumericEstimator {
 
     @Override
     public void learn(Frame df, String targetVar, String testVar) {
-        normals.clear();
-        Map<String, OnlineStat> onlineStatMap = new HashMap<>();
-        for (String label : df.getVar(targetVar).getLevels()) {
-            onlineStatMap.put(label, OnlineStat.empty());
+        targetLevels = df.getVar(targetVar).getLevels();
+        targetIndexes.clear();
+        stats = new OnlineStat[targetLevels.length];
+        for (int i = 0; i < targetLevels.length; i++) {
+            targetIndexes.put(targetLevels[i], i);
+            stats[i] = OnlineStat.empty();
+        }
+        update(df, targetVar, testVar);
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    public void update(Frame df, String targetVar, String testVar) {
+        if (stats == null) {
+            throw new IllegalArgumentException("Estimator must learn before incremental updates.");
+        }
+        Var target = df.getVar(targetVar);
+        Var test = df.getVar(testVar);
+        String[] levels = target.getLevels();
+        int[] map = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            Integer index = targetIndexes.get(levels[i]);
+            if (index == null) {
+                throw new IllegalArgumentException("Target level " + levels[i] + " was not seen at learning.");
+            }
+            map[i] = index;
         }
-        df.stream().forEach(s -> {
-            String label = s.getLabel(targetVar);
-            onlineStatMap.get(label).update(s.getValue(testVar));
-        });
-        for (String label : df.getVar(targetVar).getLevels()) {
-            if ("?".equals(label)) {
-                continue;
+        for (int row = 0; row < df.getRowCount(); row++) {
+            if (!test.isMissing(row)) {
+                stats[map[target.getIndex(row)]].update(test.getValue(row));
             }
-            double mu = onlineStatMap.get(label).mean();
-            double sd = onlineStatMap.get(label).sd();
-            normals.put(label, new Normal(mu, sd));
+        }
+        normals = new Normal[targetLevels.length];
+        for (int i = 1; i < targetLevels.length; i++) {
+            normals[i] = new Normal(stats[i].mean(), stats[i].sd());
         }
     }
 
     @Override
     public double cpValue(double testValue, String targetLabel) {
-        Distribution normal = normals.get(targetLabel);
+        return cpValue(testValue, targetIndexes.get(targetLabel), targetLabel);
+    }
+
+    @Override
+    public double cpValue(double testValue, int targetIndex, String targetLabel) {
+        Normal normal = normals[targetIndex];
         if (Math.abs(normal.var()) < 1e-20) {
             if (Math.abs(normal.mean() - testValue) < 1e-20) {
                 return Double.MAX_VALUE;
@@ -80,7 +115,7 @@ public class GaussianPdf implements NumericEstimator {
                 return 0;
             }
         }
-        return normals.get(targetLabel).pdf(testValue);
+        return normal.pdf(testValue);
     }
 
     @Override
@@ -90,6 +125,8 @@ public class GaussianPdf implements NumericEstimator {
 
     @Override
     public String learningInfo() {
-        return "GaussianPdf {" + normals.entrySet().stream().map(e -> e.getKey() + "~" + e.getValue().name()).collect(Collectors.joining(", ")) + '}';
+        return "GaussianPdf {" + IntStream.range(1, targetLevels.length)
+                .mapToObj(i -> targetLevels[i] + "~" + normals[i].name())
+                .collect(Collectors.joining(", ")) + '}';
     }
 }
@@ -28,17 +28,24 @@ import rapaio.data.Frame;
 import rapaio.data.Var;
 import rapaio.ml.classifier.bayes.NaiveBayes;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Weighted multinomial pmf estimator.
  * <p>
+ * The estimator keeps weighted counts for each pair of target and test levels,
+ * which allows incremental learning. Test levels not seen before are added
+ * to the test dictionary on update.
+ * <p>
  * Created by <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a> on 5/18/15.
  */
 public class MultinomialPmf implements NominalEstimator, BinaryEstimator {
 
     private static final long serialVersionUID = 3019563706421891472L;
+    private double laplaceSmoother;
+    private double[][] counts;
     private double[][] density;
     private Map<String, Integer> invTreeTarget;
     private Map<String, Integer> invTreeTest;
@@ -57,10 +64,8 @@ public class MultinomialPmf implements NominalEstimator, BinaryEstimator {
     @Override
     public void learn(NaiveBayes nb, Frame df, Var weights, String targetVar, String testVar) {
 
-        String[] targetDict = df.getVar(targetVar).getLevels();
-        String[] testDict = df.getVar(testVar).getLevels();
-
-        defaultP = 1.0 / testDict.length;
+        String[] targetDict = FactorLevels.of(df.getVar(targetVar));
+        String[] testDict = FactorLevels.of(df.getVar(testVar));
 
         invTreeTarget = new HashMap<>();
         invTreeTest = new HashMap<>();
@@ -71,20 +76,71 @@ public class MultinomialPmf implements NominalEstimator, BinaryEstimator {
         for (int i = 0; i < testDict.length; i++) {
             invTreeTest.put(testDict[i], i);
         }
+        counts = new double[targetDict.length][testDict.length];
+        update(nb, df, weights, targetVar, testVar);
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    public void update(NaiveBayes nb, Frame df, Var weights, String targetVar, String testVar) {
+        if (counts == null) {
+            throw new IllegalArgumentException("Estimator must learn before incremental updates.");
+        }
+        Var target = df.getVar(targetVar);
+        Var test = df.getVar(testVar);
+        int[] targetMap = targetRemap(FactorLevels.of(target));
+        int[] testMap = testRemap(FactorLevels.of(test));
+
+        for (int row = 0; row < df.getRowCount(); row++) {
+            counts[targetMap[FactorLevels.index(target, row)]][testMap[FactorLevels.index(test, row)]] += weights.getValue(row);
+        }
+        laplaceSmoother = nb.laplaceSmoother();
+        buildDensity();
+    }
+
+    private int[] targetRemap(String[] levels) {
+        int[] map = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            Integer index = invTreeTarget.get(levels[i]);
+            if (index == null) {
+                throw new IllegalArgumentException("Target level " + levels[i] + " was not seen at learning.");
+            }
+            map[i] = index;
+        }
+        return map;
+    }
 
-        density = new double[targetDict.length][testDict.length];
-            for (int i = 0; i < targetDict.length; i++) {
-                for (int j = 0; j < testDict.length; j++) {
-                    density[i][j] = nb.laplaceSmoother();
+    private int[] testRemap(String[] levels) {
+        int[] map = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            Integer index = invTreeTest.get(levels[i]);
+            if (index == null) {
+                index = invTreeTest.size();
+                invTreeTest.put(levels[i], index);
+                for (int j = 0; j < counts.length; j++) {
+                    counts[j] = Arrays.copyOf(counts[j], index + 1);
                 }
             }
-        df.stream().forEach(s -> density[invTreeTarget.get(df.getLabel(s.getRow(), targetVar))][invTreeTest.get(df.getLabel(s.getRow(), testVar))] += weights.getValue(s.getRow()));
-        for (int i = 0; i < targetDict.length; i++) {
+            map[i] = index;
+        }
+        return map;
+    }
+
+    private void buildDensity() {
+        int testLen = invTreeTest.size();
+        defaultP = 1.0 / testLen;
+        density = new double[counts.length][testLen];
+        for (int i = 0; i < counts.length; i++) {
             double t = 0;
-            for (int j = 0; j < testDict.length; j++) {
+            for (int j = 0; j < testLen; j++) {
+                density[i][j] = counts[i][j] + laplaceSmoother;
                 t += density[i][j];
             }
-            for (int j = 0; j < testDict.length; j++) {
+            for (int j = 0; j < testLen; j++) {
                 density[i][j] /= t;
             }
         }
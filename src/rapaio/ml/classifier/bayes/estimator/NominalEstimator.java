@@ -45,5 +45,21 @@ public interface NominalEstimator extends Serializable {
 
     void learn(NaiveBayes nb, Frame df, Var weights, String targetVar, String testVar);
 
+    /**
+     * @return true if the estimator supports incremental learning with update
+     */
+    default boolean isIncremental() {
+        return false;
+    }
+
+    /**
+     * Updates a learned estimator with new instances.
+     *
+     * @throws IllegalArgumentException if the estimator does not support incremental learning
+     */
+    default void update(NaiveBayes nb, Frame df, Var weights, String targetVar, String testVar) {
+        throw new IllegalArgumentException(name() + " does not support incremental learning.");
+    }
+
     double cpValue(String testLabel, String targetLabel);
 }
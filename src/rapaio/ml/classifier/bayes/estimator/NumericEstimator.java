@@ -39,8 +39,38 @@ public interface NumericEstimator extends Serializable {
 
     void learn(Frame df, String targetVar, String testVar);
 
+    /**
+     * @return true if the estimator supports incremental learning with update
+     */
+    default boolean isIncremental() {
+        return false;
+    }
+
+    /**
+     * Updates a learned estimator with new instances.
+     *
+     * @throws IllegalArgumentException if the estimator does not support incremental learning
+     */
+    default void update(Frame df, String targetVar, String testVar) {
+        throw new IllegalArgumentException(name() + " does not support incremental learning.");
+    }
+
     double cpValue(double testValue, String targetLabel);
 
+    /**
+     * Conditional probability of a test value given the target level with given index,
+     * where indexes follow the levels of the target variable used at learning.
+     * Estimators which keep their parameters by index can skip the lookup by label.
+     *
+     * @param testValue   test value
+     * @param targetIndex index of the target level
+     * @param targetLabel target level
+     * @return conditional probability
+     */
+    default double cpValue(double testValue, int targetIndex, String targetLabel) {
+        return cpValue(testValue, targetLabel);
+    }
+
     String learningInfo();
 
     NumericEstimator newInstance();
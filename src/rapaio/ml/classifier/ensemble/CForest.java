@@ -25,6 +25,7 @@
 package rapaio.ml.classifier.ensemble;
 
 import rapaio.core.CoreTools;
+import rapaio.core.RandomSource;
 import rapaio.core.distributions.Distribution;
 import rapaio.core.tools.DVector;
 import rapaio.data.*;
@@ -40,16 +41,12 @@ import rapaio.ml.classifier.tree.CTreeNode;
 import rapaio.ml.common.Capabilities;
 import rapaio.ml.common.VarSelector;
 import rapaio.ml.eval.Confusion;
-import rapaio.util.Pair;
-import rapaio.util.Util;
+import rapaio.util.FJPool;
 
 import java.util.*;
 import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static java.util.stream.Collectors.*;
-
 /**
  * Breiman random forest implementation.
  * <p>
@@ -70,7 +67,8 @@ public class CForest extends AbstractClassifier {
     // learning artifacts
     private double oobError = Double.NaN;
     private List<Classifier> predictors = new ArrayList<>();
-    private Map<Integer, DVector> oobDensities;
+    // votes of out of bag predictions, by row and target level
+    private int[][] oobVotes;
     private Var oobFit;
     private Var oobTrueClass;
     private Map<String, List<Double>> freqVIMap = new HashMap<>();
@@ -255,15 +253,10 @@ public class CForest extends AbstractClassifier {
     @Override
     protected boolean coreTrain(Frame df, Var weights) {
 
-        double totalOobInstances = 0;
-        double totalOobError = 0;
         if (oobComp) {
-            oobDensities = new HashMap<>();
+            oobVotes = new int[df.getRowCount()][firstTargetLevels().length];
             oobTrueClass = df.getVar(firstTargetName()).solidCopy();
             oobFit = NominalVar.empty(df.getRowCount(), firstTargetLevels());
-            for (int i = 0; i < df.getRowCount(); i++) {
-                oobDensities.put(i, DVector.empty(false, firstTargetLevels()));
-            }
         }
         if (freqVIComp && c instanceof CTree) {
             freqVIMap.clear();
@@ -275,74 +268,78 @@ public class CForest extends AbstractClassifier {
             permVIMap.clear();
         }
 
+        // each weak predictor is built with its own random stream, derived from a base seed
+        // and the predictor index, such that results do not depend on the number of threads;
+        // oob predictions and variable importance are computed together with the weak predictor
+        // and accumulated afterwards in predictor order
+        long seed = RandomSource.nextLong();
+        predictors = new ArrayList<>();
         if (runPoolSize() == 0) {
-            predictors = new ArrayList<>();
             for (int i = 0; i < runs(); i++) {
-                Pair<Classifier, List<Integer>> weak = buildWeakPredictor(df, weights);
-                predictors.add(weak._1);
-                if (oobComp) {
-                    oobCompute(df, weak);
-                }
-                if (freqVIComp && c instanceof CTree) {
-                    freqVICompute(weak);
-                }
-                if (gainVIComp && c instanceof CTree) {
-                    gainVICompute(weak);
-                }
-                if (permVIComp) {
-                    permVICompute(df, weak);
-                }
-                if (runningHook() != null) {
-                    runningHook().accept(this, i + 1);
-                }
+                int index = i;
+                WeakPredictor weak = RandomSource.callWithStream(
+                        RandomSource.streamSeed(seed, index), () -> buildWeakPredictor(df, weights));
+                accumulate(weak, i);
             }
         } else {
-            // build in parallel the trees, than oob and running hook cannot run at the
+            // build in parallel the trees, than running hook cannot run at the
             // same moment when weak tree was built
             // for a real running hook behavior run without threading
-            predictors = new ArrayList<>();
-            List<Pair<Classifier, List<Integer>>> list = Util.rangeStream(runs(), runPoolSize() > 0).boxed()
-                    .map(s -> buildWeakPredictor(df, weights))
-                    .collect(Collectors.toList());
+            // trees and the nested parallel work of trees run on the same managed pool
+            List<WeakPredictor> list = FJPool.map(runPoolSize(), runs(),
+                    s -> RandomSource.callWithStream(RandomSource.streamSeed(seed, s), () -> buildWeakPredictor(df, weights)));
             for (int i = 0; i < list.size(); i++) {
-                Pair<Classifier, List<Integer>> weak = list.get(i);
-                predictors.add(weak._1);
-                if (oobComp) {
-                    oobCompute(df, weak);
-                }
-                if (freqVIComp && c instanceof CTree) {
-                    freqVICompute(weak);
-                }
-                if (gainVIComp && c instanceof CTree) {
-                    gainVICompute(weak);
-                }
-                if (permVIComp) {
-                    permVICompute(df, weak);
-                }
-                if (runningHook() != null) {
-                    runningHook().accept(this, i + 1);
-                }
+                accumulate(list.get(i), i);
             }
         }
+        if (oobComp) {
+            oobErrorCompute();
+        }
         return true;
     }
 
-    private void permVICompute(Frame df, Pair<Classifier, List<Integer>> weak) {
-        Classifier c = weak._1;
-        List<Integer> oobIndexes = weak._2;
+    private void accumulate(WeakPredictor weak, int index) {
+        predictors.add(weak.classifier);
+        if (oobComp) {
+            for (int j = 0; j < weak.oobRows.length; j++) {
+                oobVotes[weak.oobRows[j]][weak.oobClasses[j]]++;
+            }
+        }
+        if (freqVIComp && c instanceof CTree) {
+            addScores(freqVIMap, weak.freqScores);
+        }
+        if (gainVIComp && c instanceof CTree) {
+            addScores(gainVIMap, weak.gainScores);
+        }
+        if (permVIComp) {
+            addScores(permVIMap, weak.permScores);
+        }
+        if (runningHook() != null) {
+            if (oobComp) {
+                oobErrorCompute();
+            }
+            runningHook().accept(this, index + 1);
+        }
+    }
 
-        // build oob data frame
-        Frame oobFrame = df.mapRows(Mapping.wrap(oobIndexes));
+    private void addScores(Map<String, List<Double>> map, double[] scores) {
+        for (int j = 0; j < inputNames().length; j++) {
+            map.computeIfAbsent(inputName(j), key -> new ArrayList<>()).add(scores[j]);
+        }
+    }
+
+    private double[] permVICompute(Classifier c, Frame oobFrame, CFit fit) {
 
         // build accuracy on oob data frame
-        CFit fit = c.fit(oobFrame);
         double refScore = new Confusion(
                 oobFrame.getVar(firstTargetName()),
                 fit.firstClasses())
                 .acceptedCases();
 
         // now for each input variable do computation
-        for (String varName : inputNames()) {
+        double[] scores = new double[inputNames().length];
+        for (int j = 0; j < inputNames().length; j++) {
+            String varName = inputName(j);
 
             // shuffle values from variable
             Var shuffled = Filters.shuffle(oobFrame.getVar(varName));
@@ -358,25 +355,15 @@ public class CForest extends AbstractClassifier {
                     pfit.firstClasses()
             ).acceptedCases();
 
-            if (!permVIMap.containsKey(varName)) {
-                permVIMap.put(varName, new ArrayList<>());
-            }
-            permVIMap.get(varName).add(refScore - acc);
+            scores[j] = refScore - acc;
         }
+        return scores;
     }
 
-    private void gainVICompute(Pair<Classifier, List<Integer>> weak) {
-        CTree weakTree = (CTree) weak._1;
+    private double[] gainVICompute(CTree weakTree) {
         DVector scores = DVector.empty(false, inputNames());
         collectGainVI(weakTree.getRoot(), scores);
-        for (int j = 0; j < inputNames().length; j++) {
-            String varName = inputName(j);
-            double score = scores.get(varName);
-            if (!gainVIMap.containsKey(varName)) {
-                gainVIMap.put(varName, new ArrayList<>());
-            }
-            gainVIMap.get(varName).add(score);
-        }
+        return IntStream.range(0, inputNames().length).mapToDouble(j -> scores.get(inputName(j))).toArray();
     }
 
     private void collectGainVI(CTreeNode node, DVector dv) {
@@ -388,18 +375,10 @@ public class CForest extends AbstractClassifier {
         node.getChildren().forEach(child -> collectGainVI(child, dv));
     }
 
-    private void freqVICompute(Pair<Classifier, List<Integer>> weak) {
-        CTree weakTree = (CTree) weak._1;
+    private double[] freqVICompute(CTree weakTree) {
         DVector scores = DVector.empty(false, inputNames());
         collectFreqVI(weakTree.getRoot(), scores);
-        for (int j = 0; j < inputNames().length; j++) {
-            String varName = inputName(j);
-            double score = scores.get(varName);
-            if (!freqVIMap.containsKey(varName)) {
-                freqVIMap.put(varName, new ArrayList<>());
-            }
-            freqVIMap.get(varName).add(score);
-        }
+        return IntStream.range(0, inputNames().length).mapToDouble(j -> scores.get(inputName(j))).toArray();
     }
 
     private void collectFreqVI(CTreeNode node, DVector dv) {
@@ -411,25 +390,15 @@ public class CForest extends AbstractClassifier {
         node.getChildren().forEach(child -> collectFreqVI(child, dv));
     }
 
-    private void oobCompute(Frame df, Pair<Classifier, List<Integer>> weak) {
-        double totalOobError;
-        double totalOobInstances;
-        List<Integer> oobIndexes = weak._2;
-        Frame oobTest = df.mapRows(Mapping.wrap(oobIndexes));
-        CFit fit = weak._1.fit(oobTest);
-        for (int j = 0; j < oobTest.getRowCount(); j++) {
-            int fitIndex = fit.firstClasses().getIndex(j);
-            oobDensities.get(oobIndexes.get(j)).increment(fitIndex, 1.0);
-        }
-        oobFit.clear();
-        totalOobError = 0.0;
-        totalOobInstances = 0.0;
-        for (Map.Entry<Integer, DVector> e : oobDensities.entrySet()) {
-            if (e.getValue().sum() > 0) {
-                int bestIndex = e.getValue().findBestIndex();
-                String bestLevel = firstTargetLevels()[bestIndex];
-                oobFit.setLabel(e.getKey(), bestLevel);
-                if (!bestLevel.equals(oobTrueClass.getLabel(e.getKey()))) {
+    private void oobErrorCompute() {
+        oobFit = NominalVar.empty(oobVotes.length, firstTargetLevels());
+        double totalOobError = 0.0;
+        double totalOobInstances = 0.0;
+        for (int row = 0; row < oobVotes.length; row++) {
+            int bestIndex = bestIndex(oobVotes[row]);
+            if (bestIndex > 0) {
+                oobFit.setIndex(row, bestIndex);
+                if (!firstTargetLevels()[bestIndex].equals(oobTrueClass.getLabel(row))) {
                     totalOobError++;
                 }
                 totalOobInstances++;
@@ -438,7 +407,31 @@ public class CForest extends AbstractClassifier {
         oobError = (totalOobInstances > 0) ? totalOobError / totalOobInstances : 0.0;
     }
 
-    private Pair<Classifier, List<Integer>> buildWeakPredictor(Frame df, Var weights) {
+    /**
+     * Index of the most voted level, ties are broken at random, 0 if there are no votes.
+     */
+    private static int bestIndex(int[] votes) {
+        int bestIndex = 0;
+        int best = 0;
+        double n = 1;
+        for (int i = 1; i < votes.length; i++) {
+            if (votes[i] > best) {
+                best = votes[i];
+                bestIndex = i;
+                n = 1;
+                continue;
+            }
+            if (votes[i] == best && best > 0) {
+                if (RandomSource.nextDouble() > n / (n + 1)) {
+                    bestIndex = i;
+                }
+                n++;
+            }
+        }
+        return bestIndex;
+    }
+
+    private WeakPredictor buildWeakPredictor(Frame df, Var weights) {
         Classifier weak = c.newInstance();
 
         Sample sample = sampler().nextSample(df, weights);
@@ -447,20 +440,56 @@ public class CForest extends AbstractClassifier {
         Var trainWeights = sample.weights;
 
         weak.train(trainFrame, trainWeights, firstTargetName());
-        List<Integer> oobIndexes = new ArrayList<>();
-        if (oobComp) {
-            Set<Integer> out = sample.mapping.rowStream().boxed().collect(toSet());
-            oobIndexes = IntStream.range(0, df.getRowCount()).filter(row -> !out.contains(row)).boxed().collect(toList());
+        WeakPredictor result = new WeakPredictor(weak);
+        if (oobComp || permVIComp) {
+            BitSet inBag = new BitSet(df.getRowCount());
+            sample.mapping.rowStream().forEach(inBag::set);
+            int[] oobRows = new int[df.getRowCount() - inBag.cardinality()];
+            int pos = 0;
+            for (int row = inBag.nextClearBit(0); row < df.getRowCount(); row = inBag.nextClearBit(row + 1)) {
+                oobRows[pos++] = row;
+            }
+            Frame oobFrame = df.mapRows(Mapping.wrap(oobRows));
+            CFit fit = weak.fit(oobFrame, true, false);
+            result.oobRows = oobRows;
+            result.oobClasses = new int[oobRows.length];
+            for (int j = 0; j < oobRows.length; j++) {
+                result.oobClasses[j] = fit.firstClasses().getIndex(j);
+            }
+            if (permVIComp) {
+                result.permScores = permVICompute(weak, oobFrame, fit);
+            }
+        }
+        if (freqVIComp && c instanceof CTree) {
+            result.freqScores = freqVICompute((CTree) weak);
+        }
+        if (gainVIComp && c instanceof CTree) {
+            result.gainScores = gainVICompute((CTree) weak);
+        }
+        return result;
+    }
+
+    /**
+     * Weak predictor with its out of bag predictions and variable importance scores.
+     */
+    private static final class WeakPredictor {
+        private final Classifier classifier;
+        private int[] oobRows;
+        private int[] oobClasses;
+        private double[] freqScores;
+        private double[] gainScores;
+        private double[] permScores;
+
+        private WeakPredictor(Classifier classifier) {
+            this.classifier = classifier;
         }
-        return Pair.from(weak, oobIndexes);
     }
 
     @Override
     protected CFit coreFit(Frame df, boolean withClasses, boolean withDensities) {
         CFit cp = CFit.build(this, df, true, true);
-        List<CFit> treeFits = predictors.stream().parallel()
-                .map(pred -> pred.fit(df, baggingMode.needsClass(), baggingMode.needsDensity()))
-                .collect(Collectors.toList());
+        List<CFit> treeFits = FJPool.map(runPoolSize(), predictors.size(),
+                i -> predictors.get(i).fit(df, baggingMode.needsClass(), baggingMode.needsDensity()));
         baggingMode.computeDensity(firstTargetLevels(), new ArrayList<>(treeFits), cp.firstClasses(), cp.firstDensity());
         return cp;
     }
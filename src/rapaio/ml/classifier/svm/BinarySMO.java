@@ -40,9 +40,11 @@ import rapaio.data.sample.RowSampler;
 import rapaio.ml.classifier.AbstractClassifier;
 import rapaio.ml.classifier.CFit;
 import rapaio.ml.classifier.Classifier;
+import rapaio.ml.classifier.svm.kernel.AbstractKernel;
 import rapaio.ml.classifier.svm.kernel.Kernel;
 import rapaio.ml.classifier.svm.kernel.PolyKernel;
 import rapaio.ml.common.Capabilities;
+import rapaio.ml.common.FeatureBlock;
 
 import java.io.Serializable;
 import java.util.BitSet;
@@ -85,9 +87,12 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
     private int classIndex2 = 2;
     private boolean oneVsAll = false;
     private int maxRuns = Integer.MAX_VALUE;
+    private int kernelCacheSize = AbstractKernel.DEFAULT_CACHE_SIZE_MB;
     private double C = 1.0; // complexity parameter
     private double tol = 1e-3; // tolerance of accuracy
     private Frame train;
+    // dense values of the training instances, built on demand for fitting
+    private transient FeatureBlock trainBlock;
     private Var weights;
     private int targetIndex;
     /**
@@ -111,7 +116,8 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
                 "   classIndex1=" + classIndex1 + ",\n" +
                 "   classIndex2=" + classIndex2 + ",\n" +
                 "   oneVsAll=" + oneVsAll + ",\n" +
-                "   maxRuns=" + maxRuns + "\n" +
+                "   maxRuns=" + maxRuns +
+                (kernelCacheSize != AbstractKernel.DEFAULT_CACHE_SIZE_MB ? ",\n   kernelCacheSize=" + kernelCacheSize : "") + "\n" +
                 "}\n";
     }
 
@@ -126,6 +132,7 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
                 .withSecondClassIndex(classIndex2)
                 .withOneVsAll(oneVsAll)
                 .withMaxRuns(maxRuns)
+                .withKernelCacheSize(kernelCacheSize)
                 .withInputFilters(inputFilters());
     }
 
@@ -178,6 +185,23 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
         return this;
     }
 
+    /**
+     * Sets the memory budget of the kernel cache used at training time.
+     *
+     * @param cacheSizeMB size of the kernel cache in megabytes
+     */
+    public BinarySMO withKernelCacheSize(int cacheSizeMB) {
+        if (cacheSizeMB < 0) {
+            throw new IllegalArgumentException("kernel cache size must be non negative");
+        }
+        this.kernelCacheSize = cacheSizeMB;
+        return this;
+    }
+
+    public int kernelCacheSize() {
+        return kernelCacheSize;
+    }
+
     @Override
     public BinarySMO withSampler(RowSampler sampler) {
         return (BinarySMO) super.withSampler(sampler);
@@ -245,6 +269,7 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
 
         // Set the reference to the data
         this.train = df;
+        this.trainBlock = null;
         this.weights = weights;
 
         bUp = -1;
@@ -328,7 +353,7 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
         sparseIndices = null;
 
         // init kernel
-        kernel.buildKernel(inputNames(), df);
+        kernel.buildKernel(inputNames(), df, kernelCacheSize);
 
         // Initialize error cache
         fCache = new double[df.getRowCount()];
@@ -445,8 +470,9 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
     @Override
     protected CFit coreFit(Frame df, boolean withClasses, boolean withDistributions) {
         CFit cr = CFit.build(this, df, withClasses, withDistributions);
+        FeatureBlock block = kernel.isLinear() ? null : FeatureBlock.from(df, inputNames());
         for (int i = 0; i < df.getRowCount(); i++) {
-            double pred = predict(df, i);
+            double pred = kernel.isLinear() ? predict(df, i) : predict(block, i);
 
             // TODO generalize
 //            pred = 1.0 / (1.0 + Math.exp(-pred));
@@ -470,6 +496,20 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
         return cr;
     }
 
+    /**
+     * Computes the output of a non linear SVM for an instance given as dense feature values.
+     */
+    private double predict(FeatureBlock block, int row) {
+        if (trainBlock == null) {
+            trainBlock = FeatureBlock.from(train, inputNames());
+        }
+        double result = 0;
+        for (int i = supportVectors.nextSetBit(0); i != -1; i = supportVectors.nextSetBit(i + 1)) {
+            result += target[i] * alpha[i] * kernel.compute(trainBlock, i, block, row);
+        }
+        return result - b;
+    }
+
     /**
      * Computes SVM output for given instance.
      */
@@ -899,17 +939,13 @@ public class BinarySMO extends AbstractClassifier implements Serializable {
             if (!kernel.isLinear()) {
                 sb.append("\n\nNumber of support vectors: ").append(supportVectors.cardinality());
             }
-//            int numEval = 0;
-//            int numCacheHits = -1;
-//            if (kernel != null) {
-//                numEval = kernel.numEvals();
-//                numCacheHits = kernel.numCacheHits();
-//            }
-//            text.append("\n\nNumber of kernel evaluations: " + numEval);
-//            if (numCacheHits >= 0 && numEval > 0) {
-//                double hitRatio = 1 - numEval * 1.0 / (numCacheHits + numEval);
-//                text.append(" (" + Utils.doubleToString(hitRatio * 100, 7, 3).trim() + "% cached)");
-//            }
+            long numEval = kernel.numEvals();
+            long numCacheHits = kernel.numCacheHits();
+            sb.append("\n\nNumber of kernel evaluations: ").append(numEval);
+            if (numCacheHits >= 0 && numEval > 0) {
+                double hitRatio = 1 - numEval * 1.0 / (numCacheHits + numEval);
+                sb.append(" (").append(formatFlex(hitRatio * 100)).append("% cached)");
+            }
 
         } catch (Exception e) {
             e.printStackTrace();
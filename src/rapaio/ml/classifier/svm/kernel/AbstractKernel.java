@@ -25,9 +25,9 @@
 package rapaio.ml.classifier.svm.kernel;
 
 import rapaio.data.Frame;
+import rapaio.ml.common.FeatureBlock;
 import rapaio.ml.classifier.svm.kernel.cache.KernelCache;
-import rapaio.ml.classifier.svm.kernel.cache.MapKernelCache;
-import rapaio.ml.classifier.svm.kernel.cache.SolidKernelCache;
+import rapaio.ml.classifier.svm.kernel.cache.LRUKernelCache;
 
 /**
  * Created by <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a> at 1/16/15.
@@ -36,17 +36,29 @@ public abstract class AbstractKernel implements Kernel {
 
     private static final long serialVersionUID = -2216556261751685749L;
 
+    /**
+     * Default memory budget of the kernel cache in megabytes
+     */
+    public static final int DEFAULT_CACHE_SIZE_MB = 100;
+
     protected String[] varNames;
     private KernelCache cache;
+    private long evals;
+    private transient Frame train;
+    private transient FeatureBlock trainBlock;
 
     @Override
     public void buildKernel(String[] varNames, Frame df) {
+        buildKernel(varNames, df, DEFAULT_CACHE_SIZE_MB);
+    }
+
+    @Override
+    public void buildKernel(String[] varNames, Frame df, int cacheSizeMB) {
         this.varNames = varNames;
-        if (df.getRowCount() <= 10_000) {
-            cache = new SolidKernelCache(df);
-        } else {
-            cache = new MapKernelCache();
-        }
+        this.cache = new LRUKernelCache(df, cacheSizeMB);
+        this.evals = 0;
+        this.train = df;
+        this.trainBlock = FeatureBlock.from(df, varNames);
     }
 
     @Override
@@ -54,18 +66,109 @@ public abstract class AbstractKernel implements Kernel {
         return false;
     }
 
-    protected double dotProd(Frame df1, int row1, Frame df2, int row2) {
+    protected double dotProd(double[] x, int xOffset, double[] y, int yOffset) {
+        double result = 0;
+        for (int i = 0; i < varNames.length; i++) {
+            result += x[xOffset + i] * y[yOffset + i];
+        }
+        return result;
+    }
+
+    protected double deltaDotProd(double[] x, int xOffset, double[] y, int yOffset) {
         double result = 0;
-        for (String varName : varNames) {
-            result += df1.getValue(row1, varName) * df2.getValue(row2, varName);
+        for (int i = 0; i < varNames.length; i++) {
+            double delta = x[xOffset + i] - y[yOffset + i];
+            result += delta * delta;
+        }
+        return result;
+    }
+
+    /**
+     * Dot product of two rows of feature blocks. Stored entries of sparse rows
+     * are merged, so that columns which are zero in both rows are not visited.
+     */
+    protected double dotProd(FeatureBlock x, int row1, FeatureBlock y, int row2) {
+        if (!x.isSparse() && !y.isSparse()) {
+            return dotProd(x.values(), x.offset(row1), y.values(), y.offset(row2));
+        }
+        if (!x.isSparse()) {
+            return dotProd(y, row2, x, row1);
+        }
+        int[] xCols = x.entryCols();
+        double[] xValues = x.entryValues();
+        int p = x.entryStart(row1);
+        int pEnd = x.entryEnd(row1);
+        double result = 0;
+        if (!y.isSparse()) {
+            double[] yValues = y.values();
+            int yOffset = y.offset(row2);
+            for (int i = 0; i < varNames.length; i++) {
+                double xi = (p < pEnd && xCols[p] == i) ? xValues[p++] : 0;
+                result += xi * yValues[yOffset + i];
+            }
+            return result;
+        }
+        int[] yCols = y.entryCols();
+        double[] yValues = y.entryValues();
+        int q = y.entryStart(row2);
+        int qEnd = y.entryEnd(row2);
+        while (p < pEnd || q < qEnd) {
+            int xCol = p < pEnd ? xCols[p] : Integer.MAX_VALUE;
+            int yCol = q < qEnd ? yCols[q] : Integer.MAX_VALUE;
+            // entries without pair are multiplied with zero, thus missing values propagate as in dense rows
+            if (xCol == yCol) {
+                result += xValues[p++] * yValues[q++];
+            } else if (xCol < yCol) {
+                result += xValues[p++] * 0.0;
+            } else {
+                result += yValues[q++] * 0.0;
+            }
         }
         return result;
     }
 
-    protected double deltaDotProd(Frame df1, int row1, Frame df2, int row2) {
+    /**
+     * Squared euclidean distance between two rows of feature blocks. Stored entries of
+     * sparse rows are merged, so that columns which are zero in both rows are not visited.
+     */
+    protected double deltaDotProd(FeatureBlock x, int row1, FeatureBlock y, int row2) {
+        if (!x.isSparse() && !y.isSparse()) {
+            return deltaDotProd(x.values(), x.offset(row1), y.values(), y.offset(row2));
+        }
+        if (!x.isSparse()) {
+            return deltaDotProd(y, row2, x, row1);
+        }
+        int[] xCols = x.entryCols();
+        double[] xValues = x.entryValues();
+        int p = x.entryStart(row1);
+        int pEnd = x.entryEnd(row1);
         double result = 0;
-        for (String varName : varNames) {
-            result += Math.pow(df1.getValue(row1, varName) - df2.getValue(row2, varName), 2);
+        if (!y.isSparse()) {
+            double[] yValues = y.values();
+            int yOffset = y.offset(row2);
+            for (int i = 0; i < varNames.length; i++) {
+                double xi = (p < pEnd && xCols[p] == i) ? xValues[p++] : 0;
+                double delta = xi - yValues[yOffset + i];
+                result += delta * delta;
+            }
+            return result;
+        }
+        int[] yCols = y.entryCols();
+        double[] yValues = y.entryValues();
+        int q = y.entryStart(row2);
+        int qEnd = y.entryEnd(row2);
+        while (p < pEnd || q < qEnd) {
+            int xCol = p < pEnd ? xCols[p] : Integer.MAX_VALUE;
+            int yCol = q < qEnd ? yCols[q] : Integer.MAX_VALUE;
+            double delta;
+            if (xCol == yCol) {
+                delta = xValues[p++] - yValues[q++];
+            } else if (xCol < yCol) {
+                delta = xValues[p++];
+            } else {
+                delta = yValues[q++];
+            }
+            result += delta * delta;
         }
         return result;
     }
@@ -74,18 +177,79 @@ public abstract class AbstractKernel implements Kernel {
     public double compute(Frame df1, int row1, Frame df2, int row2) {
         Double value = cache.retrieve(df1, row1, df2, row2);
         if (value == null) {
-            value = eval(df1, row1, df2, row2);
+            evals++;
+            if (df1 == train && df2 == train) {
+                value = eval(trainBlock, row1, trainBlock, row2);
+            } else {
+                value = eval(rowValues(df1, row1), 0, rowValues(df2, row2), 0);
+            }
             cache.store(df1, row1, df2, row2, value);
         }
         return value;
     }
 
+    @Override
+    public double compute(FeatureBlock x, int row1, FeatureBlock y, int row2) {
+        evals++;
+        return eval(x, row1, y, row2);
+    }
+
+    private double[] rowValues(Frame df, int row) {
+        if (df == train) {
+            return trainBlock.row(row);
+        }
+        double[] values = new double[varNames.length];
+        for (int i = 0; i < varNames.length; i++) {
+            values[i] = df.getValue(row, varNames[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Evaluates the kernel function on two instances, given as contiguous
+     * values of the kernel variables, in the order of the variable names.
+     *
+     * @param x       array with values of the first instance
+     * @param xOffset position of the first value of the first instance
+     * @param y       array with values of the second instance
+     * @param yOffset position of the first value of the second instance
+     * @return kernel value
+     */
+    public abstract double eval(double[] x, int xOffset, double[] y, int yOffset);
 
-    public abstract double eval(Frame df1, int row1, Frame df2, int row2);
+    /**
+     * Evaluates the kernel function on two rows of feature blocks. Rows of sparse
+     * blocks are copied into dense arrays. Kernels which depend only on dot products
+     * override it, to use the sparse entries directly.
+     *
+     * @param x    feature block of the first instance
+     * @param row1 row of the first instance
+     * @param y    feature block of the second instance
+     * @param row2 row of the second instance
+     * @return kernel value
+     */
+    protected double eval(FeatureBlock x, int row1, FeatureBlock y, int row2) {
+        if (!x.isSparse() && !y.isSparse()) {
+            return eval(x.values(), x.offset(row1), y.values(), y.offset(row2));
+        }
+        return eval(x.row(row1), 0, y.row(row2), 0);
+    }
 
     @Override
     public void clean() {
         cache.clear();
+        train = null;
+        trainBlock = null;
+    }
+
+    @Override
+    public long numEvals() {
+        return evals;
+    }
+
+    @Override
+    public long numCacheHits() {
+        return cache == null ? -1 : cache.hits();
     }
 }
 
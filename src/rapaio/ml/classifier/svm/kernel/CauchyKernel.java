@@ -24,7 +24,7 @@
 
 package rapaio.ml.classifier.svm.kernel;
 
-import rapaio.data.Frame;
+import rapaio.ml.common.FeatureBlock;
 import rapaio.sys.WS;
 
 /**
@@ -56,8 +56,16 @@ public class CauchyKernel extends AbstractKernel {
     }
 
     @Override
-    public double eval(Frame df1, int row1, Frame df2, int row2) {
-        double dot = deltaDotProd(df1, row1, df2, row2);
+    public double eval(double[] x, int xOffset, double[] y, int yOffset) {
+        return eval(deltaDotProd(x, xOffset, y, yOffset));
+    }
+
+    @Override
+    protected double eval(FeatureBlock x, int row1, FeatureBlock y, int row2) {
+        return eval(deltaDotProd(x, row1, y, row2));
+    }
+
+    private double eval(double dot) {
         return 1.0 / (1.0 + Math.pow(dot / sigma, 2));
     }
 
@@ -24,8 +24,6 @@
 
 package rapaio.ml.classifier.svm.kernel;
 
-import rapaio.data.Frame;
-
 /**
  * The Chi-Square kernel comes from the Chi-Square distribution.
  * <p>
@@ -38,11 +36,11 @@ public class ChiSquareKernel extends AbstractKernel {
     private static final long serialVersionUID = -3301596992870913061L;
 
     @Override
-    public double eval(Frame df1, int row1, Frame df2, int row2) {
+    public double eval(double[] x, int xOffset, double[] y, int yOffset) {
         double result = 0;
-        for (String varName : varNames) {
-            double sum = df1.getValue(row1, varName) + df2.getValue(row2, varName);
-            double diff = df1.getValue(row1, varName) - df2.getValue(row2, varName);
+        for (int i = 0; i < varNames.length; i++) {
+            double sum = x[xOffset + i] + y[yOffset + i];
+            double diff = x[xOffset + i] - y[yOffset + i];
             result = 2 * Math.pow(diff, 2) / sum;
         }
         return 1 - result;
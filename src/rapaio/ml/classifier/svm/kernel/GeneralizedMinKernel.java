@@ -24,7 +24,6 @@
 
 package rapaio.ml.classifier.svm.kernel;
 
-import rapaio.data.Frame;
 import rapaio.sys.WS;
 
 /**
@@ -50,12 +49,12 @@ public class GeneralizedMinKernel extends AbstractKernel {
     }
 
     @Override
-    public double eval(Frame df1, int row1, Frame df2, int row2) {
+    public double eval(double[] x, int xOffset, double[] y, int yOffset) {
         double sum = 0;
-        for (String varName : varNames) {
+        for (int i = 0; i < varNames.length; i++) {
             sum += Math.min(
-                    Math.pow(Math.abs(df1.getValue(row1, varName)), alpha),
-                    Math.pow(Math.abs(df2.getValue(row2, varName)), beta)
+                    Math.pow(Math.abs(x[xOffset + i]), alpha),
+                    Math.pow(Math.abs(y[yOffset + i]), beta)
             );
         }
         return sum;
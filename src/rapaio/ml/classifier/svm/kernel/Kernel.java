@@ -25,6 +25,7 @@
 package rapaio.ml.classifier.svm.kernel;
 
 import rapaio.data.Frame;
+import rapaio.ml.common.FeatureBlock;
 
 import java.io.Serializable;
 
@@ -43,8 +44,46 @@ public interface Kernel extends Serializable {
 
     void buildKernel(String[] varNames, Frame df);
 
+    /**
+     * Builds the kernel for the given frame, using a kernel cache with a bounded memory budget.
+     *
+     * @param varNames    names of the variables used by kernel
+     * @param df          frame with training instances
+     * @param cacheSizeMB memory budget of the kernel cache in megabytes
+     */
+    default void buildKernel(String[] varNames, Frame df, int cacheSizeMB) {
+        buildKernel(varNames, df);
+    }
+
     double compute(Frame df1, int row1, Frame df2, int row2);
 
+    /**
+     * Computes the kernel value for two rows of feature blocks, without
+     * using the kernel cache. The columns of the blocks must follow the order
+     * of the variable names used to build the kernel.
+     *
+     * @param x    feature block of the first instance
+     * @param row1 row of the first instance
+     * @param y    feature block of the second instance
+     * @param row2 row of the second instance
+     * @return kernel value
+     */
+    double compute(FeatureBlock x, int row1, FeatureBlock y, int row2);
+
     default void clean() {
     }
+
+    /**
+     * @return number of kernel function evaluations since kernel was built
+     */
+    default long numEvals() {
+        return 0;
+    }
+
+    /**
+     * @return number of kernel values found in cache since kernel was built, -1 if kernel has no cache
+     */
+    default long numCacheHits() {
+        return -1;
+    }
 }
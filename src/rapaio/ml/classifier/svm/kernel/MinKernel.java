@@ -24,8 +24,6 @@
 
 package rapaio.ml.classifier.svm.kernel;
 
-import rapaio.data.Frame;
-
 /**
  * The Histogram Intersection Kernel is also known as the Min Kernel
  * and has been proven useful in image classification.
@@ -39,10 +37,10 @@ public class MinKernel extends AbstractKernel {
     private static final long serialVersionUID = -2388704255494979581L;
 
     @Override
-    public double eval(Frame df1, int row1, Frame df2, int row2) {
+    public double eval(double[] x, int xOffset, double[] y, int yOffset) {
         double sum = 0;
-        for (String varName : varNames) {
-            sum += Math.min(df1.getValue(row1, varName), df2.getValue(row2, varName));
+        for (int i = 0; i < varNames.length; i++) {
+            sum += Math.min(x[xOffset + i], y[yOffset + i]);
         }
         return sum;
     }
@@ -25,7 +25,7 @@
 package rapaio.ml.classifier.svm.kernel;
 
 import rapaio.math.MTools;
-import rapaio.data.Frame;
+import rapaio.ml.common.FeatureBlock;
 
 import static rapaio.sys.WS.formatFlex;
 
@@ -89,16 +89,28 @@ public class PolyKernel extends AbstractKernel {
     }
 
     @Override
-    public double eval(Frame df1, int row1, Frame df2, int row2) {
+    public double eval(double[] x, int xOffset, double[] y, int yOffset) {
 
         if (varNames == null) {
             throw new IllegalArgumentException("This kernel is not build with var names");
         }
+        return eval(dotProd(x, xOffset, y, yOffset));
+    }
+
+    @Override
+    protected double eval(FeatureBlock x, int row1, FeatureBlock y, int row2) {
+
+        if (varNames == null) {
+            throw new IllegalArgumentException("This kernel is not build with var names");
+        }
+        return eval(dotProd(x, row1, y, row2));
+    }
 
-        double result = dotProd(df1, row1, df2, row2);
+    private double eval(double dot) {
+        double result = dot;
         if (exponent != 1.0) {
             result = Math.pow(slope * result + bias, exponent);
         }
         return result;
     }
-}
\ No newline at end of file
+}
@@ -24,7 +24,7 @@
 
 package rapaio.ml.classifier.svm.kernel;
 
-import rapaio.data.Frame;
+import rapaio.ml.common.FeatureBlock;
 import rapaio.sys.WS;
 
 /**
@@ -63,8 +63,17 @@ public class SigmoidKernel extends AbstractKernel {
     }
 
     @Override
-    public double eval(Frame df1, int row1, Frame df2, int row2) {
-        return Math.atan(alpha * dotProd(df1, row1, df2, row2) + c);
+    public double eval(double[] x, int xOffset, double[] y, int yOffset) {
+        return eval(dotProd(x, xOffset, y, yOffset));
+    }
+
+    @Override
+    protected double eval(FeatureBlock x, int row1, FeatureBlock y, int row2) {
+        return eval(dotProd(x, row1, y, row2));
+    }
+
+    private double eval(double dot) {
+        return Math.atan(alpha * dot + c);
     }
 
     @Override
@@ -24,8 +24,6 @@
 
 package rapaio.ml.classifier.svm.kernel;
 
-import rapaio.data.Frame;
-
 /**
  * The Spline kernel is given as a piece-wise cubic polynomial, as derived in the works by Gunn (1998).
  * <p>
@@ -36,12 +34,12 @@ public class SplineKernel extends AbstractKernel {
     private static final long serialVersionUID = -4985948375658836441L;
 
     @Override
-    public double eval(Frame df1, int row1, Frame df2, int row2) {
+    public double eval(double[] x, int xOffset, double[] y, int yOffset) {
 
         double value = 1;
-        for (String varName : varNames) {
-            double x_i = df1.getValue(row1, varName);
-            double y_i = df2.getValue(row2, varName);
+        for (int i = 0; i < varNames.length; i++) {
+            double x_i = x[xOffset + i];
+            double y_i = y[yOffset + i];
             double min = Math.min(x_i, y_i);
             value *= 1 + x_i * y_i + x_i * y_i * min - (x_i + y_i) * Math.pow(min, 2) / 2.0 + Math.pow(min, 3) / 3;
         }
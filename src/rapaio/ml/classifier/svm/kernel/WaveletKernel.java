@@ -24,7 +24,6 @@
 
 package rapaio.ml.classifier.svm.kernel;
 
-import rapaio.data.Frame;
 import rapaio.sys.WS;
 
 import java.util.function.Function;
@@ -76,15 +75,15 @@ public class WaveletKernel extends AbstractKernel {
     }
 
     @Override
-    public double eval(Frame df1, int row1, Frame df2, int row2) {
+    public double eval(double[] x, int xOffset, double[] y, int yOffset) {
         double result = 1;
-        for (String varName : varNames) {
+        for (int i = 0; i < varNames.length; i++) {
             if (invariant) {
-                double diff = df1.getValue(row1, varName) - df2.getValue(row2, varName);
+                double diff = x[xOffset + i] - y[yOffset + i];
                 result *= wavelet.apply(diff / dilation);
             } else {
-                result *= wavelet.apply((df1.getValue(row1, varName) - translation) / dilation);
-                result *= wavelet.apply((df2.getValue(row2, varName) - translation) / dilation);
+                result *= wavelet.apply((x[xOffset + i] - translation) / dilation);
+                result *= wavelet.apply((y[yOffset + i] - translation) / dilation);
             }
         }
         return result;
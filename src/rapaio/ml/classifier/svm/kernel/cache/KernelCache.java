@@ -41,5 +41,18 @@ public interface KernelCache extends Serializable {
 
     void store(Frame df1, int row1, Frame df2, int row2, double value);
 
+    /**
+     * @return number of retrieve calls which found the value in cache
+     */
+    long hits();
+
+    /**
+     * @return number of retrieve calls for cacheable values which were not found in cache
+     */
+    long misses();
+
+    /**
+     * Releases the cached values, hit and miss counters are preserved.
+     */
     void clear();
 }
@@ -0,0 +1,134 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.classifier.svm.kernel.cache;
+
+import rapaio.data.Frame;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Kernel cache which stores kernel rows of a frame in primitive arrays, with a
+ * bounded memory budget. When the budget is exceeded, the least recently used
+ * row is evicted. Kernel values are computed on demand and stored in the row
+ * of the first instance, values not computed yet are marked with NaN.
+ * <p>
+ * Only values between rows of the frame the cache was built for are cached.
+ * The cache never holds more rows than the budget allows, thus a budget smaller
+ * than a single kernel row disables caching.
+ */
+public class LRUKernelCache implements KernelCache {
+
+    private static final long serialVersionUID = 4409826231370941245L;
+
+    private final Frame df;
+    private final int maxRows;
+    private final LinkedHashMap<Integer, double[]> rows;
+    private long hits;
+    private long misses;
+
+    /**
+     * Builds a new cache for the given frame.
+     *
+     * @param df          frame with the instances
+     * @param cacheSizeMB memory budget of the cache in megabytes, 0 disables caching
+     */
+    public LRUKernelCache(Frame df, int cacheSizeMB) {
+        if (cacheSizeMB < 0) {
+            throw new IllegalArgumentException("cache size must be non negative");
+        }
+        this.df = df;
+        long rowBytes = 8L * Math.max(1, df.getRowCount());
+        this.maxRows = (int) Math.min(df.getRowCount(), cacheSizeMB * 1024L * 1024L / rowBytes);
+        this.rows = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = -7265139812401398124L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+                return size() > maxRows;
+            }
+        };
+    }
+
+    /**
+     * @return maximum number of kernel rows which can be stored
+     */
+    public int maxRows() {
+        return maxRows;
+    }
+
+    @Override
+    public Double retrieve(Frame df1, int row1, Frame df2, int row2) {
+        if (df1 != df || df2 != df) {
+            return null;
+        }
+        double[] row = rows.get(row1);
+        if (row != null && !Double.isNaN(row[row2])) {
+            hits++;
+            return row[row2];
+        }
+        row = rows.get(row2);
+        if (row != null && !Double.isNaN(row[row1])) {
+            hits++;
+            return row[row1];
+        }
+        misses++;
+        return null;
+    }
+
+    @Override
+    public void store(Frame df1, int row1, Frame df2, int row2, double value) {
+        if (df1 != df || df2 != df || maxRows == 0) {
+            return;
+        }
+        double[] row = rows.get(row1);
+        if (row == null) {
+            row = new double[df.getRowCount()];
+            Arrays.fill(row, Double.NaN);
+            rows.put(row1, row);
+        }
+        row[row2] = value;
+        double[] symmetric = rows.get(row2);
+        if (symmetric != null) {
+            symmetric[row1] = value;
+        }
+    }
+
+    @Override
+    public long hits() {
+        return hits;
+    }
+
+    @Override
+    public long misses() {
+        return misses;
+    }
+
+    @Override
+    public void clear() {
+        rows.clear();
+    }
+}
@@ -24,22 +24,26 @@
 
 package rapaio.ml.classifier.tree;
 
+import rapaio.core.RandomSource;
 import rapaio.core.tools.DVector;
 import rapaio.data.Frame;
-import rapaio.data.Mapping;
 import rapaio.data.Var;
 import rapaio.data.VarType;
 import rapaio.data.filter.FFilter;
 import rapaio.data.stream.FSpot;
 import rapaio.ml.classifier.AbstractClassifier;
 import rapaio.ml.classifier.CFit;
+import rapaio.ml.common.BinarySplit;
 import rapaio.ml.common.Capabilities;
+import rapaio.ml.common.FlatTree;
+import rapaio.ml.common.VarBins;
 import rapaio.ml.common.VarSelector;
 import rapaio.sys.WS;
 import rapaio.util.FJPool;
 import rapaio.util.Pair;
 import rapaio.util.Tag;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -61,6 +65,7 @@ public class CTree extends AbstractClassifier {
     private int minCount = 1;
     private int maxDepth = -1;
     private double minGain = -1000;
+    private int histogramBins = 0;
 
     private VarSelector varSelector = VarSelector.ALL;
     private Map<String, CTreePurityTest> customTestMap = new HashMap<>();
@@ -73,7 +78,9 @@ public class CTree extends AbstractClassifier {
     // tree root node
     private CTreeNode root;
 
-    private transient Map<CTreeNode, Map<String, Mapping>> sortingCache = new HashMap<>();
+    // compiled representation of the tree, used for fitting when available
+    private FlatTree flat;
+    private int[] flatBestIndex;
 
     // static builders
 
@@ -138,6 +145,7 @@ public class CTree extends AbstractClassifier {
                 .withMinCount(minCount)
                 .withMinGain(minGain)
                 .withMaxDepth(maxDepth)
+                .withHistogramSplits(histogramBins)
                 .withFunction(function)
                 .withMissingHandler(splitter)
                 .withVarSelector(varSelector().newInstance())
@@ -158,6 +166,56 @@ public class CTree extends AbstractClassifier {
         return root;
     }
 
+    /**
+     * Lowers the trained tree into a flat array representation, which is used
+     * afterwards for fitting instead of evaluating node predicates. The compiled
+     * tree is discarded on training or pruning, thus compile must be called again
+     * after those operations or after the nodes are modified directly.
+     * <p>
+     * Only trees with binary splits can be compiled, multiway splits, like
+     * the ones produced by nominal full tests, are not supported.
+     *
+     * @return tree instance
+     */
+    public CTree compile() {
+        if (root == null) {
+            throw new IllegalArgumentException("tree must be trained before compile");
+        }
+        FlatTree tree = FlatTree.empty(firstTargetLevels().length, false);
+        List<Integer> bestIndexes = new ArrayList<>();
+        compileNode(tree, bestIndexes, root);
+        flatBestIndex = bestIndexes.stream().mapToInt(Integer::intValue).toArray();
+        flat = tree;
+        return this;
+    }
+
+    public boolean isCompiled() {
+        return flat != null;
+    }
+
+    private int compileNode(FlatTree tree, List<Integer> bestIndexes, CTreeNode node) {
+        double weight = node.getDensity().sum();
+        if (node.isLeaf()) {
+            bestIndexes.add(node.getBestIndex());
+            DVector density = node.getDensity().solidCopy().normalize();
+            double[] values = new double[tree.width()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = density.get(i);
+            }
+            return tree.addLeaf(weight, values);
+        }
+        BinarySplit split = node.getBestCandidate() == null ? null : node.getBestCandidate().getSplit();
+        if (split == null || node.getChildren().size() != 2) {
+            throw new IllegalArgumentException("tree can't be compiled since node " + node.getId() + " has not a binary split");
+        }
+        bestIndexes.add(node.getBestIndex());
+        int index = tree.addSplit(split, weight);
+        int left = compileNode(tree, bestIndexes, node.getChildren().get(0));
+        int right = compileNode(tree, bestIndexes, node.getChildren().get(1));
+        tree.setChildren(index, left, right);
+        return index;
+    }
+
     public VarSelector varSelector() {
         return varSelector;
     }
@@ -202,6 +260,26 @@ public class CTree extends AbstractClassifier {
         return this;
     }
 
+    public int histogramBins() {
+        return histogramBins;
+    }
+
+    /**
+     * Numeric variables with sort based tests are quantized once into
+     * the given number of bins and split points are searched only on bin bounds,
+     * using histograms of node rows instead of sorted rows.
+     *
+     * @param bins maximum number of bins, 0 to disable histogram splits
+     * @return tree instance
+     */
+    public CTree withHistogramSplits(int bins) {
+        if (bins != 0 && (bins < 2 || bins > VarBins.MAX_BINS)) {
+            throw new IllegalArgumentException("number of histogram bins must be 0 or between 2 and " + VarBins.MAX_BINS);
+        }
+        this.histogramBins = bins;
+        return this;
+    }
+
     public CTree withTest(VarType varType, CTreePurityTest test) {
         this.testMap.put(varType, test);
         return this;
@@ -265,6 +343,8 @@ public class CTree extends AbstractClassifier {
         sb.append("varSelector=").append(varSelector().name()).append(";");
         sb.append("minCount=").append(minCount).append(";");
         sb.append("maxDepth=").append(maxDepth).append(";");
+        if (histogramBins > 0)
+            sb.append("histogramBins=").append(histogramBins).append(";");
         sb.append("tests=").append(testMap.entrySet().stream()
                 .map(e -> e.getKey().name() + ":" + e.getValue().name()).collect(joining(","))
         ).append(";");
@@ -297,11 +377,16 @@ public class CTree extends AbstractClassifier {
         this.varSelector.withVarNames(inputNames());
 
         int rows = df.getRowCount();
+        flat = null;
         root = new CTreeNode(null, "root", spot -> true);
+        // learning runs with its own random stream, which could be on a pool thread
+        long seed = RandomSource.nextLong();
+        Runnable learn = () -> RandomSource.runWithStream(seed,
+                () -> root.learn(this, df, weights, maxDepth() < 0 ? Integer.MAX_VALUE : maxDepth()));
         if (runPoolSize() == 0) {
-            root.learn(this, df, weights, maxDepth() < 0 ? Integer.MAX_VALUE : maxDepth());
+            learn.run();
         } else {
-            FJPool.run(runPoolSize(), () -> root.learn(this, df, weights, maxDepth < 0 ? Integer.MAX_VALUE : maxDepth));
+            FJPool.run(runPoolSize(), learn);
         }
         this.root.fillId(1);
         pruning.get().prune(this, (pruningDf == null) ? df : pruningDf, false);
@@ -313,12 +398,17 @@ public class CTree extends AbstractClassifier {
     }
 
     public void prune(Frame df, boolean all) {
+        flat = null;
         pruning.get().prune(this, df, all);
     }
 
     @Override
     protected CFit coreFit(Frame df, boolean withClasses, boolean withDensities) {
         CFit prediction = CFit.build(this, df, withClasses, withDensities);
+        if (flat != null) {
+            fitCompiled(df, prediction, withClasses, withDensities);
+            return prediction;
+        }
         df.stream().forEach(spot -> {
             Pair<Integer, DVector> res = fitPoint(this, spot, root);
             int index = res._1;
@@ -333,6 +423,33 @@ public class CTree extends AbstractClassifier {
         return prediction;
     }
 
+    private void fitCompiled(Frame df, CFit prediction, boolean withClasses, boolean withDensities) {
+        String[] dict = firstTargetLevels();
+        double[][] columns = flat.columns(df);
+        double[] out = new double[dict.length];
+        for (int row = 0; row < df.getRowCount(); row++) {
+            int leaf = flat.predict(columns, row, out);
+            if (withClasses) {
+                int index;
+                if (leaf >= 0) {
+                    index = flatBestIndex[leaf];
+                } else {
+                    DVector dv = DVector.empty(false, dict);
+                    for (int i = 0; i < dict.length; i++) {
+                        dv.set(i, out[i]);
+                    }
+                    index = dv.findBestIndex();
+                }
+                prediction.firstClasses().setIndex(row, index);
+            }
+            if (withDensities) {
+                for (int j = 0; j < dict.length; j++) {
+                    prediction.firstDensity().setValue(row, j, out[j]);
+                }
+            }
+        }
+    }
+
     protected Pair<Integer, DVector> fitPoint(CTree tree, FSpot spot, CTreeNode node) {
         if (node.isLeaf())
             return Pair.from(node.getBestIndex(), node.getDensity().solidCopy().normalize());
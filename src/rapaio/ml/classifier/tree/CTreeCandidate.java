@@ -25,6 +25,7 @@
 package rapaio.ml.classifier.tree;
 
 import rapaio.data.stream.FSpot;
+import rapaio.ml.common.BinarySplit;
 import rapaio.util.func.SPredicate;
 
 import java.io.Serializable;
@@ -42,6 +43,7 @@ public class CTreeCandidate implements Comparable<CTreeCandidate>, Serializable
     private final String testName;
     private final List<String> groupNames = new ArrayList<>();
     private final List<SPredicate<FSpot>> groupPredicates = new ArrayList<>();
+    private BinarySplit split;
 
     public CTreeCandidate(double score, String testName) {
         this.score = score;
@@ -64,6 +66,17 @@ public class CTreeCandidate implements Comparable<CTreeCandidate>, Serializable
         return groupPredicates;
     }
 
+    /**
+     * @return structured description of the split, if the groups are described by a binary split, null otherwise
+     */
+    public BinarySplit getSplit() {
+        return split;
+    }
+
+    public void setSplit(BinarySplit split) {
+        this.split = split;
+    }
+
     public double getScore() {
         return score;
     }
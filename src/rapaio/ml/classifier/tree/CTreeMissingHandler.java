@@ -53,7 +53,7 @@ public interface CTreeMissingHandler extends Tagged, Serializable {
         }
 
         @Override
-        public Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, CTreeCandidate candidate) {
+        public Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, CTreeCandidate candidate) {
             List<SPredicate<FSpot>> p = candidate.getGroupPredicates();
             List<Mapping> mappings = IntStream.range(0, p.size()).boxed().map(i -> Mapping.empty()).collect(toList());
 
@@ -65,10 +65,7 @@ public interface CTreeMissingHandler extends Tagged, Serializable {
                     }
                 }
             });
-            return Pair.from(
-                    mappings.stream().map(df::mapRows).collect(toList()),
-                    mappings.stream().map(weights::mapRows).collect(toList())
-            );
+            return Pair.from(mappings, mappings.stream().map(weights::mapRows).collect(toList()));
         }
 
     };
@@ -81,7 +78,7 @@ public interface CTreeMissingHandler extends Tagged, Serializable {
         }
 
         @Override
-        public Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, CTreeCandidate candidate) {
+        public Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, CTreeCandidate candidate) {
             List<SPredicate<FSpot>> p = candidate.getGroupPredicates();
             List<Mapping> mappings = IntStream.range(0, p.size()).boxed().map(i -> Mapping.empty()).collect(toList());
 
@@ -109,17 +106,14 @@ public interface CTreeMissingHandler extends Tagged, Serializable {
 
             mappings.get(index).addAll(missingSpots);
 
-            return Pair.from(
-                    mappings.stream().map(df::mapRows).collect(toList()),
-                    mappings.stream().map(weights::mapRows).collect(toList())
-            );
+            return Pair.from(mappings, mappings.stream().map(weights::mapRows).collect(toList()));
         }
     };
     CTreeMissingHandler ToAllWeighted = new CTreeMissingHandler() {
         private static final long serialVersionUID = 5936044048099571710L;
 
         @Override
-        public Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, CTreeCandidate candidate) {
+        public Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, CTreeCandidate candidate) {
             List<SPredicate<FSpot>> pred = candidate.getGroupPredicates();
             List<Mapping> mappings = IntStream.range(0, pred.size()).boxed().map(i -> Mapping.empty()).collect(toList());
 
@@ -151,8 +145,7 @@ public interface CTreeMissingHandler extends Tagged, Serializable {
                     weightsList.get(ii).addValue(weights.isMissing(row) ? p[ii] : weights.getValue(row) * p[ii]);
                 });
             }
-            List<Frame> frames = mappings.stream().map(df::mapRows).collect(toList());
-            return Pair.from(frames, weightsList);
+            return Pair.from(mappings, weightsList);
         }
 
         @Override
@@ -164,7 +157,7 @@ public interface CTreeMissingHandler extends Tagged, Serializable {
         private static final long serialVersionUID = -4762758695801141929L;
 
         @Override
-        public Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, CTreeCandidate candidate) {
+        public Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, CTreeCandidate candidate) {
             List<SPredicate<FSpot>> pred = candidate.getGroupPredicates();
             List<Mapping> mappings = IntStream.range(0, pred.size()).boxed().map(i -> Mapping.empty()).collect(toList());
 
@@ -179,9 +172,8 @@ public interface CTreeMissingHandler extends Tagged, Serializable {
                 missingSpots.add(s.getRow());
             });
             missingSpots.forEach(rowId -> mappings.get(RandomSource.nextInt(mappings.size())).add(rowId));
-            List<Frame> frameList = mappings.stream().map(df::mapRows).collect(toList());
             List<Var> weightList = mappings.stream().map(weights::mapRows).collect(toList());
-            return Pair.from(frameList, weightList);
+            return Pair.from(mappings, weightList);
         }
 
         @Override
@@ -190,5 +182,18 @@ public interface CTreeMissingHandler extends Tagged, Serializable {
         }
     };
 
-    Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, CTreeCandidate candidate);
+    /**
+     * Distributes the rows of the frame into groups, one group for each candidate predicate.
+     *
+     * @param df        frame to be split
+     * @param weights   weights of the rows
+     * @param candidate candidate which describes the split
+     * @return row positions from the given frame for each group and the corresponding weights
+     */
+    Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, CTreeCandidate candidate);
+
+    default Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, CTreeCandidate candidate) {
+        Pair<List<Mapping>, List<Var>> split = performMapping(df, weights, candidate);
+        return Pair.from(split._1.stream().map(df::mapRows).collect(toList()), split._2);
+    }
 }
@@ -24,23 +24,32 @@
 
 package rapaio.ml.classifier.tree;
 
+import rapaio.core.RandomSource;
 import rapaio.core.tools.DVector;
 import rapaio.data.Frame;
+import rapaio.data.Mapping;
 import rapaio.data.Var;
 import rapaio.data.stream.FSpot;
+import rapaio.ml.common.BinHistogram;
+import rapaio.ml.common.VarBins;
 import rapaio.ml.common.VarSelector;
 import rapaio.util.Pair;
 import rapaio.util.func.SPredicate;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Created by <a href="mailto:padreati@yahoo.com>Aurelian Tutuianu</a>.
@@ -120,6 +129,10 @@ public class CTreeNode implements Serializable {
     }
 
     public void learn(CTree tree, Frame df, Var weights, int depth) {
+        learn(tree, df, weights, depth, buildSplitCache(tree, df));
+    }
+
+    void learn(CTree tree, Frame df, Var weights, int depth, CTreeSplitCache cache) {
         density = DVector.fromWeights(false, df.getVar(tree.firstTargetName()), weights);
         counter = DVector.fromCount(false, df.getVar(tree.firstTargetName()));
         bestIndex = density.findBestIndex();
@@ -137,30 +150,21 @@ public class CTreeNode implements Serializable {
         List<CTreeCandidate> candidateList = new ArrayList<>();
         Queue<String> exhaustList = new ConcurrentLinkedQueue<>();
 
+        // candidates are computed with random streams given by their position, which gives
+        // the same candidates and tie breaks for sequential and parallel runs
+        long seed = RandomSource.nextLong();
         if (tree.runPoolSize() == 0) {
             int m = varSel.mCount();
-            for (String testCol : nextVarNames) {
+            for (int i = 0; i < nextVarNames.length; i++) {
+                String testCol = nextVarNames[i];
                 if (m <= 0) {
                     continue;
                 }
                 if (testCol.equals(tree.firstTargetName())) {
                     continue;
                 }
-
-                CTreePurityTest test = null;
-                if (tree.customTestMap().containsKey(testCol)) {
-                    test = tree.customTestMap().get(testCol);
-                }
-                if (tree.testMap().containsKey(df.getVar(testCol).getType())) {
-                    test = tree.testMap().get(df.getVar(testCol).getType());
-                }
-                if (test == null) {
-                    throw new IllegalArgumentException("can't train ctree with no " +
-                            "tests for given variable: " + df.getVar(testCol).getName() +
-                            " [" + df.getVar(testCol).getType().name() + "]");
-                }
-                CTreeCandidate candidate = test.computeCandidate(
-                        tree, df, weights, testCol, tree.firstTargetName(), tree.getFunction());
+                CTreeCandidate candidate = RandomSource.callWithStream(RandomSource.streamSeed(seed, i),
+                        () -> computeCandidate(tree, df, weights, testCol, cache));
                 if (candidate != null) {
                     candidateList.add(candidate);
                     m--;
@@ -175,23 +179,11 @@ public class CTreeNode implements Serializable {
             while (m > 0 && start < nextVarNames.length) {
                 List<CTreeCandidate> next = IntStream.range(start, Math.min(nextVarNames.length, start + m))
                         .parallel()
-                        .mapToObj(i -> nextVarNames[i])
-                        .filter(testCol -> !testCol.equals(tree.firstTargetName()))
-                        .map(testCol -> {
-                            CTreePurityTest test = null;
-                            if (tree.customTestMap().containsKey(testCol)) {
-                                test = tree.customTestMap().get(testCol);
-                            }
-                            if (tree.testMap().containsKey(df.getVar(testCol).getType())) {
-                                test = tree.testMap().get(df.getVar(testCol).getType());
-                            }
-                            if (test == null) {
-                                throw new IllegalArgumentException("can't train ctree with no " +
-                                        "tests for given variable: " + df.getVar(testCol).getName() +
-                                        " [" + df.getVar(testCol).getType().name() + "]");
-                            }
-                            CTreeCandidate candidate = test.computeCandidate(
-                                    tree, df, weights, testCol, tree.firstTargetName(), tree.getFunction());
+                        .filter(i -> !nextVarNames[i].equals(tree.firstTargetName()))
+                        .mapToObj(i -> {
+                            String testCol = nextVarNames[i];
+                            CTreeCandidate candidate = RandomSource.callWithStream(RandomSource.streamSeed(seed, i),
+                                    () -> computeCandidate(tree, df, weights, testCol, cache));
                             if (candidate == null) {
                                 exhaustList.add(testCol);
                             }
@@ -215,19 +207,154 @@ public class CTreeNode implements Serializable {
 
         leaf = false;
         bestCandidate = candidateList.get(0);
-        String testName = bestCandidate.getTestName();
 
         // now that we have a best candidate, do the effective split
-        Pair<List<Frame>, List<Var>> frames = tree.getMissingHandler().performSplit(df, weights, bestCandidate);
+        Pair<List<Mapping>, List<Var>> mappings = tree.getMissingHandler().performMapping(df, weights, bestCandidate);
 
         for (int i = 0; i < bestCandidate.getGroupNames().size(); i++) {
             CTreeNode child = new CTreeNode(this, bestCandidate.getGroupNames().get(i), bestCandidate.getGroupPredicates().get(i));
             children.add(child);
         }
         tree.varSelector().removeVarNames(exhaustList);
+        List<CTreeSplitCache> childCaches = new ArrayList<>();
         for (int i = 0; i < children.size(); i++) {
-            children.get(i).learn(tree, frames._1.get(i), frames._2.get(i), depth - 1);
+            Mapping mapping = mappings._1.get(i);
+            Map<String, Mapping> childSortedRows = partitionSortedRows(cache.sortedRows, exhaustList, mapping, df.getRowCount());
+            int[] childRows = null;
+            if (cache.rows != null) {
+                childRows = new int[mapping.size()];
+                for (int j = 0; j < childRows.length; j++) {
+                    childRows[j] = cache.rows[mapping.get(j)];
+                }
+            }
+            childCaches.add(new CTreeSplitCache(cache.bins, childSortedRows, childRows));
+        }
+        subtractHistograms(tree, df, cache, mappings, childCaches, exhaustList);
+        for (int i = 0; i < children.size(); i++) {
+            Mapping mapping = mappings._1.get(i);
+            children.get(i).learn(tree, df.mapRows(mapping), mappings._2.get(i), depth - 1, childCaches.get(i));
         }
         tree.varSelector().addVarNames(exhaustList);
     }
+
+    private CTreeCandidate computeCandidate(CTree tree, Frame df, Var weights, String testCol, CTreeSplitCache cache) {
+        CTreePurityTest test = findTest(tree, df, testCol);
+        if (test == null) {
+            throw new IllegalArgumentException("can't train ctree with no " +
+                    "tests for given variable: " + df.getVar(testCol).getName() +
+                    " [" + df.getVar(testCol).getType().name() + "]");
+        }
+        VarBins bins = cache.bins.get(testCol);
+        if (bins != null) {
+            BinHistogram hist = cache.histograms.computeIfAbsent(testCol,
+                    name -> buildHistogram(tree, df, weights, bins, cache.rows));
+            return test.computeCandidate(tree, df, weights, testCol, tree.firstTargetName(), tree.getFunction(), bins, hist);
+        }
+        Mapping sort = cache.sortedRows.get(testCol);
+        if (sort != null) {
+            return test.computeCandidate(tree, df, weights, testCol, tree.firstTargetName(), tree.getFunction(), sort);
+        }
+        return test.computeCandidate(tree, df, weights, testCol, tree.firstTargetName(), tree.getFunction());
+    }
+
+    private static CTreePurityTest findTest(CTree tree, Frame df, String testCol) {
+        CTreePurityTest test = null;
+        if (tree.customTestMap().containsKey(testCol)) {
+            test = tree.customTestMap().get(testCol);
+        }
+        if (tree.testMap().containsKey(df.getVar(testCol).getType())) {
+            test = tree.testMap().get(df.getVar(testCol).getType());
+        }
+        return test;
+    }
+
+    /**
+     * Sorts once the rows for all variables with sort based tests. The sorted rows
+     * are later partitioned stable into children, so that sorting is not repeated
+     * for each node. When histogram splits are enabled, the variables are quantized
+     * into bins instead of being sorted.
+     */
+    private static CTreeSplitCache buildSplitCache(CTree tree, Frame df) {
+        List<String> sortNames = Arrays.stream(df.getVarNames())
+                .filter(name -> !name.equals(tree.firstTargetName()))
+                .filter(name -> {
+                    CTreePurityTest test = findTest(tree, df, name);
+                    return test != null && test.isSortBased();
+                })
+                .collect(Collectors.toList());
+        Stream<String> stream = (tree.runPoolSize() == 0) ? sortNames.stream() : sortNames.parallelStream();
+        if (tree.histogramBins() > 0) {
+            Map<String, VarBins> bins = stream.collect(Collectors.toMap(name -> name, name -> VarBins.from(df.getVar(name), tree.histogramBins())));
+            return new CTreeSplitCache(bins, Collections.emptyMap(), IntStream.range(0, df.getRowCount()).toArray());
+        }
+        Map<String, Mapping> sortedRows = stream.collect(Collectors.toMap(name -> name, name -> CTreePurityTest.sortRows(df.getVar(name))));
+        return new CTreeSplitCache(Collections.emptyMap(), sortedRows, null);
+    }
+
+    private static BinHistogram buildHistogram(CTree tree, Frame df, Var weights, VarBins bins, int[] rows) {
+        Var target = df.getVar(tree.firstTargetName());
+        int levels = target.getLevels().length;
+        // one column for each target level and a last column with row counts
+        BinHistogram hist = BinHistogram.empty(bins.missingBin() + 1, levels + 1);
+        for (int i = 0; i < df.getRowCount(); i++) {
+            int bin = bins.bin(rows[i]);
+            hist.update(bin, target.getIndex(i), weights.getValue(i));
+            hist.update(bin, levels, 1);
+        }
+        return hist;
+    }
+
+    /**
+     * When a node is split exactly into two children, the histograms of the larger child are
+     * computed as a difference between node histograms and histograms of the smaller child.
+     */
+    private static void subtractHistograms(CTree tree, Frame df, CTreeSplitCache cache, Pair<List<Mapping>, List<Var>> mappings,
+                                           List<CTreeSplitCache> childCaches, Collection<String> exhaustList) {
+        if (cache.histograms.isEmpty() || mappings._1.size() != 2
+                || mappings._1.get(0).size() + mappings._1.get(1).size() != df.getRowCount()) {
+            return;
+        }
+        int small = (mappings._1.get(0).size() <= mappings._1.get(1).size()) ? 0 : 1;
+        int large = 1 - small;
+        Frame smallDf = df.mapRows(mappings._1.get(small));
+        Var smallWeights = mappings._2.get(small);
+        for (Map.Entry<String, BinHistogram> e : cache.histograms.entrySet()) {
+            if (exhaustList.contains(e.getKey())) {
+                continue;
+            }
+            BinHistogram smallHist = buildHistogram(tree, smallDf, smallWeights, cache.bins.get(e.getKey()), childCaches.get(small).rows);
+            childCaches.get(small).histograms.put(e.getKey(), smallHist);
+            childCaches.get(large).histograms.put(e.getKey(), e.getValue().minus(smallHist));
+        }
+    }
+
+    /**
+     * Keeps from each parent sorting only the rows which goes into child,
+     * translated into child positions and preserving the sorted order.
+     */
+    private static Map<String, Mapping> partitionSortedRows(Map<String, Mapping> sortedRows, Collection<String> exhaustList,
+                                                            Mapping mapping, int rowCount) {
+        int[] childPos = new int[rowCount];
+        Arrays.fill(childPos, -1);
+        for (int i = 0; i < mapping.size(); i++) {
+            childPos[mapping.get(i)] = i;
+        }
+        Map<String, Mapping> result = new HashMap<>();
+        for (Map.Entry<String, Mapping> e : sortedRows.entrySet()) {
+            if (exhaustList.contains(e.getKey())) {
+                continue;
+            }
+            Mapping parentRows = e.getValue();
+            int[] rows = new int[mapping.size()];
+            int len = 0;
+            for (int i = 0; i < parentRows.size(); i++) {
+                int pos = childPos[parentRows.get(i)];
+                if (pos >= 0) {
+                    rows[len++] = pos;
+                }
+            }
+            result.put(e.getKey(), Mapping.wrap(len == rows.length ? rows : Arrays.copyOf(rows, len)));
+        }
+        return result;
+    }
 }
@@ -28,9 +28,13 @@ import rapaio.core.RandomSource;
 import rapaio.core.tools.DTable;
 import rapaio.data.Frame;
 import rapaio.data.IndexVar;
+import rapaio.data.Mapping;
 import rapaio.data.RowComparators;
 import rapaio.data.Var;
 import rapaio.data.filter.var.VFRefSort;
+import rapaio.ml.common.BinHistogram;
+import rapaio.ml.common.BinarySplit;
+import rapaio.ml.common.VarBins;
 import rapaio.sys.WS;
 import rapaio.util.Tagged;
 
@@ -66,8 +70,18 @@ public interface CTreePurityTest extends Tagged, Serializable {
             return "NumericBinary";
         }
 
+        @Override
+        public boolean isSortBased() {
+            return true;
+        }
+
         @Override
         public CTreeCandidate computeCandidate(CTree c, Frame df, Var weights, String testName, String targetName, CTreePurityFunction function) {
+            return computeCandidate(c, df, weights, testName, targetName, function, CTreePurityTest.sortRows(df.getVar(testName)));
+        }
+
+        @Override
+        public CTreeCandidate computeCandidate(CTree c, Frame df, Var weights, String testName, String targetName, CTreePurityFunction function, Mapping sort) {
             Var test = df.getVar(testName);
             Var target = df.getVar(targetName);
 
@@ -79,13 +93,11 @@ public interface CTreePurityTest extends Tagged, Serializable {
                 dt.update(row, target.getIndex(i), weights.getValue(i));
             }
 
-            Var sort = new VFRefSort(RowComparators.numeric(test, true)).fitApply(IndexVar.seq(df.getRowCount()));
-
             CTreeCandidate best = null;
             double bestScore = 0.0;
 
             for (int i = 0; i < df.getRowCount(); i++) {
-                int row = sort.getIndex(i);
+                int row = sort.get(i);
 
                 if (test.isMissing(row)) continue;
 
@@ -94,7 +106,7 @@ public interface CTreePurityTest extends Tagged, Serializable {
 
                 if (i >= misCount + c.minCount() - 1 &&
                         i < df.getRowCount() - c.minCount() &&
-                        test.getValue(sort.getIndex(i)) < test.getValue(sort.getIndex(i + 1))) {
+                        test.getValue(sort.get(i)) < test.getValue(sort.get(i + 1))) {
 
                     double currentScore = function.compute(dt);
                     if (best != null) {
@@ -103,19 +115,77 @@ public interface CTreePurityTest extends Tagged, Serializable {
                         if (comp == 0 && RandomSource.nextDouble() > 0.5) continue;
                     }
                     best = new CTreeCandidate(bestScore, testName);
-                    double testValue = (test.getValue(sort.getIndex(i)) + test.getValue(sort.getIndex(i + 1))) / 2.0;
+                    double testValue = (test.getValue(sort.get(i)) + test.getValue(sort.get(i + 1))) / 2.0;
                     best.addGroup(
                             String.format("%s <= %s", testName, WS.formatFlex(testValue)),
                             spot -> !spot.isMissing(testName) && spot.getValue(testName) <= testValue);
                     best.addGroup(
                             String.format("%s > %s", testName, WS.formatFlex(testValue)),
                             spot -> !spot.isMissing(testName) && spot.getValue(testName) > testValue);
+                    best.setSplit(BinarySplit.numeric(testName, testValue));
 
                     bestScore = currentScore;
                 }
             }
             return best;
         }
+
+        @Override
+        public CTreeCandidate computeCandidate(CTree c, Frame df, Var weights, String testName, String targetName, CTreePurityFunction function,
+                                               VarBins bins, BinHistogram hist) {
+            Var target = df.getVar(targetName);
+            int levels = target.getLevels().length;
+
+            DTable dt = DTable.empty(DTable.NUMERIC_DEFAULT_LABELS, target.getLevels(), false);
+            double rightCount = 0;
+            for (int bin = 0; bin < hist.bins(); bin++) {
+                int row = (bin == bins.missingBin()) ? 0 : 2;
+                for (int j = 0; j < levels; j++) {
+                    dt.update(row, j, Math.max(0, hist.get(bin, j)));
+                }
+                if (row == 2) {
+                    rightCount += hist.get(bin, levels);
+                }
+            }
+
+            CTreeCandidate best = null;
+            double bestScore = 0.0;
+            double leftCount = 0;
+
+            for (int bin = 0; bin < bins.binCount() - 1; bin++) {
+                double count = hist.get(bin, levels);
+                if (count <= 0) continue;
+
+                for (int j = 0; j < levels; j++) {
+                    double value = Math.max(0, hist.get(bin, j));
+                    dt.update(2, j, -value);
+                    dt.update(1, j, value);
+                }
+                leftCount += count;
+                rightCount -= count;
+
+                if (leftCount < c.minCount() || rightCount < Math.max(1, c.minCount())) continue;
+
+                double currentScore = function.compute(dt);
+                if (best != null) {
+                    int comp = Double.compare(bestScore, currentScore);
+                    if (comp > 0) continue;
+                    if (comp == 0 && RandomSource.nextDouble() > 0.5) continue;
+                }
+                best = new CTreeCandidate(currentScore, testName);
+                double testValue = bins.cut(bin);
+                best.addGroup(
+                        String.format("%s <= %s", testName, WS.formatFlex(testValue)),
+                        spot -> !spot.isMissing(testName) && spot.getValue(testName) <= testValue);
+                best.addGroup(
+                        String.format("%s > %s", testName, WS.formatFlex(testValue)),
+                        spot -> !spot.isMissing(testName) && spot.getValue(testName) > testValue);
+                best.setSplit(BinarySplit.numeric(testName, testValue));
+
+                bestScore = currentScore;
+            }
+            return best;
+        }
     };
     CTreePurityTest BinaryBinary = new CTreePurityTest() {
 
@@ -139,6 +209,7 @@ public interface CTreePurityTest extends Tagged, Serializable {
             CTreeCandidate best = new CTreeCandidate(function.compute(dt), testName);
             best.addGroup(testName + " == 1", spot -> spot.getBinary(testName));
             best.addGroup(testName + " != 1", spot -> !spot.getBinary(testName));
+            best.setSplit(BinarySplit.level(testName, "true", true));
             return best;
 
         }
@@ -215,10 +286,58 @@ public interface CTreePurityTest extends Tagged, Serializable {
                 best = new CTreeCandidate(currentScore, testName);
                 best.addGroup(testName + " == " + testLabel, spot -> spot.getLabel(testName).equals(testLabel));
                 best.addGroup(testName + " != " + testLabel, spot -> !spot.getLabel(testName).equals(testLabel));
+                best.setSplit(BinarySplit.level(testName, testLabel, true));
             }
             return best;
         }
     };
 
     CTreeCandidate computeCandidate(CTree c, Frame df, Var w, String testName, String targetName, CTreePurityFunction function);
+
+    /**
+     * Computes the candidate for tests which works over sorted values, using
+     * an already computed sorting of the rows, thus avoiding a sort for each node.
+     *
+     * @param sort positions of the frame rows sorted ascending by the test variable
+     */
+    default CTreeCandidate computeCandidate(CTree c, Frame df, Var w, String testName, String targetName, CTreePurityFunction function, Mapping sort) {
+        return computeCandidate(c, df, w, testName, targetName, function);
+    }
+
+    /**
+     * Computes the candidate for tests which works over sorted values, using
+     * a histogram of the node rows over the bins of the test variable.
+     * Only the bin bounds are evaluated as split points.
+     *
+     * @param bins bins of the test variable
+     * @param hist histogram of node rows, having weights for each target level and row counts on the last column
+     */
+    default CTreeCandidate computeCandidate(CTree c, Frame df, Var w, String testName, String targetName, CTreePurityFunction function,
+                                            VarBins bins, BinHistogram hist) {
+        return computeCandidate(c, df, w, testName, targetName, function);
+    }
+
+    /**
+     * @return true if the test works over rows sorted by test variable values
+     */
+    default boolean isSortBased() {
+        return false;
+    }
+
+    /**
+     * Builds row positions sorted ascending by the values of the given variable,
+     * with missing values placed first, as ordered by {@link RowComparators#numeric(Var, boolean)}.
+     * The numeric binary test relies on this order, since it counts split positions after the missing values.
+     *
+     * @param test variable used for sorting
+     * @return mapping with sorted row positions
+     */
+    static Mapping sortRows(Var test) {
+        Var sort = new VFRefSort(RowComparators.numeric(test, true)).fitApply(IndexVar.seq(test.getRowCount()));
+        int[] rows = new int[sort.getRowCount()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = sort.getIndex(i);
+        }
+        return Mapping.wrap(rows);
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.classifier.tree;
+
+import rapaio.data.Mapping;
+import rapaio.ml.common.BinHistogram;
+import rapaio.ml.common.VarBins;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Information computed once at the root of the tree and passed down to
+ * children nodes at learning time, in order to avoid repeating work on each node.
+ */
+final class CTreeSplitCache {
+
+    // bins of the variables which are tested using histograms, shared by all nodes
+    final Map<String, VarBins> bins;
+    // positions of rows in node frame, sorted by values of sort based test variables
+    final Map<String, Mapping> sortedRows;
+    // positions of node rows in the frame used to learn the root, available only with histogram splits
+    final int[] rows;
+    // histograms of node rows over the bins of the test variables
+    final Map<String, BinHistogram> histograms = new ConcurrentHashMap<>();
+
+    CTreeSplitCache(Map<String, VarBins> bins, Map<String, Mapping> sortedRows, int[] rows) {
+        this.bins = bins;
+        this.sortedRows = sortedRows;
+        this.rows = rows;
+    }
+}
@@ -24,24 +24,23 @@
 
 package rapaio.ml.clustering;
 
-import rapaio.core.stat.Mean;
 import rapaio.data.*;
 import rapaio.data.filter.Filters;
+import rapaio.ml.common.FeatureBlock;
 import rapaio.ml.common.distance.Distance;
 import rapaio.ml.common.distance.KMeansInitMethod;
 import rapaio.printer.Printable;
 import rapaio.sys.WS;
-import rapaio.util.Pair;
+import rapaio.util.FJPool;
 import rapaio.util.Tag;
 import rapaio.printer.Summary;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
-import java.util.stream.IntStream;
 
-import static java.util.stream.Collectors.toList;
 import static rapaio.core.CoreTools.*;
 
 /**
@@ -51,10 +50,33 @@ import static rapaio.core.CoreTools.*;
  */
 public class KMeans implements Printable {
 
+    /**
+     * Method used to assign instances to centroids.
+     */
+    public enum Method {
+        /**
+         * Computes distances from each instance to all centroids on each iteration.
+         */
+        LLOYD,
+        /**
+         * Keeps for each instance an upper bound for the distance to its centroid and
+         * a single lower bound for the distances to all other centroids, skipping the
+         * search when bounds shows the assignment cannot change (Hamerly, 2010).
+         */
+        HAMERLY,
+        /**
+         * Keeps for each instance a lower bound for the distance to each centroid,
+         * and uses distances between centroids to skip distance computations (Elkan, 2003).
+         * Uses memory proportional with number of instances times k.
+         */
+        ELKAN
+    }
+
     private int k = 2;
     private int runs = Integer.MAX_VALUE;
     private Tag<KMeansInitMethod> init = KMeansInitMethod.FORGY;
     private Tag<Distance> distance = Distance.EUCLIDEAN;
+    private Method method = Method.LLOYD;
     private Consumer<KMeans> runningHook = null;
     private Frame summary;
     private double eps = 1e-20;
@@ -69,6 +91,15 @@ public class KMeans implements Printable {
     private NumericVar errors;
     private Map<Integer, NumericVar> clusterErrors;
 
+    // working state, available only while clustering
+
+    private FeatureBlock centroidBlock;
+    private Partial[] partials;
+    private double[] upper;
+    private double[] lower;
+    private double[][] lowers;
+    private double[] moves;
+
     // summary artifacts
 
     private NumericVar summaryAllDist;
@@ -94,6 +125,19 @@ public class KMeans implements Printable {
         return this;
     }
 
+    /**
+     * Sets the method used to assign instances to centroids. Methods which use
+     * bounds produce the same assignments as {@link Method#LLOYD}, with fewer distance
+     * computations, but require the distance to satisfy the triangle inequality.
+     *
+     * @param method assignment method
+     * @return instance of KMeans
+     */
+    public KMeans withMethod(Method method) {
+        this.method = method;
+        return this;
+    }
+
     public final KMeans withRunningHook(Consumer<KMeans> hook) {
         runningHook = hook;
         return this;
@@ -109,12 +153,25 @@ public class KMeans implements Printable {
         clusterErrors = new HashMap<>();
         IndexVar.seq(k).stream().forEach(c -> clusterErrors.put(c.getIndex(), NumericVar.empty().withName("c" + (c.getIndex() + 1) + "_errors")));
 
-        assignToCentroids(df);
+        FeatureBlock block = FeatureBlock.from(df, inputs);
+        centroidBlock = FeatureBlock.from(centroids, inputs);
+        int chunks = Math.max(1, Math.min(block.rowCount(), 4 * FJPool.maxThreads()));
+        partials = new Partial[chunks];
+        for (int i = 0; i < chunks; i++) {
+            partials[i] = new Partial(k, inputs.length);
+        }
+        upper = (method == Method.LLOYD) ? null : new double[block.rowCount()];
+        lower = (method == Method.HAMERLY) ? new double[block.rowCount()] : null;
+        // one array for each instance, such that indexes do not overflow for large data sets
+        lowers = (method == Method.ELKAN) ? new double[block.rowCount()][k] : null;
+        moves = new double[k];
+
+        assignToCentroids(block, true);
 
         int rounds = runs;
         while (rounds-- > 0) {
-            recomputeCentroids(df);
-            assignToCentroids(df);
+            recomputeCentroids();
+            assignToCentroids(block, false);
             if (runningHook != null) {
                 runningHook.accept(this);
             }
@@ -123,7 +180,11 @@ public class KMeans implements Printable {
                 break;
             }
         }
-        buildSummary(df);
+        buildSummary(block);
+        centroidBlock = null;
+        partials = null;
+        upper = lower = moves = null;
+        lowers = null;
         learned = true;
     }
 
@@ -138,62 +199,227 @@ public class KMeans implements Printable {
         }
     }
 
+    /**
+     * Partial results of the assignment step over a chunk of rows.
+     */
+    private static final class Partial {
+        private final double[] sums;
+        private final int[] counts;
+        private final double[] errors;
+
+        Partial(int k, int len) {
+            sums = new double[k * len];
+            counts = new int[k];
+            errors = new double[k];
+        }
 
-    private void assignToCentroids(Frame df) {
+        void clear() {
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            Arrays.fill(errors, 0);
+        }
+    }
+
+    /**
+     * Assigns each instance to its closest centroid. The work is split into chunks of rows
+     * processed in parallel, each chunk accumulating sums of instances and errors of
+     * its rows for each cluster, which are reduced at the end in chunk order.
+     *
+     * @param block values of instances
+     * @param first true if this is the first assignment, when bounds are not yet available
+     */
+    private void assignToCentroids(FeatureBlock block, boolean first) {
         if (debug) WS.println("assignToCentroids called ..");
-        double totalError = 0.0;
-        double[] err = new double[centroids.getRowCount()];
-        List<Pair<Integer, Double>> pairs = IntStream.range(0, df.getRowCount()).parallel().boxed().map(i -> {
-            double d = Double.NaN;
-            int cluster = -1;
-            for (int j = 0; j < centroids.getRowCount(); j++) {
-                double dd = distance.get().distance(df, i, centroids, j, inputs);
-                if (!Double.isFinite(dd)) continue;
-                if (Double.isNaN(dd)) continue;
-                if (!Double.isNaN(d)) {
-                    if (dd < d) {
-                        d = dd;
-                        cluster = j;
+        Distance d = distance.get();
+        int n = block.rowCount();
+        double[] half = (method == Method.LLOYD || first) ? null : new double[k];
+        double[][] between = (method == Method.ELKAN && !first) ? new double[k][k] : null;
+        if (half != null) {
+            Arrays.fill(half, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < k; i++) {
+                for (int j = i + 1; j < k; j++) {
+                    double dd = d.distance(centroidBlock, i, centroidBlock, j);
+                    half[i] = Math.min(half[i], dd / 2);
+                    half[j] = Math.min(half[j], dd / 2);
+                    if (between != null) {
+                        between[i][j] = dd;
+                        between[j][i] = dd;
                     }
+                }
+            }
+        }
+        FJPool.forEach(FJPool.maxThreads(), partials.length, chunk -> {
+            Partial partial = partials[chunk];
+            partial.clear();
+            int len = block.colCount();
+            double[] values = block.values();
+            for (int i = (int) ((long) n * chunk / partials.length); i < (int) ((long) n * (chunk + 1) / partials.length); i++) {
+                double error;
+                if (method == Method.LLOYD || first) {
+                    error = scan(d, block, i, first);
+                } else if (method == Method.HAMERLY) {
+                    error = hamerly(d, block, i, half);
                 } else {
-                    d = dd;
-                    cluster = j;
+                    error = elkan(d, block, i, half, between);
+                }
+                int cluster = arrows[i];
+                partial.errors[cluster] += error * error;
+                partial.counts[cluster]++;
+                int offset = block.offset(i);
+                for (int j = 0; j < len; j++) {
+                    partial.sums[cluster * len + j] += values[offset + j];
                 }
             }
-            if (cluster == -1) {
-                throw new RuntimeException("cluster could not be computed");
+        });
+        double totalError = 0.0;
+        for (int j = 0; j < k; j++) {
+            double err = 0;
+            for (Partial partial : partials) {
+                err += partial.errors[j];
             }
-            double error = Math.pow(d, 2);
-            arrows[i] = cluster;
-            return Pair.from(cluster, error);
-        }).collect(toList());
-        for (Pair<Integer, Double> p : pairs) {
-            totalError += p._2;
-            err[p._1] += p._2;
-        }
-        for (int i = 0; i < err.length; i++) {
-            clusterErrors.get(i).addValue(err[i]);
+            clusterErrors.get(j).addValue(err);
+            totalError += err;
         }
         errors.addValue(totalError);
     }
 
-    private void recomputeCentroids(Frame df) {
-        if (debug) WS.println("recomputeCentroids called ..");
-        Var[] means = IntStream.range(0, k).boxed().map(i -> NumericVar.fill(df.getRowCount(), 0)).toArray(NumericVar[]::new);
-        for (String input : inputs) {
-            for (int j = 0; j < k; j++) {
-                means[j].clear();
+    /**
+     * Computes distances to all centroids and assigns the closest one. When bounds are used,
+     * they are initialized with the exact distances.
+     *
+     * @return distance to the assigned centroid
+     */
+    private double scan(Distance d, FeatureBlock block, int row, boolean first) {
+        double best = Double.NaN;
+        double second = Double.POSITIVE_INFINITY;
+        int cluster = -1;
+        for (int j = 0; j < k; j++) {
+            double dd = d.distance(block, row, centroidBlock, j);
+            if (!Double.isFinite(dd)) continue;
+            if (method == Method.ELKAN && first) {
+                lowers[row][j] = dd;
+            }
+            if (Double.isNaN(best) || dd < best) {
+                second = Double.isNaN(best) ? second : best;
+                best = dd;
+                cluster = j;
+            } else if (dd < second) {
+                second = dd;
             }
-            for (int j = 0; j < df.getRowCount(); j++) {
-                means[arrows[j]].addValue(df.getValue(j, input));
+        }
+        if (cluster == -1) {
+            throw new RuntimeException("cluster could not be computed");
+        }
+        arrows[row] = cluster;
+        if (upper != null) {
+            upper[row] = best;
+            if (method == Method.HAMERLY) {
+                lower[row] = second;
             }
+        }
+        return best;
+    }
+
+    private double hamerly(Distance d, FeatureBlock block, int row, double[] half) {
+        int cluster = arrows[row];
+        double u = d.distance(block, row, centroidBlock, cluster);
+        upper[row] = u;
+        if (u <= Math.max(half[cluster], lower[row])) {
+            return u;
+        }
+        return scan(d, block, row, false);
+    }
+
+    private double elkan(Distance d, FeatureBlock block, int row, double[] half, double[][] between) {
+        int cluster = arrows[row];
+        double[] bounds = lowers[row];
+        double u = d.distance(block, row, centroidBlock, cluster);
+        bounds[cluster] = u;
+        if (u > half[cluster]) {
             for (int j = 0; j < k; j++) {
-                if (means[j].getRowCount() == 0)
+                if (j == cluster || u <= bounds[j] || u <= between[cluster][j] / 2) {
                     continue;
-                double mean = Mean.from(means[j]).getValue();
-                centroids.setValue(j, input, mean);
+                }
+                double dd = d.distance(block, row, centroidBlock, j);
+                bounds[j] = dd;
+                if (dd < u || (dd == u && j < cluster)) {
+                    cluster = j;
+                    u = dd;
+                }
             }
         }
+        arrows[row] = cluster;
+        upper[row] = u;
+        return u;
+    }
+
+    /**
+     * Moves centroids to the mean of their assigned instances, using the sums accumulated
+     * in the last assignment step, and updates the bounds with the centroid moves.
+     */
+    private void recomputeCentroids() {
+        if (debug) WS.println("recomputeCentroids called ..");
+        Distance d = distance.get();
+        int len = inputs.length;
+        FeatureBlock old = (method == Method.LLOYD) ? null : FeatureBlock.empty(k, len);
+        if (old != null) {
+            System.arraycopy(centroidBlock.values(), 0, old.values(), 0, centroidBlock.values().length);
+        }
+        for (int j = 0; j < k; j++) {
+            long count = 0;
+            for (Partial partial : partials) {
+                count += partial.counts[j];
+            }
+            if (count == 0)
+                continue;
+            for (int p = 0; p < len; p++) {
+                double sum = 0;
+                for (Partial partial : partials) {
+                    sum += partial.sums[j * len + p];
+                }
+                centroidBlock.set(j, p, sum / count);
+                centroids.setValue(j, inputs[p], sum / count);
+            }
+        }
+        if (old == null) {
+            return;
+        }
+        int maxIndex = 0;
+        double secondMove = 0;
+        for (int j = 0; j < k; j++) {
+            moves[j] = d.distance(old, j, centroidBlock, j);
+            if (moves[j] > moves[maxIndex]) {
+                maxIndex = j;
+            }
+        }
+        for (int j = 0; j < k; j++) {
+            if (j != maxIndex) {
+                secondMove = Math.max(secondMove, moves[j]);
+            }
+        }
+        int last = maxIndex;
+        double maxMove = moves[maxIndex];
+        double nextMove = secondMove;
+        int n = arrows.length;
+        FJPool.forEach(FJPool.maxThreads(), partials.length, chunk -> {
+            for (int i = (int) ((long) n * chunk / partials.length); i < (int) ((long) n * (chunk + 1) / partials.length); i++) {
+                if (method == Method.HAMERLY) {
+                    lower[i] -= (arrows[i] == last) ? nextMove : maxMove;
+                } else {
+                    double[] bounds = lowers[i];
+                    for (int j = 0; j < k; j++) {
+                        bounds[j] = Math.max(0, bounds[j] - moves[j]);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return frame with current centroids, one row for each cluster
+     */
+    public Frame getCentroids() {
+        return centroids;
     }
 
     public Var getClusterAssignment() {
@@ -224,7 +450,7 @@ public class KMeans implements Printable {
         return clusterErrors.get(c).getValue(clusterErrors.get(c).getRowCount() - 1);
     }
 
-    private void buildSummary(Frame df) {
+    private void buildSummary(FeatureBlock block) {
         IndexVar summaryId = IndexVar.seq(1, centroids.getRowCount() + 1).withName("ID");
         IndexVar summaryCount = IndexVar.fill(centroids.getRowCount(), 0).withName("count");
         NumericVar summaryMean = NumericVar.fill(centroids.getRowCount(), 0).withName("mean");
@@ -236,8 +462,9 @@ public class KMeans implements Printable {
 
         Map<Integer, NumericVar> distances = new HashMap<>();
 
-        for (int i = 0; i < df.getRowCount(); i++) {
-            double d = distance.get().distance(centroids, arrows[i], df, i, inputs);
+        FeatureBlock c = FeatureBlock.from(centroids, inputs);
+        for (int i = 0; i < block.rowCount(); i++) {
+            double d = distance.get().distance(c, arrows[i], block, i);
             if (!distances.containsKey(arrows[i]))
                 distances.put(arrows[i], NumericVar.empty());
             distances.get(arrows[i]).addValue(d);
@@ -266,6 +493,7 @@ public class KMeans implements Printable {
         sb.append("> K = ").append(k).append("\n");
         sb.append("> init = ").append(init.name()).append("\n");
         sb.append("> distance = ").append(distance.name()).append("\n");
+        sb.append("> method = ").append(method.name()).append("\n");
         sb.append("> eps = ").append(eps).append("\n");
         sb.append("> debug = ").append(debug).append("\n");
         sb.append("\n");
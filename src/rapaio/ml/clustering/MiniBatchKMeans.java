@@ -0,0 +1,335 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.clustering;
+
+import rapaio.core.SamplingTools;
+import rapaio.data.Frame;
+import rapaio.data.IndexVar;
+import rapaio.data.NumericVar;
+import rapaio.data.SolidFrame;
+import rapaio.data.VRange;
+import rapaio.data.Var;
+import rapaio.data.stream.FSpot;
+import rapaio.ml.common.FeatureBlock;
+import rapaio.ml.common.distance.Distance;
+import rapaio.ml.common.distance.KMeansInitMethod;
+import rapaio.printer.Printable;
+import rapaio.sys.WS;
+import rapaio.util.Tag;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mini batch KMeans clustering algorithm (Sculley, 2010).
+ * <p>
+ * Centroids are initialized once, using the initialization method on a frame, and are
+ * afterwards updated with gradient steps from small batches of instances. Each centroid
+ * moves towards the assigned instances with a learning rate equal with the inverse of
+ * the number of instances assigned to it so far.
+ * <p>
+ * Besides clustering a frame with sampled batches, the model can be updated
+ * incrementally with chunks of frames or with single instances, which allows
+ * clustering data which does not fit in memory and refreshing clusters
+ * without learning from scratch.
+ */
+public class MiniBatchKMeans implements Printable {
+
+    private int k = 2;
+    private int runs = 100;
+    private int batchSize = 100;
+    private Tag<KMeansInitMethod> init = KMeansInitMethod.FORGY;
+    private Tag<Distance> distance = Distance.EUCLIDEAN;
+
+    // clustering artifacts
+
+    private String[] inputs;
+    private FeatureBlock centroids;
+    private long[] counts;
+    private long updates;
+
+    public MiniBatchKMeans withK(int k) {
+        this.k = k;
+        return this;
+    }
+
+    /**
+     * @param runs number of batches used by {@link #cluster(Frame, String...)}
+     * @return model instance
+     */
+    public MiniBatchKMeans withRuns(int runs) {
+        this.runs = runs;
+        return this;
+    }
+
+    /**
+     * @param batchSize number of instances sampled with replacement for each batch
+     *                  by {@link #cluster(Frame, String...)}
+     * @return model instance
+     */
+    public MiniBatchKMeans withBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public MiniBatchKMeans withInit(Tag<KMeansInitMethod> init) {
+        this.init = init;
+        return this;
+    }
+
+    public MiniBatchKMeans withDistance(Tag<Distance> distance) {
+        this.distance = distance;
+        return this;
+    }
+
+    /**
+     * Clusters the instances of the frame, starting from scratch. Centroids are
+     * initialized from the whole frame, after which the given number of batches
+     * are sampled with replacement and used to update centroids.
+     *
+     * @param df       frame with instances
+     * @param varNames names of the variables used for clustering
+     */
+    public void cluster(Frame df, String... varNames) {
+        inputs = null;
+        initialize(df, varNames);
+        FeatureBlock block = FeatureBlock.from(df, inputs);
+        for (int i = 0; i < runs; i++) {
+            updateBlock(block, SamplingTools.sampleWR(df.getRowCount(), batchSize));
+        }
+    }
+
+    /**
+     * Updates centroids with all instances from the given batch. If the model has
+     * no centroids yet, they are initialized from this batch, which must contain
+     * at least k instances, and the variable names are fixed for all later updates.
+     *
+     * @param batch    frame with a batch of instances
+     * @param varNames names of the variables used for clustering, can be omitted
+     *                 after the first batch, in which case the same variables are used
+     */
+    public void update(Frame batch, String... varNames) {
+        if (inputs == null) {
+            initialize(batch, varNames);
+        } else {
+            validate(batch, (varNames.length == 0) ? inputs : varNames);
+        }
+        FeatureBlock block = FeatureBlock.from(batch, inputs);
+        int[] rows = new int[block.rowCount()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        updateBlock(block, rows);
+    }
+
+    /**
+     * Updates centroids with a single instance.
+     *
+     * @param spot instance used for update
+     */
+    public void update(FSpot spot) {
+        if (centroids == null) {
+            throw new IllegalArgumentException("centroids are not initialized, update with a frame batch first");
+        }
+        double[] values = new double[inputs.length];
+        for (int i = 0; i < values.length; i++) {
+            if (spot.isMissing(inputs[i])) {
+                throw new IllegalArgumentException("instance has missing value for var " + inputs[i]);
+            }
+            values[i] = spot.getValue(inputs[i]);
+        }
+        int cluster = nearest(distance.get(), values, 0);
+        move(cluster, values, 0);
+    }
+
+    private void initialize(Frame df, String... varNames) {
+        inputs = VRange.of(varNames).parseVarNames(df).stream().toArray(String[]::new);
+        validate(df, inputs);
+        if (df.getRowCount() < k) {
+            throw new IllegalArgumentException("at least " + k + " instances are needed to initialize centroids");
+        }
+        centroids = FeatureBlock.from(init.get().init(df, inputs, k), inputs);
+        counts = new long[k];
+        updates = 0;
+    }
+
+    private void validate(Frame df, String... varNames) {
+        List<String> nameList = VRange.of(varNames).parseVarNames(df);
+        if (!Arrays.asList(inputs).equals(nameList)) {
+            throw new IllegalArgumentException("batch variables " + nameList + " does not match model variables " + Arrays.toString(inputs));
+        }
+        for (String varName : nameList) {
+            if (!df.getVar(varName).getType().isNumeric())
+                throw new IllegalArgumentException("all matched vars must be numeric: check var " + varName);
+            if (df.getVar(varName).stream().complete().count() != df.getRowCount()) {
+                throw new IllegalArgumentException("all matched vars must have non-missing values: check var " + varName);
+            }
+        }
+    }
+
+    /**
+     * Updates centroids using the given rows. All rows are first assigned to the
+     * centroids as they are at the beginning of the batch, after which
+     * centroids are moved towards each assigned instance.
+     */
+    private void updateBlock(FeatureBlock block, int[] rows) {
+        Distance d = distance.get();
+        double[] values = block.values();
+        int[] clusters = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            clusters[i] = nearest(d, values, block.offset(rows[i]));
+        }
+        for (int i = 0; i < rows.length; i++) {
+            move(clusters[i], values, block.offset(rows[i]));
+        }
+    }
+
+    private int nearest(Distance d, double[] values, int offset) {
+        double best = Double.NaN;
+        int cluster = -1;
+        for (int j = 0; j < k; j++) {
+            double dd = d.distance(values, offset, centroids.values(), centroids.offset(j), inputs.length);
+            if (!Double.isFinite(dd)) continue;
+            if (Double.isNaN(best) || dd < best) {
+                best = dd;
+                cluster = j;
+            }
+        }
+        if (cluster == -1) {
+            throw new RuntimeException("cluster could not be computed");
+        }
+        return cluster;
+    }
+
+    private void move(int cluster, double[] values, int offset) {
+        counts[cluster]++;
+        updates++;
+        double eta = 1.0 / counts[cluster];
+        double[] c = centroids.values();
+        int start = centroids.offset(cluster);
+        for (int i = 0; i < inputs.length; i++) {
+            c[start + i] += eta * (values[offset + i] - c[start + i]);
+        }
+    }
+
+    /**
+     * @return frame with current centroids, one row for each cluster
+     */
+    public Frame getCentroids() {
+        if (centroids == null) {
+            throw new IllegalArgumentException("centroids are not initialized");
+        }
+        Var[] vars = new Var[inputs.length];
+        for (int j = 0; j < inputs.length; j++) {
+            vars[j] = NumericVar.empty(k).withName(inputs[j]);
+            for (int i = 0; i < k; i++) {
+                vars[j].setValue(i, centroids.get(i, j));
+            }
+        }
+        return SolidFrame.byVars(vars);
+    }
+
+    /**
+     * @return number of instances assigned to each cluster by updates
+     */
+    public long[] getClusterCounts() {
+        return counts == null ? new long[0] : Arrays.copyOf(counts, counts.length);
+    }
+
+    /**
+     * Assigns the instances of the frame to the closest centroids.
+     *
+     * @param df frame with instances
+     * @return index variable with cluster indexes, starting from 1
+     */
+    public Var getClusterAssignment(Frame df) {
+        if (centroids == null) {
+            throw new IllegalArgumentException("centroids are not initialized");
+        }
+        Distance d = distance.get();
+        FeatureBlock block = FeatureBlock.from(df, inputs);
+        Var var = IndexVar.empty(df.getRowCount());
+        for (int i = 0; i < df.getRowCount(); i++) {
+            var.setIndex(i, nearest(d, block.values(), block.offset(i)) + 1);
+        }
+        return var;
+    }
+
+    /**
+     * Computes the sum of squared distances from the instances of the frame to their closest centroids.
+     *
+     * @param df frame with instances
+     * @return clustering error
+     */
+    public double computeError(Frame df) {
+        Distance d = distance.get();
+        FeatureBlock block = FeatureBlock.from(df, inputs);
+        double error = 0;
+        for (int i = 0; i < df.getRowCount(); i++) {
+            int cluster = nearest(d, block.values(), block.offset(i));
+            double dd = d.distance(block.values(), block.offset(i), centroids.values(), centroids.offset(cluster), inputs.length);
+            error += dd * dd;
+        }
+        return error;
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("MiniBatchKMeans clustering model\n");
+        sb.append("================================\n");
+        sb.append("\n");
+        sb.append("Parameters: \n");
+        sb.append("> K = ").append(k).append("\n");
+        sb.append("> runs = ").append(runs).append("\n");
+        sb.append("> batchSize = ").append(batchSize).append("\n");
+        sb.append("> init = ").append(init.name()).append("\n");
+        sb.append("> distance = ").append(distance.name()).append("\n");
+        sb.append("\n");
+
+        sb.append("Learned clusters\n");
+        sb.append("----------------\n");
+
+        if (centroids == null) {
+            sb.append("MiniBatchKMeans did not clustered anything yet!\n");
+        } else {
+            sb.append("> updates: ").append(updates).append("\n");
+            for (int i = 0; i < k; i++) {
+                sb.append("> cluster ").append(i + 1).append(": count=").append(counts[i]).append(", centroid=[");
+                for (int j = 0; j < inputs.length; j++) {
+                    sb.append(WS.formatFlex(centroids.get(i, j)));
+                    if (j != inputs.length - 1) {
+                        sb.append(",");
+                    }
+                }
+                sb.append("]\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.common;
+
+import java.io.Serializable;
+
+/**
+ * Histogram which accumulates a fixed number of statistics for each bin of a {@link VarBins}.
+ * <p>
+ * Histograms are additive, thus the histogram of a set of rows can be obtained
+ * from the histogram of a larger set by subtracting the histogram of the remaining rows.
+ */
+public final class BinHistogram implements Serializable {
+
+    private static final long serialVersionUID = 4106467958563312045L;
+
+    /**
+     * Builds an empty histogram.
+     *
+     * @param bins  number of bins, including the bin for missing values
+     * @param width number of statistics for each bin
+     * @return new empty histogram
+     */
+    public static BinHistogram empty(int bins, int width) {
+        return new BinHistogram(bins, width);
+    }
+
+    private final int bins;
+    private final int width;
+    private final double[] values;
+
+    private BinHistogram(int bins, int width) {
+        this.bins = bins;
+        this.width = width;
+        this.values = new double[bins * width];
+    }
+
+    public int bins() {
+        return bins;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public double get(int bin, int col) {
+        return values[bin * width + col];
+    }
+
+    public void update(int bin, int col, double value) {
+        values[bin * width + col] += value;
+    }
+
+    /**
+     * Builds a new histogram which contains the difference between this histogram and the given one.
+     *
+     * @param other histogram of a subset of the rows of this histogram
+     * @return histogram of the rows which are not in the subset
+     */
+    public BinHistogram minus(BinHistogram other) {
+        if (bins != other.bins || width != other.width) {
+            throw new IllegalArgumentException("Histograms does not have the same shape");
+        }
+        BinHistogram result = new BinHistogram(bins, width);
+        for (int i = 0; i < values.length; i++) {
+            result.values[i] = values[i] - other.values[i];
+        }
+        return result;
+    }
+}
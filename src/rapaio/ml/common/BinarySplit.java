@@ -0,0 +1,82 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.common;
+
+import java.io.Serializable;
+
+/**
+ * Structured description of a binary split of a tree node, used to lower
+ * the tree into a {@link FlatTree}.
+ * <p>
+ * A numeric split sends values less or equal than threshold to the first child,
+ * greater values to the second child and missing values to none of them.
+ * A level split sends instances with the given label to the first child
+ * and all other labels to the second child, missing values being sent to
+ * the second child or to none of them.
+ */
+public final class BinarySplit implements Serializable {
+
+    private static final long serialVersionUID = 7723532781462447811L;
+
+    public static BinarySplit numeric(String testName, double threshold) {
+        return new BinarySplit(testName, threshold, null, false);
+    }
+
+    public static BinarySplit level(String testName, String label, boolean missingToSecond) {
+        return new BinarySplit(testName, Double.NaN, label, missingToSecond);
+    }
+
+    private final String testName;
+    private final double threshold;
+    private final String label;
+    private final boolean missingToSecond;
+
+    private BinarySplit(String testName, double threshold, String label, boolean missingToSecond) {
+        this.testName = testName;
+        this.threshold = threshold;
+        this.label = label;
+        this.missingToSecond = missingToSecond;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    public boolean isNumeric() {
+        return label == null;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isMissingToSecond() {
+        return missingToSecond;
+    }
+}
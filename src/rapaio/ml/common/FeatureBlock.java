@@ -0,0 +1,284 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.common;
+
+import rapaio.data.Frame;
+import rapaio.data.SparseEntries;
+import rapaio.data.Var;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Block of numeric feature values extracted from a frame. Missing values are
+ * stored as NaN.
+ * <p>
+ * A dense block stores the values in row major order in a single array. The
+ * values of a row are contiguous, starting from {@link #offset(int)}, in the
+ * order of the variable names given at build time.
+ * <p>
+ * When the frame contains sparse numeric variables the block is sparse: only
+ * non zero values are stored, row by row, as a column index and a value. The
+ * entries of a row are found in {@link #entryCols()} and {@link #entryValues()}
+ * from {@link #entryStart(int)} to {@link #entryEnd(int)}, sorted by column.
+ * The dense array of a sparse block is built only when {@link #values()} is
+ * called, or when a value is changed.
+ * <p>
+ * The block is meant to be built once per train or fit call, such that
+ * inner loops of distance or kernel computations work on plain arrays
+ * instead of looking up variables by name.
+ */
+public final class FeatureBlock implements Serializable {
+
+    private static final long serialVersionUID = 2406541367839513718L;
+
+    /**
+     * Extracts the values of the given variables from a frame. If any of the
+     * variables is sparse, also when seen through a mapped frame, the block is sparse.
+     *
+     * @param df       source frame
+     * @param varNames names of the numeric variables to extract
+     * @return new feature block
+     */
+    public static FeatureBlock from(Frame df, String... varNames) {
+        int rows = df.getRowCount();
+        int cols = varNames.length;
+        Var[] vars = new Var[cols];
+        boolean sparse = false;
+        for (int j = 0; j < cols; j++) {
+            vars[j] = df.getVar(varNames[j]);
+            sparse |= SparseEntries.isSparse(vars[j]);
+        }
+        if (sparse) {
+            return sparse(rows, vars);
+        }
+        double[] values = new double[size(rows, cols)];
+        for (int j = 0; j < cols; j++) {
+            Var var = vars[j];
+            for (int i = 0; i < rows; i++) {
+                values[i * cols + j] = var.isMissing(i) ? Double.NaN : var.getValue(i);
+            }
+        }
+        return new FeatureBlock(rows, cols, values);
+    }
+
+    private static FeatureBlock sparse(int rows, Var[] vars) {
+        int cols = vars.length;
+        SparseEntries entries = new SparseEntries();
+
+        // count the non zero values of each row
+        int[] start = new int[rows + 1];
+        for (Var var : vars) {
+            visit(entries, var, rows, (row, value) -> start[row + 1]++);
+        }
+        for (int i = 0; i < rows; i++) {
+            start[i + 1] += start[i];
+        }
+
+        // fill entries column by column, which keeps them sorted by column within a row
+        int[] next = Arrays.copyOf(start, rows);
+        int[] entryCols = new int[start[rows]];
+        double[] entryValues = new double[start[rows]];
+        for (int j = 0; j < cols; j++) {
+            int col = j;
+            visit(entries, vars[j], rows, (row, value) -> {
+                entryCols[next[row]] = col;
+                entryValues[next[row]++] = value;
+            });
+        }
+        return new FeatureBlock(rows, cols, start, entryCols, entryValues);
+    }
+
+    /**
+     * Visits the non zero values of a variable, with missing values as NaN.
+     */
+    private static void visit(SparseEntries entries, Var var, int rows, SparseEntries.EntryConsumer consumer) {
+        boolean sparse = entries.forEach(var, (row, value) -> {
+            if (row < rows && value != 0) {
+                consumer.accept(row, value);
+            }
+        });
+        if (sparse) {
+            return;
+        }
+        for (int i = 0; i < rows; i++) {
+            double value = var.isMissing(i) ? Double.NaN : var.getValue(i);
+            if (value != 0) {
+                consumer.accept(i, value);
+            }
+        }
+    }
+
+    /**
+     * Builds a block filled with zeros.
+     *
+     * @param rows number of rows
+     * @param cols number of columns
+     * @return new feature block
+     */
+    public static FeatureBlock empty(int rows, int cols) {
+        return new FeatureBlock(rows, cols, new double[size(rows, cols)]);
+    }
+
+    private static int size(int rows, int cols) {
+        try {
+            return Math.multiplyExact(rows, cols);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Feature block with " + rows + " rows and " + cols
+                    + " columns exceeds the maximum array size.", e);
+        }
+    }
+
+    private final int rows;
+    private final int cols;
+    private double[] values;
+
+    // sparse storage, null for dense blocks
+    private int[] entryStart;
+    private int[] entryCols;
+    private double[] entryValues;
+
+    private FeatureBlock(int rows, int cols, double[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.values = values;
+    }
+
+    private FeatureBlock(int rows, int cols, int[] entryStart, int[] entryCols, double[] entryValues) {
+        this.rows = rows;
+        this.cols = cols;
+        this.entryStart = entryStart;
+        this.entryCols = entryCols;
+        this.entryValues = entryValues;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public int colCount() {
+        return cols;
+    }
+
+    /**
+     * @return true if the block stores only the non zero values of each row
+     */
+    public boolean isSparse() {
+        return entryStart != null;
+    }
+
+    /**
+     * Gives the backing array of the block, in row major order. For a sparse
+     * block a dense array is built at the first call.
+     *
+     * @return backing array of the block, in row major order
+     */
+    public double[] values() {
+        if (values == null) {
+            double[] dense = new double[size(rows, cols)];
+            for (int i = 0; i < rows; i++) {
+                for (int p = entryStart[i]; p < entryStart[i + 1]; p++) {
+                    dense[i * cols + entryCols[p]] = entryValues[p];
+                }
+            }
+            values = dense;
+        }
+        return values;
+    }
+
+    /**
+     * @param row row index
+     * @return position in the backing array of the first value of the given row
+     */
+    public int offset(int row) {
+        return row * cols;
+    }
+
+    /**
+     * @param row row index
+     * @return position of the first entry of a row of a sparse block
+     */
+    public int entryStart(int row) {
+        return entryStart[row];
+    }
+
+    /**
+     * @param row row index
+     * @return position after the last entry of a row of a sparse block
+     */
+    public int entryEnd(int row) {
+        return entryStart[row + 1];
+    }
+
+    /**
+     * @return column indexes of the entries of a sparse block
+     */
+    public int[] entryCols() {
+        return entryCols;
+    }
+
+    /**
+     * @return values of the entries of a sparse block
+     */
+    public double[] entryValues() {
+        return entryValues;
+    }
+
+    /**
+     * Copies the values of a row into a new array.
+     *
+     * @param row row index
+     * @return new array with the values of the row
+     */
+    public double[] row(int row) {
+        double[] copy = new double[cols];
+        if (values != null) {
+            System.arraycopy(values, row * cols, copy, 0, cols);
+        } else {
+            for (int p = entryStart[row]; p < entryStart[row + 1]; p++) {
+                copy[entryCols[p]] = entryValues[p];
+            }
+        }
+        return copy;
+    }
+
+    public double get(int row, int col) {
+        if (values != null) {
+            return values[row * cols + col];
+        }
+        int pos = Arrays.binarySearch(entryCols, entryStart[row], entryStart[row + 1], col);
+        return pos >= 0 ? entryValues[pos] : 0;
+    }
+
+    /**
+     * Changes a value. A sparse block becomes dense.
+     */
+    public void set(int row, int col, double value) {
+        values()[row * cols + col] = value;
+        entryStart = null;
+        entryCols = null;
+        entryValues = null;
+    }
+}
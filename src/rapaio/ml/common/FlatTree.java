@@ -0,0 +1,274 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.common;
+
+import rapaio.data.Frame;
+import rapaio.data.Var;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled representation of a decision tree with binary splits, stored in
+ * parallel primitive arrays: feature index, threshold, left and right child,
+ * node weight and offset of leaf values.
+ * <p>
+ * Fitting walks the arrays over columns resolved once for a frame, avoiding
+ * predicate evaluation and variable lookup by name for each node.
+ * <p>
+ * When the test value of a split is missing and the split does not send missing
+ * values to the second child, the values of both children are combined
+ * using weights. With node weights, each child contributes with its own node weight.
+ * With mean weights, each child contributes with the weight of its prediction and
+ * the combined prediction has the mean of children weights.
+ */
+public final class FlatTree implements Serializable {
+
+    private static final long serialVersionUID = -3209174386925263112L;
+
+    /**
+     * Builds an empty compiled tree.
+     *
+     * @param width       number of values stored in each leaf
+     * @param meanWeights if true predictions of missing values are combined using mean weights,
+     *                    otherwise using node weights
+     * @return new empty compiled tree
+     */
+    public static FlatTree empty(int width, boolean meanWeights) {
+        return new FlatTree(width, meanWeights);
+    }
+
+    private final int width;
+    private final boolean meanWeights;
+
+    private final List<String> featureNames = new ArrayList<>();
+    // for features used in level splits, codes of the labels used in splits, starting from 1
+    private final List<Map<String, Integer>> featureLabels = new ArrayList<>();
+
+    private int size = 0;
+    private int[] feature = new int[8];
+    private double[] threshold = new double[8];
+    private boolean[] missingToSecond = new boolean[8];
+    private boolean[] levelSplit = new boolean[8];
+    private int[] left = new int[8];
+    private int[] right = new int[8];
+    private double[] weight = new double[8];
+    private int[] offset = new int[8];
+    private double[] values = new double[8];
+    private int valuesSize = 0;
+
+    private FlatTree(int width, boolean meanWeights) {
+        this.width = width;
+        this.meanWeights = meanWeights;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int nodeCount() {
+        return size;
+    }
+
+    public String[] featureNames() {
+        return featureNames.toArray(new String[featureNames.size()]);
+    }
+
+    /**
+     * Adds a leaf node.
+     *
+     * @param nodeWeight weight of the node
+     * @param leafValues values of the leaf, having length equal with width
+     * @return index of the new node
+     */
+    public int addLeaf(double nodeWeight, double[] leafValues) {
+        if (leafValues.length != width) {
+            throw new IllegalArgumentException("leaf values must have length " + width);
+        }
+        int node = addNode(-1, Double.NaN, false, nodeWeight);
+        if (valuesSize + width > values.length) {
+            values = Arrays.copyOf(values, Math.max(valuesSize + width, values.length * 2));
+        }
+        System.arraycopy(leafValues, 0, values, valuesSize, width);
+        offset[node] = valuesSize;
+        valuesSize += width;
+        return node;
+    }
+
+    /**
+     * Adds an interior node, the children must be specified later with {@link #setChildren(int, int, int)}.
+     *
+     * @param split      split of the node
+     * @param nodeWeight weight of the node
+     * @return index of the new node
+     */
+    public int addSplit(BinarySplit split, double nodeWeight) {
+        int index = featureNames.indexOf(split.getTestName());
+        if (index < 0) {
+            index = featureNames.size();
+            featureNames.add(split.getTestName());
+            featureLabels.add(split.isNumeric() ? null : new HashMap<>());
+        }
+        if (split.isNumeric() != (featureLabels.get(index) == null)) {
+            throw new IllegalArgumentException("feature " + split.getTestName() + " is used in both numeric and level splits");
+        }
+        double value = split.getThreshold();
+        if (!split.isNumeric()) {
+            Map<String, Integer> labels = featureLabels.get(index);
+            labels.putIfAbsent(split.getLabel(), labels.size() + 1);
+            value = labels.get(split.getLabel());
+        }
+        return addNode(index, value, split.isMissingToSecond(), nodeWeight);
+    }
+
+    public void setChildren(int node, int leftChild, int rightChild) {
+        left[node] = leftChild;
+        right[node] = rightChild;
+    }
+
+    private int addNode(int featureIndex, double value, boolean toSecond, double nodeWeight) {
+        if (size == feature.length) {
+            int capacity = size * 2;
+            feature = Arrays.copyOf(feature, capacity);
+            threshold = Arrays.copyOf(threshold, capacity);
+            missingToSecond = Arrays.copyOf(missingToSecond, capacity);
+            levelSplit = Arrays.copyOf(levelSplit, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            weight = Arrays.copyOf(weight, capacity);
+            offset = Arrays.copyOf(offset, capacity);
+        }
+        feature[size] = featureIndex;
+        threshold[size] = value;
+        missingToSecond[size] = toSecond;
+        levelSplit[size] = featureIndex >= 0 && featureLabels.get(featureIndex) != null;
+        left[size] = -1;
+        right[size] = -1;
+        weight[size] = nodeWeight;
+        offset[size] = -1;
+        return size++;
+    }
+
+    /**
+     * Resolves the columns of the features used by the tree. Missing values are stored
+     * as NaN. For features used in level splits, the labels are replaced with their codes,
+     * labels not used in splits having code 0.
+     *
+     * @param df frame with the values to be fitted
+     * @return an array with one column for each feature
+     */
+    public double[][] columns(Frame df) {
+        double[][] columns = new double[featureNames.size()][];
+        for (int i = 0; i < columns.length; i++) {
+            Var var = df.getVar(featureNames.get(i));
+            Map<String, Integer> labels = featureLabels.get(i);
+            double[] column = new double[df.getRowCount()];
+            for (int row = 0; row < column.length; row++) {
+                if (var.isMissing(row)) {
+                    column[row] = Double.NaN;
+                } else if (labels == null) {
+                    column[row] = var.getValue(row);
+                } else {
+                    column[row] = labels.getOrDefault(var.getLabel(row), 0);
+                }
+            }
+            columns[i] = column;
+        }
+        return columns;
+    }
+
+    /**
+     * Fits a row, starting from the root node.
+     *
+     * @param columns feature columns built with {@link #columns(Frame)}
+     * @param row     row to be fitted
+     * @param out     array where the fitted values are stored, with length equal with width
+     * @return index of the reached leaf, or -1 if the values were combined from multiple leaves
+     */
+    public int predict(double[][] columns, int row, double[] out) {
+        int node = descend(columns, row, 0);
+        if (feature[node] < 0) {
+            System.arraycopy(values, offset[node], out, 0, width);
+            return node;
+        }
+        combine(columns, row, node, out);
+        return -1;
+    }
+
+    /**
+     * Follows the splits while possible.
+     *
+     * @return the reached leaf or the interior node where the test value is missing
+     */
+    private int descend(double[][] columns, int row, int node) {
+        while (feature[node] >= 0) {
+            double value = columns[feature[node]][row];
+            if (Double.isNaN(value)) {
+                if (!missingToSecond[node]) {
+                    return node;
+                }
+                node = right[node];
+                continue;
+            }
+            boolean first = levelSplit[node] ? value == threshold[node] : value <= threshold[node];
+            node = first ? left[node] : right[node];
+        }
+        return node;
+    }
+
+    /**
+     * Fits a row starting from the given node.
+     *
+     * @return weight of the fitted values
+     */
+    private double walk(double[][] columns, int row, int node, double[] out) {
+        node = descend(columns, row, node);
+        if (feature[node] < 0) {
+            System.arraycopy(values, offset[node], out, 0, width);
+            return weight[node];
+        }
+        return combine(columns, row, node, out);
+    }
+
+    private double combine(double[][] columns, int row, int node, double[] out) {
+        double[] leftOut = new double[width];
+        double[] rightOut = new double[width];
+        double leftWeight = walk(columns, row, left[node], leftOut);
+        double rightWeight = walk(columns, row, right[node], rightOut);
+        if (!meanWeights) {
+            leftWeight = weight[left[node]];
+            rightWeight = weight[right[node]];
+        }
+        double total = leftWeight + rightWeight;
+        for (int i = 0; i < width; i++) {
+            out[i] = (leftOut[i] * leftWeight + rightOut[i] * rightWeight) / total;
+        }
+        return meanWeights ? total / 2 : weight[node];
+    }
+}
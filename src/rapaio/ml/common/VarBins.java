@@ -0,0 +1,165 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.common;
+
+import rapaio.data.Var;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Quantization of a numeric variable into a limited number of bins.
+ * <p>
+ * Bins are built once from the distinct values of the variable, having
+ * equal frequencies when there are more distinct values than bins. Each row
+ * is encoded with the index of its bin, stored as byte when there are at most 255
+ * bins and as short otherwise. Missing values are encoded with a separate bin,
+ * placed after all the value bins.
+ * <p>
+ * A value belongs to the first bin which has the upper bound greater or equal than
+ * the value, the last bin having no upper bound.
+ */
+public final class VarBins implements Serializable {
+
+    private static final long serialVersionUID = -2470530567123472346L;
+
+    public static final int MAX_BINS = 65_535;
+
+    /**
+     * Builds bins for the given variable.
+     *
+     * @param var     numeric variable to be quantized
+     * @param maxBins maximum number of bins
+     * @return bins of the variable
+     */
+    public static VarBins from(Var var, int maxBins) {
+        if (maxBins < 2 || maxBins > MAX_BINS) {
+            throw new IllegalArgumentException("Number of bins must be between 2 and " + MAX_BINS);
+        }
+        return new VarBins(var, maxBins);
+    }
+
+    private final double[] cuts;
+    private final byte[] byteCodes;
+    private final short[] shortCodes;
+
+    private VarBins(Var var, int maxBins) {
+        this.cuts = computeCuts(var.stream().complete().mapToDouble().toArray(), maxBins);
+        int missing = cuts.length + 1;
+        if (missing <= 255) {
+            byteCodes = new byte[var.getRowCount()];
+            shortCodes = null;
+            for (int i = 0; i < byteCodes.length; i++) {
+                byteCodes[i] = (byte) (var.isMissing(i) ? missing : binOf(var.getValue(i)));
+            }
+        } else {
+            byteCodes = null;
+            shortCodes = new short[var.getRowCount()];
+            for (int i = 0; i < shortCodes.length; i++) {
+                shortCodes[i] = (short) (var.isMissing(i) ? missing : binOf(var.getValue(i)));
+            }
+        }
+    }
+
+    private static double[] computeCuts(double[] values, int maxBins) {
+        Arrays.sort(values);
+        int n = values.length;
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                distinct++;
+            }
+        }
+        if (distinct <= maxBins) {
+            // one bin for each distinct value, there is no need to cut after the last one
+            double[] cuts = new double[Math.max(distinct - 1, 0)];
+            int len = 0;
+            for (int i = 0; i < n - 1; i++) {
+                if (values[i] != values[i + 1]) {
+                    cuts[len++] = values[i];
+                }
+            }
+            return cuts;
+        }
+        // bins with approximately equal frequencies
+        double[] cuts = new double[maxBins - 1];
+        int len = 0;
+        for (int k = 1; k < maxBins; k++) {
+            double cut = values[(int) ((long) k * n / maxBins) - 1];
+            if (cut < values[n - 1] && (len == 0 || cuts[len - 1] < cut)) {
+                cuts[len++] = cut;
+            }
+        }
+        return Arrays.copyOf(cuts, len);
+    }
+
+    /**
+     * @return number of bins used for non missing values
+     */
+    public int binCount() {
+        return cuts.length + 1;
+    }
+
+    /**
+     * @return index of the bin used for missing values
+     */
+    public int missingBin() {
+        return cuts.length + 1;
+    }
+
+    /**
+     * @param bin index of the bin
+     * @return the inclusive upper bound of values from the given bin
+     */
+    public double cut(int bin) {
+        return (bin < cuts.length) ? cuts[bin] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param row row of the original variable
+     * @return index of the bin of the value from the given row
+     */
+    public int bin(int row) {
+        return (byteCodes != null) ? byteCodes[row] & 0xFF : shortCodes[row] & 0xFFFF;
+    }
+
+    /**
+     * @param value non missing value
+     * @return index of the bin which contains the given value
+     */
+    public int binOf(double value) {
+        int low = 0;
+        int high = cuts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cuts[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -25,6 +25,7 @@
 package rapaio.ml.common.distance;
 
 import rapaio.data.Frame;
+import rapaio.ml.common.FeatureBlock;
 import rapaio.util.Tag;
 
 import java.io.Serializable;
@@ -36,15 +37,41 @@ import java.io.Serializable;
  */
 public interface Distance extends Serializable {
 
-    double distance(Frame s, int sRow, Frame t, int tRow, String... varNames);
+    /**
+     * Computes the distance between two instances given as contiguous values
+     * of the same features. Missing values, stored as NaN, are ignored.
+     *
+     * @param s       array with values of the first instance
+     * @param sOffset position of the first value of the first instance
+     * @param t       array with values of the second instance
+     * @param tOffset position of the first value of the second instance
+     * @param len     number of features
+     * @return distance between instances
+     */
+    double distance(double[] s, int sOffset, double[] t, int tOffset, int len);
+
+    default double distance(FeatureBlock s, int sRow, FeatureBlock t, int tRow) {
+        return distance(s.values(), s.offset(sRow), t.values(), t.offset(tRow), s.colCount());
+    }
+
+    default double distance(Frame s, int sRow, Frame t, int tRow, String... varNames) {
+        double[] sValues = new double[varNames.length];
+        double[] tValues = new double[varNames.length];
+        for (int i = 0; i < varNames.length; i++) {
+            sValues[i] = s.isMissing(sRow, varNames[i]) ? Double.NaN : s.getValue(sRow, varNames[i]);
+            tValues[i] = t.isMissing(tRow, varNames[i]) ? Double.NaN : t.getValue(tRow, varNames[i]);
+        }
+        return distance(sValues, 0, tValues, 0, varNames.length);
+    }
 
     Tag<Distance> EUCLIDEAN = Tag.valueOf("euclidean",
-            (Frame s, int sRow, Frame t, int tRow, String... varNames) -> {
+            (double[] s, int sOffset, double[] t, int tOffset, int len) -> {
                 double total = 0;
-                for (String varName : varNames) {
-                    if (s.isMissing(sRow) || t.isMissing(tRow))
+                for (int i = 0; i < len; i++) {
+                    double delta = s[sOffset + i] - t[tOffset + i];
+                    if (Double.isNaN(delta))
                         continue;
-                    total += Math.pow(s.getValue(sRow, varName) - t.getValue(tRow, varName), 2);
+                    total += delta * delta;
                 }
                 return Math.sqrt(total);
             });
@@ -34,10 +34,10 @@ import rapaio.ml.regression.AbstractRegression;
 import rapaio.ml.regression.RFit;
 import rapaio.ml.regression.Regression;
 import rapaio.ml.regression.tree.RTree;
+import rapaio.util.FJPool;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
@@ -116,10 +116,8 @@ public class RForest extends AbstractRegression {
     @Override
     protected RFit coreFit(Frame df, boolean withResiduals) {
         RFit fit = RFit.build(this, df, withResiduals);
-        List<NumericVar> results = regressors
-                .parallelStream()
-                .map(r -> r.fit(df, false).firstFit())
-                .collect(Collectors.toList());
+        List<NumericVar> results = FJPool.map(FJPool.maxThreads(), regressors.size(),
+                i -> regressors.get(i).fit(df, false).firstFit());
         for (int i = 0; i < df.getRowCount(); i++) {
             double sum = 0;
             for (NumericVar result : results) {
@@ -31,6 +31,10 @@ import rapaio.data.Var;
 import rapaio.data.VarType;
 import rapaio.data.stream.FSpot;
 import rapaio.ml.common.Capabilities;
+import rapaio.ml.common.FlatTree;
+import rapaio.ml.common.BinHistogram;
+import rapaio.ml.common.BinarySplit;
+import rapaio.ml.common.VarBins;
 import rapaio.ml.common.VarSelector;
 import rapaio.ml.regression.AbstractRegression;
 import rapaio.ml.regression.RFit;
@@ -43,7 +47,9 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.IntStream;
 
@@ -60,6 +66,7 @@ public class RTree extends AbstractRegression implements BTRegression {
 
     int minCount = 1;
     int maxDepth = -1;
+    int histogramBins = 0;
 
     RTreeNominalMethod nominalMethod = RTreeNominalMethod.BINARY;
     RTreeNumericMethod numericMethod = RTreeNumericMethod.BINARY;
@@ -71,6 +78,8 @@ public class RTree extends AbstractRegression implements BTRegression {
     // tree root node
     private Node root;
     private int rows;
+    // compiled representation of the tree, used for fitting when available
+    private FlatTree flat;
 
     private RTree() {
     }
@@ -110,6 +119,7 @@ public class RTree extends AbstractRegression implements BTRegression {
                 .withNumericMethod(numericMethod)
                 .withNominalMethod(nominalMethod)
                 .withMaxDepth(maxDepth)
+                .withHistogramSplits(histogramBins)
                 .withSplitter(splitter)
                 .withFunction(function)
                 .withVarSelector(varSelector);
@@ -127,6 +137,8 @@ public class RTree extends AbstractRegression implements BTRegression {
         sb.append("  varSelector=").append(varSelector.name()).append(",\n");
         sb.append("  minCount=").append(minCount).append(",\n");
         sb.append("  maxDepth=").append(maxDepth).append(",\n");
+        if (histogramBins > 0)
+            sb.append("  histogramBins=").append(histogramBins).append(",\n");
         sb.append("  numericMethod=").append(numericMethod.name()).append(",\n");
         sb.append("  nominalMethod=").append(nominalMethod.name()).append(",\n");
         sb.append("  function=").append(function.name()).append(",\n");
@@ -149,6 +161,7 @@ public class RTree extends AbstractRegression implements BTRegression {
 
     @Override
     public void boostFit(Frame x, Var y, Var fx, GBTLossFunction lossFunction) {
+        flat = null;
         root.boostFit(x, y, fx, lossFunction);
     }
 
@@ -167,6 +180,22 @@ public class RTree extends AbstractRegression implements BTRegression {
         return this;
     }
 
+    /**
+     * Numeric variables are quantized once into the given number of bins
+     * and split points are searched only on bin bounds, using histograms
+     * of node instances instead of sorting them.
+     *
+     * @param bins maximum number of bins, 0 to disable histogram splits
+     * @return tree instance
+     */
+    public RTree withHistogramSplits(int bins) {
+        if (bins != 0 && (bins < 2 || bins > VarBins.MAX_BINS)) {
+            throw new IllegalArgumentException("number of histogram bins must be 0 or between 2 and " + VarBins.MAX_BINS);
+        }
+        this.histogramBins = bins;
+        return this;
+    }
+
     public RTree withNumericMethod(RTreeNumericMethod numericMethod) {
         this.numericMethod = numericMethod;
         return this;
@@ -191,6 +220,48 @@ public class RTree extends AbstractRegression implements BTRegression {
         return root;
     }
 
+    /**
+     * Lowers the trained tree into a flat array representation, which is used
+     * afterwards for fitting instead of evaluating node predicates. The compiled
+     * tree is discarded on training or boosting, thus compile must be called again
+     * after those operations or after the nodes are modified directly.
+     * <p>
+     * Only trees with binary splits and standard predictor can be compiled.
+     *
+     * @return tree instance
+     */
+    public RTree compile() {
+        if (root == null) {
+            throw new IllegalArgumentException("tree must be trained before compile");
+        }
+        if (predictor != RTreePredictor.STANDARD) {
+            throw new IllegalArgumentException("only trees with standard predictor can be compiled");
+        }
+        FlatTree tree = FlatTree.empty(1, true);
+        compileNode(tree, root);
+        flat = tree;
+        return this;
+    }
+
+    public boolean isCompiled() {
+        return flat != null;
+    }
+
+    private int compileNode(FlatTree tree, Node node) {
+        if (node.isLeaf()) {
+            return tree.addLeaf(node.getWeight(), new double[]{node.getValue()});
+        }
+        BinarySplit split = node.getBestCandidate() == null ? null : node.getBestCandidate().getSplit();
+        if (split == null || node.getChildren().size() != 2) {
+            throw new IllegalArgumentException("tree can't be compiled since node " + node.getGroupName() + " has not a binary split");
+        }
+        int index = tree.addSplit(split, node.getWeight());
+        int left = compileNode(tree, node.getChildren().get(0));
+        int right = compileNode(tree, node.getChildren().get(1));
+        tree.setChildren(index, left, right);
+        return index;
+    }
+
     @Override
     protected boolean coreTrain(Frame df, Var weights) {
 
@@ -202,10 +273,23 @@ public class RTree extends AbstractRegression implements BTRegression {
         }
 
         rows = df.getRowCount();
+        flat = null;
 
         root = new Node(null, "root", spot -> true);
         this.varSelector.withVarNames(inputNames());
-        root.learn(this, df, weights, maxDepth < 0 ? Integer.MAX_VALUE : maxDepth);
+        if (histogramBins > 0) {
+            // bins of numeric variables are learning state, passed down to nodes and not kept by the model
+            Map<String, VarBins> varBins = new HashMap<>();
+            for (String inputName : inputNames()) {
+                if (df.getVar(inputName).getType().isNumeric()) {
+                    varBins.put(inputName, VarBins.from(df.getVar(inputName), histogramBins));
+                }
+            }
+            root.learn(this, df, weights, maxDepth < 0 ? Integer.MAX_VALUE : maxDepth,
+                    varBins, IntStream.range(0, df.getRowCount()).toArray(), new HashMap<>());
+        } else {
+            root.learn(this, df, weights, maxDepth < 0 ? Integer.MAX_VALUE : maxDepth);
+        }
         return true;
     }
 
@@ -213,6 +297,16 @@ public class RTree extends AbstractRegression implements BTRegression {
     protected RFit coreFit(Frame df, boolean withResiduals) {
         RFit pred = RFit.build(this, df, withResiduals);
 
+        if (flat != null) {
+            double[][] columns = flat.columns(df);
+            double[] out = new double[1];
+            for (int row = 0; row < df.getRowCount(); row++) {
+                flat.predict(columns, row, out);
+                pred.fit(firstTargetName()).setValue(row, out[0]);
+            }
+            pred.buildComplete();
+            return pred;
+        }
         df.stream().forEach(spot -> {
             Pair<Double, Double> result = predictor.predict(spot, root);
             pred.fit(firstTargetName()).setValue(spot.getRow(), result._1);
@@ -324,6 +418,17 @@ public class RTree extends AbstractRegression implements BTRegression {
         }
 
         public void learn(RTree tree, Frame df, Var weights, int depth) {
+            learn(tree, df, weights, depth, Collections.emptyMap(), null, new HashMap<>());
+        }
+
+        /**
+         * @param varBins    bins of numeric variables, available only with histogram splits
+         * @param rows       positions of node instances in the frame used to learn the root,
+         *                   available only with histogram splits
+         * @param histograms histograms of node instances already computed for numeric variables
+         */
+        void learn(RTree tree, Frame df, Var weights, int depth, Map<String, VarBins> varBins,
+                   int[] rows, Map<String, BinHistogram> histograms) {
             value = WeightedMean.from(df.getVar(tree.firstTargetName()), weights).getValue();
             weight = weights.stream().complete().mapToDouble().sum();
             if (weight == 0) {
@@ -340,7 +445,14 @@ public class RTree extends AbstractRegression implements BTRegression {
             Arrays.stream(tree.varSelector.nextVarNames()).forEach(testCol -> {
                 if (testCol.equals(tree.firstTargetName())) return;
 
-                if (df.getVar(testCol).getType().isNumeric()) {
+                if (rows != null && varBins.containsKey(testCol)) {
+                    VarBins bins = varBins.get(testCol);
+                    BinHistogram hist = histograms.computeIfAbsent(testCol,
+                            name -> buildHistogram(tree, df, weights, bins, rows));
+                    tree.numericMethod.computeCandidate(
+                            tree, df, weights, testCol, tree.firstTargetName(), tree.function, bins, hist)
+                            .ifPresent(candidates::add);
+                } else if (df.getVar(testCol).getType().isNumeric()) {
                     tree.numericMethod.computeCandidate(
                             tree, df, weights, testCol, tree.firstTargetName(), tree.function)
                             .ifPresent(candidates::add);
@@ -366,13 +478,53 @@ public class RTree extends AbstractRegression implements BTRegression {
                 return;
             }
 
-            Pair<List<Frame>, List<Var>> frames = tree.splitter.performSplit(df, weights, bestCandidate);
-            children = new ArrayList<>(frames._1.size());
-            for (int i = 0; i < frames._1.size(); i++) {
+            Pair<List<Mapping>, List<Var>> mappings = tree.splitter.performMapping(df, weights, bestCandidate);
+            children = new ArrayList<>(mappings._1.size());
+            List<int[]> childRows = new ArrayList<>();
+            List<Map<String, BinHistogram>> childHistograms = new ArrayList<>();
+            for (Mapping mapping : mappings._1) {
+                int[] next = null;
+                if (rows != null) {
+                    next = new int[mapping.size()];
+                    for (int j = 0; j < next.length; j++) {
+                        next[j] = rows[mapping.get(j)];
+                    }
+                }
+                childRows.add(next);
+                childHistograms.add(new HashMap<>());
+            }
+            // when split exactly in two, histograms of the larger child are computed
+            // as a difference between node histograms and smaller child histograms
+            if (!histograms.isEmpty() && mappings._1.size() == 2
+                    && mappings._1.get(0).size() + mappings._1.get(1).size() == df.getRowCount()) {
+                int small = (mappings._1.get(0).size() <= mappings._1.get(1).size()) ? 0 : 1;
+                Frame smallDf = df.mapRows(mappings._1.get(small));
+                for (Map.Entry<String, BinHistogram> e : histograms.entrySet()) {
+                    BinHistogram smallHist = buildHistogram(tree, smallDf, mappings._2.get(small), varBins.get(e.getKey()), childRows.get(small));
+                    childHistograms.get(small).put(e.getKey(), smallHist);
+                    childHistograms.get(1 - small).put(e.getKey(), e.getValue().minus(smallHist));
+                }
+            }
+            for (int i = 0; i < mappings._1.size(); i++) {
                 Node child = new Node(this, bestCandidate.getGroupNames().get(i), bestCandidate.getGroupPredicates().get(i));
                 children.add(child);
-                child.learn(tree, frames._1.get(i), frames._2.get(i), depth - 1);
+                child.learn(tree, df.mapRows(mappings._1.get(i)), mappings._2.get(i), depth - 1,
+                        varBins, childRows.get(i), childHistograms.get(i));
+            }
+        }
+
+        private static BinHistogram buildHistogram(RTree tree, Frame df, Var weights, VarBins bins, int[] rows) {
+            Var target = df.getVar(tree.firstTargetName());
+            BinHistogram hist = BinHistogram.empty(bins.missingBin() + 1, 4);
+            for (int i = 0; i < df.getRowCount(); i++) {
+                int bin = bins.bin(rows[i]);
+                double y = target.getValue(i);
+                hist.update(bin, 0, 1);
+                hist.update(bin, 1, weights.getValue(i));
+                hist.update(bin, 2, y);
+                hist.update(bin, 3, y * y);
             }
+            return hist;
         }
 
         public void boostFit(Frame x, Var y, Var fx, GBTLossFunction lossFunction) {
@@ -412,6 +564,7 @@ public class RTree extends AbstractRegression implements BTRegression {
         private final String testName;
         private final List<String> groupNames = new ArrayList<>();
         private final List<SPredicate<FSpot>> groupPredicates = new ArrayList<>();
+        private BinarySplit split;
 
         public Candidate(double score, String testName) {
             this.score = score;
@@ -434,6 +587,17 @@ public class RTree extends AbstractRegression implements BTRegression {
             return groupPredicates;
         }
 
+        /**
+         * @return structured description of the split, if the groups are described by a binary split, null otherwise
+         */
+        public BinarySplit getSplit() {
+            return split;
+        }
+
+        public void setSplit(BinarySplit split) {
+            this.split = split;
+        }
+
         public double getScore() {
             return score;
         }
@@ -30,6 +30,7 @@ import rapaio.core.tools.DVector;
 import rapaio.data.Frame;
 import rapaio.data.Mapping;
 import rapaio.data.Var;
+import rapaio.ml.common.BinarySplit;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -217,6 +218,7 @@ public interface RTreeNominalMethod extends Serializable {
                             spot -> !spot.isMissing(testVarName) && spot.getLabel(testVarName).equals(testLabel));
                     best.addGroup(testVarName + " != " + testLabel,
                             spot -> !spot.isMissing(testVarName) && !spot.getLabel(testVarName).equals(testLabel));
+                    best.setSplit(BinarySplit.level(testVarName, testLabel, false));
                 }
             }
             return (best == null) ? Optional.empty() : Optional.of(best);
@@ -31,13 +31,15 @@ import rapaio.data.Mapping;
 import rapaio.data.Var;
 import rapaio.data.filter.Filters;
 import rapaio.data.stream.VSpot;
+import rapaio.ml.common.BinHistogram;
+import rapaio.ml.common.BinarySplit;
+import rapaio.ml.common.VarBins;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * Method which computes the best node candidate for a given numeric
@@ -68,6 +70,23 @@ public interface RTreeNumericMethod extends Serializable {
                                                String testVarName, String targetVarName,
                                                RTreeTestFunction testFunction);
 
+    /**
+     * Computes the best candidate using a histogram of the node instances
+     * over the bins of the test variable. Only the bin bounds are evaluated
+     * as split points.
+     *
+     * @param bins bins of the test variable
+     * @param hist histogram of the node instances, with columns for
+     *             count, weight, sum of target values and sum of squared target values
+     * @return best candidate, if any
+     */
+    default Optional<RTree.Candidate> computeCandidate(RTree tree, Frame df, Var w,
+                                                       String testVarName, String targetVarName,
+                                                       RTreeTestFunction testFunction,
+                                                       VarBins bins, BinHistogram hist) {
+        return computeCandidate(tree, df, w, testVarName, targetVarName, testFunction);
+    }
+
     /**
      * Ignore all numeric variables and produces no candidates.
      */
@@ -95,7 +114,7 @@ public interface RTreeNumericMethod extends Serializable {
         public Optional<RTree.Candidate> computeCandidate(RTree c, Frame dfOld, Var weights, String testVarName, String targetVarName, RTreeTestFunction function) {
 
             Frame df = Filters.refSort(dfOld, dfOld.getVar(testVarName).refComparator());
-            Mapping cleanMapping = Mapping.wrap(df.getVar(testVarName).stream().complete().map(VSpot::getRow).collect(Collectors.toList()));
+            Mapping cleanMapping = Mapping.wrap(df.getVar(testVarName).stream().complete().mapToInt(VSpot::getRow).toArray());
 
             Var test = df.getVar(testVarName).mapRows(cleanMapping);
             Var target = df.getVar(targetVarName).mapRows(cleanMapping);
@@ -147,9 +166,74 @@ public interface RTreeNumericMethod extends Serializable {
                     best.addGroup(
                             String.format("%s > %.6f", testVarName, testValue),
                             spot -> !spot.isMissing(testVarName) && spot.getValue(testVarName) > testValue);
+                    best.setSplit(BinarySplit.numeric(testVarName, testValue));
+                }
+            }
+            return (best != null) ? Optional.of(best) : Optional.empty();
+        }
+
+        @Override
+        public Optional<RTree.Candidate> computeCandidate(RTree c, Frame df, Var weights, String testVarName, String targetVarName,
+                                                          RTreeTestFunction function, VarBins bins, BinHistogram hist) {
+            double totalCount = 0;
+            double totalWeight = 0;
+            double totalSum = 0;
+            double totalSquares = 0;
+            for (int bin = 0; bin < bins.binCount(); bin++) {
+                totalCount += hist.get(bin, 0);
+                totalWeight += hist.get(bin, 1);
+                totalSum += hist.get(bin, 2);
+                totalSquares += hist.get(bin, 3);
+            }
+
+            RTree.Candidate best = null;
+            double bestScore = 0.0;
+
+            RTreeTestPayload p = new RTreeTestPayload(2);
+            p.totalVar = variance(totalCount, totalSum, totalSquares);
+
+            double leftCount = 0;
+            double leftWeight = 0;
+            double leftSum = 0;
+            double leftSquares = 0;
+            for (int bin = 0; bin < bins.binCount() - 1; bin++) {
+                if (hist.get(bin, 0) <= 0) continue;
+
+                leftCount += hist.get(bin, 0);
+                leftWeight += hist.get(bin, 1);
+                leftSum += hist.get(bin, 2);
+                leftSquares += hist.get(bin, 3);
+                double rightCount = totalCount - leftCount;
+
+                if (leftCount <= c.minCount || rightCount <= c.minCount) continue;
+
+                p.splitVar[0] = variance(leftCount, leftSum, leftSquares);
+                p.splitVar[1] = variance(rightCount, totalSum - leftSum, totalSquares - leftSquares);
+                p.splitWeight[0] = leftWeight;
+                p.splitWeight[1] = totalWeight - leftWeight;
+                double value = c.function.computeTestValue(p);
+                if (value > bestScore) {
+                    bestScore = value;
+                    best = new RTree.Candidate(value, testVarName);
+
+                    double testValue = bins.cut(bin);
+                    best.addGroup(
+                            String.format("%s <= %.6f", testVarName, testValue),
+                            spot -> !spot.isMissing(testVarName) && spot.getValue(testVarName) <= testValue);
+                    best.addGroup(
+                            String.format("%s > %.6f", testVarName, testValue),
+                            spot -> !spot.isMissing(testVarName) && spot.getValue(testVarName) > testValue);
+                    best.setSplit(BinarySplit.numeric(testVarName, testValue));
                 }
             }
             return (best != null) ? Optional.of(best) : Optional.empty();
         }
+
+        private double variance(double count, double sum, double squares) {
+            if (count < 2) {
+                return 0.0;
+            }
+            return Math.max(0.0, (squares - sum * sum / count) / (count - 1));
+        }
     };
 }
@@ -65,8 +65,25 @@ public interface RTreeSplitter extends Serializable {
      * @return a pair of lists, one with mapped instances for each rule and
      * one with corresponding weights
      */
-    Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights,
-                                              RTree.Candidate candidate);
+    default Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights,
+                                                      RTree.Candidate candidate) {
+        Pair<List<Mapping>, List<Var>> split = performMapping(df, weights, candidate);
+        return Pair.from(split._1.stream().map(df::mapRows).collect(Collectors.toList()), split._2);
+    }
+
+    /**
+     * Split the instances and produces two lists, one with the mappings of
+     * the instances selected for each predicate, as positions in the given frame,
+     * and one which contains the corresponding weights.
+     *
+     * @param df        initial set of instances
+     * @param weights   weights corresponding to each instance
+     * @param candidate the node candidate which contains the rules
+     * @return a pair of lists, one with mappings for each rule and
+     * one with corresponding weights
+     */
+    Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights,
+                                                  RTree.Candidate candidate);
 
     /**
      * Do the regular split of instances and simply ingores the ones which do not
@@ -81,11 +98,9 @@ public interface RTreeSplitter extends Serializable {
         }
 
         @Override
-        public Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, RTree.Candidate candidate) {
+        public Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, RTree.Candidate candidate) {
             RegularSplitting s = new RegularSplitting(df, weights, candidate);
-            List<Frame> frames = new ArrayList<>();
-            s.mappings.forEach(mapping -> frames.add(df.mapRows(mapping)));
-            return Pair.from(frames, s.weightsList);
+            return Pair.from(s.mappings, s.weightsList);
         }
     };
 
@@ -103,7 +118,7 @@ public interface RTreeSplitter extends Serializable {
         }
 
         @Override
-        public Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, RTree.Candidate candidate) {
+        public Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, RTree.Candidate candidate) {
             RegularSplitting s = new RegularSplitting(df, weights, candidate);
             int majorityGroup = 0;
             int majoritySize = 0;
@@ -118,9 +133,7 @@ public interface RTreeSplitter extends Serializable {
                 s.mappings.get(index).add(spot.getRow());
                 s.weightsList.get(index).addValue(weights.getValue(spot.getRow()));
             }
-            List<Frame> frames = new ArrayList<>();
-            s.mappings.forEach(mapping -> frames.add(MappedFrame.byRow(df, mapping)));
-            return Pair.from(frames, s.weightsList);
+            return Pair.from(s.mappings, s.weightsList);
         }
     };
 
@@ -139,7 +152,7 @@ public interface RTreeSplitter extends Serializable {
         }
 
         @Override
-        public Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, RTree.Candidate candidate) {
+        public Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, RTree.Candidate candidate) {
             RegularSplitting s = new RegularSplitting(df, weights, candidate);
 
             final double[] p = new double[s.mappings.size()];
@@ -157,11 +170,7 @@ public interface RTreeSplitter extends Serializable {
                     s.weightsList.get(i).addValue(weights.getValue(spot.getRow()) * p[i]);
                 }
             }
-            List<Frame> frames = new ArrayList<>();
-            for (Mapping mapping : s.mappings) {
-                frames.add(MappedFrame.byRow(df, mapping));
-            }
-            return Pair.from(frames, s.weightsList);
+            return Pair.from(s.mappings, s.weightsList);
         }
     };
 
@@ -178,16 +187,14 @@ public interface RTreeSplitter extends Serializable {
         }
 
         @Override
-        public Pair<List<Frame>, List<Var>> performSplit(Frame df, Var weights, RTree.Candidate candidate) {
+        public Pair<List<Mapping>, List<Var>> performMapping(Frame df, Var weights, RTree.Candidate candidate) {
             RegularSplitting s = new RegularSplitting(df, weights, candidate);
             for (FSpot spot : s.missingSpots) {
                 int next = RandomSource.nextInt(s.mappings.size());
                 s.mappings.get(next).add(spot.getRow());
                 s.weightsList.get(next).addValue(weights.getValue(spot.getRow()));
             }
-            ;
-            List<Frame> frameList = s.mappings.stream().map(df::mapRows).collect(Collectors.toList());
-            return Pair.from(frameList, s.weightsList);
+            return Pair.from(s.mappings, s.weightsList);
         }
     };
 }
@@ -24,41 +24,295 @@
 
 package rapaio.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
-import java.util.stream.IntStream;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
 
 /**
  * fork join pool utility
  * <p>
+ * Parallel work of the library runs on a single shared fork join pool with {@link #maxThreads()}
+ * workers, created on first use. The number of threads can be configured with system property
+ * {@code rapaio.threads} or with {@link #setMaxThreads(int)}, which replaces the shared pool
+ * atomically: work already started completes on the old pool, new work goes to the new one.
+ * <p>
+ * The threads parameter of the methods bounds the parallelism of a single call:
+ * {@link #forEach(int, int, IntConsumer)} and the methods built on it run at most that
+ * many tasks at the same time, while the total number of threads is bounded by the pool.
+ * {@link #call(int, Callable)} and {@link #run(int, Runnable)} with fewer threads than the
+ * shared pool run the task on a dedicated pool of that size, such that parallel streams and
+ * nested parallel work of the task use at most that many workers.
+ * Tasks started from a thread which already belongs to a managed pool are executed inline,
+ * thus nested parallel work (for example forest, tree and split search) is scheduled on the
+ * pool of the outermost task instead of oversubscribing the machine. Failures of tasks are
+ * propagated to the caller.
+ * <p>
  * Created by <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a> on 9/23/15.
  */
 public class FJPool {
 
-    public static void runRangeParallel(int start, int end, Consumer<Integer> r) {
-        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
-        Optional.of(pool.submit(() -> IntStream.range(start, end).parallel().forEach(r::accept)));
+    private static final AtomicReference<ForkJoinPool> shared = new AtomicReference<>();
+    private static volatile int maxThreads = Math.max(1, Integer.getInteger("rapaio.threads", Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * @return maximum number of threads of the shared pool
+     */
+    public static int maxThreads() {
+        return maxThreads;
     }
 
-    public static <T> Optional<T> compute(int threads, Callable<T> r) {
-        ForkJoinPool pool = new ForkJoinPool(threads);
+    /**
+     * Sets the number of threads of the shared pool. The current pool is replaced
+     * and shut down, tasks already submitted to it still run to completion.
+     *
+     * @param threads maximum number of threads, values less than 1 means number of available processors
+     */
+    public static void setMaxThreads(int threads) {
+        maxThreads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+        shutdown();
+    }
+
+    /**
+     * @return shared managed pool, created on demand
+     */
+    public static ForkJoinPool pool() {
+        while (true) {
+            ForkJoinPool pool = shared.get();
+            if (pool != null) {
+                return pool;
+            }
+            ForkJoinPool created = new ForkJoinPool(maxThreads, Worker::new, null, false);
+            if (shared.compareAndSet(null, created)) {
+                return created;
+            }
+            created.shutdown();
+        }
+    }
+
+    /**
+     * Shuts down the shared pool, after running tasks complete. A new pool is created on demand.
+     */
+    public static void shutdown() {
+        ForkJoinPool pool = shared.getAndSet(null);
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return true if the current thread is a worker of a managed pool
+     */
+    public static boolean isManagedThread() {
+        return Thread.currentThread() instanceof Worker;
+    }
+
+    /**
+     * Submits a task to the shared pool without waiting for it. The returned task
+     * can be used to wait for the result or to cancel the computation.
+     *
+     * @param task task to run
+     * @param <T>  type of the result
+     * @return submitted task
+     */
+    public static <T> ForkJoinTask<T> submit(Callable<T> task) {
+        while (true) {
+            ForkJoinPool pool = pool();
+            try {
+                return pool.submit(task);
+            } catch (RejectedExecutionException e) {
+                // the pool was replaced in the meantime, submit to the current one
+                if (shared.get() == pool) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a task on a managed pool and waits for its result. If threads is less than
+     * {@link #maxThreads()} the task runs on a dedicated pool with that many workers, which
+     * is shut down afterwards, otherwise on the shared pool. When called from a managed
+     * pool thread the task runs inline, on the pool of the caller. Failures are propagated,
+     * runtime exceptions as they are, checked exceptions wrapped into {@link IllegalStateException}.
+     *
+     * @param threads maximum number of threads for the parallel work of the task,
+     *                values less than 1 means {@link #maxThreads()}
+     * @param task    task to run
+     * @param <T>     type of the result
+     * @return result of the task
+     */
+    public static <T> T call(int threads, Callable<T> task) {
+        if (isManagedThread()) {
+            return invoke(task);
+        }
+        if (threads < 1 || threads >= maxThreads) {
+            return await(submit(() -> invoke(task)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads, Worker::new, null, false);
         try {
-            return Optional.of(pool.submit(r::call).get());
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            return Optional.empty();
+            return await(pool.submit(() -> invoke(task)));
+        } finally {
+            pool.shutdown();
         }
     }
 
-    public static void run(int threads, Runnable r) {
-        ForkJoinPool pool = new ForkJoinPool(threads);
+    private static <T> T await(ForkJoinTask<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("parallel computation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Runs a task for each index from 0 to tasks - 1 on the shared pool, with at most
+     * threads indexes processed at the same time, and waits for all of them.
+     *
+     * @param threads maximum number of concurrent tasks, values less than 1 means {@link #maxThreads()}
+     * @param tasks   number of tasks
+     * @param task    task to run for each index
+     */
+    public static void forEach(int threads, int tasks, IntConsumer task) {
+        int workers = Math.min(tasks, (threads < 1) ? maxThreads : Math.min(threads, maxThreads));
+        if (workers <= 1) {
+            for (int i = 0; i < tasks; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        AtomicInteger next = new AtomicInteger();
+        List<RecursiveAction> actions = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            actions.add(new RecursiveAction() {
+                private static final long serialVersionUID = -2374093650913720112L;
+
+                @Override
+                protected void compute() {
+                    for (int i = next.getAndIncrement(); i < tasks; i = next.getAndIncrement()) {
+                        task.accept(i);
+                    }
+                }
+            });
+        }
+        // concurrency is already bounded by the number of actions, thus the shared pool is used
+        run(maxThreads, () -> {
+            try {
+                ForkJoinTask.invokeAll(actions);
+            } catch (RuntimeException | Error e) {
+                throw propagate(e);
+            }
+        });
+    }
+
+    /**
+     * Computes a value for each index from 0 to tasks - 1 with {@link #forEach(int, int, IntConsumer)}.
+     *
+     * @param threads maximum number of concurrent tasks, values less than 1 means {@link #maxThreads()}
+     * @param tasks   number of tasks
+     * @param task    computes the value of an index
+     * @param <T>     type of the values
+     * @return values in index order
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> map(int threads, int tasks, IntFunction<T> task) {
+        Object[] values = new Object[tasks];
+        forEach(threads, tasks, i -> values[i] = task.apply(i));
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    private static <T> T invoke(Callable<T> task) {
         try {
-            pool.submit(r).get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        // fork join tasks rethrow a copy of exceptions raised on other threads, the original is the cause
+        if (cause != null && cause.getCause() != null && cause.getClass() == cause.getCause().getClass()) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    public static void runRangeParallel(int start, int end, Consumer<Integer> r) {
+        forEach(maxThreads, end - start, i -> r.accept(start + i));
+    }
+
+    public static <T> Optional<T> compute(int threads, Callable<T> r) {
+        return Optional.ofNullable(call(threads, r));
+    }
+
+    public static void run(int threads, Runnable r) {
+        call(threads, () -> {
+            r.run();
+            return null;
+        });
+    }
+
+    /**
+     * Splits a range of rows into chunks, computes a partial result for each chunk in parallel
+     * and merges partial results in chunk order.
+     *
+     * @param threads number of threads, if less than 2 the whole range is computed as a single chunk
+     * @param start   first row, inclusive
+     * @param end     last row, exclusive
+     * @param chunk   computes a partial result from a range of rows given by start and end
+     * @param merge   merges two partial results, the second one follows the first in row order
+     * @param <T>     type of the result
+     * @return merged result
+     */
+    public static <T> T reduceRange(int threads, int start, int end,
+                                    BiFunction<Integer, Integer, T> chunk, BinaryOperator<T> merge) {
+        int len = end - start;
+        if (threads < 2 || len < 2) {
+            return chunk.apply(start, end);
+        }
+        int chunks = Math.min(threads * 4, len);
+        List<T> partials = map(threads, chunks,
+                i -> chunk.apply(start + (int) ((long) len * i / chunks), start + (int) ((long) len * (i + 1) / chunks)));
+        T result = partials.get(0);
+        for (int i = 1; i < partials.size(); i++) {
+            result = merge.apply(result, partials.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Worker thread of managed pools, used to recognize nested calls.
+     */
+    private static final class Worker extends ForkJoinWorkerThread {
+
+        private Worker(ForkJoinPool pool) {
+            super(pool);
         }
     }
 }
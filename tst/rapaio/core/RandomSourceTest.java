@@ -26,8 +26,16 @@ package rapaio.core;
 
 import org.junit.Assert;
 import org.junit.Test;
+import rapaio.data.Frame;
 import rapaio.data.IndexVar;
 import rapaio.data.Var;
+import rapaio.datasets.Datasets;
+import rapaio.ml.classifier.CFit;
+import rapaio.ml.classifier.ensemble.CForest;
+import rapaio.ml.classifier.tree.CTree;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
 
 /**
  * Created by <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a> on 7/1/16.
@@ -53,4 +61,50 @@ public class RandomSourceTest {
             Assert.assertEquals(n1, n2);
         }
     }
+
+    @Test
+    public void streamTest() {
+        long seed = RandomSource.streamSeed(42, 3);
+        Assert.assertNotEquals(seed, RandomSource.streamSeed(42, 4));
+
+        double[] first = RandomSource.callWithStream(seed, () -> new double[]{RandomSource.nextDouble(), RandomSource.nextInt(100)});
+        double[] second = RandomSource.callWithStream(seed, () -> new double[]{RandomSource.nextDouble(), RandomSource.nextInt(100)});
+        Assert.assertArrayEquals(first, second, 0);
+
+        // nested streams restore the outer stream
+        RandomSource.runWithStream(seed, () -> {
+            double a = RandomSource.nextDouble();
+            RandomSource.runWithStream(RandomSource.streamSeed(42, 5), RandomSource::nextDouble);
+            Assert.assertEquals(first[1], RandomSource.nextInt(100), 0);
+            Assert.assertEquals(first[0], a, 0);
+        });
+
+        // outside streams the shared generator is used
+        RandomSource.setSeed(1);
+        int n1 = RandomSource.nextInt(1000);
+        RandomSource.setSeed(1);
+        RandomSource.runWithStream(seed, RandomSource::nextDouble);
+        Assert.assertEquals(n1, RandomSource.nextInt(1000));
+    }
+
+    @Test
+    public void parallelForestTest() throws IOException, URISyntaxException {
+        Frame df = Datasets.loadIrisDataset();
+
+        RandomSource.setSeed(123);
+        CFit seqFit = CForest.newRF().withRuns(20).withRunPoolSize(0).train(df, "class").fit(df, true, true);
+        RandomSource.setSeed(123);
+        CFit parFit = CForest.newRF().withRuns(20).withRunPoolSize(4).train(df, "class").fit(df, true, true);
+        RandomSource.setSeed(123);
+        CFit treeFit = CTree.newCART().withRunPoolSize(4).train(df, "class").fit(df, true, true);
+        RandomSource.setSeed(123);
+        CFit seqTreeFit = CTree.newCART().train(df, "class").fit(df, true, true);
+
+        for (int i = 0; i < df.getRowCount(); i++) {
+            for (int j = 1; j < 4; j++) {
+                Assert.assertEquals(seqFit.firstDensity().getValue(i, j), parFit.firstDensity().getValue(i, j), 0);
+                Assert.assertEquals(seqTreeFit.firstDensity().getValue(i, j), treeFit.firstDensity().getValue(i, j), 0);
+            }
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.core.stat;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.core.correlation.CorrPearson;
+import rapaio.core.distributions.Normal;
+import rapaio.data.Frame;
+import rapaio.data.Mapping;
+import rapaio.data.NumericVar;
+import rapaio.data.SolidFrame;
+import rapaio.data.Var;
+import rapaio.math.linear.RM;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class OnlineCovarianceTest {
+
+    @Test
+    public void testAgainstPairwise() {
+        RandomSource.setSeed(1234);
+        int len = 5_000;
+        Var x = new Normal(0, 1).sample(len).withName("x");
+        Var y = NumericVar.from(len, i -> 2 * x.getValue(i) + RandomSource.nextDouble()).withName("y");
+        Var z = new Normal(10, 3).sample(len).withName("z");
+        Frame df = SolidFrame.byVars(x, y, z);
+
+        OnlineCovariance seq = OnlineCovariance.from(df);
+        OnlineCovariance par = OnlineCovariance.from(df, 4);
+        OnlineCovariance inc = OnlineCovariance.from(df.mapRows(Mapping.range(0, 1_000)));
+        inc.update(OnlineCovariance.from(df.mapRows(Mapping.range(1_000, len))));
+
+        double[][] corr = CorrPearson.from(df).values();
+        for (OnlineCovariance cov : new OnlineCovariance[]{seq, par, inc}) {
+            assertEquals(len, cov.n(), 1e-20);
+            RM covMatrix = cov.covarianceMatrix();
+            RM corrMatrix = cov.correlationMatrix();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Mean.from(df.getVar(i)).getValue(), cov.mean(i), 1e-10);
+                for (int j = 0; j < 3; j++) {
+                    double expected = Covariance.from(df.getVar(i), df.getVar(j)).getValue();
+                    assertEquals(expected, covMatrix.get(i, j), 1e-9);
+                    assertEquals(corr[i][j], corrMatrix.get(i, j), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMissing() {
+        OnlineCovariance cov = OnlineCovariance.empty(2);
+        cov.update(1, 2);
+        cov.update(2, Double.NaN);
+        cov.update(3, 6);
+        assertEquals(2, cov.n(), 1e-20);
+        assertEquals(2, cov.covariance(0, 0), 1e-12);
+        assertEquals(4, cov.covariance(0, 1), 1e-12);
+        assertEquals(1, cov.correlation(1, 0), 1e-12);
+    }
+}
@@ -30,6 +30,7 @@ import rapaio.core.CoreTools;
 import rapaio.core.RandomSource;
 import rapaio.core.distributions.Normal;
 import rapaio.data.IndexVar;
+import rapaio.data.Mapping;
 import rapaio.data.NumericVar;
 import rapaio.data.Var;
 
@@ -95,4 +96,38 @@ public class OnlineStatTest {
         Assert.assertEquals(soA.variance(), soAll.variance(), 1e-12);
         Assert.assertEquals(soA.mean(), soAll.mean(), 1e-30);
     }
+
+    @Test
+    public void testCombine() {
+        RandomSource.setSeed(123);
+        Var x = new Normal(20, 4).sample(10_000);
+        OnlineStat all = OnlineStat.from(x);
+
+        OnlineStat left = OnlineStat.from(x.mapRows(Mapping.range(0, 3_000)));
+        OnlineStat right = OnlineStat.from(x.mapRows(Mapping.range(3_000, 10_000)));
+        OnlineStat combined = left.combine(right);
+        OnlineStat parallel = OnlineStat.from(x, 4);
+
+        assertEquals(3_000, left.n(), 1e-20);
+        for (OnlineStat stat : new OnlineStat[]{combined, parallel}) {
+            assertEquals(all.n(), stat.n(), 1e-20);
+            assertEquals(all.mean(), stat.mean(), 1e-10);
+            assertEquals(all.variance(), stat.variance(), 1e-9);
+            assertEquals(all.skewness(), stat.skewness(), 1e-9);
+            assertEquals(all.kurtosis(), stat.kurtosis(), 1e-9);
+            assertEquals(all.min(), stat.min(), 1e-20);
+            assertEquals(all.max(), stat.max(), 1e-20);
+        }
+        assertEquals(Variance.from(x).getValue(), all.variance(), 1e-9);
+
+        // positive values do not have minimum 0
+        OnlineStat positive = OnlineStat.empty();
+        positive.update(3);
+        positive.update(5);
+        assertEquals(3, positive.min(), 1e-20);
+        OnlineStat empty = OnlineStat.empty();
+        empty.update(positive);
+        assertEquals(3, empty.min(), 1e-20);
+        assertEquals(5, empty.max(), 1e-20);
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.core.stat;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.core.distributions.Normal;
+import rapaio.data.NumericVar;
+import rapaio.data.Var;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class QuantileSketchTest {
+
+    @Test
+    public void testSmallIsExact() {
+        QuantileSketch sketch = QuantileSketch.empty();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        for (int i = 100; i >= 1; i--) {
+            sketch.update(i);
+        }
+        sketch.update(Double.NaN);
+        assertEquals(100, sketch.n());
+        assertEquals(1, sketch.min(), 1e-20);
+        assertEquals(100, sketch.max(), 1e-20);
+        assertEquals(50, sketch.quantile(0.5), 1e-20);
+        assertEquals(25, sketch.quantile(0.25), 1e-20);
+        assertEquals(100, sketch.quantile(1), 1e-20);
+        assertEquals(0.3, sketch.rank(30), 1e-20);
+    }
+
+    @Test
+    public void testAccuracyAndMerge() {
+        RandomSource.setSeed(1234);
+        int len = 200_000;
+        Var x = new Normal(10, 3).sample(len);
+        double[] sorted = x.stream().mapToDouble().sorted().toArray();
+
+        QuantileSketch full = QuantileSketch.from(x);
+        QuantileSketch merged = QuantileSketch.empty();
+        for (int chunk = 0; chunk < 4; chunk++) {
+            QuantileSketch partial = QuantileSketch.empty();
+            for (int i = chunk * len / 4; i < (chunk + 1) * len / 4; i++) {
+                partial.update(x.getValue(i));
+            }
+            merged.update(partial);
+        }
+        assertEquals(len, merged.n());
+        assertTrue(full.retained() < 1_000);
+        assertTrue(merged.retained() < 1_000);
+
+        for (QuantileSketch sketch : new QuantileSketch[]{full, merged}) {
+            for (double p = 0.01; p < 1; p += 0.01) {
+                double q = sketch.quantile(p);
+                int rank = Arrays.binarySearch(sorted, q);
+                assertTrue(rank >= 0);
+                assertEquals(p, (rank + 1.0) / len, 0.02);
+            }
+            assertEquals(sorted[0], sketch.min(), 1e-20);
+            assertEquals(sorted[len - 1], sketch.max(), 1e-20);
+        }
+    }
+
+    @Test
+    public void testMergeWithItself() {
+        QuantileSketch sketch = QuantileSketch.empty();
+        for (int i = 1; i <= 100; i++) {
+            sketch.update(i);
+        }
+        sketch.update(sketch);
+        assertEquals(200, sketch.n());
+        assertEquals(1, sketch.min(), 1e-20);
+        assertEquals(100, sketch.max(), 1e-20);
+        assertEquals(50, sketch.quantile(0.5), 1e-20);
+        assertEquals(0.3, sketch.rank(30), 1e-20);
+
+        RandomSource.setSeed(1);
+        QuantileSketch large = QuantileSketch.empty();
+        for (int i = 0; i < 10_000; i++) {
+            large.update(RandomSource.nextDouble());
+        }
+        large.update(large);
+        assertEquals(20_000, large.n());
+        assertEquals(0.5, large.quantile(0.5), 0.02);
+    }
+
+    @Test
+    public void testExactSelection() {
+        RandomSource.setSeed(42);
+        for (int len : new int[]{2, 3, 10, 101, 5_000}) {
+            NumericVar x = NumericVar.from(len, i -> RandomSource.nextDouble() < 0.1 ? Double.NaN : (double) RandomSource.nextInt(len / 2 + 1));
+            double[] sorted = x.stream().complete().mapToDouble().sorted().toArray();
+            double[] p = new double[]{0.9, 0, 0.1, 0.5, 0.25, 1, 0.33, 0.5};
+            double[] r7 = Quantiles.from(x, p).getValues();
+            double[] r8 = Quantiles.from(x, Quantiles.Type.R8, p).getValues();
+            for (int i = 0; i < p.length; i++) {
+                assertEquals(referenceR7(sorted, p[i]), r7[i], 1e-20);
+                assertEquals(referenceR8(sorted, p[i]), r8[i], 1e-20);
+            }
+        }
+        double[] same = new double[1_000];
+        Arrays.fill(same, 3);
+        assertEquals(3, Quantiles.select(same, 0, same.length, 700), 1e-20);
+    }
+
+    private static double referenceR7(double[] x, double p) {
+        if (x.length == 1) {
+            return x[0];
+        }
+        int n = x.length;
+        double h = (n - 1.0) * p + 1;
+        int hfloor = (int) Math.min(StrictMath.floor(h), n - 1);
+        return x[hfloor - 1] + (h - hfloor) * (x[hfloor] - x[hfloor - 1]);
+    }
+
+    private static double referenceR8(double[] x, double p) {
+        if (x.length == 1) {
+            return x[0];
+        }
+        int n = x.length;
+        double h = (n + 1. / 3.) * p + 1. / 3.;
+        int hfloor = (int) StrictMath.floor(h);
+        if (p < (2. / 3.) / (n + 1. / 3.)) {
+            return x[0];
+        }
+        if (p >= (n - 1. / 3.) / (n + 1. / 3.)) {
+            return x[n - 1];
+        }
+        return x[hfloor - 1] + (h - hfloor) * (x[hfloor] - x[hfloor - 1]);
+    }
+}
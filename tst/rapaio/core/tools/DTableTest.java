@@ -26,7 +26,11 @@ package rapaio.core.tools;
 
 import junit.framework.Assert;
 import org.junit.Test;
+import rapaio.core.RandomSource;
 import rapaio.data.Frame;
+import rapaio.data.Mapping;
+import rapaio.data.NominalVar;
+import rapaio.data.NumericVar;
 import rapaio.datasets.Datasets;
 import rapaio.sys.WS;
 
@@ -195,4 +199,27 @@ public class DTableTest {
                 " b 0.444 0.731 0.667\n" +
                 "\n", dt2.normalizeOnCols().getSummary());
     }
+
+    @Test
+    public void testParallelAndIncremental() {
+        RandomSource.setSeed(42);
+        NominalVar rows = NominalVar.from(10_000, i -> RandomSource.nextDouble() < 0.1 ? "?" : "r" + RandomSource.nextInt(5));
+        NominalVar cols = NominalVar.from(10_000, i -> "c" + RandomSource.nextInt(3));
+        NumericVar weights = NumericVar.from(10_000, i -> (double) RandomSource.nextInt(4));
+
+        DTable seq = DTable.fromWeights(rows, cols, weights, false);
+        DTable par = DTable.fromWeights(rows, cols, weights, false, 4);
+        assertEquals(seq.getSummary(), par.getSummary());
+        assertEquals(DTable.fromCounts(rows, cols, true).getSummary(), DTable.fromCounts(rows, cols, true, 4).getSummary());
+
+        DTable inc = DTable.empty(rows.getLevels(), cols.getLevels(), false)
+                .addRows(rows, cols, weights, 0, 6_000)
+                .merge(DTable.empty(rows.getLevels(), cols.getLevels(), false).addRows(rows, cols, weights, 6_000, 10_000));
+        assertEquals(seq.getSummary(), inc.getSummary());
+
+        DTable copy = inc.copy().removeRows(rows, cols, weights, 3_000, 10_000);
+        assertEquals(DTable.fromWeights(rows.mapRows(Mapping.range(0, 3_000)), cols.mapRows(Mapping.range(0, 3_000)),
+                weights.mapRows(Mapping.range(0, 3_000)), false).getSummary(), copy.getSummary());
+        assertEquals(seq.getSummary(), inc.getSummary());
+    }
 }
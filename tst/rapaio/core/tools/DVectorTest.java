@@ -25,6 +25,8 @@
 package rapaio.core.tools;
 
 import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.data.Mapping;
 import rapaio.data.NominalVar;
 import rapaio.data.NumericVar;
 
@@ -160,4 +162,24 @@ public class DVectorTest {
         DVector dv2 = dv1.solidCopy();
         assertEquals(dv1.toString(), dv2.toString());
     }
+
+    @Test
+    public void testParallelAndIncremental() {
+        RandomSource.setSeed(42);
+        NominalVar var = NominalVar.from(10_000, i -> RandomSource.nextDouble() < 0.1 ? "?" : "l" + RandomSource.nextInt(7));
+        NumericVar weights = NumericVar.from(10_000, i -> (double) RandomSource.nextInt(4));
+
+        DVector seq = DVector.fromWeights(false, var, weights);
+        assertTrue(seq.equalsFull(DVector.fromWeights(false, var, weights, 4)));
+        assertEquals(seq.sum(), DVector.fromWeights(false, var, weights, 4).sum(), 1e-12);
+        assertTrue(DVector.fromCount(true, var).equalsFull(DVector.fromWeights(true, var, null, 4)));
+
+        DVector inc = DVector.empty(false, var.getLevels())
+                .addRows(var, weights, 0, 4_000)
+                .merge(DVector.empty(false, var.getLevels()).addRows(var, weights, 4_000, 10_000));
+        assertTrue(seq.equalsFull(inc));
+
+        inc.removeRows(var, weights, 4_000, 10_000);
+        assertTrue(DVector.fromWeights(false, var.mapRows(Mapping.range(0, 4_000)), weights.mapRows(Mapping.range(0, 4_000))).equalsFull(inc));
+    }
 }
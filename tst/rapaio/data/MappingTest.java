@@ -30,6 +30,7 @@ import java.util.Arrays;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -94,4 +95,52 @@ public class MappingTest {
         assertEquals(101, m.get(5));
         assertEquals(3, m.get(2));
     }
+
+    @Test
+    public void testArrayMappingBulk() {
+        Mapping m = Mapping.empty();
+        m.addAll(new int[]{10, 11, 12, 13, 14});
+        m.add(15);
+        assertEquals(6, m.size());
+        assertEquals(15, m.get(5));
+
+        m.removeAll(new int[]{0, 2, 5});
+        assertEquals(3, m.size());
+        assertArrayEquals(new int[]{11, 13, 14}, m.toArray());
+
+        m.removeAll(Arrays.asList(1));
+        assertArrayEquals(new int[]{11, 14}, m.toArray());
+
+        m.remove(0);
+        assertArrayEquals(new int[]{14}, m.toArray());
+
+        m.clear();
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public void testIntervalMappingMaterialize() {
+        Mapping m = Mapping.range(2, 6);
+        assertArrayEquals(new int[]{2, 3, 4, 5}, m.toArray());
+
+        m.addAll(new int[]{100, 101});
+        assertArrayEquals(new int[]{2, 3, 4, 5, 100, 101}, m.toArray());
+
+        m.removeAll(new int[]{0, 4});
+        assertArrayEquals(new int[]{3, 4, 5, 101}, m.toArray());
+        assertEquals(4, m.rowStream().count());
+    }
+
+    @Test
+    public void testWrapArray() {
+        int[] rows = new int[]{5, 3, 1};
+        Mapping m = Mapping.wrap(rows);
+        assertEquals(3, m.size());
+        assertEquals(5, m.get(0));
+        assertEquals(1, m.get(2));
+
+        Mapping c = Mapping.copy(rows);
+        rows[0] = 7;
+        assertEquals(5, c.get(0));
+    }
 }
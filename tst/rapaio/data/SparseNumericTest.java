@@ -0,0 +1,169 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.data.filter.frame.FFOneHotEncoding;
+import rapaio.math.linear.RM;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.ml.common.FeatureBlock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class SparseNumericTest {
+
+    @Test
+    public void smokeTest() {
+        SparseNumericVar v = SparseNumericVar.empty();
+        assertTrue(v.getType().isNumeric());
+        assertEquals(0, v.getRowCount());
+
+        try {
+            SparseNumericVar.empty(-1);
+            assertTrue("should raise an exception", false);
+        } catch (Throwable ignored) {
+        }
+
+        SparseNumericVar fill = SparseNumericVar.fill(1_000_000);
+        assertEquals(1_000_000, fill.getRowCount());
+        assertEquals(0, fill.getEntryCount());
+        assertEquals(0.0, fill.getValue(999_999), 1e-20);
+
+        SparseNumericVar empty = SparseNumericVar.empty(3);
+        assertTrue(empty.isMissing(0) && empty.isMissing(2));
+        assertEquals("SparseNumeric[name:?, rowCount:3, entries:3]", empty.toString());
+    }
+
+    @Test
+    public void testAgainstDense() {
+        RandomSource.setSeed(123);
+        NumericVar dense = NumericVar.empty();
+        SparseNumericVar sparse = SparseNumericVar.empty();
+        for (int i = 0; i < 200; i++) {
+            double value = RandomSource.nextDouble() < 0.8 ? 0 : RandomSource.nextDouble();
+            dense.addValue(value);
+            sparse.addValue(value);
+        }
+        for (int step = 0; step < 2_000; step++) {
+            int row = RandomSource.nextInt(dense.getRowCount());
+            switch (RandomSource.nextInt(4)) {
+                case 0:
+                    dense.setValue(row, 0);
+                    sparse.setValue(row, 0);
+                    break;
+                case 1:
+                    dense.setValue(row, step);
+                    sparse.setValue(row, step);
+                    break;
+                case 2:
+                    dense.setMissing(row);
+                    sparse.setMissing(row);
+                    break;
+                default:
+                    // dense remove does not handle the last row
+                    row = RandomSource.nextInt(dense.getRowCount() - 1);
+                    dense.remove(row);
+                    sparse.remove(row);
+                    dense.addValue(step);
+                    sparse.addValue(step);
+            }
+            assertTrue(dense.deepEquals(sparse));
+        }
+
+        int entries = 0;
+        for (int i = 0; i < dense.getRowCount(); i++) {
+            if (dense.getValue(i) != 0) {
+                assertEquals(i, sparse.getEntryRow(entries));
+                entries++;
+            }
+        }
+        assertEquals(entries, sparse.getEntryCount());
+        assertTrue(dense.deepEquals(sparse.solidCopy()));
+        assertTrue(dense.deepEquals(SparseNumericVar.copy(dense)));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        SparseNumericVar sparse = SparseNumericVar.copy(0, 1, 0, Double.NaN, 0, 2.5).withName("x");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(sparse);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            SparseNumericVar restore = (SparseNumericVar) in.readObject();
+            assertTrue(sparse.deepEquals(restore));
+            assertEquals(3, restore.getEntryCount());
+        }
+    }
+
+    @Test
+    public void testOneHotEncoding() {
+        Frame df = SolidFrame.byVars(
+                NominalVar.copy("a", "b", "?", "c", "a", "b").withName("x"),
+                NumericVar.copy(1, 2, 3, 4, 5, 6).withName("y"));
+
+        Frame dense = new FFOneHotEncoding("x").fitApply(df);
+        Frame sparse = new FFOneHotEncoding("x").withSparse(true).fitApply(df);
+
+        assertTrue(dense.deepEquals(sparse));
+        assertTrue(sparse.getVar("x.a") instanceof SparseNumericVar);
+        assertEquals(2, ((SparseNumericVar) sparse.getVar("x.a")).getEntryCount());
+
+        RM denseMatrix = SolidRM.copy(dense);
+        RM sparseMatrix = SolidRM.copy(sparse);
+        FeatureBlock sparseBlock = FeatureBlock.from(sparse, sparse.getVarNames());
+        for (int i = 0; i < dense.getRowCount(); i++) {
+            for (int j = 0; j < dense.getVarCount(); j++) {
+                assertEquals(denseMatrix.get(i, j), sparseMatrix.get(i, j), 1e-20);
+                assertEquals(denseMatrix.get(i, j), sparseBlock.get(i, j), 1e-20);
+            }
+        }
+
+        // mapped frames keep the sparse path
+        Frame denseMapped = dense.mapRows(5, 0, 3, 0);
+        Frame sparseMapped = sparse.mapRows(5, 0, 3, 0);
+        assertTrue(SparseEntries.isSparse(sparseMapped.getVar("x.a")));
+        denseMatrix = SolidRM.copy(denseMapped);
+        sparseMatrix = SolidRM.copy(sparseMapped);
+        sparseBlock = FeatureBlock.from(sparseMapped, sparseMapped.getVarNames());
+        assertTrue(sparseBlock.isSparse());
+        for (int i = 0; i < denseMapped.getRowCount(); i++) {
+            for (int j = 0; j < denseMapped.getVarCount(); j++) {
+                assertEquals(denseMatrix.get(i, j), sparseMatrix.get(i, j), 1e-20);
+                assertEquals(denseMatrix.get(i, j), sparseBlock.get(i, j), 1e-20);
+            }
+        }
+    }
+}
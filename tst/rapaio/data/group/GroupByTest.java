@@ -0,0 +1,194 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data.group;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.core.stat.Maximum;
+import rapaio.core.stat.Mean;
+import rapaio.core.stat.Minimum;
+import rapaio.core.stat.Quantiles;
+import rapaio.core.stat.Sum;
+import rapaio.core.stat.Variance;
+import rapaio.data.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static rapaio.data.group.Aggregate.*;
+
+/**
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class GroupByTest {
+
+    private static final double TOL = 1e-10;
+
+    @Test
+    public void testSmallGroups() {
+        Frame df = SolidFrame.byVars(
+                NominalVar.copy("a", "b", "a", "?", "b", "a").withName("k"),
+                NumericVar.copy(1, 2, 3, 4, Double.NaN, 5).withName("x"));
+
+        GroupBy gb = df.groupBy("k");
+        assertEquals(3, gb.getGroupCount());
+        assertEquals(0, gb.getGroup(2));
+        assertEquals(2, gb.getGroup(3));
+        assertArrayEquals(new int[]{0, 2, 5}, gb.getGroupRows(0).toArray());
+
+        Frame agg = gb.aggregate(count(), count("x"), sum("x"), mean("x"), variance("x"),
+                min("x"), max("x"), quantile("x", 0.5), nunique("x"));
+        assertArrayEquals(new String[]{"k", "count", "x_count", "x_sum", "x_mean", "x_var",
+                "x_min", "x_max", "x_q0.5", "x_nunique"}, agg.getVarNames());
+        assertEquals("a b ?", labels(agg, "k"));
+        assertEquals("3 2 1", labels(agg, "count"));
+        assertEquals("3 1 1", labels(agg, "x_count"));
+        assertEquals("9.0 2.0 4.0", labels(agg, "x_sum"));
+        assertEquals("3.0 2.0 4.0", labels(agg, "x_mean"));
+        assertEquals("4.0 ? ?", labels(agg, "x_var"));
+        assertEquals("1.0 2.0 4.0", labels(agg, "x_min"));
+        assertEquals("5.0 2.0 4.0", labels(agg, "x_max"));
+        assertEquals("3.0 2.0 4.0", labels(agg, "x_q0.5"));
+        assertEquals("3 1 1", labels(agg, "x_nunique"));
+
+        try {
+            df.groupBy();
+            assertTrue("group by without keys should raise an exception", false);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testMultipleKeys() {
+        Frame df = SolidFrame.byVars(
+                IndexVar.copy(1, 1, 2, 2, 1).withName("i"),
+                TextVar.copy("x", "y", "x", "x", "x").withName("t"),
+                NumericVar.copy(0.0, -0.0, 1.5, 1.5, Double.NaN).withName("n"),
+                NumericVar.copy(1, 2, 3, 4, 5).withName("y"));
+        Frame agg = df.groupBy("i", "t", "n").aggregate(sum("y"));
+        assertEquals("1 1 2 1", labels(agg, "i"));
+        assertEquals("x y x x", labels(agg, "t"));
+        assertEquals("1.0 2.0 7.0 5.0", labels(agg, "y_sum"));
+    }
+
+    @Test
+    public void testCompensatedSum() {
+        NominalVar k = NominalVar.empty(0, "a");
+        NumericVar x = NumericVar.empty();
+        k.addLabel("a");
+        x.addValue(1e16);
+        for (int i = 0; i < 1000; i++) {
+            k.addLabel("a");
+            x.addValue(1.0);
+        }
+        Frame df = SolidFrame.byVars(k.withName("k"), x.withName("x"));
+        assertEquals(1e16 + 1000, df.groupBy("k").aggregate(sum("x")).getValue(0, "x_sum"), 0);
+        assertEquals(1e16 + 1000, df.groupBy("k").withPoolSize(4).aggregate(sum("x")).getValue(0, "x_sum"), 0);
+    }
+
+    @Test
+    public void testRandomAgainstNaive() {
+        RandomSource.setSeed(123);
+        int rows = 20_000;
+        NominalVar k1 = NominalVar.empty(0, "a", "b", "c", "d", "e", "f", "g");
+        IndexVar k2 = IndexVar.empty();
+        NumericVar x = NumericVar.empty();
+        for (int i = 0; i < rows; i++) {
+            k1.addLabel(RandomSource.nextDouble() < 0.05 ? "?" : k1.getLevels()[1 + RandomSource.nextInt(7)]);
+            k2.addIndex(RandomSource.nextInt(40));
+            x.addValue(RandomSource.nextDouble() < 0.1 ? Double.NaN : Math.round(RandomSource.nextDouble() * 1000) / 10.0);
+        }
+        Frame df = SolidFrame.byVars(k1.withName("k1"), k2.withName("k2"), x.withName("x"));
+
+        for (String[] keys : new String[][]{{"k1"}, {"k2"}, {"k1", "k2"}}) {
+            Aggregate[] aggregates = new Aggregate[]{count(), sum("x"), mean("x"), variance("x"),
+                    min("x"), max("x"), quantile("x", 0.25), nunique("x")};
+            GroupBy sequential = df.groupBy(keys);
+            Frame seq = sequential.aggregate(aggregates);
+            Frame par = df.groupBy(keys).withPoolSize(4).aggregate(aggregates);
+            assertTrue(seq.deepEquals(par) || close(seq, par));
+
+            List<Integer> firstRows = new ArrayList<>();
+            HashSet<String> seen = new HashSet<>();
+            for (int row = 0; row < rows; row++) {
+                StringBuilder sb = new StringBuilder();
+                for (String key : keys) {
+                    sb.append(df.getLabel(row, key)).append(",");
+                }
+                if (seen.add(sb.toString())) {
+                    firstRows.add(row);
+                }
+            }
+            assertEquals(firstRows.size(), seq.getRowCount());
+
+            for (int g = 0; g < seq.getRowCount(); g++) {
+                assertEquals(firstRows.get(g).intValue(), sequential.getGroupRows(g).get(0));
+                for (String key : keys) {
+                    assertEquals(df.getLabel(firstRows.get(g), key), seq.getLabel(g, key));
+                }
+                Var group = x.mapRows(sequential.getGroupRows(g));
+                assertEquals(group.getRowCount(), seq.getIndex(g, "count"));
+                assertEquals(Sum.from(group).getValue(), seq.getValue(g, "x_sum"), 1e-6);
+                assertEquals(Mean.from(group).getValue(), seq.getValue(g, "x_mean"), TOL);
+                assertEquals(Variance.from(group).getValue(), seq.getValue(g, "x_var"), TOL);
+                assertEquals(Minimum.from(group).getValue(), seq.getValue(g, "x_min"), TOL);
+                assertEquals(Maximum.from(group).getValue(), seq.getValue(g, "x_max"), TOL);
+                assertEquals(Quantiles.from(group, 0.25).getValues()[0], seq.getValue(g, "x_q0.25"), TOL);
+                assertEquals(group.stream().complete().mapToDouble().distinct().count(), seq.getIndex(g, "x_nunique"));
+            }
+        }
+    }
+
+    private static boolean close(Frame a, Frame b) {
+        if (a.getRowCount() != b.getRowCount() || a.getVarCount() != b.getVarCount()) {
+            return false;
+        }
+        for (int i = 0; i < a.getRowCount(); i++) {
+            for (int j = 0; j < a.getVarCount(); j++) {
+                if (a.isMissing(i, j) != b.isMissing(i, j)) {
+                    return false;
+                }
+                double x = a.getValue(i, j);
+                if (!a.isMissing(i, j) && Math.abs(x - b.getValue(i, j)) > TOL * Math.max(1, Math.abs(x))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String labels(Frame df, String varName) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < df.getRowCount(); i++) {
+            if (i > 0) {
+                sb.append(" ");
+            }
+            sb.append(df.getLabel(i, varName));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.data.join;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.data.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class FrameJoinTest {
+
+    @Test
+    public void testSmallJoins() {
+        Frame left = SolidFrame.byVars(
+                IndexVar.copy(1, 2, 2, 3, 5).withName("id"),
+                NominalVar.copy("a", "b", "c", "d", "e").withName("x"));
+        Frame right = SolidFrame.byVars(
+                IndexVar.copy(2, 3, 3, 4).withName("id"),
+                NumericVar.copy(20, 30, 31, 40).withName("y"));
+
+        Frame inner = FrameJoin.innerJoin(left, right, "id");
+        assertArrayEquals(new String[]{"id", "x", "y"}, inner.getVarNames());
+        assertEquals(4, inner.getRowCount());
+        assertEquals("b c d d", labels(inner, "x"));
+        assertEquals("20.0 20.0 30.0 31.0", labels(inner, "y"));
+
+        Frame leftJoin = FrameJoin.leftJoin(left, right, "id");
+        assertEquals("1 2 2 3 3 5", labels(leftJoin, "id"));
+        assertEquals("? 20.0 20.0 30.0 31.0 ?", labels(leftJoin, "y"));
+
+        Frame rightJoin = FrameJoin.rightJoin(left, right, "id");
+        assertArrayEquals(new String[]{"x", "id", "y"}, rightJoin.getVarNames());
+        assertEquals("2 2 3 3 4", labels(rightJoin, "id"));
+        assertEquals("b c d d ?", labels(rightJoin, "x"));
+
+        Frame outer = FrameJoin.outerJoin(left, right, "id");
+        assertEquals("1 2 2 3 3 5 4", labels(outer, "id"));
+        assertEquals("a b c d d e ?", labels(outer, "x"));
+        assertEquals("? 20.0 20.0 30.0 31.0 ? 40.0", labels(outer, "y"));
+
+        try {
+            FrameJoin.innerJoin(left, right.bindVars(NumericVar.fill(4).withName("x")), "id");
+            assertTrue("duplicate variable names should raise an exception", false);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testNominalKeys() {
+        Frame left = SolidFrame.byVars(
+                NominalVar.copy("x", "y", "?", "z").withName("k1"),
+                TextVar.copy("p", "q", "p", "q").withName("k2"),
+                IndexVar.copy(1, 2, 3, 4).withName("a"));
+        Frame right = SolidFrame.byVars(
+                NominalVar.copy("z", "y", "x", "?").withName("k1"),
+                TextVar.copy("q", "q", "q", "p").withName("k2"),
+                IndexVar.copy(10, 20, 30, 40).withName("b"));
+        Frame df = FrameJoin.innerJoin(left, right, "k1", "k2");
+        assertEquals("y z", labels(df, "k1"));
+        assertEquals("20 10", labels(df, "b"));
+    }
+
+    @Test
+    public void testRandomJoins() {
+        RandomSource.setSeed(42);
+        for (int round = 0; round < 20; round++) {
+            Frame left = randomFrame(RandomSource.nextInt(50), "a");
+            Frame right = randomFrame(RandomSource.nextInt(50), "b");
+            Frame sortedLeft = left.mapRows(sortedRows(left));
+            Frame sortedRight = right.mapRows(sortedRows(right));
+            for (FrameJoin.Type type : FrameJoin.Type.values()) {
+                Frame hash = FrameJoin.of(left, right, "k1", "k2").withType(type).join();
+                assertEquals(naive(left, right, type), rows(hash));
+
+                Frame sortedHash = FrameJoin.of(sortedLeft, sortedRight, "k1", "k2").withType(type).join();
+                Frame merge = FrameJoin.of(sortedLeft, sortedRight, "k1", "k2")
+                        .withType(type).withMethod(FrameJoin.Method.SORT_MERGE).join();
+                assertTrue(sortedHash.deepEquals(merge));
+            }
+        }
+        try {
+            Frame df = randomFrame(20, "a");
+            FrameJoin.of(df, df.mapVars("k1,k2"), "k1", "k2").withMethod(FrameJoin.Method.SORT_MERGE).join();
+            assertTrue("not sorted frames should raise an exception", false);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    private Frame randomFrame(int rows, String name) {
+        Var k1 = NumericVar.empty().withName("k1");
+        Var k2 = NominalVar.empty().withName("k2");
+        Var v = IndexVar.seq(rows).withName(name);
+        for (int i = 0; i < rows; i++) {
+            k1.addValue(RandomSource.nextDouble() < 0.1 ? Double.NaN : RandomSource.nextInt(5));
+            k2.addLabel(RandomSource.nextDouble() < 0.1 ? "?" : "l" + RandomSource.nextInt(3));
+        }
+        return SolidFrame.byVars(k1, k2, v);
+    }
+
+    private Mapping sortedRows(Frame df) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < df.getRowCount(); i++) {
+            rows.add(i);
+        }
+        rows.sort(RowComparators.from(df.getVar("k1").refComparator(), df.getVar("k2").refComparator()));
+        return Mapping.copy(rows);
+    }
+
+    private List<String> naive(Frame left, Frame right, FrameJoin.Type type) {
+        List<String> result = new ArrayList<>();
+        boolean[] matched = new boolean[right.getRowCount()];
+        if (type == FrameJoin.Type.RIGHT) {
+            for (int j = 0; j < right.getRowCount(); j++) {
+                boolean found = false;
+                for (int i = 0; i < left.getRowCount(); i++) {
+                    if (match(left, i, right, j)) {
+                        result.add(i + "," + j);
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    result.add("?," + j);
+                }
+            }
+            return result;
+        }
+        for (int i = 0; i < left.getRowCount(); i++) {
+            boolean found = false;
+            for (int j = 0; j < right.getRowCount(); j++) {
+                if (match(left, i, right, j)) {
+                    result.add(i + "," + j);
+                    found = true;
+                    matched[j] = true;
+                }
+            }
+            if (!found && type != FrameJoin.Type.INNER) {
+                result.add(i + ",?");
+            }
+        }
+        if (type == FrameJoin.Type.OUTER) {
+            for (int j = 0; j < right.getRowCount(); j++) {
+                if (!matched[j]) {
+                    result.add("?," + j);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean match(Frame left, int i, Frame right, int j) {
+        return !left.isMissing(i, "k1") && !left.isMissing(i, "k2")
+                && left.getValue(i, "k1") == right.getValue(j, "k1")
+                && left.getLabel(i, "k2").equals(right.getLabel(j, "k2"));
+    }
+
+    private List<String> rows(Frame df) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < df.getRowCount(); i++) {
+            result.add(df.getLabel(i, "a").replace(".0", "") + "," + df.getLabel(i, "b").replace(".0", ""));
+        }
+        return result;
+    }
+
+    private String labels(Frame df, String name) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < df.getRowCount(); i++) {
+            sb.append(i == 0 ? "" : " ").append(df.getLabel(i, name));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.io;
+
+import org.junit.Test;
+import rapaio.data.*;
+import rapaio.datasets.Datasets;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class ColumnarIOTest {
+
+    @Test
+    public void testDatasets() throws IOException, URISyntaxException, ClassNotFoundException {
+        testFrame(Datasets.loadIrisDataset());
+        testFrame(Datasets.loadCarMpgDataset());
+        testFrame(Datasets.loadRandom());
+    }
+
+    @Test
+    public void testAllTypes() throws IOException, ClassNotFoundException {
+        OrdinalVar ord = OrdinalVar.empty(0, "low", "high");
+        Arrays.asList("high", "low", "?", "low").forEach(ord::addLabel);
+        Frame df = SolidFrame.byVars(
+                NumericVar.copy(1.5, Double.NaN, -3, Double.POSITIVE_INFINITY).withName("num"),
+                IndexVar.copy(1, -2, 3, 4).withName("idx"),
+                BinaryVar.copy(1, 0, -1, 1).withName("bin"),
+                StampVar.copy(1L, 2L, Long.MAX_VALUE, 4L).withName("stamp"),
+                NominalVar.copy("a", "?", "b", "a").withName("nom"),
+                ord.withName("ord"),
+                TextVar.copy("ș", "", "text with spaces", "x").withName("text"));
+        df.getVar("idx").setMissing(2);
+        df.getVar("stamp").setMissing(0);
+        Frame restore = testFrame(df);
+
+        assertArrayEquals(df.getVar("nom").getLevels(), restore.getVar("nom").getLevels());
+        assertArrayEquals(df.getVar("ord").getLevels(), restore.getVar("ord").getLevels());
+        for (int i = 0; i < df.getVarCount(); i++) {
+            for (int j = 0; j < df.getRowCount(); j++) {
+                assertEquals(df.getVar(i).isMissing(j), restore.getVar(i).isMissing(j));
+            }
+        }
+        assertEquals("ș", restore.getLabel(0, "text"));
+
+        // missing text values are null labels, which are not handled by deep equals
+        TextVar text = TextVar.copy("a", "b");
+        text.setMissing(1);
+        File tmp = File.createTempFile("test-", ".rpc");
+        tmp.deleteOnExit();
+        ColumnarIO.storeToFile(SolidFrame.byVars(text), tmp);
+        Var restoreText = ColumnarIO.restoreFromFile(tmp).getVar(0);
+        assertEquals("a", restoreText.getLabel(0));
+        assertTrue(restoreText.isMissing(1));
+
+        try {
+            restore.setValue(0, "num", 1);
+            assertTrue("read only variables should not be changed", false);
+        } catch (IllegalArgumentException ignored) {
+        }
+        Var copy = restore.getVar("num").solidCopy();
+        copy.setValue(0, 10);
+        assertEquals(10, copy.getValue(0), 1e-20);
+        assertEquals(1.5, restore.getValue(0, "num"), 1e-20);
+    }
+
+    private Frame testFrame(Frame df) throws IOException, ClassNotFoundException {
+        File tmp = File.createTempFile("test-", ".rpc");
+        tmp.deleteOnExit();
+        ColumnarIO.storeToFile(df, tmp);
+        Frame restore = ColumnarIO.restoreFromFile(tmp);
+        assertTrue(df.deepEquals(restore));
+        for (int i = 0; i < df.getVarCount(); i++) {
+            assertEquals(df.getVar(i).getType(), restore.getVar(i).getType());
+        }
+
+        // java serialization of views stores solid copies
+        File ser = File.createTempFile("test-", ".ser");
+        ser.deleteOnExit();
+        JavaIO.storeToFile(restore, ser);
+        Frame solid = (Frame) JavaIO.restoreFromFile(ser);
+        assertTrue(df.deepEquals(solid));
+        assertFalse(solid.getVar(0) instanceof BufferVar);
+        return restore;
+    }
+}
@@ -31,7 +31,9 @@ import org.junit.Test;
 import rapaio.data.*;
 import rapaio.datasets.Datasets;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -261,4 +263,53 @@ public class CsvTest {
         Frame na4 = new Csv().withNAValues("virginica", "5").withTypes(VarType.NOMINAL, "sepal-length").read(Datasets.class, "iris-r.csv");
         Assert.assertEquals(89, na4.stream().complete().count());
     }
+
+    @Test
+    public void testParallelRead() throws IOException {
+        File file = File.createTempFile("csv-parallel", ".csv");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.print("bin,idx,num,nom,late\r\n");
+            for (int i = 0; i < 5_000; i++) {
+                String late = (i == 4_900) ? "x" : String.valueOf(i % 2);
+                String num = (i % 17 == 0) ? "NA" : String.valueOf(i * 0.5);
+                writer.print((i % 2) + "," + (i % 3) + "," + num + ",lvl" + (i % 7) + "," + late);
+                writer.print((i % 3 == 0) ? "\r\n" : "\n");
+            }
+            writer.print("1,2");
+        }
+
+        List<Csv> settings = new ArrayList<>();
+        settings.add(new Csv());
+        settings.add(new Csv().withNAValues("NA"));
+        settings.add(new Csv().withDefaultTypes(VarType.BINARY, VarType.INDEX, VarType.NUMERIC, VarType.NOMINAL));
+        settings.add(new Csv().withSkipRows(row -> row % 3 == 1).withStartRow(100).withEndRow(3_000));
+        settings.add(new Csv().withTypes(VarType.TEXT, "nom").withTypes(VarType.ORDINAL, "idx").withSkipCols(0));
+        settings.add(new Csv().withHeader(false).withNAValues("NA"));
+
+        for (Csv csv : settings) {
+            Frame seq = csv.withPoolSize(0).read(file);
+            Frame par = csv.withPoolSize(4).read(file);
+            assertEquals(seq.getRowCount(), par.getRowCount());
+            assertArrayEquals(seq.getVarNames(), par.getVarNames());
+            for (String name : seq.getVarNames()) {
+                assertEquals(seq.getVar(name).getType(), par.getVar(name).getType());
+            }
+            assertTrue(seq.deepEquals(par));
+        }
+
+        Frame df = new Csv().withNAValues("NA").withPoolSize(4).read(file);
+        assertEquals(VarType.NOMINAL, df.getVar("late").getType());
+        assertEquals(VarType.NUMERIC, df.getVar("num").getType());
+        assertTrue(df.isMissing(0, "num"));
+        assertTrue(df.isMissing(5_000, "nom"));
+
+        assertTrue(CsvParallelReader.isDouble("-1.5e-3"));
+        assertTrue(CsvParallelReader.isDouble("0x1.8p1"));
+        assertTrue(CsvParallelReader.isDouble(".5f"));
+        assertFalse(CsvParallelReader.isDouble("1e"));
+        assertFalse(CsvParallelReader.isDouble("."));
+        assertTrue(CsvParallelReader.isInteger("-2147483648", Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertFalse(CsvParallelReader.isInteger("2147483648", Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
 }
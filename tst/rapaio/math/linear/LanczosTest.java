@@ -0,0 +1,90 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.math.linear;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.math.linear.dense.QRDecomposition;
+import rapaio.math.linear.dense.SolidRM;
+import rapaio.math.linear.dense.SolidRV;
+
+import static org.junit.Assert.assertEquals;
+
+public class LanczosTest {
+
+    /**
+     * Builds a matrix with rows having a decaying spectrum along random directions
+     */
+    static RM decaying(int rows, int cols) {
+        RM x = SolidRM.random(rows, cols);
+        for (int j = 0; j < cols; j++) {
+            double scale = Math.pow(0.8, j);
+            for (int i = 0; i < rows; i++) {
+                x.set(i, j, x.get(i, j) * scale);
+            }
+        }
+        RM rotation = QRDecomposition.from(SolidRM.random(cols, cols)).getQ();
+        return x.dot(rotation);
+    }
+
+    static void assertSameSpace(RV expectedValues, RM expectedVectors, RV values, RM vectors, int k, double tol) {
+        for (int c = 0; c < k; c++) {
+            assertEquals(expectedValues.get(c), values.get(c), tol * Math.abs(expectedValues.get(0)));
+            double dot = 0;
+            for (int i = 0; i < vectors.getRowCount(); i++) {
+                dot += expectedVectors.get(i, c) * vectors.get(i, c);
+            }
+            assertEquals(1.0, Math.abs(dot), 1e-6);
+        }
+    }
+
+    @Test
+    public void testTopK() {
+        RandomSource.setSeed(1234);
+        RM x = decaying(400, 50);
+        RV mean = SolidRV.empty(50);
+        for (int j = 0; j < 50; j++) {
+            mean.set(j, x.mapCol(j).mean().getValue());
+        }
+        EigenPair full = Lanczos.symmetricEigen(x.scatter());
+
+        EigenPair explicit = Lanczos.topK(SymmetricOperator.of(x.scatter()), 5, 200, 1e-12);
+        assertSameSpace(full.getRV(), full.getRM(), explicit.getRV(), explicit.getRM(), 5, 1e-9);
+
+        EigenPair streamed = Lanczos.topK(SymmetricOperator.scatter(x, mean), 5, 200, 1e-12);
+        assertSameSpace(full.getRV(), full.getRM(), streamed.getRV(), streamed.getRM(), 5, 1e-9);
+    }
+
+    @Test
+    public void testRankDeficient() {
+        RandomSource.setSeed(1234);
+        RM x = SolidRM.random(30, 2).dot(SolidRM.random(2, 6));
+        EigenPair ep = Lanczos.topK(SymmetricOperator.scatter(x, null), 6, 100, 1e-12);
+        EigenPair full = Lanczos.symmetricEigen(x.t().dot(x));
+        for (int i = 0; i < 6; i++) {
+            assertEquals(full.getRV().get(i), ep.getRV().get(i), 1e-8 * full.getRV().get(0));
+        }
+    }
+}
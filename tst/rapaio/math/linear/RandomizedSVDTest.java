@@ -0,0 +1,63 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.math.linear;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.math.linear.dense.SVDecomposition;
+import rapaio.math.linear.dense.SolidRM;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RandomizedSVDTest {
+
+    @Test
+    public void testTopSingularValues() {
+        RandomSource.setSeed(1234);
+        RM x = LanczosTest.decaying(500, 40);
+
+        SVDecomposition full = SVDecomposition.from(x);
+        RandomizedSVD svd = RandomizedSVD.from(x, 6);
+
+        RV values = SolidRM.fill(6, 1, (r, c) -> full.getSingularValues()[r]).mapCol(0);
+        LanczosTest.assertSameSpace(values, full.getV(), svd.getS(), svd.getV(), 6, 1e-8);
+
+        // U * S * V' approximates x on the top subspace, U has orthonormal columns
+        RM u = svd.getU();
+        assertTrue(SolidRM.identity(6).isEqual(u.t().dot(u), 1e-8));
+        RM xv = x.dot(svd.getV());
+        for (int j = 0; j < 6; j++) {
+            for (int i = 0; i < x.getRowCount(); i++) {
+                assertEquals(xv.get(i, j), u.get(i, j) * svd.getS().get(j), 1e-8);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRank() {
+        RandomizedSVD.from(SolidRM.random(10, 4), 5);
+    }
+}
@@ -26,6 +26,7 @@ package rapaio.math.linear.dense;
 
 import org.junit.Test;
 import rapaio.core.RandomSource;
+import rapaio.math.linear.Linear;
 import rapaio.math.linear.RM;
 
 import static org.junit.Assert.*;
@@ -109,4 +110,26 @@ public class CholeskyDecompositionTest {
         RandomSource.setSeed(1234);
         CholeskyDecomposition.from(SolidRM.random(2, 2)).solve(SolidRM.random(3, 1));
     }
+
+    @Test
+    public void testBlocked() {
+        RandomSource.setSeed(1234);
+        RM a = SolidRM.random(250, 150);
+        RM b = a.t().dot(a);
+
+        CholeskyDecomposition cholesky = CholeskyDecomposition.from(b);
+        RM l = cholesky.getL();
+        assertTrue(cholesky.isSPD());
+        assertTrue(b.isEqual(l.dot(l.t()), 1e-9));
+        for (int i = 0; i < l.getRowCount(); i++) {
+            for (int j = i + 1; j < l.getColCount(); j++) {
+                assertEquals(0.0, l.get(i, j), 0.0);
+            }
+        }
+
+        RM x = SolidRM.random(150, 70);
+        RM y = b.dot(x);
+        assertTrue(x.isEqual(cholesky.solve(y), 1e-8));
+        assertTrue(SolidRM.identity(150).isEqual(Linear.chol2inv(l.t()).dot(b), 1e-8));
+    }
 }
@@ -147,4 +147,23 @@ public class LUDecompositionTest {
     public void builderTestMethodEx() {
         LUDecomposition.from(SolidRM.random(2, 3), LUDecomposition.Method.GAUSSIAN_ELIMINATION).det();
     }
+
+    @Test
+    public void testBlocked() {
+        RandomSource.setSeed(1234);
+        RM a = SolidRM.random(220, 170);
+
+        LUDecomposition blocked = LUDecomposition.from(a, LUDecomposition.Method.BLOCKED);
+        LUDecomposition gauss = LUDecomposition.from(a, LUDecomposition.Method.GAUSSIAN_ELIMINATION);
+        assertArrayEquals(gauss.getPivot(), blocked.getPivot());
+        assertTrue(gauss.getL().isEqual(blocked.getL(), 1e-10));
+        assertTrue(gauss.getU().isEqual(blocked.getU(), 1e-10));
+        assertTrue(a.mapRows(blocked.getPivot()).isEqual(blocked.getL().dot(blocked.getU()), 1e-10));
+
+        RM s = SolidRM.random(170, 170);
+        RM x = SolidRM.random(170, 90);
+        LUDecomposition lu = LUDecomposition.from(s);
+        assertEquals(LUDecomposition.from(s, LUDecomposition.Method.GAUSSIAN_ELIMINATION).det(), lu.det(), Math.abs(lu.det()) * 1e-8);
+        assertTrue(x.isEqual(lu.solve(s.dot(x)), 1e-8));
+    }
 }
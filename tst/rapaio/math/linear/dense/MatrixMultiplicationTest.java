@@ -36,6 +36,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class MatrixMultiplicationTest {
@@ -76,6 +77,56 @@ public class MatrixMultiplicationTest {
         assertTrue(c.isEqual(MatrixMultiplication.strassen(A, B, 8), TOL));
     }
 
+    @Test
+    public void testBlockedShapes() {
+
+        RandomSource.setSeed(1234);
+
+        Normal normal = new Normal();
+        int[][] shapes = {{1, 1, 1}, {3, 5, 2}, {67, 131, 9}, {130, 300, 261}, {5, 517, 7}};
+        for (int[] shape : shapes) {
+            RM A = SolidRM.fill(shape[0], shape[1], (r, c) -> normal.sampleNext());
+            RM B = SolidRM.fill(shape[1], shape[2], (r, c) -> normal.sampleNext());
+
+            RM expected = MatrixMultiplication.jama(A, B);
+            assertTrue(expected.isEqual(MatrixMultiplication.blocked(A, B, 1), 1e-10));
+            assertTrue(expected.isEqual(MatrixMultiplication.blocked(A, B, 4), 1e-10));
+            assertTrue(expected.isEqual(A.dot(B), 1e-10));
+        }
+    }
+
+    @Test
+    public void testBlockedScatterSymmetric() {
+        RandomSource.setSeed(1234);
+        Normal normal = new Normal();
+        RM x = SolidRM.fill(300, 40, (r, c) -> normal.sampleNext());
+        RM scatter = x.scatter();
+        assertTrue(scatter.isEqual(scatter.t()));
+    }
+
+    @Test
+    public void testNaNDoesNotDependOnSize() {
+        for (int n : new int[]{3, 40}) {
+            RM A = SolidRM.fill(n, n, (r, c) -> (c == 0) ? 0.0 : 1.0);
+            RM B = SolidRM.fill(n, n, 1.0);
+            B.set(0, 1, Double.NaN);
+
+            // cell (i, 1) receives 0 * NaN for all rows
+            for (RM c : new RM[]{A.dot(B), MatrixMultiplication.ikjAlgorithm(A, B),
+                    MatrixMultiplication.ikjParallel(A, B), MatrixMultiplication.blocked(A, B)}) {
+                for (int i = 0; i < n; i++) {
+                    assertTrue(Double.isNaN(c.get(i, 1)));
+                    assertEquals(n - 1, c.get(i, 0), TOL);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonConformDot() {
+        SolidRM.empty(3, 4).dot(SolidRM.empty(3, 4));
+    }
+
     @Test
     public void largeMatrices() {
 
@@ -154,4 +154,24 @@ public class QRDecompositionTest {
     public void testSingular() {
         QRDecomposition.from(SolidRM.fill(10, 10, 2)).solve(SolidRM.random(10, 1));
     }
+
+    @Test
+    public void testBlocked() {
+        RandomSource.setSeed(1234);
+        RM a = SolidRM.random(300, 170);
+
+        QRDecomposition qr = QRDecomposition.from(a);
+        RM q = qr.getQ();
+        RM r = qr.getR();
+        assertTrue(a.isEqual(q.dot(r), 1e-10));
+        assertTrue(SolidRM.identity(170).isEqual(q.t().dot(q), 1e-10));
+        for (int i = 0; i < r.getRowCount(); i++) {
+            for (int j = 0; j < i; j++) {
+                assertEquals(0.0, r.get(i, j), 0.0);
+            }
+        }
+
+        RM x = SolidRM.random(170, 3);
+        assertTrue(x.isEqual(qr.solve(a.dot(x)), 1e-10));
+    }
 }
@@ -38,6 +38,8 @@ import java.net.URISyntaxException;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SolidRMTest {
 
@@ -182,4 +184,86 @@ public class SolidRMTest {
 
             assertArrayEquals(vals, xvals, TOL);
     }
+
+    @Test
+    public void testViews() {
+        double[] values = new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+        SolidRM x = SolidRM.wrap(3, 4, values);
+
+        // wrap shares the array
+        values[0] = 100;
+        assertEquals(100, x.get(0, 0), TOL);
+
+        // transpose is a view
+        SolidRM t = x.t();
+        assertEquals(4, t.getRowCount());
+        assertEquals(3, t.getColCount());
+        assertEquals(x.get(2, 1), t.get(1, 2), TOL);
+        t.set(3, 2, -1);
+        assertEquals(-1, x.get(2, 3), TOL);
+        assertTrue(x.isEqual(t.t()));
+
+        // ranges are views
+        SolidRM block = x.rangeRows(1, 3).rangeCols(1, 3);
+        assertArrayEquals(new double[]{6, 7, 10, 11}, block.valueStream().toArray(), TOL);
+        assertArrayEquals(new double[]{6, 10, 7, 11}, block.t().solidCopy().valueStream().toArray(), TOL);
+        block.increment(0, 0, 10);
+        assertEquals(16, x.get(1, 1), TOL);
+
+        // copies do not share storage
+        SolidRM copy = block.solidCopy();
+        copy.set(0, 0, 0);
+        assertEquals(16, x.get(1, 1), TOL);
+        assertArrayEquals(new double[]{5, 16, 7, 8}, x.mapRow(1).valueStream().toArray(), TOL);
+        assertArrayEquals(new double[]{2, 16, 10}, t.mapRow(1).valueStream().toArray(), TOL);
+
+        // products over views
+        assertTrue(MatrixMultiplication.jama(x.t(), x).isEqual(x.t().dot(x), 1e-10));
+        assertTrue(MatrixMultiplication.jama(block, x.rangeRows(0, 2)).isEqual(MatrixMultiplication.blocked(block, x.rangeRows(0, 2)), 1e-10));
+    }
+
+    @Test
+    public void testSizeOverflow() {
+        int big = 1 << 16;
+        for (Runnable r : new Runnable[]{
+                () -> SolidRM.empty(big, big),
+                () -> SolidRM.copy(big, big, 1, 2, 3),
+                () -> SolidRM.wrap(big, big, 1, 2, 3)}) {
+            try {
+                r.run();
+                fail("exception expected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("exceeds the maximum array size"));
+            }
+        }
+    }
+
+    @Test
+    public void testOutOfRangeAccess() {
+        SolidRM m = SolidRM.fill(4, 4, (r, c) -> r * 4.0 + c);
+        SolidRM view = m.rangeRows(1, 3).rangeCols(1, 3);
+        assertEquals(5, view.get(0, 0), 1e-20);
+        for (SolidRM x : new SolidRM[]{m.rangeRows(0, 2), m.rangeCols(1, 3), view, view.t()}) {
+            int[][] cells = {{x.getRowCount(), 0}, {0, x.getColCount()}, {-1, 0}, {0, -1}};
+            for (int[] cell : cells) {
+                try {
+                    x.get(cell[0], cell[1]);
+                    fail("exception expected");
+                } catch (IndexOutOfBoundsException ignored) {
+                }
+                try {
+                    x.set(cell[0], cell[1], 1);
+                    fail("exception expected");
+                } catch (IndexOutOfBoundsException ignored) {
+                }
+            }
+        }
+        try {
+            m.get(0, 4);
+            fail("exception expected");
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+        // nothing outside the views was written
+        assertTrue(m.isEqual(SolidRM.fill(4, 4, (r, c) -> r * 4.0 + c)));
+    }
 }
@@ -28,7 +28,9 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import rapaio.core.RandomSource;
+import rapaio.core.SamplingTools;
 import rapaio.data.Frame;
+import rapaio.data.Mapping;
 import rapaio.data.NumericVar;
 import rapaio.data.SolidFrame;
 import rapaio.data.Var;
@@ -110,4 +112,84 @@ public class PCATest {
         pca.train(SolidFrame.byVars(x, y, z));
         pca.printSummary();
     }
+
+    @Test
+    public void testTruncatedMethods() throws IOException, URISyntaxException {
+        RandomSource.setSeed(123);
+        Frame x = Datasets.loadIrisDataset().removeVars("class");
+
+        PCA eigen = new PCA();
+        eigen.train(x);
+        for (PCA.Method method : new PCA.Method[]{PCA.Method.LANCZOS, PCA.Method.RANDOMIZED_SVD}) {
+            PCA pca = new PCA().withMethod(method).withComponents(2);
+            pca.train(x);
+            Assert.assertEquals(2, pca.getEigenValues().count());
+            Assert.assertEquals(4, pca.getEigenVectors().getRowCount());
+            Assert.assertEquals(2, pca.getEigenVectors().getColCount());
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals(eigen.getEigenValues().get(i), pca.getEigenValues().get(i), 1e-6);
+                double dot = 0;
+                for (int j = 0; j < 4; j++) {
+                    dot += eigen.getEigenVectors().get(j, i) * pca.getEigenVectors().get(j, i);
+                }
+                Assert.assertEquals(1.0, Math.abs(dot), 1e-6);
+            }
+            Assert.assertEquals(2, pca.fit(x, 2).getVarCount());
+        }
+    }
+
+    @Test
+    public void testPartialTrain() throws IOException, URISyntaxException {
+        Frame x = Datasets.loadIrisDataset().removeVars("class");
+        // chunks contain rows of different classes
+        RandomSource.setSeed(1);
+        x = x.mapRows(SamplingTools.sampleWOR(x.getRowCount(), x.getRowCount()));
+
+        for (boolean scaling : new boolean[]{false, true}) {
+            PCA full = new PCA().withScaling(scaling);
+            full.train(x);
+            PCA partial = new PCA().withScaling(scaling);
+            PCA truncated = new PCA().withScaling(scaling).withComponents(2);
+            PCA lanczos = new PCA().withScaling(scaling).withMethod(PCA.Method.LANCZOS);
+            // a single row in the first chunk does not fix scaling statistics
+            for (int start = 0; start < x.getRowCount(); start += (start == 0) ? 1 : 40) {
+                Frame chunk = x.mapRows(Mapping.range(start, Math.min(x.getRowCount(), start + (start == 0 ? 1 : 40))));
+                partial.partialTrain(chunk);
+                truncated.partialTrain(chunk);
+                lanczos.partialTrain(chunk);
+            }
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals(full.getEigenValues().get(i), truncated.getEigenValues().get(i),
+                        1e-2 * full.getEigenValues().get(i));
+            }
+            for (PCA model : new PCA[]{partial, lanczos}) {
+                for (int i = 0; i < 4; i++) {
+                    Assert.assertEquals(full.getEigenValues().get(i), model.getEigenValues().get(i),
+                            1e-8 * Math.max(1, full.getEigenValues().get(i)));
+                    double dot = 0;
+                    for (int j = 0; j < 4; j++) {
+                        dot += full.getEigenVectors().get(j, i) * model.getEigenVectors().get(j, i);
+                    }
+                    Assert.assertEquals(1.0, Math.abs(dot), 1e-6);
+                }
+            }
+
+            // projections use the scaling statistics of all rows
+            Frame fitFull = full.fit(x, 2);
+            Frame fitPartial = partial.fit(x, 2);
+            for (int i = 0; i < x.getRowCount(); i++) {
+                for (int j = 0; j < 2; j++) {
+                    Assert.assertEquals(Math.abs(fitFull.getValue(i, j)), Math.abs(fitPartial.getValue(i, j)), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartialTrainAfterTrain() throws IOException, URISyntaxException {
+        Frame x = Datasets.loadIrisDataset().removeVars("class");
+        PCA pca = new PCA();
+        pca.train(x);
+        pca.partialTrain(x);
+    }
 }
@@ -27,6 +27,8 @@ package rapaio.ml.classifier.bayes;
 import org.junit.Test;
 import rapaio.core.RandomSource;
 import rapaio.data.Frame;
+import rapaio.data.Mapping;
+import rapaio.data.VarType;
 import rapaio.datasets.Datasets;
 import rapaio.ml.classifier.CFit;
 import rapaio.ml.classifier.Classifier;
@@ -139,4 +141,51 @@ public class NaiveBayesTest {
         nb.printSummary();
     }
 
+    @Test
+    public void testIncrementalUpdate() throws IOException, URISyntaxException {
+        for (Frame df : new Frame[]{Datasets.loadIrisDataset(), Datasets.loadMushrooms()}) {
+            String target = df.getVarNames()[df.getVarCount() - 1];
+            if (df.getVar(target).getType() != VarType.NOMINAL) {
+                target = "classes";
+            }
+            int split = df.getRowCount() / 3;
+
+            NaiveBayes batch = new NaiveBayes();
+            batch.train(df, target);
+            NaiveBayes stream = new NaiveBayes();
+            stream.train(df.mapRows(Mapping.range(0, split)), target);
+            stream.update(df.mapRows(Mapping.range(split, 2 * split)));
+            stream.update(df.mapRows(Mapping.range(2 * split, df.getRowCount())));
+
+            CFit batchFit = batch.fit(df, false, true);
+            CFit streamFit = stream.fit(df, false, true);
+            for (int i = 0; i < df.getRowCount(); i++) {
+                for (int j = 1; j < batch.firstTargetLevels().length; j++) {
+                    assertEquals(batchFit.firstDensity().getValue(i, j), streamFit.firstDensity().getValue(i, j), 1e-9);
+                }
+            }
+        }
+
+        Frame iris = Datasets.loadIrisDataset();
+        try {
+            new NaiveBayes().update(iris);
+            assertTrue("update before training should raise an exception", false);
+        } catch (IllegalArgumentException ignored) {
+        }
+        NaiveBayes kde = new NaiveBayes().withNumEstimator(new KernelPdf());
+        kde.train(iris, "class");
+        CFit before = kde.fit(iris, true, true);
+        try {
+            kde.update(iris.mapRows(Mapping.range(0, 50)));
+            assertTrue("kernel estimator should not support incremental learning", false);
+        } catch (IllegalArgumentException ignored) {
+        }
+        // failed update leaves priors and estimators unchanged
+        CFit after = kde.fit(iris, true, true);
+        for (int i = 0; i < iris.getRowCount(); i++) {
+            for (int j = 1; j < kde.firstTargetLevels().length; j++) {
+                assertEquals(before.firstDensity().getValue(i, j), after.firstDensity().getValue(i, j), 1e-15);
+            }
+        }
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.classifier.ensemble;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.data.Frame;
+import rapaio.datasets.Datasets;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a>
+ */
+public class CForestTest {
+
+    @Test
+    public void testOobAndVIDoNotDependOnThreads() throws IOException, URISyntaxException {
+        Frame df = Datasets.loadIrisDataset();
+
+        RandomSource.setSeed(42);
+        CForest seq = CForest.newRF().withRuns(30).withRunPoolSize(0)
+                .withOobComp(true).withPermVIComp(true).withGainVIComp(true).withFreqVIComp(true);
+        seq.train(df, "class");
+        RandomSource.setSeed(42);
+        CForest par = CForest.newRF().withRuns(30).withRunPoolSize(4)
+                .withOobComp(true).withPermVIComp(true).withGainVIComp(true).withFreqVIComp(true);
+        par.train(df, "class");
+
+        assertTrue(seq.getOobError() < 0.1);
+        assertEquals(seq.getOobError(), par.getOobError(), 1e-20);
+        assertEquals(seq.getPermVIInfo().lines(4), par.getPermVIInfo().lines(4));
+        assertEquals(seq.getGainVIInfo().lines(4), par.getGainVIInfo().lines(4));
+        assertEquals(seq.getFreqVIInfo().lines(4), par.getFreqVIInfo().lines(4));
+        assertEquals(4, seq.getPermVIInfo().getRowCount());
+
+        // permutation importance does not need oob error to be computed
+        RandomSource.setSeed(42);
+        CForest perm = CForest.newRF().withRuns(10).withPermVIComp(true);
+        perm.train(df, "class");
+        assertEquals(4, perm.getPermVIInfo().getRowCount());
+        assertTrue(perm.getPermVIInfo().getValue(0, "score mean") > 0);
+    }
+}
@@ -30,6 +30,8 @@ import rapaio.core.RandomSource;
 import rapaio.data.*;
 import rapaio.data.filter.frame.FFStandardize;
 import rapaio.datasets.Datasets;
+import rapaio.ml.classifier.CFit;
+import rapaio.ml.common.FeatureBlock;
 import rapaio.ml.classifier.svm.kernel.*;
 import rapaio.experiment.ml.eval.CEvaluation;
 import rapaio.sys.WS;
@@ -127,6 +129,96 @@ public class BinarySMOTest {
         assertEquals(0.75, score, 1e-7);
     }
 
+    @Test
+    public void testKernelCache() throws IOException {
+
+        Frame df = Datasets.loadSonar();
+
+        RandomSource.setSeed(1);
+        Kernel kernel1 = new RBFKernel(1);
+        BinarySMO smo1 = new BinarySMO().withKernel(kernel1);
+        smo1.train(df, "Class");
+        CFit fit1 = smo1.fit(df);
+
+        // a budget of 0 disables the kernel cache, every kernel value is computed
+        RandomSource.setSeed(1);
+        Kernel kernel2 = new RBFKernel(1);
+        BinarySMO smo2 = new BinarySMO().withKernel(kernel2).withKernelCacheSize(0);
+        assertEquals(0, smo2.kernelCacheSize());
+        assertTrue(smo2.fullName().contains("kernelCacheSize=0"));
+        smo2.train(df, "Class");
+        CFit fit2 = smo2.fit(df);
+
+        for (int i = 0; i < df.getRowCount(); i++) {
+            assertEquals(fit1.firstClasses().getIndex(i), fit2.firstClasses().getIndex(i));
+        }
+        assertTrue(kernel1.numCacheHits() > 0);
+        assertTrue(kernel1.numEvals() <= kernel2.numEvals());
+        assertTrue(smo1.getSummary().contains("Number of kernel evaluations"));
+    }
+
+    @Test
+    public void testDenseKernels() throws IOException {
+
+        Frame df = Datasets.loadSonar();
+        String[] inputs = df.removeVars("Class").getVarNames();
+        FeatureBlock block = FeatureBlock.from(df, inputs);
+
+        Kernel[] kernels = new Kernel[]{new PolyKernel(2), new RBFKernel(1), new SplineKernel(),
+                new MinKernel(), new WaveletKernel(1)};
+        for (Kernel kernel : kernels) {
+            kernel.buildKernel(inputs, df);
+            for (int i = 0; i < 20; i++) {
+                for (int j = 0; j < 20; j++) {
+                    double expected = kernel.compute(df, i, df, j);
+                    assertEquals(expected, kernel.compute(block, i, block, j), 1e-12);
+                    assertEquals(expected, kernel.compute(df, i, df.mapRows(j), 0), 1e-12);
+                }
+            }
+            kernel.clean();
+        }
+    }
+
+    @Test
+    public void testSparseKernels() throws IOException {
+
+        Frame df = Datasets.loadSonar();
+        String[] inputs = df.removeVars("Class").getVarNames();
+        List<Var> vars = new ArrayList<>();
+        List<Var> denseVars = new ArrayList<>();
+        for (String input : inputs) {
+            SparseNumericVar sparse = SparseNumericVar.copy(df.getVar(input));
+            for (int i = 0; i < sparse.getRowCount(); i++) {
+                if (sparse.getValue(i) < 0.1) {
+                    sparse.setValue(i, 0);
+                }
+            }
+            vars.add(sparse);
+            denseVars.add(NumericVar.copy(sparse).withName(input));
+        }
+        Frame sparseDf = SolidFrame.byVars(vars);
+        FeatureBlock sparse = FeatureBlock.from(sparseDf, inputs);
+        FeatureBlock dense = FeatureBlock.from(SolidFrame.byVars(denseVars), inputs);
+        assertTrue(sparse.isSparse());
+        assertTrue(!dense.isSparse());
+
+        Kernel[] kernels = new Kernel[]{new PolyKernel(2), new RBFKernel(1), new SigmoidKernel(1, 1),
+                new CauchyKernel(1), new WaveKernel(1), new MinKernel()};
+        for (Kernel kernel : kernels) {
+            kernel.buildKernel(inputs, sparseDf);
+            for (int i = 0; i < 20; i++) {
+                for (int j = 0; j < 20; j++) {
+                    double expected = kernel.compute(dense, i, dense, j);
+                    assertEquals(expected, kernel.compute(sparse, i, sparse, j), 1e-12);
+                    assertEquals(expected, kernel.compute(sparse, i, dense, j), 1e-12);
+                    assertEquals(expected, kernel.compute(dense, i, sparse, j), 1e-12);
+                    assertEquals(expected, kernel.compute(sparseDf, i, sparseDf, j), 1e-12);
+                }
+            }
+            kernel.clean();
+        }
+    }
+
     @Test
     public void testMultipleKernels() throws IOException {
 
@@ -0,0 +1,86 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.classifier.svm.kernel.cache;
+
+import org.junit.Test;
+import rapaio.data.Frame;
+import rapaio.data.NumericVar;
+import rapaio.data.SolidFrame;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for least recently used kernel row cache.
+ */
+public class LRUKernelCacheTest {
+
+    @Test
+    public void testStoreRetrieve() {
+        Frame df = SolidFrame.byVars(NumericVar.seq(50_000).withName("x"));
+        Frame other = SolidFrame.byVars(NumericVar.seq(10).withName("x"));
+
+        // budget allows only two rows of 50001 values
+        LRUKernelCache cache = new LRUKernelCache(df, 1);
+        assertEquals(2, cache.maxRows());
+
+        assertNull(cache.retrieve(df, 1, df, 2));
+        cache.store(df, 1, df, 2, 12);
+        assertEquals(12, cache.retrieve(df, 1, df, 2), 1e-20);
+        assertEquals(12, cache.retrieve(df, 2, df, 1), 1e-20);
+
+        cache.store(df, 3, df, 4, 34);
+        cache.store(df, 5, df, 6, 56);
+
+        // row 1 was evicted
+        assertNull(cache.retrieve(df, 1, df, 2));
+        assertEquals(34, cache.retrieve(df, 4, df, 3), 1e-20);
+        assertEquals(56, cache.retrieve(df, 5, df, 6), 1e-20);
+
+        // values from other frames are not cached
+        cache.store(df, 1, other, 1, 11);
+        assertNull(cache.retrieve(df, 1, other, 1));
+
+        assertEquals(4, cache.hits());
+        assertEquals(2, cache.misses());
+
+        cache.clear();
+        assertNull(cache.retrieve(df, 5, df, 6));
+        assertEquals(4, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void testBudget() {
+        Frame df = SolidFrame.byVars(NumericVar.seq(1000).withName("x"));
+        assertEquals(1001, new LRUKernelCache(df, 100).maxRows());
+        assertEquals(130, new LRUKernelCache(df, 1).maxRows());
+
+        // an empty budget disables caching
+        LRUKernelCache cache = new LRUKernelCache(df, 0);
+        assertEquals(0, cache.maxRows());
+        cache.store(df, 1, df, 2, 12);
+        assertNull(cache.retrieve(df, 1, df, 2));
+    }
+}
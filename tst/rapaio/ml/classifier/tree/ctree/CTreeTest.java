@@ -25,7 +25,9 @@
 package rapaio.ml.classifier.tree.ctree;
 
 import org.junit.Test;
+import rapaio.core.RandomSource;
 import rapaio.data.Frame;
+import rapaio.data.Var;
 import rapaio.data.VarType;
 import rapaio.data.filter.frame.FFRetainTypes;
 import rapaio.datasets.Datasets;
@@ -33,6 +35,9 @@ import rapaio.ml.classifier.CFit;
 import rapaio.ml.classifier.tree.CTree;
 import rapaio.ml.classifier.tree.CTreeCandidate;
 import rapaio.ml.classifier.tree.CTreeNode;
+import rapaio.ml.classifier.tree.CTreePurityFunction;
+import rapaio.ml.classifier.tree.CTreePurityTest;
+import rapaio.ml.eval.Confusion;
 import rapaio.printer.Summary;
 
 import java.io.IOException;
@@ -70,6 +75,136 @@ public class CTreeTest {
         }
     }
 
+    @Test
+    public void testPresortedFullGrowth() throws IOException, URISyntaxException {
+        Frame df = Datasets.loadIrisDataset();
+
+        CTree tree = CTree.newCART();
+        tree.train(df, "class");
+        CFit fit = tree.fit(df);
+        assertTrue(new Confusion(df.getVar("class"), fit.firstClasses()).accuracy() >= 0.99);
+
+        CTree parallel = CTree.newCART();
+        parallel.withRunPoolSize(2);
+        parallel.train(df, "class");
+        fit = parallel.fit(df);
+        assertTrue(new Confusion(df.getVar("class"), fit.firstClasses()).accuracy() >= 0.99);
+    }
+
+    @Test
+    public void testPresortedSameAsUnsorted() throws IOException, URISyntaxException {
+        RandomSource.setSeed(123);
+        Frame df = Datasets.loadIrisDataset().solidCopy();
+        String[] inputs = {"sepal-length", "sepal-width", "petal-length", "petal-width"};
+        for (int i = 0; i < df.getRowCount(); i++) {
+            if (RandomSource.nextDouble() < 0.1) {
+                df.setMissing(i, inputs[RandomSource.nextInt(inputs.length)]);
+            }
+        }
+
+        // same numeric test which sorts rows on each node instead of using presorted rows
+        CTreePurityTest unsortedTest = new CTreePurityTest() {
+            private static final long serialVersionUID = 2722473104563219032L;
+
+            @Override
+            public String name() {
+                return "NumericBinaryUnsorted";
+            }
+
+            @Override
+            public CTreeCandidate computeCandidate(CTree c, Frame df, Var w, String testName, String targetName, CTreePurityFunction function) {
+                return CTreePurityTest.NumericBinary.computeCandidate(c, df, w, testName, targetName, function);
+            }
+        };
+
+        RandomSource.setSeed(1);
+        CTree presorted = CTree.newCART();
+        presorted.train(df, "class");
+
+        RandomSource.setSeed(1);
+        CTree unsorted = CTree.newCART().withTest(VarType.NUMERIC, unsortedTest);
+        unsorted.train(df, "class");
+
+        assertFalse(presorted.getRoot().isLeaf());
+        assertSameSplits(presorted.getRoot(), unsorted.getRoot());
+        Var presortedFit = presorted.fit(df).firstClasses();
+        Var unsortedFit = unsorted.fit(df).firstClasses();
+        for (int i = 0; i < df.getRowCount(); i++) {
+            assertEquals(presortedFit.getLabel(i), unsortedFit.getLabel(i));
+        }
+    }
+
+    private void assertSameSplits(CTreeNode expected, CTreeNode actual) {
+        assertEquals(expected.getGroupName(), actual.getGroupName());
+        assertEquals(expected.isLeaf(), actual.isLeaf());
+        assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameSplits(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
+
+    @Test
+    public void testHistogramSplits() throws IOException, URISyntaxException {
+        Frame df = Datasets.loadIrisDataset();
+
+        // enough bins to have one for each distinct value
+        CTree tree = CTree.newCART().withHistogramSplits(256);
+        assertEquals(256, tree.histogramBins());
+        assertEquals(256, tree.newInstance().histogramBins());
+        tree.train(df, "class");
+        CFit fit = tree.fit(df);
+        assertTrue(new Confusion(df.getVar("class"), fit.firstClasses()).accuracy() >= 0.99);
+
+        CTree stump = CTree.newDecisionStump().withHistogramSplits(4);
+        stump.train(df, "class");
+        fit = stump.fit(df);
+        assertTrue(new Confusion(df.getVar("class"), fit.firstClasses()).accuracy() >= 0.6);
+    }
+
+    @Test
+    public void testCompile() throws IOException, URISyntaxException {
+        Frame iris = Datasets.loadIrisDataset().solidCopy();
+        for (int i = 0; i < iris.getRowCount(); i += 7) {
+            iris.setMissing(i, i % 4);
+        }
+        Frame mushrooms = Datasets.loadMushrooms();
+
+        for (Frame df : new Frame[]{iris, mushrooms}) {
+            String target = df == iris ? "class" : "classes";
+            CTree tree = CTree.newCART();
+            tree.train(df, target);
+            CFit expected = tree.fit(df, true, true);
+
+            assertFalse(tree.isCompiled());
+            tree.compile();
+            assertTrue(tree.isCompiled());
+            CFit compiled = tree.fit(df, true, true);
+
+            for (int i = 0; i < df.getRowCount(); i++) {
+                double max = 0;
+                for (int j = 0; j < tree.firstTargetLevels().length; j++) {
+                    double value = expected.firstDensity().getValue(i, j);
+                    assertEquals(value, compiled.firstDensity().getValue(i, j), 1e-12);
+                    max = Math.max(max, value);
+                }
+                if (max == 1.0) {
+                    assertEquals(expected.firstClasses().getIndex(i), compiled.firstClasses().getIndex(i));
+                }
+            }
+
+            tree.train(df, target);
+            assertFalse(tree.isCompiled());
+        }
+
+        CTree id3 = CTree.newID3();
+        id3.train(mushrooms, "classes");
+        try {
+            id3.compile();
+            assertTrue("should raise an exception", false);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
     @Test
     public void testBuilderID3() throws IOException, URISyntaxException {
         Frame df = Datasets.loadMushrooms();
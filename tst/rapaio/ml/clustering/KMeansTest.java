@@ -25,12 +25,16 @@
 package rapaio.ml.clustering;
 
 import org.junit.Test;
+import rapaio.core.RandomSource;
 import rapaio.data.Frame;
 import rapaio.datasets.Datasets;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Created by <a href="mailto:padreati@yahoo.com">Aurelian Tutuianu</a> on 9/25/15.
  */
@@ -49,4 +53,31 @@ public class KMeansTest {
             km.printSummary();
         }
     }
+
+    @Test
+    public void methodsTest() throws IOException, URISyntaxException {
+        Frame iris = Datasets.loadIrisDataset();
+        String[] inputs = new String[]{"sepal-length", "sepal-width", "petal-length", "petal-width"};
+
+        for (int k = 2; k < 8; k++) {
+            KMeans[] models = new KMeans[]{
+                    new KMeans().withK(k).withRuns(100),
+                    new KMeans().withK(k).withRuns(100).withMethod(KMeans.Method.HAMERLY),
+                    new KMeans().withK(k).withRuns(100).withMethod(KMeans.Method.ELKAN)
+            };
+            for (KMeans model : models) {
+                RandomSource.setSeed(k);
+                model.cluster(iris, inputs);
+            }
+            for (int i = 1; i < models.length; i++) {
+                assertEquals(models[0].getRunningErrors().getRowCount(), models[i].getRunningErrors().getRowCount());
+                assertEquals(models[0].getError(), models[i].getError(), 1e-10);
+                for (int j = 0; j < iris.getRowCount(); j++) {
+                    assertEquals(models[0].getClusterAssignment().getIndex(j), models[i].getClusterAssignment().getIndex(j));
+                }
+            }
+            assertEquals(k, models[0].getCentroids().getRowCount());
+            assertTrue(models[2].getSummary().contains("method = ELKAN"));
+        }
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.clustering;
+
+import org.junit.Test;
+import rapaio.core.RandomSource;
+import rapaio.core.SamplingTools;
+import rapaio.data.Frame;
+import rapaio.data.Mapping;
+import rapaio.datasets.Datasets;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for mini batch KMeans.
+ */
+public class MiniBatchKMeansTest {
+
+    private static final String[] INPUTS = new String[]{"sepal-length", "sepal-width", "petal-length", "petal-width"};
+
+    @Test
+    public void clusterTest() throws IOException, URISyntaxException {
+        Frame iris = Datasets.loadIrisDataset();
+
+        RandomSource.setSeed(1);
+        KMeans km = new KMeans().withK(3).withRuns(100);
+        km.cluster(iris, INPUTS);
+
+        RandomSource.setSeed(1);
+        MiniBatchKMeans mb = new MiniBatchKMeans().withK(3).withRuns(50).withBatchSize(30);
+        mb.cluster(iris, INPUTS);
+
+        assertEquals(3, mb.getCentroids().getRowCount());
+        assertEquals(4, mb.getCentroids().getVarCount());
+        long total = 0;
+        for (long count : mb.getClusterCounts()) {
+            total += count;
+        }
+        assertEquals(50 * 30, total);
+
+        // mini batch error should be close to the error of full batch algorithm
+        assertTrue(mb.computeError(iris) < 1.2 * km.getError());
+        assertEquals(iris.getRowCount(), mb.getClusterAssignment(iris).getRowCount());
+        assertTrue(mb.getSummary().contains("> updates: 1500"));
+    }
+
+    @Test
+    public void streamTest() throws IOException, URISyntaxException {
+        Frame iris = Datasets.loadIrisDataset();
+
+        RandomSource.setSeed(2);
+        Frame shuffled = iris.mapRows(SamplingTools.sampleWOR(iris.getRowCount(), iris.getRowCount()));
+
+        MiniBatchKMeans mb = new MiniBatchKMeans().withK(3);
+        try {
+            mb.update(shuffled.stream().findFirst().get());
+            fail("should raise an exception");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        // first chunk initializes centroids, the remaining rows are streamed
+        mb.update(shuffled.mapRows(Mapping.range(0, 50)), INPUTS);
+        shuffled.mapRows(Mapping.range(50, 150)).stream().forEach(mb::update);
+        for (int i = 0; i < 4; i++) {
+            mb.update(shuffled, INPUTS);
+        }
+        // variable names are optional after the first batch
+        mb.update(shuffled);
+
+        long total = 0;
+        for (long count : mb.getClusterCounts()) {
+            total += count;
+        }
+        assertEquals(50 + 100 + 5 * 150, total);
+
+        RandomSource.setSeed(1);
+        KMeans km = new KMeans().withK(3).withRuns(100);
+        km.cluster(iris, INPUTS);
+        assertTrue(mb.computeError(iris) < 1.2 * km.getError());
+
+        try {
+            mb.update(iris, "sepal-length");
+            fail("should raise an exception");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.common;
+
+import org.junit.Test;
+import rapaio.data.Frame;
+import rapaio.data.IndexVar;
+import rapaio.data.NumericVar;
+import rapaio.data.SolidFrame;
+import rapaio.data.SparseNumericVar;
+import rapaio.ml.common.distance.Distance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for feature blocks.
+ */
+public class FeatureBlockTest {
+
+    @Test
+    public void testFrom() {
+        Frame df = SolidFrame.byVars(
+                NumericVar.copy(1, 2, Double.NaN).withName("x"),
+                IndexVar.copy(4, 5, 6).withName("y"),
+                NumericVar.copy(7, 8, 9).withName("z"));
+        df.setMissing(0, "y");
+
+        FeatureBlock block = FeatureBlock.from(df, "z", "x", "y");
+        assertEquals(3, block.rowCount());
+        assertEquals(3, block.colCount());
+        assertEquals(6, block.offset(2));
+        assertEquals(9, block.values().length);
+
+        assertEquals(7, block.get(0, 0), 1e-20);
+        assertEquals(1, block.get(0, 1), 1e-20);
+        assertTrue(Double.isNaN(block.get(0, 2)));
+        assertTrue(Double.isNaN(block.get(2, 1)));
+        assertEquals(6, block.get(2, 2), 1e-20);
+
+        block.set(1, 1, 10);
+        assertEquals(10, block.values()[4], 1e-20);
+        assertEquals(2, df.getValue(1, "x"), 1e-20);
+    }
+
+    @Test
+    public void testSparse() {
+        Frame df = SolidFrame.byVars(
+                SparseNumericVar.copy(0, 2, 0, Double.NaN).withName("x"),
+                NumericVar.copy(1, 0, 0, 3).withName("y"));
+
+        FeatureBlock block = FeatureBlock.from(df, "y", "x");
+        assertTrue(block.isSparse());
+        assertEquals(0, block.entryEnd(2) - block.entryStart(2));
+        assertEquals(2, block.entryEnd(3) - block.entryStart(3));
+        assertArrayEquals(new int[]{0, 1, 0, 1}, block.entryCols());
+
+        FeatureBlock dense = FeatureBlock.from(SolidFrame.byVars(
+                NumericVar.copy(0, 2, 0, Double.NaN).withName("x"),
+                NumericVar.copy(1, 0, 0, 3).withName("y")), "y", "x");
+        assertTrue(!dense.isSparse());
+        assertArrayEquals(dense.values(), block.values(), 1e-20);
+        for (int i = 0; i < df.getRowCount(); i++) {
+            assertArrayEquals(dense.row(i), block.row(i), 1e-20);
+            for (int j = 0; j < 2; j++) {
+                assertEquals(dense.get(i, j), block.get(i, j), 1e-20);
+            }
+        }
+
+        block.set(2, 1, 5);
+        assertTrue(!block.isSparse());
+        assertEquals(5, block.get(2, 1), 1e-20);
+        assertEquals(3, block.get(3, 0), 1e-20);
+    }
+
+    @Test
+    public void testEuclidean() {
+        Frame df = SolidFrame.byVars(
+                NumericVar.copy(1, 4, 2).withName("x"),
+                NumericVar.copy(1, 5, Double.NaN).withName("y"));
+        FeatureBlock block = FeatureBlock.from(df, "x", "y");
+        Distance d = Distance.EUCLIDEAN.get();
+
+        assertEquals(5, d.distance(block, 0, block, 1), 1e-12);
+        assertEquals(5, d.distance(df, 0, df, 1, "x", "y"), 1e-12);
+
+        // missing values are ignored
+        assertEquals(1, d.distance(block, 0, block, 2), 1e-12);
+        assertEquals(1, d.distance(df, 2, df, 0, "x", "y"), 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeOverflow() {
+        FeatureBlock.empty(1 << 16, 1 << 16);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.ml.common;
+
+import org.junit.Test;
+import rapaio.data.NumericVar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VarBinsTest {
+
+    private static final double TOL = 1e-12;
+
+    @Test
+    public void testFewDistinctValues() {
+        NumericVar x = NumericVar.copy(3, 1, 2, 1, Double.NaN, 3);
+        VarBins bins = VarBins.from(x, 10);
+
+        assertEquals(3, bins.binCount());
+        assertEquals(3, bins.missingBin());
+        assertEquals(1, bins.cut(0), TOL);
+        assertEquals(2, bins.cut(1), TOL);
+        assertTrue(Double.isInfinite(bins.cut(2)));
+
+        assertEquals(2, bins.bin(0));
+        assertEquals(0, bins.bin(1));
+        assertEquals(1, bins.bin(2));
+        assertEquals(3, bins.bin(4));
+        assertEquals(1, bins.binOf(1.5));
+    }
+
+    @Test
+    public void testEqualFrequencies() {
+        NumericVar x = NumericVar.seq(0, 999);
+        VarBins bins = VarBins.from(x, 4);
+
+        assertEquals(4, bins.binCount());
+        int[] counts = new int[bins.missingBin() + 1];
+        for (int i = 0; i < x.getRowCount(); i++) {
+            counts[bins.bin(i)]++;
+        }
+        for (int i = 0; i < bins.binCount(); i++) {
+            assertEquals(250, counts[i]);
+        }
+        assertEquals(0, counts[bins.missingBin()]);
+    }
+
+    @Test
+    public void testShortCodes() {
+        NumericVar x = NumericVar.seq(0, 9_999);
+        VarBins bins = VarBins.from(x, 1_000);
+
+        assertEquals(1_000, bins.binCount());
+        assertEquals(999, bins.bin(9_999));
+        assertEquals(0, bins.bin(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBins() {
+        VarBins.from(NumericVar.seq(0, 10), 1);
+    }
+
+    @Test
+    public void testHistogramSubtraction() {
+        BinHistogram parent = BinHistogram.empty(3, 2);
+        BinHistogram child = BinHistogram.empty(3, 2);
+        for (int i = 0; i < 3; i++) {
+            parent.update(i, 0, 10 + i);
+            parent.update(i, 1, 1);
+            child.update(i, 0, i);
+        }
+        BinHistogram diff = parent.minus(child);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(10, diff.get(i, 0), TOL);
+            assertEquals(1, diff.get(i, 1), TOL);
+        }
+    }
+}
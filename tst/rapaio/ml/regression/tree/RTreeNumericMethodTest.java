@@ -30,6 +30,8 @@ import rapaio.data.Frame;
 import rapaio.data.NumericVar;
 import rapaio.data.Var;
 import rapaio.datasets.Datasets;
+import rapaio.ml.common.BinHistogram;
+import rapaio.ml.common.VarBins;
 
 import java.util.Optional;
 
@@ -73,4 +75,25 @@ public class RTreeNumericMethodTest {
         assertEquals("Candidate{score=20.54116483516485, testName='temp', groupNames=[temp <= 69.000000, temp > 69.000000]}",
                 c.get().toString());
     }
+
+    @Test
+    public void binaryHistogramTest() {
+        RTreeNumericMethod m = RTreeNumericMethod.BINARY;
+        VarBins bins = VarBins.from(df.getVar(NUM_TEST), 100);
+        BinHistogram hist = BinHistogram.empty(bins.missingBin() + 1, 4);
+        for (int i = 0; i < df.getRowCount(); i++) {
+            double y = df.getValue(i, TARGET);
+            hist.update(bins.bin(i), 0, 1);
+            hist.update(bins.bin(i), 1, w.getValue(i));
+            hist.update(bins.bin(i), 2, y);
+            hist.update(bins.bin(i), 3, y * y);
+        }
+        Optional<RTree.Candidate> c = m.computeCandidate(tree, df, w, NUM_TEST, TARGET,
+                RTreeTestFunction.WEIGHTED_VAR_GAIN, bins, hist);
+
+        assertTrue(c.isPresent());
+        assertEquals(NUM_TEST, c.get().getTestName());
+        assertEquals(2, c.get().getGroupNames().size());
+        assertTrue(c.get().getScore() > 0);
+    }
 }
@@ -99,4 +99,49 @@ public class RTreeTest {
         fit.printSummary();
     }
 
+    @Test
+    public void testHistogramSplits() throws IOException {
+        Frame df = Datasets.loadISLAdvertising().removeVars("ID");
+
+        RTree tree = RTree.buildCART()
+                .withMaxDepth(10)
+                .withMinCount(5)
+                .withHistogramSplits(32);
+        tree.train(df, Sales);
+
+        Assert.assertFalse(tree.getRoot().isLeaf());
+        Assert.assertEquals(2, tree.getRoot().getChildren().size());
+        Assert.assertTrue(tree.fullName().contains("histogramBins=32"));
+
+        RFit fit = tree.fit(df, true);
+        double sse = 0;
+        double sst = 0;
+        double mean = df.getVar(Sales).stream().mapToDouble().average().getAsDouble();
+        for (int i = 0; i < df.getRowCount(); i++) {
+            sse += Math.pow(fit.firstResidual().getValue(i), 2);
+            sst += Math.pow(df.getValue(i, Sales) - mean, 2);
+        }
+        Assert.assertTrue(sse < 0.2 * sst);
+    }
+
+    @Test
+    public void testCompile() throws IOException {
+        Frame df = Datasets.loadISLAdvertising().removeVars("ID").solidCopy();
+        for (int i = 0; i < df.getRowCount(); i += 5) {
+            df.setMissing(i, i % 3);
+        }
+
+        for (RTree tree : new RTree[]{RTree.buildCART().withMinCount(5), RTree.buildCART().withHistogramSplits(16)}) {
+            tree.train(df, Sales);
+            RFit expected = tree.fit(df);
+
+            Assert.assertFalse(tree.isCompiled());
+            tree.compile();
+            Assert.assertTrue(tree.isCompiled());
+            RFit compiled = tree.fit(df);
+            for (int i = 0; i < df.getRowCount(); i++) {
+                Assert.assertEquals(expected.firstFit().getValue(i), compiled.firstFit().getValue(i), 1e-12);
+            }
+        }
+    }
 }
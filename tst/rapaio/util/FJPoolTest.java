@@ -0,0 +1,171 @@
+/*
+ * Apache License
+ * Version 2.0, January 2004
+ * http://www.apache.org/licenses/
+ *
+ *    Copyright 2013 Aurelian Tutuianu
+ *    Copyright 2014 Aurelian Tutuianu
+ *    Copyright 2015 Aurelian Tutuianu
+ *    Copyright 2016 Aurelian Tutuianu
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package rapaio.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class FJPoolTest {
+
+    @Test
+    public void testPoolReuse() {
+        ForkJoinPool a = FJPool.pool();
+        assertSame(a, FJPool.pool());
+        assertEquals(FJPool.maxThreads(), a.getParallelism());
+    }
+
+    @Test
+    public void testBoundedConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger count = new AtomicInteger();
+        FJPool.forEach(2, 40, i -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count.incrementAndGet();
+            running.decrementAndGet();
+        });
+        assertEquals(40, count.get());
+        assertTrue(peak.get() <= 2);
+
+        List<Integer> squares = FJPool.map(3, 20, i -> i * i);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i * i, (int) squares.get(i));
+        }
+    }
+
+    @Test
+    public void testNestedCallsRunInline() {
+        AtomicInteger count = new AtomicInteger();
+        int sum = FJPool.call(2, () -> {
+            assertTrue(FJPool.isManagedThread());
+            return IntStream.range(0, 10).parallel()
+                    .map(i -> FJPool.call(4, () -> {
+                        count.incrementAndGet();
+                        return i;
+                    }))
+                    .sum();
+        });
+        assertEquals(45, sum);
+        assertEquals(10, count.get());
+        assertFalse(FJPool.isManagedThread());
+    }
+
+    @Test
+    public void testCallBoundsThreads() {
+        int threads = FJPool.maxThreads();
+        try {
+            FJPool.setMaxThreads(8);
+            int parallelism = FJPool.call(2, () -> {
+                // parallel streams started from a worker use the pool of the worker
+                assertEquals(45, IntStream.range(0, 10).parallel().sum());
+                assertEquals(45, (int) FJPool.reduceRange(4, 0, 10, (s, e) -> IntStream.range(s, e).sum(), Integer::sum));
+                return ((ForkJoinWorkerThread) Thread.currentThread()).getPool().getParallelism();
+            });
+            assertEquals(2, parallelism);
+            assertEquals(8, (int) FJPool.call(8, () -> ((ForkJoinWorkerThread) Thread.currentThread()).getPool().getParallelism()));
+            assertEquals(8, (int) FJPool.call(0, () -> ((ForkJoinWorkerThread) Thread.currentThread()).getPool().getParallelism()));
+        } finally {
+            FJPool.setMaxThreads(threads);
+        }
+    }
+
+    @Test
+    public void testExceptionPropagation() {
+        try {
+            FJPool.run(2, () -> {
+                throw new IllegalArgumentException("boom");
+            });
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        try {
+            FJPool.call(2, () -> {
+                throw new IOException("io");
+            });
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testReduceRange() {
+        int sum = FJPool.reduceRange(3, 0, 1000, (s, e) -> IntStream.range(s, e).sum(), Integer::sum);
+        assertEquals(999 * 1000 / 2, sum);
+    }
+
+    @Test
+    public void testShutdown() {
+        ForkJoinPool a = FJPool.pool();
+        FJPool.shutdown();
+        assertTrue(a.isShutdown());
+        ForkJoinPool b = FJPool.pool();
+        assertNotSame(a, b);
+        assertEquals(6, (int) FJPool.call(3, () -> 6));
+    }
+
+    @Test
+    public void testSetMaxThreadsWhileRunning() throws Exception {
+        int threads = FJPool.maxThreads();
+        try {
+            ForkJoinPool old = FJPool.pool();
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch swapped = new CountDownLatch(1);
+            ForkJoinTask<Integer> running = FJPool.submit(() -> {
+                started.countDown();
+                swapped.await();
+                // in-flight work keeps running, including nested parallel work, on the old pool
+                return FJPool.reduceRange(4, 0, 100, (s, e) -> IntStream.range(s, e).sum(), Integer::sum);
+            });
+            started.await();
+            FJPool.setMaxThreads(2);
+            swapped.countDown();
+
+            assertTrue(old.isShutdown());
+            assertNotSame(old, FJPool.pool());
+            assertEquals(2, FJPool.pool().getParallelism());
+            assertEquals(99 * 100 / 2, (int) running.get());
+            assertEquals(6, (int) FJPool.call(2, () -> 6));
+        } finally {
+            FJPool.setMaxThreads(threads);
+        }
+    }
+}